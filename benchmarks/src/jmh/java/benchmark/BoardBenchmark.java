@@ -0,0 +1,72 @@
+package benchmark;
+
+import main.btlshyp.model.Board;
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.model.Ship;
+import main.btlshyp.model.ShipType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Board#isShipPlacementValid(Ship)} for the last ship of a fleet, on a board already holding the other three
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class BoardBenchmark {
+
+  public enum Placement {
+    VALID, OVERLAPPING, OFF_BOARD
+  }
+
+  @Param
+  public Placement placement;
+
+  private Board board;
+  private Ship ship;
+
+  @Setup
+  public void setUp() {
+    board = new Board();
+    board.placeShip(ship(ShipType.BATTLESHIP, 0, 0, true));
+    board.placeShip(ship(ShipType.DESTROYER, 0, 1, false));
+    board.placeShip(ship(ShipType.PATROLBOAT, 4, 3, false));
+
+    switch (placement) {
+      case VALID:
+        ship = ship(ShipType.SUBMARINE, 1, 2, true);
+        break;
+      case OVERLAPPING:
+        ship = ship(ShipType.SUBMARINE, 0, 2, true);
+        break;
+      case OFF_BOARD:
+        ship = ship(ShipType.SUBMARINE, 3, 2, true);
+        break;
+    }
+  }
+
+  @Benchmark
+  public boolean isShipPlacementValid() {
+    return board.isShipPlacementValid(ship);
+  }
+
+  static Ship ship(ShipType type, int x, int y, boolean horizontal) {
+    Ship ship = new Ship(type);
+    ArrayList<Coordinate> coordinates = new ArrayList<>();
+    for (int i = 0; i < ship.getShipSize(); i++) {
+      coordinates.add(horizontal ? new Coordinate(x + i, y) : new Coordinate(x, y + i));
+    }
+    ship.setShipCoordinates(coordinates);
+    return ship;
+  }
+
+}
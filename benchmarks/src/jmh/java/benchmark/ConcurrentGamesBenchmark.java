@@ -0,0 +1,71 @@
+package benchmark;
+
+import main.btlshyp.model.Board;
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.model.Model;
+import main.btlshyp.model.ShipType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static benchmark.BoardBenchmark.ship;
+
+/**
+ * A game on its own {@link Model}: a fleet is placed and then every square is attacked. Played on one thread, then on
+ * one thread per core, so the two scores show whether games in the same JVM slow each other down. On a single core
+ * machine they are the same. Only warnings are logged, so the game lost message doesn't swamp the games.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class ConcurrentGamesBenchmark {
+
+  private final Logger clientLogger = Logger.getLogger("main.btlshyp");
+
+  @Setup
+  public void setUp() {
+    clientLogger.setLevel(Level.WARNING);
+  }
+
+  @TearDown
+  public void tearDown() {
+    clientLogger.setLevel(null);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public boolean playGame() {
+    return play();
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public boolean playGameOnEveryCore() {
+    return play();
+  }
+
+  private static boolean play() {
+    Model model = new Model();
+    model.placeShip(ship(ShipType.BATTLESHIP, 0, 0, true));
+    model.placeShip(ship(ShipType.DESTROYER, 0, 1, false));
+    model.placeShip(ship(ShipType.PATROLBOAT, 4, 3, false));
+    model.placeShip(ship(ShipType.SUBMARINE, 1, 2, true));
+    for (int x = 0; x < Board.WIDTH; x++) {
+      for (int y = 0; y < Board.HEIGHT; y++) {
+        model.getAttackResults(new Coordinate(x, y));
+      }
+    }
+    return model.isGameLost();
+  }
+
+}
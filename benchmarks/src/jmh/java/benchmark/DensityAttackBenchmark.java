@@ -0,0 +1,49 @@
+package benchmark;
+
+import main.btlshyp.bot.DensityAttackStrategy;
+import main.btlshyp.model.ShipType;
+import main.btlshyp.sim.GameResult;
+import main.btlshyp.sim.GameSimulator;
+import main.btlshyp.sim.Player;
+import main.btlshyp.sim.RandomPlacementStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole games between two {@link DensityAttackStrategy} bots, on the standard board and on a 20x20 board where each
+ * attack has far more placements to weigh up. Both play the standard fleet.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class DensityAttackBenchmark {
+
+  @Param({ "5", "20" })
+  public int boardSize;
+
+  private GameSimulator simulator;
+  private long seed;
+
+  @Setup
+  public void setUp() {
+    ShipType[] fleet = GameSimulator.STANDARD_FLEET;
+    simulator = new GameSimulator(
+        new Player("ahab", new RandomPlacementStrategy(), () -> new DensityAttackStrategy(fleet)),
+        new Player("nemo", new RandomPlacementStrategy(), () -> new DensityAttackStrategy(fleet)),
+        boardSize, boardSize, fleet);
+  }
+
+  @Benchmark
+  public GameResult playGame() {
+    return simulator.play(seed++);
+  }
+
+}
@@ -0,0 +1,68 @@
+package benchmark;
+
+import main.btlshyp.message.ApplicationMessage;
+import main.btlshyp.message.PingMessage;
+import main.btlshyp.network.codec.MessageCodec;
+import main.btlshyp.server.GameServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The round trip of a ping to a {@link GameServer} on the loopback interface and the pong it answers with, which is
+ * what the client's Heartbeat measures. The client end is a plain blocking socket, so the score is mostly the loopback
+ * and the server's event loop.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class LoopbackPingBenchmark {
+
+  private GameServer server;
+  private Socket socket;
+  private OutputStream output;
+  private BufferedReader input;
+  private byte[] ping;
+
+  @Setup
+  public void setUp() throws IOException {
+    server = new GameServer(0, 1).start();
+    socket = new Socket("localhost", server.getPort());
+    socket.setTcpNoDelay(true);
+    output = socket.getOutputStream();
+    input = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+    output.write("{\"type\":\"login\",\"message\":{\"username\":\"ahab\"}}\n".getBytes(StandardCharsets.UTF_8));
+    output.flush();
+    input.readLine();
+    ping = (MessageCodec.newGson().toJson(new ApplicationMessage(new PingMessage("ahab", 1, System.nanoTime())))
+        + "\n").getBytes(StandardCharsets.UTF_8);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    socket.close();
+    server.close();
+  }
+
+  @Benchmark
+  public String pingPong() throws IOException {
+    output.write(ping);
+    output.flush();
+    return input.readLine();
+  }
+
+}
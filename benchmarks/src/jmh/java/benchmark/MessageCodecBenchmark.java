@@ -0,0 +1,99 @@
+package benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import main.btlshyp.message.ApplicationMessage;
+import main.btlshyp.message.Message;
+import main.btlshyp.message.MessageType;
+import main.btlshyp.network.codec.BinaryMessageCodec;
+import main.btlshyp.network.codec.MessageCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding each type of {@link Message}, in an {@link ApplicationMessage} envelope as sent to the server.
+ *
+ * <p>{@code decodeJsonTree} is how lines were decoded before the streaming codec: parsed into a {@link JsonObject} tree
+ * and then bound to the concrete class by Gson's reflection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MessageCodecBenchmark {
+
+  @Param({ "CHAT", "JOIN_ATTEMPT", "JOIN_RESPONSE", "GAME_START", "SHIPS_PLACED", "ATTACK_ATTEMPT", "ATTACK_RESPONSE",
+      "TURN", "GAME_WON_ATTEMPT", "GAME_WON_RESPONSE", "LOGIN", "PING", "PONG" })
+  public MessageType messageType;
+
+  private final Gson gson = MessageCodec.newGson();
+  private final Gson reflectiveGson = new Gson();
+  private final JsonParser parser = new JsonParser();
+
+  private Message message;
+  private ApplicationMessage applicationMessage;
+  private String json;
+
+  private final BinaryMessageCodec sender = new BinaryMessageCodec();
+  private final BinaryMessageCodec receiver = new BinaryMessageCodec();
+  private final ByteArrayOutputStream binaryOut = new ByteArrayOutputStream(256);
+  private ByteArrayInputStream binaryFrame;
+  private DataInputStream binaryIn;
+
+  @Setup
+  public void setUp() throws IOException {
+    message = SampleMessages.of(messageType);
+    applicationMessage = new ApplicationMessage(message);
+    json = gson.toJson(applicationMessage);
+
+    // The first frame introduces the username. Every frame after it, as in a game, refers to it by id.
+    sender.write(binaryOut, message);
+    receiver.read(new DataInputStream(new ByteArrayInputStream(binaryOut.toByteArray())));
+    binaryOut.reset();
+    sender.write(binaryOut, message);
+    binaryFrame = new ByteArrayInputStream(binaryOut.toByteArray());
+    binaryIn = new DataInputStream(binaryFrame);
+  }
+
+  @Benchmark
+  public String encodeJson() {
+    return gson.toJson(applicationMessage);
+  }
+
+  @Benchmark
+  public ApplicationMessage decodeJson() {
+    return gson.fromJson(json, ApplicationMessage.class);
+  }
+
+  @Benchmark
+  public Message decodeJsonTree() {
+    JsonObject envelope = parser.parse(json).getAsJsonObject();
+    return reflectiveGson.fromJson(envelope.get("message"), message.getClass());
+  }
+
+  @Benchmark
+  public int encodeBinary() throws IOException {
+    binaryOut.reset();
+    sender.write(binaryOut, message);
+    return binaryOut.size();
+  }
+
+  @Benchmark
+  public Message decodeBinary() throws IOException {
+    binaryFrame.reset();
+    return receiver.read(binaryIn);
+  }
+
+}
@@ -0,0 +1,56 @@
+package benchmark;
+
+import main.btlshyp.journal.MessageJournal;
+import main.btlshyp.message.AttackAttemptMessage;
+import main.btlshyp.model.Coordinate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MessageJournal#recordOutbound} as seen by the thread sending the message. Only queueing the message is
+ * measured, since the journal's own thread writes it to the file; if that thread falls behind, messages are dropped
+ * rather than making the sender wait. Each iteration starts a new journal, so the file doesn't grow without limit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MessageJournalBenchmark {
+
+  private final AttackAttemptMessage message = new AttackAttemptMessage("ahab", new Coordinate(1, 1));
+  private Path directory;
+  private Path file;
+  private MessageJournal journal;
+
+  @Setup(Level.Iteration)
+  public void setUp() throws IOException {
+    // The journal creates its file, so only the directory is made here
+    directory = Files.createTempDirectory("benchmark");
+    file = directory.resolve("benchmark.journal");
+    journal = MessageJournal.open(file);
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() throws IOException {
+    journal.close();
+    Files.deleteIfExists(file);
+    Files.deleteIfExists(directory);
+  }
+
+  @Benchmark
+  public void recordOutbound() {
+    journal.recordOutbound(message);
+  }
+
+}
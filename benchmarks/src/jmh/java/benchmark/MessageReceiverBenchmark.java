@@ -0,0 +1,170 @@
+package benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import main.btlshyp.controller.Controller;
+import main.btlshyp.message.*;
+import main.btlshyp.network.MessageReceiver;
+import main.btlshyp.network.codec.MessageCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MessageReceiver#determineTypeThenHandoffToController(String)} from a raw line to the Controller, for the
+ * messages a game is mostly made of plus a global chat envelope from the server. The Controller does nothing with the
+ * messages, so only decoding and dispatch are measured.
+ *
+ * <p>{@code determineTypeByContains} is how messages were dispatched before the receiver switched to a map of decoders
+ * (less its logging), for comparison: the line is parsed once for its type and again for the message, which is then
+ * found by scanning the whole line for each type's name in turn and decoded with reflective Gson.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MessageReceiverBenchmark {
+
+  private static final String GLOBAL_CHAT = "{\"type\":\"chat\",\"fromUser\":\"ahab\","
+      + "\"message\":\"Anyone up for a game? I'll be the one with the battleship in the corner.\"}";
+
+  @Param({ "CHAT", "ATTACK_ATTEMPT", "ATTACK_RESPONSE", "TURN", "PING", "GLOBAL_CHAT" })
+  public String line;
+
+  private MessageReceiver receiver;
+  private Controller controller;
+  private final Gson gson = new Gson();
+  private String json;
+
+  @Setup
+  public void setUp(Blackhole blackhole) {
+    controller = new DiscardingController(blackhole);
+    receiver = new MessageReceiver(controller);
+    json = line.equals("GLOBAL_CHAT") ? GLOBAL_CHAT
+        : MessageCodec.newGson().toJson(new ApplicationMessage(SampleMessages.of(MessageType.valueOf(line))));
+  }
+
+  @Benchmark
+  public void determineTypeThenHandoffToController() {
+    receiver.determineTypeThenHandoffToController(json);
+  }
+
+  @Benchmark
+  public void determineTypeByContains() {
+    JsonObject envelope = new JsonParser().parse(json).getAsJsonObject();
+    String type = envelope.get("type").getAsString();
+    if (type.equals("application")) {
+      handleApplicationMessageByContains(json);
+    } else if (type.equals("chat")) {
+      JsonObject chat = new JsonParser().parse(json).getAsJsonObject();
+      controller.handleMessage(new ChatMessage(chat.get("message").getAsString(), chat.get("fromUser").getAsString()));
+    }
+  }
+
+  private void handleApplicationMessageByContains(String applicationMessage) {
+    if (!applicationMessage.contains("BtlShyp")) {
+      return;
+    }
+    JsonElement message = new JsonParser().parse(applicationMessage).getAsJsonObject().get("message");
+
+    if (applicationMessage.contains(MessageType.CHAT.name())) {
+      controller.handleMessage(gson.fromJson(message, ChatMessage.class));
+    } else if (applicationMessage.contains(MessageType.JOIN_ATTEMPT.name())) {
+      controller.handleMessage(gson.fromJson(message, JoinAttemptMessage.class));
+    } else if (applicationMessage.contains(MessageType.JOIN_RESPONSE.name())) {
+      controller.handleMessage(gson.fromJson(message, JoinResponseMessage.class));
+    } else if (applicationMessage.contains(MessageType.GAME_START.name())) {
+      controller.handleMessage(gson.fromJson(message, GameStartMessage.class));
+    } else if (applicationMessage.contains(MessageType.SHIPS_PLACED.name())) {
+      controller.handleMessage(gson.fromJson(message, ShipsPlacedMessage.class));
+    } else if (applicationMessage.contains(MessageType.TURN.name())) {
+      controller.handleMessage(gson.fromJson(message, TurnStartMessage.class));
+    } else if (applicationMessage.contains(MessageType.ATTACK_ATTEMPT.name())) {
+      controller.handleMessage(gson.fromJson(message, AttackAttemptMessage.class));
+    } else if (applicationMessage.contains(MessageType.ATTACK_RESPONSE.name())) {
+      controller.handleMessage(gson.fromJson(message, AttackResponseMessage.class));
+    } else if (applicationMessage.contains(MessageType.GAME_WON_ATTEMPT.name())) {
+      controller.handleMessage(gson.fromJson(message, GameWonAttemptMessage.class));
+    } else if (applicationMessage.contains(MessageType.GAME_WON_RESPONSE.name())) {
+      controller.handleMessage(gson.fromJson(message, GameWonResponseMessage.class));
+    }
+  }
+
+  /**
+   * Hands every message to a Blackhole, so the decoding can't be optimized away
+   */
+  private static class DiscardingController extends Controller {
+
+    private final Blackhole blackhole;
+
+    DiscardingController(Blackhole blackhole) {
+      super(null);
+      this.blackhole = blackhole;
+    }
+
+    @Override
+    public void handleMessage(AttackAttemptMessage message) {
+      blackhole.consume(message);
+    }
+
+    @Override
+    public void handleMessage(AttackResponseMessage message) {
+      blackhole.consume(message);
+    }
+
+    @Override
+    public void handleMessage(ChatMessage message) {
+      blackhole.consume(message);
+    }
+
+    @Override
+    public void handleMessage(GameStartMessage message) {
+      blackhole.consume(message);
+    }
+
+    @Override
+    public void handleMessage(GameWonAttemptMessage message) {
+      blackhole.consume(message);
+    }
+
+    @Override
+    public void handleMessage(GameWonResponseMessage message) {
+      blackhole.consume(message);
+    }
+
+    @Override
+    public void handleMessage(JoinAttemptMessage message) {
+      blackhole.consume(message);
+    }
+
+    @Override
+    public void handleMessage(JoinResponseMessage message) {
+      blackhole.consume(message);
+    }
+
+    @Override
+    public void handleMessage(LoginMessage message) {
+      blackhole.consume(message);
+    }
+
+    @Override
+    public void handleMessage(ShipsPlacedMessage message) {
+      blackhole.consume(message);
+    }
+
+    @Override
+    public void handleMessage(TurnStartMessage message) {
+      blackhole.consume(message);
+    }
+  }
+
+}
@@ -0,0 +1,54 @@
+package benchmark;
+
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.model.Model;
+import main.btlshyp.model.Model.AttackResult;
+import main.btlshyp.model.ShipType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import static benchmark.BoardBenchmark.ship;
+
+/**
+ * {@link Model#getAttackResults(Coordinate)} against a full fleet, for an empty square and for a square of a ship which
+ * has been hit before but not sunk
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ModelBenchmark {
+
+  public enum Target {
+    MISS, HIT
+  }
+
+  @Param
+  public Target target;
+
+  private Model model;
+  private Coordinate coordinate;
+
+  @Setup
+  public void setUp() {
+    model = new Model();
+    model.placeShip(ship(ShipType.BATTLESHIP, 0, 0, true));
+    model.placeShip(ship(ShipType.DESTROYER, 0, 1, false));
+    model.placeShip(ship(ShipType.PATROLBOAT, 4, 3, false));
+    model.placeShip(ship(ShipType.SUBMARINE, 1, 2, true));
+    coordinate = target == Target.HIT ? new Coordinate(2, 0) : new Coordinate(4, 0);
+  }
+
+  @Benchmark
+  public AttackResult getAttackResults() {
+    return model.getAttackResults(coordinate);
+  }
+
+}
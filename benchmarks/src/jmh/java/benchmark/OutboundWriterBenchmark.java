@@ -0,0 +1,72 @@
+package benchmark;
+
+import com.google.gson.Gson;
+import main.btlshyp.ThreadMode;
+import main.btlshyp.message.ApplicationMessage;
+import main.btlshyp.message.ChatMessage;
+import main.btlshyp.message.Message;
+import main.btlshyp.network.OutboundWriter;
+import main.btlshyp.network.codec.MessageCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Four threads sending chat messages at once through one {@link OutboundWriter}, which encodes them as JSON lines and
+ * writes them (to nowhere) in batches, as a client's writer does. Once the writer's queue is full the senders wait for
+ * it, so the score is how long each message takes to get through the writer rather than only how long queueing takes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Threads(4)
+public class OutboundWriterBenchmark {
+
+  private final Gson gson = MessageCodec.newGson();
+  private final ChatMessage message = new ChatMessage("Anyone up for a game?", "ahab");
+  private OutboundWriter writer;
+
+  @Setup
+  public void setUp() {
+    writer = new OutboundWriter(new DiscardingOutputStream(), this::encodeJsonLine,
+        ThreadMode.PLATFORM.newThreadFactory("OutboundWriter"));
+  }
+
+  @TearDown
+  public void tearDown() {
+    writer.close();
+  }
+
+  @Benchmark
+  public void send() {
+    writer.send(message);
+  }
+
+  private void encodeJsonLine(Message message, OutputStream batch) throws IOException {
+    batch.write(gson.toJson(new ApplicationMessage(message)).getBytes(StandardCharsets.UTF_8));
+    batch.write('\n');
+  }
+
+  private static class DiscardingOutputStream extends OutputStream {
+
+    @Override
+    public void write(int b) {
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+    }
+  }
+
+}
@@ -0,0 +1,76 @@
+package benchmark;
+
+import main.btlshyp.model.Board;
+import main.btlshyp.model.Model;
+import main.btlshyp.model.PlacementTable;
+import main.btlshyp.model.Ship;
+import main.btlshyp.model.ShipType;
+import main.btlshyp.sim.GameSimulator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static benchmark.BoardBenchmark.ship;
+
+/**
+ * Placing a random standard fleet on the standard board.
+ *
+ * <p>{@code randomFleetByTrialAndError} proposes ships at random and keeps those a {@link Model} accepts, as a
+ * player placing ships through the Controller does. {@code randomFleetFromTable} picks only from the placements which
+ * still fit, using the {@link PlacementTable}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class PlacementBenchmark {
+
+  private static final int MAX_ATTEMPTS_PER_SHIP = 1000;
+
+  private final PlacementTable table = PlacementTable.forBoard(Board.WIDTH, Board.HEIGHT);
+  private final SplittableRandom random = new SplittableRandom(42);
+
+  @Benchmark
+  public List<Ship> randomFleetFromTable() {
+    return table.randomFleet(GameSimulator.STANDARD_FLEET, random);
+  }
+
+  @Benchmark
+  public List<Ship> randomFleetByTrialAndError() {
+    while (true) {
+      List<Ship> ships = tryRandomFleet();
+      if (ships != null) {
+        return ships;
+      }
+    }
+  }
+
+  /**
+   * @return The fleet, or {@code null} if the ships placed first left no room for a later one
+   */
+  private List<Ship> tryRandomFleet() {
+    Model model = new Model();
+    List<Ship> ships = new ArrayList<>(GameSimulator.STANDARD_FLEET.length);
+    for (ShipType type : GameSimulator.STANDARD_FLEET) {
+      Ship ship;
+      int attempts = 0;
+      do {
+        if (++attempts > MAX_ATTEMPTS_PER_SHIP) {
+          return null;
+        }
+        ship = ship(type, random.nextInt(Board.WIDTH), random.nextInt(Board.HEIGHT), random.nextBoolean());
+      } while (!model.isShipPlacementValid(ship));
+      model.placeShip(ship);
+      ships.add(ship);
+    }
+    return ships;
+  }
+
+}
@@ -0,0 +1,80 @@
+package benchmark;
+
+import main.btlshyp.message.AttackAttemptMessage;
+import main.btlshyp.message.AttackResponseMessage;
+import main.btlshyp.message.AttackResponseMessage.HitOrMiss;
+import main.btlshyp.message.AttackResponseMessage.ShipSunk;
+import main.btlshyp.message.ChatMessage;
+import main.btlshyp.message.GameStartMessage;
+import main.btlshyp.message.GameWonAttemptMessage;
+import main.btlshyp.message.GameWonResponseMessage;
+import main.btlshyp.message.GameWonResponseMessage.GameResult;
+import main.btlshyp.message.JoinAttemptMessage;
+import main.btlshyp.message.JoinResponseMessage;
+import main.btlshyp.message.JoinResponseMessage.ConfirmJoin;
+import main.btlshyp.message.LoginMessage;
+import main.btlshyp.message.Message;
+import main.btlshyp.message.MessageType;
+import main.btlshyp.message.PingMessage;
+import main.btlshyp.message.PongMessage;
+import main.btlshyp.message.ShipsPlacedMessage;
+import main.btlshyp.message.TurnStartMessage;
+import main.btlshyp.message.TurnStartMessage.Turn;
+import main.btlshyp.model.Coordinate;
+
+import java.util.Arrays;
+
+/**
+ * A message of each type, filled in the way they are during a real game
+ */
+final class SampleMessages {
+
+  static final String USERNAME = "captain_nemo";
+
+  private SampleMessages() {
+  }
+
+  static Message of(MessageType type) {
+    switch (type) {
+      case CHAT:
+        return new ChatMessage("Nice shot! Didn't see that one coming, my destroyer was hiding there all game.", USERNAME);
+      case JOIN_ATTEMPT:
+        return new JoinAttemptMessage(USERNAME);
+      case JOIN_RESPONSE:
+        return new JoinResponseMessage(ConfirmJoin.ACCEPT);
+      case GAME_START:
+        return new GameStartMessage("ahab");
+      case SHIPS_PLACED:
+        return new ShipsPlacedMessage(USERNAME);
+      case ATTACK_ATTEMPT:
+        AttackAttemptMessage attackAttempt = new AttackAttemptMessage(USERNAME, new Coordinate(3, 1));
+        attackAttempt.setTraceId(0x5DEECE66DL);
+        return attackAttempt;
+      case ATTACK_RESPONSE:
+        AttackResponseMessage attackResponse = new AttackResponseMessage(USERNAME, HitOrMiss.HIT, ShipSunk.DESTROYER,
+            new Coordinate(3, 1));
+        attackResponse.setTraceId(0x5DEECE66DL);
+        attackResponse.setAttemptReceivedNanos(81_234_567_890_123L);
+        attackResponse.setAttackResultsNanos(81_234_567_912_345L);
+        attackResponse.setResponseSentNanos(81_234_571_234_567L);
+        return attackResponse;
+      case TURN:
+        return new TurnStartMessage(USERNAME, Turn.END);
+      case GAME_WON_ATTEMPT:
+        return new GameWonAttemptMessage(USERNAME);
+      case GAME_WON_RESPONSE:
+        return new GameWonResponseMessage(USERNAME, GameResult.WIN);
+      case LOGIN:
+        LoginMessage login = new LoginMessage(USERNAME);
+        login.setWireFormats(Arrays.asList("BINARY", "JSON"));
+        return login;
+      case PING:
+        return new PingMessage(USERNAME, 42, 81_234_567_890_123L);
+      case PONG:
+        return new PongMessage(USERNAME, 42, 81_234_567_890_123L);
+      default:
+        throw new IllegalArgumentException("No sample of " + type);
+    }
+  }
+
+}
@@ -0,0 +1,95 @@
+package benchmark;
+
+import main.btlshyp.model.Board;
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.model.Ship;
+import main.btlshyp.model.ShipType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Ship#isValid()} for a battleship laid out across, down, and with a gap in it.
+ *
+ * <p>{@code isValidBoxed} is how ships were validated before {@link Ship#isValid()} stopped allocating (less its
+ * logging), for comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ShipBenchmark {
+
+  public enum Shape {
+    HORIZONTAL, VERTICAL, GAP
+  }
+
+  @Param
+  public Shape shape;
+
+  private Ship ship;
+
+  @Setup
+  public void setUp() {
+    ArrayList<Coordinate> coordinates = new ArrayList<>();
+    for (int i = 0; i < Ship.BATTLESHIP_SIZE; i++) {
+      int offset = shape == Shape.GAP && i == Ship.BATTLESHIP_SIZE - 1 ? i + 1 : i;
+      coordinates.add(shape == Shape.HORIZONTAL ? new Coordinate(offset, 2) : new Coordinate(2, offset));
+    }
+    ship = new Ship(ShipType.BATTLESHIP);
+    ship.setShipCoordinates(coordinates);
+  }
+
+  @Benchmark
+  public boolean isValid() {
+    return ship.isValid();
+  }
+
+  @Benchmark
+  public boolean isValidBoxed() {
+    return isValidBoxed(ship, Board.WIDTH, Board.HEIGHT);
+  }
+
+  private static boolean isValidBoxed(Ship ship, int boardWidth, int boardHeight) {
+    List<Coordinate> shipCoordinates = ship.getShipCoordinates();
+    int shipSize = ship.getShipSize();
+    if (shipCoordinates == null || shipSize == 0 || shipSize != shipCoordinates.size()) {
+      return false;
+    }
+    for (Coordinate c : shipCoordinates) {
+      if (c.x < 0 || c.x >= boardWidth || c.y < 0 || c.y >= boardHeight) {
+        return false;
+      }
+    }
+
+    List<Integer> xs = new ArrayList<>();
+    List<Integer> ys = new ArrayList<>();
+    for (Coordinate c : shipCoordinates) {
+      xs.add(c.x);
+      ys.add(c.y);
+    }
+    Set<Integer> xTest = new HashSet<>(xs);
+    Set<Integer> yTest = new HashSet<>(ys);
+    if (yTest.size() == 1 && xTest.size() == shipSize) {
+      Collections.sort(xs);
+      for (int i = 0; i < shipSize - 1; i++) {
+        if (xs.get(i + 1) != (xs.get(i) + 1)) {
+          return false;
+        }
+      }
+    }
+    return (xTest.size() == 1 && yTest.size() == shipSize) || (yTest.size() == 1 && xTest.size() == shipSize);
+  }
+
+}
@@ -0,0 +1,88 @@
+package benchmark;
+
+import main.btlshyp.logging.AsyncLogHandler;
+import main.btlshyp.sim.GameResult;
+import main.btlshyp.sim.GameSimulator;
+import main.btlshyp.sim.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import java.util.logging.StreamHandler;
+
+/**
+ * Whole games between two random players, played in memory by the {@link GameSimulator}.
+ *
+ * <p>With {@code logging} {@code ON}, every record the client logs down to {@code FINEST} is formatted and written
+ * (to nowhere) through an {@link AsyncLogHandler}, as it would be with debug logging turned on. {@code OFF} leaves only
+ * warnings on, as a game normally runs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class SimulationBenchmark {
+
+  public enum Logging {
+    OFF, ON
+  }
+
+  @Param
+  public Logging logging;
+
+  private final GameSimulator simulator = new GameSimulator(Player.random("ahab"), Player.random("nemo"));
+  private final Logger clientLogger = Logger.getLogger("main.btlshyp");
+  private Handler handler;
+  private long seed;
+
+  @Setup
+  public void setUp() {
+    clientLogger.setUseParentHandlers(false);
+    if (logging == Logging.ON) {
+      handler = new AsyncLogHandler(new StreamHandler(new DiscardingOutputStream(), new SimpleFormatter()));
+      handler.setLevel(Level.ALL);
+      clientLogger.addHandler(handler);
+      clientLogger.setLevel(Level.ALL);
+    } else {
+      clientLogger.setLevel(Level.WARNING);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (handler != null) {
+      clientLogger.removeHandler(handler);
+      handler.close();
+    }
+    clientLogger.setLevel(null);
+    clientLogger.setUseParentHandlers(true);
+  }
+
+  @Benchmark
+  public GameResult playGame() {
+    return simulator.play(seed++);
+  }
+
+  private static class DiscardingOutputStream extends OutputStream {
+
+    @Override
+    public void write(int b) {
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+    }
+  }
+
+}
@@ -0,0 +1,84 @@
+package benchmark;
+
+import main.btlshyp.ThreadMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thousands of sessions, each with its own thread blocked waiting for its next message as a MessageReceiver is. Each
+ * operation hands every session one message and waits until all of them have woken up and handled it.
+ *
+ * <p>{@link ThreadMode#VIRTUAL} needs Java 21 or later. On older runtimes it falls back to platform threads, so both
+ * modes measure the same thing, and the baseline check ignores the virtual thread results. The committed baseline was
+ * recorded on Java 17 and so has no virtual thread results; run the benchmark on Java 21 to compare the two.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ThreadModeBenchmark {
+
+  @Param
+  public ThreadMode threadMode;
+
+  @Param({ "1000", "10000" })
+  public int sessions;
+
+  private BlockingQueue<CountDownLatch>[] inboxes;
+  private Thread[] threads;
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    ThreadFactory threadFactory = threadMode.newThreadFactory("Session");
+    inboxes = new BlockingQueue[sessions];
+    threads = new Thread[sessions];
+    for (int i = 0; i < sessions; i++) {
+      BlockingQueue<CountDownLatch> inbox = new LinkedBlockingQueue<>();
+      inboxes[i] = inbox;
+      threads[i] = threadFactory.newThread(() -> {
+        try {
+          while (true) {
+            inbox.take().countDown();
+          }
+        } catch (InterruptedException e) {
+          // Torn down
+        }
+      });
+      threads[i].setDaemon(true);
+      threads[i].start();
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws InterruptedException {
+    for (Thread thread : threads) {
+      thread.interrupt();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+  }
+
+  @Benchmark
+  public void deliverToEverySession() throws InterruptedException {
+    CountDownLatch handled = new CountDownLatch(sessions);
+    for (BlockingQueue<CountDownLatch> inbox : inboxes) {
+      inbox.offer(handled);
+    }
+    handled.await();
+  }
+
+}
@@ -2,33 +2,87 @@ package main.btlshyp;
 
 import lombok.extern.slf4j.Slf4j;
 import main.btlshyp.controller.Controller;
+import main.btlshyp.logging.AsyncLogHandler;
+import main.btlshyp.metrics.MetricsRegistry;
+import main.btlshyp.metrics.PrometheusExporter;
+import main.btlshyp.network.codec.WireFormat;
 import main.btlshyp.view.DefaultView;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
 @Slf4j
 public class Main {
 
   private static final String LOG_FORMAT = "%1$tY-%1$tm-%1$td %1$tH:%1$tM:%1$tS %4$-6s [%2$s] %5$s%6$s%n";
+  private static final String METRICS_FILE_PROPERTY = "btlshyp.metrics.file";
+  private static final String METRICS_PORT_PROPERTY = "btlshyp.metrics.port";
+  private static final long METRICS_FILE_PERIOD_MILLIS = 10_000;
 
   public static String SERVER_IP_ADDRESS = "ec2-34-224-216-23.compute-1.amazonaws.com";
   public static int SERVER_PORT = 8989;
+  public static WireFormat WIRE_FORMAT = WireFormat.JSON;
+  public static ThreadMode THREAD_MODE = ThreadMode.PLATFORM;
+  public static String JOURNAL_FILE = System.getProperty("btlshyp.journal.file");
+  public static String TRACE_FILE = System.getProperty("btlshyp.trace.file");
 
   /**
    * The main entry point for BtlShyp!
    *
-   * @param args Accepts an (optional) server ip address followed by an (optional) server port
+   * @param args Accepts an (optional) server ip address followed by an (optional) server port and an (optional) wire
+   * format to request from the server (JSON or BINARY) and an (optional) kind of thread to run the game loop and
+   * message receiver on (PLATFORM or VIRTUAL)
    */
   public static void main(String[] args) {
     System.setProperty("java.util.logging.SimpleFormatter.format", LOG_FORMAT);
+    // Console output happens on a background thread so the game loop and message receiver never wait on it
+    AsyncLogHandler.installOnRootLogger();
     log.info("Application Starting");
 
     if (args.length > 0) {
       handleCommandlineArgs(args);
     }
+    exportMetrics();
 
     DefaultView defaultView = new DefaultView();
     Controller controller = new Controller(defaultView);
     controller.init();
-    controller.playGame();
+
+    if (THREAD_MODE == ThreadMode.PLATFORM) {
+      controller.playGame();
+    } else {
+      Thread gameThread = THREAD_MODE.newThreadFactory("Game").newThread(controller::playGame);
+      gameThread.start();
+      try {
+        gameThread.join();
+      } catch (InterruptedException e) {
+        log.error("Interrupted while waiting for the game to finish", e);
+      }
+    }
+  }
+
+  /**
+   * Exports metrics to the file and/or port given by system properties, if either is set
+   */
+  private static void exportMetrics() {
+    String metricsFile = System.getProperty(METRICS_FILE_PROPERTY);
+    String metricsPort = System.getProperty(METRICS_PORT_PROPERTY);
+    if (metricsFile == null && metricsPort == null) {
+      return;
+    }
+
+    PrometheusExporter exporter = new PrometheusExporter(MetricsRegistry.getDefault());
+    if (metricsPort != null) {
+      try {
+        exporter.serveHttp(Integer.parseInt(metricsPort));
+      } catch (IOException | NumberFormatException e) {
+        log.error("Unable to serve metrics on port {}", metricsPort, e);
+      }
+    }
+    if (metricsFile != null) {
+      exporter.dumpToFileEvery(Paths.get(metricsFile), METRICS_FILE_PERIOD_MILLIS);
+      Runtime.getRuntime().addShutdownHook(new Thread(exporter::close, "MetricsShutdown"));
+    }
   }
 
   /**
@@ -44,6 +98,16 @@ public class Main {
       SERVER_PORT = Integer.parseInt(args[1]);
       log.info("Server port: {}", SERVER_PORT);
     }
+
+    if (args.length > 2) {
+      WIRE_FORMAT = WireFormat.valueOf(args[2].toUpperCase());
+      log.info("Preferred wire format: {}", WIRE_FORMAT);
+    }
+
+    if (args.length > 3) {
+      THREAD_MODE = ThreadMode.valueOf(args[3].toUpperCase());
+      log.info("Thread mode: {}", THREAD_MODE);
+    }
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package main.btlshyp;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The kind of thread the client's long running loops (the {@link main.btlshyp.controller.Controller}'s game loop and
+ * the {@link main.btlshyp.network.MessageReceiver}) run on.
+ *
+ * Virtual threads make it cheap to run thousands of simulated clients in one JVM, since the blocking reads and waits
+ * in those loops park the virtual thread instead of holding an OS thread. They need Java 21 or later, so they are looked
+ * up reflectively to keep the project building on Java 8. On older runtimes {@link #VIRTUAL} falls back to platform
+ * threads.
+ */
+@Slf4j
+public enum ThreadMode {
+
+  PLATFORM,
+  VIRTUAL;
+
+  /**
+   * @return {@code true} if this runtime supports virtual threads
+   */
+  public static boolean isVirtualSupported() {
+    return virtualThreadFactory("probe") != null;
+  }
+
+  /**
+   * Creates a factory for threads of this kind. Threads are named with the given prefix followed by a counter.
+   */
+  public ThreadFactory newThreadFactory(String namePrefix) {
+    if (this == VIRTUAL) {
+      ThreadFactory virtualThreadFactory = virtualThreadFactory(namePrefix);
+      if (virtualThreadFactory != null) {
+        return virtualThreadFactory;
+      }
+      log.warn("Virtual threads are not supported by this Java runtime. Using platform threads.");
+    }
+
+    AtomicInteger threadCount = new AtomicInteger();
+    return runnable -> new Thread(runnable, namePrefix + "-" + threadCount.getAndIncrement());
+  }
+
+  /**
+   * Equivalent to {@code Thread.ofVirtual().name(namePrefix + "-", 0).factory()}
+   *
+   * @return The factory, or {@code null} if virtual threads aren't available
+   */
+  private static ThreadFactory virtualThreadFactory(String namePrefix) {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Method name = builderClass.getMethod("name", String.class, long.class);
+      builder = name.invoke(builder, namePrefix + "-", 0L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package main.btlshyp.bot;
+
+import java.util.SplittableRandom;
+
+import lombok.extern.slf4j.Slf4j;
+import main.btlshyp.message.AttackResponseMessage;
+import main.btlshyp.message.AttackResponseMessage.HitOrMiss;
+import main.btlshyp.model.Board;
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.model.PlacementTable;
+import main.btlshyp.model.Ship;
+import main.btlshyp.model.ShipType;
+import main.btlshyp.sim.GameSimulator;
+import main.btlshyp.view.View;
+import main.btlshyp.view.event.AttackEvent;
+import main.btlshyp.view.event.SetShipEvent;
+
+/**
+ * A {@link View} played by the computer. It answers the Controller through the same {@link SetShipEvent} and
+ * {@link AttackEvent} listeners as the GUI does, so a bot can play against people over the server.
+ *
+ * <p>Ships are placed at random from the board's {@link PlacementTable} and attacks are chosen from a
+ * {@link ProbabilityHeatMap} which is updated with the result of each attack. Like every View this is a JFrame
+ * (although it is never shown), so it can't be created in a headless JVM; use {@link DensityAttackStrategy} with the
+ * simulator there.
+ */
+@Slf4j
+public class BotView extends View {
+
+  private final String username;
+  private final PlacementTable placementTable = PlacementTable.forBoard(Board.WIDTH, Board.HEIGHT);
+  private final SplittableRandom random = new SplittableRandom();
+  private int loginAttempts;
+  private ProbabilityHeatMap heatMap = newHeatMap();
+
+  // The squares covered by the ships the Controller has accepted so far
+  private long[] occupancy = placementTable.newOccupancy();
+
+  public BotView(String username) {
+    super();
+    this.username = username;
+  }
+
+  /**
+   * @return The bot's username, with a number appended if the server has already turned it down
+   */
+  @Override
+  public String getUsername() {
+    return loginAttempts++ == 0 ? username : username + loginAttempts;
+  }
+
+  /**
+   * Places the ship somewhere which doesn't overlap the ships already placed, so the Controller never has to ask again
+   */
+  @Override
+  public void setShip(Ship ship) {
+    super.setShip(ship);
+    int placement = placementTable.randomPlacement(ship.getShipType(), occupancy, random);
+    if (placement < 0) {
+      log.warn("No room left for {}. Placing it anywhere.", ship.getShipType());
+      placement = placementTable.randomPlacement(ship.getShipType(), placementTable.newOccupancy(), random);
+    }
+    ship.setShipCoordinates(placementTable.toShip(ship.getShipType(), placement).getShipCoordinates());
+    setShipListener.setShipEventOccurred(new SetShipEvent(this, ship));
+  }
+
+  @Override
+  public void displayShip(Ship ship) {
+    for (Coordinate coordinate : ship.getShipCoordinates()) {
+      int square = coordinate.x * Board.HEIGHT + coordinate.y;
+      occupancy[square >>> 6] |= 1L << square;
+    }
+  }
+
+  @Override
+  public void yourTurn() {
+    Coordinate coordinate = heatMap.nextAttack();
+    log.debug("Bot attacking {}", coordinate);
+    attackListener.attackEventOccurred(new AttackEvent(this, coordinate));
+  }
+
+  @Override
+  public void displayAttack(AttackResponseMessage message) {
+    ShipType sunk = toShipType(message.getShipSunk());
+    if (sunk != null) {
+      heatMap.recordSunk(message.getCoordinate(), sunk);
+    } else if (message.getHitOrMiss() == HitOrMiss.HIT) {
+      heatMap.recordHit(message.getCoordinate());
+    } else {
+      heatMap.recordMiss(message.getCoordinate());
+    }
+  }
+
+  @Override
+  public void displayNotification(String text) {
+    log.info("Bot notified: {}", text);
+  }
+
+  @Override
+  public void resetGame() {
+    heatMap = newHeatMap();
+    occupancy = placementTable.newOccupancy();
+  }
+
+  private static ProbabilityHeatMap newHeatMap() {
+    return new ProbabilityHeatMap(Board.WIDTH, Board.HEIGHT, GameSimulator.STANDARD_FLEET);
+  }
+
+  private static ShipType toShipType(AttackResponseMessage.ShipSunk shipSunk) {
+    if (shipSunk == null) {
+      return null;
+    }
+    switch (shipSunk) {
+      case PATROL_BOAT:
+        return ShipType.PATROLBOAT;
+      case SUBMARINE:
+        return ShipType.SUBMARINE;
+      case DESTROYER:
+        return ShipType.DESTROYER;
+      case BATTLESHIP:
+        return ShipType.BATTLESHIP;
+      default:
+        return null;
+    }
+  }
+
+}
@@ -0,0 +1,50 @@
+package main.btlshyp.bot;
+
+import java.util.SplittableRandom;
+
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.model.ShipType;
+import main.btlshyp.sim.AttackStrategy;
+import main.btlshyp.sim.GameSimulator;
+
+/**
+ * Lets the simulator play the bot's {@link ProbabilityHeatMap} targeting against other strategies
+ */
+public class DensityAttackStrategy implements AttackStrategy {
+
+  private final ShipType[] fleet;
+  private ProbabilityHeatMap heatMap;
+
+  /**
+   * A DensityAttackStrategy which expects the opponent to have the {@link GameSimulator#STANDARD_FLEET}
+   */
+  public DensityAttackStrategy() {
+    this(GameSimulator.STANDARD_FLEET);
+  }
+
+  public DensityAttackStrategy(ShipType[] fleet) {
+    this.fleet = fleet;
+  }
+
+  @Override
+  public void newGame(int boardWidth, int boardHeight, SplittableRandom random) {
+    heatMap = new ProbabilityHeatMap(boardWidth, boardHeight, fleet);
+  }
+
+  @Override
+  public Coordinate nextAttack() {
+    return heatMap.nextAttack();
+  }
+
+  @Override
+  public void attackResult(Coordinate coordinate, boolean hit, ShipType sunk) {
+    if (sunk != null) {
+      heatMap.recordSunk(coordinate, sunk);
+    } else if (hit) {
+      heatMap.recordHit(coordinate);
+    } else {
+      heatMap.recordMiss(coordinate);
+    }
+  }
+
+}
@@ -0,0 +1,263 @@
+package main.btlshyp.bot;
+
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.model.PlacementTable;
+import main.btlshyp.model.Ship;
+import main.btlshyp.model.ShipType;
+
+/**
+ * Tracks, for every square of the opponent's board, how many placements of their remaining ships could cover it given
+ * the hits, misses and sinkings seen so far. The square covered by the most placements is the most likely to hold a
+ * ship.
+ *
+ * <p>Every placement of every ship is taken from the board's {@link PlacementTable} once, up front. After that each
+ * attack result only visits the placements which cover the attacked square (or, for a sinking, the sunk ship's
+ * placements), adjusting the counts of the squares they cover. Nothing is recomputed from scratch, so choosing an
+ * attack is a single scan of the board.
+ *
+ * <p>Two maps are kept. The hunting map counts live placements. The targeting map weights each live placement by the
+ * number of unresolved hits it covers, and is used while there is a hit which hasn't been attributed to a sunk ship.
+ * Squares are numbered {@code x * height + y}, as they are in {@link main.btlshyp.model.Board}.
+ *
+ * <p>A ProbabilityHeatMap is for a single game and is not thread safe.
+ */
+public class ProbabilityHeatMap {
+
+  private final int width;
+  private final int height;
+
+  // The fleet still afloat. Slots are sunk in fleet order when more than one ship has the same type.
+  private final ShipType[] fleet;
+  private final boolean[] slotSunk;
+
+  // Every placement: the squares it covers and the fleet slot it belongs to. Each slot's placements are contiguous.
+  private final int[][] placementSquares;
+  private final int[] placementSlot;
+  private final int[] slotFirstPlacement;
+  private final boolean[] placementAlive;
+  private final int[] placementHits;
+
+  // The placements covering each square
+  private final int[][] placementsAt;
+
+  private final int[] huntHeat;
+  private final int[] targetHeat;
+  private final boolean[] attacked;
+  private final boolean[] unresolvedHit;
+  private int unresolvedHits;
+
+  public ProbabilityHeatMap(int width, int height, ShipType[] fleet) {
+    this.width = width;
+    this.height = height;
+    this.fleet = fleet.clone();
+    this.slotSunk = new boolean[fleet.length];
+
+    PlacementTable table = PlacementTable.forBoard(width, height);
+    int squares = width * height;
+    this.slotFirstPlacement = new int[fleet.length + 1];
+    for (int slot = 0; slot < fleet.length; slot++) {
+      slotFirstPlacement[slot + 1] = slotFirstPlacement[slot] + table.getPlacementCount(fleet[slot]);
+    }
+
+    int placements = slotFirstPlacement[fleet.length];
+    this.placementSquares = new int[placements][];
+    this.placementSlot = new int[placements];
+    this.placementAlive = new boolean[placements];
+    this.placementHits = new int[placements];
+    this.huntHeat = new int[squares];
+    this.targetHeat = new int[squares];
+    int[] placementsPerSquare = new int[squares];
+    for (int slot = 0; slot < fleet.length; slot++) {
+      int size = Ship.sizeOf(fleet[slot]);
+      for (int p = slotFirstPlacement[slot]; p < slotFirstPlacement[slot + 1]; p++) {
+        placementSquares[p] = new int[size];
+        for (int i = 0; i < size; i++) {
+          int square = table.getSquare(fleet[slot], p - slotFirstPlacement[slot], i);
+          placementSquares[p][i] = square;
+          placementsPerSquare[square]++;
+          huntHeat[square]++;
+        }
+        placementSlot[p] = slot;
+        placementAlive[p] = true;
+      }
+    }
+
+    this.placementsAt = new int[squares][];
+    for (int square = 0; square < squares; square++) {
+      placementsAt[square] = new int[placementsPerSquare[square]];
+      placementsPerSquare[square] = 0;
+    }
+    for (int p = 0; p < placements; p++) {
+      for (int square : placementSquares[p]) {
+        placementsAt[square][placementsPerSquare[square]++] = p;
+      }
+    }
+
+    this.attacked = new boolean[squares];
+    this.unresolvedHit = new boolean[squares];
+  }
+
+  /**
+   * @return The unattacked square most likely to hold a ship, or {@code null} if every square has been attacked
+   */
+  public Coordinate nextAttack() {
+    int square = -1;
+    if (unresolvedHits > 0) {
+      square = hottestUnattacked(targetHeat);
+    }
+    if (square < 0) {
+      square = hottestUnattacked(huntHeat);
+    }
+    for (int s = 0; square < 0 && s < attacked.length; s++) {
+      // The results so far don't fit any placement, so fall back to the first square left
+      if (!attacked[s]) {
+        square = s;
+      }
+    }
+    return square < 0 ? null : new Coordinate(square / height, square % height);
+  }
+
+  /**
+   * Records an attack which missed. No ship can cover the square.
+   */
+  public void recordMiss(Coordinate coordinate) {
+    int square = squareOf(coordinate);
+    if (square < 0 || attacked[square]) {
+      return;
+    }
+    attacked[square] = true;
+    for (int p : placementsAt[square]) {
+      kill(p);
+    }
+  }
+
+  /**
+   * Records an attack which hit a ship without sinking it
+   */
+  public void recordHit(Coordinate coordinate) {
+    int square = squareOf(coordinate);
+    if (square < 0 || attacked[square]) {
+      return;
+    }
+    attacked[square] = true;
+    unresolvedHit[square] = true;
+    unresolvedHits++;
+    for (int p : placementsAt[square]) {
+      if (placementAlive[p]) {
+        placementHits[p]++;
+        for (int covered : placementSquares[p]) {
+          targetHeat[covered]++;
+        }
+      }
+    }
+  }
+
+  /**
+   * Records an attack which hit and sank a ship. If exactly one placement of the sunk ship fits the hits so far, its
+   * squares are attributed to it and no other ship can cover them. Otherwise the hits stay unresolved and keep being
+   * targeted.
+   */
+  public void recordSunk(Coordinate coordinate, ShipType type) {
+    recordHit(coordinate);
+    int square = squareOf(coordinate);
+    int slot = firstAfloat(type);
+    if (square < 0 || slot < 0) {
+      return;
+    }
+
+    int sunkPlacement = -1;
+    for (int p : placementsAt[square]) {
+      if (placementAlive[p] && placementSlot[p] == slot && isAllUnresolvedHits(p)) {
+        if (sunkPlacement >= 0) {
+          sunkPlacement = -1;
+          break;
+        }
+        sunkPlacement = p;
+      }
+    }
+
+    slotSunk[slot] = true;
+    int[] sunkSquares = sunkPlacement >= 0 ? placementSquares[sunkPlacement] : new int[0];
+    for (int p = slotFirstPlacement[slot]; p < slotFirstPlacement[slot + 1]; p++) {
+      kill(p);
+    }
+    for (int sunk : sunkSquares) {
+      for (int p : placementsAt[sunk]) {
+        kill(p);
+      }
+      unresolvedHit[sunk] = false;
+      unresolvedHits--;
+    }
+  }
+
+  /**
+   * @return How many placements of the ships still afloat could cover the coordinate
+   */
+  public int getHuntHeat(Coordinate coordinate) {
+    return huntHeat[squareOf(coordinate)];
+  }
+
+  /**
+   * @return The number of hits not yet attributed to a sunk ship
+   */
+  public int getUnresolvedHits() {
+    return unresolvedHits;
+  }
+
+  public boolean isFleetSunk() {
+    return firstAfloat(null) < 0;
+  }
+
+  private void kill(int placement) {
+    if (!placementAlive[placement]) {
+      return;
+    }
+    placementAlive[placement] = false;
+    int hits = placementHits[placement];
+    for (int square : placementSquares[placement]) {
+      huntHeat[square]--;
+      targetHeat[square] -= hits;
+    }
+  }
+
+  private boolean isAllUnresolvedHits(int placement) {
+    for (int square : placementSquares[placement]) {
+      if (!unresolvedHit[square]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return The first slot of the given type (or of any type, if null) which hasn't been sunk, or -1
+   */
+  private int firstAfloat(ShipType type) {
+    for (int slot = 0; slot < fleet.length; slot++) {
+      if (!slotSunk[slot] && (type == null || fleet[slot] == type)) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private int hottestUnattacked(int[] heat) {
+    int hottest = -1;
+    int hottestHeat = 0;
+    for (int square = 0; square < heat.length; square++) {
+      if (!attacked[square] && heat[square] > hottestHeat) {
+        hottest = square;
+        hottestHeat = heat[square];
+      }
+    }
+    return hottest;
+  }
+
+  private int squareOf(Coordinate coordinate) {
+    if (coordinate == null || coordinate.x < 0 || coordinate.x >= width || coordinate.y < 0 || coordinate.y >= height) {
+      return -1;
+    }
+    return coordinate.x * height + coordinate.y;
+  }
+
+}
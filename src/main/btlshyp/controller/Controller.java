@@ -1,18 +1,35 @@
 package main.btlshyp.controller;
 
 import lombok.extern.slf4j.Slf4j;
+import main.btlshyp.journal.MessageJournal;
 import main.btlshyp.message.*;
+import main.btlshyp.metrics.Histogram;
+import main.btlshyp.metrics.MetricsRegistry;
 import main.btlshyp.model.Coordinate;
 import main.btlshyp.model.Model;
 import main.btlshyp.model.Model.AttackResult;
 import main.btlshyp.model.Ship;
 import main.btlshyp.model.ShipType;
 import main.btlshyp.network.NetworkClient;
+import main.btlshyp.trace.TurnTracer;
 import main.btlshyp.view.View;
 import main.btlshyp.view.event.*;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static main.btlshyp.Main.JOURNAL_FILE;
 import static main.btlshyp.Main.SERVER_IP_ADDRESS;
 import static main.btlshyp.Main.SERVER_PORT;
+import static main.btlshyp.Main.THREAD_MODE;
+import static main.btlshyp.Main.TRACE_FILE;
+import static main.btlshyp.Main.WIRE_FORMAT;
 import static main.btlshyp.message.AttackResponseMessage.HitOrMiss.HIT;
 import static main.btlshyp.message.AttackResponseMessage.HitOrMiss.MISS;
 import static main.btlshyp.message.AttackResponseMessage.ShipSunk.*;
@@ -25,21 +42,38 @@ import static main.btlshyp.message.GameWonResponseMessage.GameResult.WIN;
 @Slf4j
 public class Controller {
 
-  private static final int GAME_THROTTLE = 250;
+  private static final Histogram[] TIME_IN_STATE = MetricsRegistry.getDefault().timers(
+      "btlshyp_game_state_seconds", "Time spent in each game state before moving to another", "state",
+      GameState.values());
+  private static final Histogram ATTACK_ROUND_TRIP = MetricsRegistry.getDefault().timer(
+      "btlshyp_attack_round_trip_seconds", "Time from sending an attack to receiving the opponent's response");
 
   private View view;
-  private Model model;
+  // Replaced between games, and read from the MessageReceiver thread
+  private volatile Model model;
   private NetworkClient networkClient;
 
   private ChatListener chatListener;
   private SetShipListener setShipListener;
   private AttackListener attackListener;
 
-  private GameState gameState;
+  // Guards gameState. Signalled on every state change so the game loop wakes up immediately instead of polling. A
+  // j.u.c. lock rather than a monitor so a game loop running on a virtual thread doesn't pin its carrier thread.
+  private final Lock gameStateLock = new ReentrantLock();
+  private final Condition gameStateChanged = gameStateLock.newCondition();
+  private volatile GameState gameState;
+  private long gameStateEnteredNanos = System.nanoTime();
+
+  // When the last attack was sent, or zero once its response has arrived
+  private volatile long attackSentNanos;
+  // When the player last clicked to attack
+  private volatile long attackClickedNanos;
+  // Null unless turns are being traced
+  private volatile TurnTracer turnTracer;
 
-  // Storage for events coming back from the view
-  private Ship placedShip;
-  private Coordinate attackCoordinate;
+  // Events coming back from the view. The game loop blocks on these until the player acts.
+  private final BlockingQueue<Ship> placedShips = new LinkedBlockingQueue<>();
+  private final BlockingQueue<Coordinate> attackCoordinates = new LinkedBlockingQueue<>();
 
   /**
    * A Controller must be initialized with an implementation of the {@link View} interface. This is necessary because
@@ -52,6 +86,20 @@ public class Controller {
     gameState = GameState.NEW;
   }
 
+  /**
+   * Creates a Controller which uses an already constructed {@link NetworkClient} rather than creating one in
+   * {@link #init()}. Useful for tests and for running a Controller against something other than the configured server.
+   * The NetworkClient is pointed at this Controller.
+   *
+   * @param view An implementation of the {@link View} interface which the controller will update throughout the game.
+   * @param networkClient The {@link NetworkClient} used to communicate with the server
+   */
+  public Controller(View view, NetworkClient networkClient) {
+    this(view);
+    this.networkClient = networkClient;
+    networkClient.setController(this);
+  }
+
   /**
    * Sets the game state. Should ALWAYS be used to modify the current game state as this method performs additional
    * logic before setting the state to ensure things such as not attempting to start the game twice by accident.
@@ -59,13 +107,63 @@ public class Controller {
    * @param newGameState The {@link GameState} which will potentially be set as the current game state
    */
   private void setGameState(GameState newGameState) {
-    // If the game is already started and we happen to get the Joined message after that we don't want to go back to Joined
-    if (this.gameState == GameState.STARTED && newGameState == GameState.JOINED) {
-      return;
+    gameStateLock.lock();
+    try {
+      // If the game is already started and we happen to get the Joined message after that we don't want to go back to Joined
+      if (this.gameState == GameState.STARTED && newGameState == GameState.JOINED) {
+        return;
+      }
+
+      log.info("Game state set to {}", newGameState);
+      if (this.gameState != newGameState) {
+        long now = System.nanoTime();
+        TIME_IN_STATE[this.gameState.ordinal()].record(now - gameStateEnteredNanos);
+        gameStateEnteredNanos = now;
+      }
+      this.gameState = newGameState;
+      gameStateChanged.signalAll();
+    } finally {
+      gameStateLock.unlock();
+    }
+  }
+
+  /**
+   * Sets the game state, but only if the game is still in the expected state. Used by the game loop when it has finished
+   * with a state, so a message from the server which has already moved the game on isn't overwritten.
+   *
+   * @param expectedGameState The state the game loop is leaving
+   * @param newGameState The state to move to
+   */
+  private void setGameStateIf(GameState expectedGameState, GameState newGameState) {
+    gameStateLock.lock();
+    try {
+      if (this.gameState == expectedGameState) {
+        setGameState(newGameState);
+      }
+    } finally {
+      gameStateLock.unlock();
     }
+  }
 
-    log.info("Game state set to {}", newGameState);
-    this.gameState = newGameState;
+  /**
+   * Blocks until the game state is no longer the given state. Any call to {@link #setGameState(GameState)} which
+   * changes the state wakes the waiting thread immediately.
+   *
+   * @param currentGameState The state to wait to leave
+   */
+  private void awaitGameStateChange(GameState currentGameState) {
+    gameStateLock.lock();
+    try {
+      while (gameState == currentGameState) {
+        gameStateChanged.await();
+      }
+    } catch (InterruptedException e) {
+      log.error("Thread interrupted while waiting for game state change!", e);
+      Thread.currentThread().interrupt();
+      setGameState(GameState.DONE);
+    } finally {
+      gameStateLock.unlock();
+    }
   }
 
   /**
@@ -80,8 +178,62 @@ public class Controller {
     view.resetGame();
     initListeners();
 
-    // Initialize NetworkClient
-    networkClient = new NetworkClient(SERVER_IP_ADDRESS, SERVER_PORT, this);
+    // Initialize NetworkClient (unless one was provided)
+    if (networkClient == null) {
+      networkClient = new NetworkClient(SERVER_IP_ADDRESS, SERVER_PORT, this);
+      networkClient.setPreferredWireFormat(WIRE_FORMAT);
+      networkClient.setThreadMode(THREAD_MODE);
+      if (JOURNAL_FILE != null) {
+        initJournal(Paths.get(JOURNAL_FILE));
+      }
+    }
+    if (TRACE_FILE != null && turnTracer == null) {
+      initTurnTracer(Paths.get(TRACE_FILE));
+    }
+    networkClient.setConnectionFailedListener(this::connectionFailed);
+  }
+
+  /**
+   * Traces each of this player's turns to the given file, closing it when the application exits. The game carries on
+   * without tracing if the file can't be created.
+   */
+  private void initTurnTracer(Path traceFile) {
+    try {
+      TurnTracer tracer = TurnTracer.open(traceFile);
+      setTurnTracer(tracer);
+      Runtime.getRuntime().addShutdownHook(new Thread(tracer::close, "TurnTracer-close"));
+    } catch (IOException e) {
+      log.error("Unable to create turn trace {}. Continuing without one.", traceFile, e);
+    }
+  }
+
+  /**
+   * Traces each of this player's turns with the given tracer, or stops tracing if it is {@code null}
+   */
+  public void setTurnTracer(TurnTracer turnTracer) {
+    this.turnTracer = turnTracer;
+  }
+
+  /**
+   * Ends the game once the connection to the server is lost and can't be got back
+   */
+  private void connectionFailed() {
+    view.displayNotification("Lost connection to the server.");
+    setGameState(GameState.DONE);
+  }
+
+  /**
+   * Journals every message sent and received to the given file, closing the journal when the application exits.
+   * The game carries on without a journal if the file can't be created.
+   */
+  private void initJournal(Path journalFile) {
+    try {
+      MessageJournal journal = MessageJournal.open(journalFile);
+      networkClient.setJournal(journal);
+      Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "MessageJournal-close"));
+    } catch (IOException e) {
+      log.error("Unable to create journal {}. Continuing without one.", journalFile, e);
+    }
   }
 
   /**
@@ -103,7 +255,7 @@ public class Controller {
       @Override
       public void setShipEventOccurred(SetShipEvent sse) {
         log.info("SetShipEvent received into Controller. Populated Ship: {}", sse.getShip());
-        placedShip = sse.getShip();
+        placedShips.offer(sse.getShip());
       }
     };
     view.registerSetShipListener(setShipListener);
@@ -113,7 +265,8 @@ public class Controller {
       public void attackEventOccurred(AttackEvent ae) {
         Coordinate coordinate = ae.getCoordinate();
         log.info("AttackEvent received into Controller. Coordinate: {}", coordinate);
-        attackCoordinate = coordinate;
+        attackClickedNanos = ae.getCreatedNanos();
+        attackCoordinates.offer(coordinate);
       }
     };
     view.registerAttackListener(attackListener);
@@ -137,7 +290,7 @@ public class Controller {
           break;
         case JOINED:
           view.displayNotification("Game Joined. Waiting for game to start.");
-          setGameState(GameState.WAITING);
+          setGameStateIf(GameState.JOINED, GameState.WAITING);
           break;
         case STARTED:
           view.displayNotification("Game has started.");
@@ -160,12 +313,10 @@ public class Controller {
           setGameState(GameState.LOGGED_IN);
           break;
         case WAITING:
-          // Do nothing... Just wait...
+          // Block until a message from the server (or the view) moves the game along
+          awaitGameStateChange(GameState.WAITING);
           break;
       }
-
-      // Throttle so we don't start churning through CPU cycles
-      sleep(GAME_THROTTLE);
     }
 
     if (gameState == GameState.DONE) {
@@ -206,8 +357,8 @@ public class Controller {
   public void joinGame() {
     log.info("Attempting to Join a new game");
     JoinAttemptMessage joinAttemptMessage = new JoinAttemptMessage(model.getUserName());
-    networkClient.sendMessageToServer(joinAttemptMessage);
     setGameState(GameState.WAITING);
+    networkClient.sendMessageToServer(joinAttemptMessage);
   }
 
   /**
@@ -226,17 +377,20 @@ public class Controller {
   private void placeShips() {
     log.info("Placing ships");
 
-    placeShip(new Ship(ShipType.BATTLESHIP));
-    placeShip(new Ship(ShipType.DESTROYER));
-    placeShip(new Ship(ShipType.PATROLBOAT));
-    placeShip(new Ship(ShipType.SUBMARINE));
+    if (!placeShip(new Ship(ShipType.BATTLESHIP))
+        || !placeShip(new Ship(ShipType.DESTROYER))
+        || !placeShip(new Ship(ShipType.PATROLBOAT))
+        || !placeShip(new Ship(ShipType.SUBMARINE))) {
+      log.warn("Ship placement was interrupted.");
+      return;
+    }
 
     log.info("All Ships placed successfully");
     view.displayNotification("All Ships have been placed. Waiting for other player to place their Ships.");
     ShipsPlacedMessage shipsPlacedMessage = new ShipsPlacedMessage(model.getUserName());
-    networkClient.sendMessageToServer(shipsPlacedMessage);
-
+    // Move to WAITING before sending so the first turn, sent as soon as both fleets are placed, isn't overwritten
     setGameState(GameState.WAITING);
+    networkClient.sendMessageToServer(shipsPlacedMessage);
   }
 
   /**
@@ -246,18 +400,20 @@ public class Controller {
    * given to the View to be displayed.
    *
    * @param ship The ship which is to be populated by the View then placed in the Board.
+   * @return {@code true} once the ship is placed, {@code false} if the wait for the player was interrupted
    */
-  private void placeShip(Ship ship) {
+  private boolean placeShip(Ship ship) {
     log.info("Asking view to populate ship. Ship to populate: {}", ship);
-    placedShip = null;
+    placedShips.clear();
 
     view.setShip(ship);
 
     log.info("Waiting for player to place ship...");
 
     // Wait until they populate it and we get the message back
-    while (placedShip == null) {
-      sleep(GAME_THROTTLE);
+    Ship placedShip = awaitViewEvent(placedShips);
+    if (placedShip == null) {
+      return false;
     }
 
     log.info("Player has placed ship. Placed ship: {}", placedShip);
@@ -268,7 +424,6 @@ public class Controller {
 
     while (!validShip || !validPlacement) {
       log.warn("Ship placement invalid. validShip={}, validPlacement={}", validShip, validPlacement);
-      placedShip = null;
 
       view.displayNotification("Invalid ship placement.\n" +
         "Ships must be vertical or horizontal.\n" +
@@ -279,8 +434,9 @@ public class Controller {
       log.info("Waiting for player to place ship (again)...");
 
       // Wait until they populate it and we get the message back
-      while (placedShip == null) {
-        sleep(GAME_THROTTLE);
+      placedShip = awaitViewEvent(placedShips);
+      if (placedShip == null) {
+        return false;
       }
 
       log.info("Player has placed ship (again). Placed ship: {}", placedShip);
@@ -292,6 +448,7 @@ public class Controller {
     model.placeShip(placedShip);
     log.info("Ship placed successfully. Ship: {}", placedShip);
     view.displayShip(placedShip);
+    return true;
   }
 
   /**
@@ -299,21 +456,29 @@ public class Controller {
    */
   private void performAttack() {
     log.info("Performing Attack");
-    attackCoordinate = null;
+    attackCoordinates.clear();
 
     view.yourTurn();
 
     // Wait until they perform an attack
-    while (attackCoordinate == null) {
-      sleep(GAME_THROTTLE);
+    Coordinate attackCoordinate = awaitViewEvent(attackCoordinates);
+    if (attackCoordinate == null) {
+      return;
     }
 
     log.info("Player is attempting to attack {}", attackCoordinate);
 
-    networkClient.sendMessageToServer(new AttackAttemptMessage(model.getUserName(), attackCoordinate));
+    // Move to WAITING before sending so the opponent's response can't be overwritten by this state change
+    setGameState(GameState.WAITING);
+    AttackAttemptMessage attackMessage = new AttackAttemptMessage(model.getUserName(), attackCoordinate);
+    attackSentNanos = System.nanoTime();
+    TurnTracer tracer = turnTracer;
+    if (tracer != null) {
+      attackMessage.setTraceId(tracer.attackSent(attackClickedNanos, attackSentNanos));
+    }
+    networkClient.sendMessageToServer(attackMessage);
 
     log.info("Attack complete");
-    setGameState(GameState.WAITING);
   }
 
   /**
@@ -321,15 +486,19 @@ public class Controller {
    */
   private void waitForOpponentTurn() {
     view.notYourTurn();
-    setGameState(GameState.WAITING);
+    setGameStateIf(GameState.TURN_THEM, GameState.WAITING);
   }
 
   public void handleMessage(AttackAttemptMessage message) {
+    // Only timed when the attacker is tracing the turn
+    boolean traced = message.getTraceId() != 0;
+    long receivedNanos = traced ? System.nanoTime() : 0;
     log.info("Controller received AttackAttempt message: {}", message);
 
     Coordinate attackCoordinate = message.getCoordinate();
     log.info("Attack attempted at {}", attackCoordinate);
     AttackResult attackResults = model.getAttackResults(attackCoordinate);
+    long resultsNanos = traced ? System.nanoTime() : 0;
     log.info("Attack Results: {}", attackResults);
 
     // Translate between enums
@@ -361,18 +530,32 @@ public class Controller {
       attackResults.isHit ? HIT : MISS,
       attackResults.isSunk ? shipSunk : NONE,
       message.getCoordinate());
+    // Let the attacker trace where the time went on this side
+    if (traced) {
+      responseMessage.setTraceId(message.getTraceId());
+      responseMessage.setAttemptReceivedNanos(receivedNanos);
+      responseMessage.setAttackResultsNanos(resultsNanos);
+    }
 
     // Display the attack
     view.displayOpponentAttack(responseMessage);
 
-    // Send the attack response to the server
-    networkClient.sendMessageToServer(responseMessage);
-
+    // Send the attack response to the server, moving to WAITING first so the turn that follows isn't overwritten
     setGameState(GameState.WAITING);
+    if (traced) {
+      responseMessage.setResponseSentNanos(System.nanoTime());
+    }
+    networkClient.sendMessageToServer(responseMessage);
   }
 
   public void handleMessage(AttackResponseMessage message) {
+    long receivedNanos = System.nanoTime();
     log.info("Controller received AttackResponse message: {}", message);
+    long sentNanos = attackSentNanos;
+    if (sentNanos != 0) {
+      ATTACK_ROUND_TRIP.record(receivedNanos - sentNanos);
+      attackSentNanos = 0;
+    }
 
     model.storeResultOfAttackOnOpponent(message.getHitOrMiss() == HIT, message.getCoordinate());
 
@@ -382,12 +565,16 @@ public class Controller {
     }
 
     view.displayAttack(message);
+    TurnTracer tracer = turnTracer;
+    if (tracer != null) {
+      tracer.responseDisplayed(message, receivedNanos, System.nanoTime());
+    }
 
     if (model.isGameWon()) {
       log.info("Game was won! Sending an attempt message to the other client to confirm.");
-      networkClient.sendMessageToServer(new GameWonAttemptMessage(model.getUserName()));
-      view.displayNotification("Please wait while we validate your win...");
       setGameState(GameState.WAITING);
+      view.displayNotification("Please wait while we validate your win...");
+      networkClient.sendMessageToServer(new GameWonAttemptMessage(model.getUserName()));
     } else {
       log.info("Attack response stored. End of turn.");
       setGameState(GameState.TURN_THEM);
@@ -468,13 +655,18 @@ public class Controller {
   }
 
   /**
-   * Sleep for the specified number of milliseconds
+   * Blocks until the View delivers the next event on the given queue.
+   *
+   * @return The event, or {@code null} if the thread was interrupted while waiting (the game is then marked DONE)
    */
-  private void sleep(int sleepMillis) {
+  private <T> T awaitViewEvent(BlockingQueue<T> events) {
     try {
-      Thread.sleep(sleepMillis);
+      return events.take();
     } catch (InterruptedException e) {
-      log.error("Thread interrupted!", e);
+      log.error("Thread interrupted while waiting on the view!", e);
+      Thread.currentThread().interrupt();
+      setGameState(GameState.DONE);
+      return null;
     }
   }
 
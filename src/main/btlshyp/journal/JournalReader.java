@@ -0,0 +1,76 @@
+package main.btlshyp.journal;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import lombok.Getter;
+import main.btlshyp.message.Message;
+import main.btlshyp.network.codec.BinaryMessageCodec;
+
+/**
+ * Reads the records of a {@link MessageJournal} back in the order they were written
+ */
+public class JournalReader implements Closeable {
+
+  private final DataInputStream input;
+  private final BinaryMessageCodec codec = new BinaryMessageCodec();
+
+  /**
+   * When the journal was opened, in epoch millis
+   */
+  @Getter
+  private final long startEpochMillis;
+
+  /**
+   * @throws IOException if the file can't be read or isn't a journal
+   */
+  public JournalReader(Path path) throws IOException {
+    this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+    try {
+      if (input.readInt() != MessageJournal.MAGIC) {
+        throw new IOException(path + " is not a BtlShyp journal");
+      }
+      this.startEpochMillis = input.readLong();
+    } catch (IOException e) {
+      input.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return The next record, or {@code null} at the end of the journal
+   *
+   * @throws IOException if the journal can't be read or a record is malformed
+   */
+  public JournalRecord next() throws IOException {
+    int code;
+    try {
+      code = input.readUnsignedByte();
+    } catch (EOFException e) {
+      return null;
+    }
+    MessageJournal.Direction direction = MessageJournal.Direction.fromCode(code);
+    if (direction == null) {
+      if (code == 0) {
+        // the zeroed tail of a journal which was never closed
+        return null;
+      }
+      throw new IOException("Invalid journal record direction " + code);
+    }
+
+    long timestampNanos = input.readLong();
+    Message message = codec.read(input);
+    return new JournalRecord(direction, timestampNanos, message);
+  }
+
+  @Override
+  public void close() throws IOException {
+    input.close();
+  }
+
+}
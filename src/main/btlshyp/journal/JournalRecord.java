@@ -0,0 +1,28 @@
+package main.btlshyp.journal;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import main.btlshyp.message.Message;
+
+/**
+ * A single message read back from a {@link MessageJournal}
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+public class JournalRecord {
+
+  private final MessageJournal.Direction direction;
+
+  /**
+   * When the message was journaled, in nanoseconds since the journal was opened
+   */
+  private final long timestampNanos;
+
+  /**
+   * The message, or {@code null} if it is of a type this client doesn't know
+   */
+  private final Message message;
+
+}
@@ -0,0 +1,86 @@
+package main.btlshyp.journal;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import lombok.extern.slf4j.Slf4j;
+import main.btlshyp.controller.Controller;
+import main.btlshyp.message.AttackAttemptMessage;
+import main.btlshyp.message.AttackResponseMessage;
+import main.btlshyp.message.AttackResponseMessage.HitOrMiss;
+import main.btlshyp.message.Message;
+import main.btlshyp.model.Model;
+import main.btlshyp.network.MessageReceiver;
+
+/**
+ * Plays a recorded {@link MessageJournal} back as fast as it can be read, ignoring the recorded timestamps
+ */
+@Slf4j
+public final class JournalReplayer {
+
+  private JournalReplayer() {
+  }
+
+  /**
+   * Hands every record in the journal to the consumer, in order
+   *
+   * @return The number of records replayed
+   */
+  public static long replay(Path journal, Consumer<JournalRecord> consumer) throws IOException {
+    long records = 0;
+    try (JournalReader reader = new JournalReader(journal)) {
+      for (JournalRecord record = reader.next(); record != null; record = reader.next()) {
+        consumer.accept(record);
+        records++;
+      }
+    }
+    log.info("Replayed {} records from {}", records, journal);
+    return records;
+  }
+
+  /**
+   * Hands every inbound message to the Controller, exactly as the {@link MessageReceiver} would have when it was
+   * received. Outbound messages were produced by the Controller, so they are skipped.
+   *
+   * @return The number of messages handed to the Controller
+   */
+  public static long replayInto(Path journal, Controller controller) throws IOException {
+    MessageReceiver receiver = new MessageReceiver(controller);
+    long[] handedOff = { 0 };
+    replay(journal, record -> {
+      if (record.getDirection() == MessageJournal.Direction.INBOUND && record.getMessage() != null) {
+        receiver.handoffToController(record.getMessage());
+        handedOff[0]++;
+      }
+    });
+    return handedOff[0];
+  }
+
+  /**
+   * Replays the attacks of a game into a Model without a Controller. Inbound attack attempts are resolved against the
+   * Model's board (so it should already hold the recorded player's ships) and inbound attack responses are stored as
+   * the results of the recorded player's attacks.
+   *
+   * @return The number of attacks replayed
+   */
+  public static long replayInto(Path journal, Model model) throws IOException {
+    long[] attacks = { 0 };
+    replay(journal, record -> {
+      Message message = record.getMessage();
+      if (record.getDirection() != MessageJournal.Direction.INBOUND) {
+        return;
+      }
+      if (message instanceof AttackAttemptMessage) {
+        model.getAttackResults(((AttackAttemptMessage) message).getCoordinate());
+        attacks[0]++;
+      } else if (message instanceof AttackResponseMessage) {
+        AttackResponseMessage response = (AttackResponseMessage) message;
+        model.storeResultOfAttackOnOpponent(response.getHitOrMiss() == HitOrMiss.HIT, response.getCoordinate());
+        attacks[0]++;
+      }
+    });
+    return attacks[0];
+  }
+
+}
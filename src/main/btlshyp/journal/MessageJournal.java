@@ -0,0 +1,284 @@
+package main.btlshyp.journal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.extern.slf4j.Slf4j;
+import main.btlshyp.message.Message;
+import main.btlshyp.network.codec.BinaryMessageCodec;
+
+/**
+ * An append-only journal of every message sent and received, written to a memory-mapped file.
+ *
+ * <p>The file starts with a header:
+ * <pre>
+ *   int      magic ("BTJ1")
+ *   long     epoch millis when the journal was opened
+ * </pre>
+ * followed by one record per message:
+ * <pre>
+ *   byte     direction (1 inbound, 2 outbound)
+ *   long     nanos since the journal was opened
+ *   frame    the message as a {@link BinaryMessageCodec} frame
+ * </pre>
+ * A direction of 0 marks the end of the journal, which is what the unwritten part of a mapped region reads as if the
+ * client dies before the journal is closed.
+ *
+ * <p>{@link #recordInbound(Message)} and {@link #recordOutbound(Message)} only timestamp the message and queue it, so
+ * journaling costs the send and receive paths a queue offer. A single writer thread encodes queued messages in
+ * batches and copies each batch into the mapped file. If the queue is ever full the message is dropped and counted
+ * rather than holding up the game.
+ */
+@Slf4j
+public class MessageJournal implements Closeable {
+
+  public enum Direction {
+    INBOUND, OUTBOUND;
+
+    byte code() {
+      return (byte) (ordinal() + 1);
+    }
+
+    static Direction fromCode(int code) {
+      return code == 1 ? INBOUND : code == 2 ? OUTBOUND : null;
+    }
+  }
+
+  static final int MAGIC = 0x42544A31;
+  static final int HEADER_LENGTH = Integer.BYTES + Long.BYTES;
+
+  private static final int REGION_SIZE = 1 << 20;
+  private static final int QUEUE_CAPACITY = 1 << 16;
+  private static final int MAX_BATCH = 1024;
+
+  private final Path path;
+  private final FileChannel channel;
+  private final long startNanos = System.nanoTime();
+  private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final AtomicLong droppedMessages = new AtomicLong();
+  private final Thread writer;
+  private volatile boolean accepting = true;
+  private volatile boolean closed;
+
+  // Only touched by the writer thread (and by close, once the writer has stopped)
+  private final BinaryMessageCodec codec = new BinaryMessageCodec();
+  private final BatchBuffer batchBytes = new BatchBuffer();
+  private final DataOutputStream batchOutput = new DataOutputStream(batchBytes);
+  private MappedByteBuffer region;
+  private long regionStart;
+  private long written;
+
+  private MessageJournal(Path path) throws IOException {
+    this.path = path;
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+
+    batchOutput.writeInt(MAGIC);
+    batchOutput.writeLong(System.currentTimeMillis());
+    writeBatch();
+
+    this.writer = new Thread(this::writeLoop, "MessageJournal");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  /**
+   * Creates a new journal. The file must not already exist.
+   *
+   * @throws IOException if the file can't be created
+   */
+  public static MessageJournal open(Path path) throws IOException {
+    MessageJournal journal = new MessageJournal(path);
+    log.info("Journaling messages to {}", path);
+    return journal;
+  }
+
+  public void recordInbound(Message message) {
+    record(Direction.INBOUND, message);
+  }
+
+  public void recordOutbound(Message message) {
+    record(Direction.OUTBOUND, message);
+  }
+
+  /**
+   * Blocks until every message recorded so far is in the file and forced to disk
+   */
+  public void flush() {
+    CountDownLatch written = new CountDownLatch(1);
+    if (closed || !writer.isAlive() || !enqueue(new Entry(null, 0, null, written))) {
+      return;
+    }
+    try {
+      written.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Writes out everything recorded so far, trims the unused end of the last mapped region and closes the file
+   */
+  @Override
+  public void close() {
+    if (!accepting) {
+      return;
+    }
+    accepting = false;
+    flush();
+    closed = true;
+    writer.interrupt();
+    try {
+      writer.join(TimeUnit.SECONDS.toMillis(5));
+      region = null;
+      channel.truncate(written);
+      channel.close();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      log.warn("Unable to close journal {}", path, e);
+    }
+    if (droppedMessages.get() > 0) {
+      log.warn("{} messages were dropped from journal {}", droppedMessages.get(), path);
+    }
+  }
+
+  /**
+   * @return The number of messages which weren't journaled because the writer had fallen too far behind
+   */
+  public long getDroppedMessages() {
+    return droppedMessages.get();
+  }
+
+  private void record(Direction direction, Message message) {
+    if (!accepting || message == null) {
+      return;
+    }
+    if (!queue.offer(new Entry(direction, System.nanoTime() - startNanos, message, null))) {
+      droppedMessages.incrementAndGet();
+    }
+  }
+
+  private boolean enqueue(Entry entry) {
+    try {
+      queue.put(entry);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private void writeLoop() {
+    List<Entry> batch = new ArrayList<>(MAX_BATCH);
+    while (!closed) {
+      try {
+        batch.add(queue.take());
+      } catch (InterruptedException e) {
+        return;
+      }
+      queue.drainTo(batch, MAX_BATCH - 1);
+      try {
+        writeEntries(batch);
+      } catch (IOException | RuntimeException e) {
+        log.error("Unable to write to journal {}. Journaling stopped.", path, e);
+        accepting = false;
+        closed = true;
+        queue.drainTo(batch);
+        releaseFlushes(batch);
+        return;
+      }
+      batch.clear();
+    }
+  }
+
+  private void writeEntries(List<Entry> batch) throws IOException {
+    boolean flushRequested = false;
+    for (Entry entry : batch) {
+      if (entry.flushed != null) {
+        flushRequested = true;
+        continue;
+      }
+      batchOutput.writeByte(entry.direction.code());
+      batchOutput.writeLong(entry.timestampNanos);
+      codec.write(batchOutput, entry.message);
+    }
+    writeBatch();
+    if (flushRequested) {
+      region.force();
+      releaseFlushes(batch);
+    }
+  }
+
+  private static void releaseFlushes(List<Entry> batch) {
+    for (Entry entry : batch) {
+      if (entry.flushed != null) {
+        entry.flushed.countDown();
+      }
+    }
+  }
+
+  /**
+   * Copies the encoded batch into the mapped file, mapping a new region when the current one is full
+   */
+  private void writeBatch() throws IOException {
+    batchOutput.flush();
+    int length = batchBytes.size();
+    if (region == null || region.remaining() < length) {
+      if (region != null) {
+        region.force();
+      }
+      regionStart = written;
+      region = channel.map(MapMode.READ_WRITE, regionStart, Math.max(REGION_SIZE, length));
+    }
+    batchBytes.copyTo(region);
+    written = regionStart + region.position();
+    batchBytes.reset();
+  }
+
+  /**
+   * A ByteArrayOutputStream which can copy its contents out without first copying them to a new array
+   */
+  private static class BatchBuffer extends ByteArrayOutputStream {
+
+    private BatchBuffer() {
+      super(8192);
+    }
+
+    private void copyTo(MappedByteBuffer region) {
+      region.put(buf, 0, count);
+    }
+  }
+
+  private static class Entry {
+
+    private final Direction direction;
+    private final long timestampNanos;
+    private final Message message;
+
+    // Set on the marker entries queued by flush()
+    private final CountDownLatch flushed;
+
+    private Entry(Direction direction, long timestampNanos, Message message, CountDownLatch flushed) {
+      this.direction = direction;
+      this.timestampNanos = timestampNanos;
+      this.message = message;
+      this.flushed = flushed;
+    }
+  }
+
+}
@@ -0,0 +1,193 @@
+package main.btlshyp.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * A java.util.logging {@link Handler} which hands records off to a background thread so that logging threads (the
+ * game loop and message receiver) never wait on console output.
+ *
+ * <p>Records are queued in a bounded buffer. When the buffer is full, records below {@link Level#WARNING} are dropped
+ * and counted, while warnings and errors wait for room so they are never lost. Only the background thread publishes to
+ * the wrapped handler, so records reach it in the order they were queued.
+ */
+public class AsyncLogHandler extends Handler {
+
+  public static final int DEFAULT_CAPACITY = 8192;
+
+  private static final long POLL_MILLIS = 100;
+
+  private final Handler delegate;
+  private final BlockingQueue<LogRecord> queue;
+  private final AtomicLong droppedRecords = new AtomicLong();
+  private final Thread worker;
+  private volatile boolean closed;
+
+  public AsyncLogHandler(Handler delegate) {
+    this(delegate, DEFAULT_CAPACITY);
+  }
+
+  public AsyncLogHandler(Handler delegate, int capacity) {
+    this.delegate = delegate;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    setLevel(delegate.getLevel());
+    this.worker = new Thread(this::drainLoop, "AsyncLogHandler");
+    this.worker.setDaemon(true);
+    this.worker.start();
+  }
+
+  /**
+   * Replaces every handler on the root logger with an {@link AsyncLogHandler} wrapping it
+   */
+  public static void installOnRootLogger() {
+    Logger rootLogger = LogManager.getLogManager().getLogger("");
+    for (Handler handler : rootLogger.getHandlers()) {
+      if (handler instanceof AsyncLogHandler) {
+        continue;
+      }
+      rootLogger.removeHandler(handler);
+      rootLogger.addHandler(new AsyncLogHandler(handler));
+    }
+  }
+
+  @Override
+  public void publish(LogRecord record) {
+    if (closed || !isLoggable(record)) {
+      return;
+    }
+    // Caller data is inferred lazily from the stack, so it has to be captured on the logging thread
+    record.getSourceClassName();
+
+    if (queue.offer(record)) {
+      return;
+    }
+    if (record.getLevel().intValue() < Level.WARNING.intValue()) {
+      droppedRecords.incrementAndGet();
+      return;
+    }
+    try {
+      queue.put(record);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Blocks until every record queued so far has been published by the background thread, which then flushes the wrapped
+   * handler
+   */
+  @Override
+  public void flush() {
+    if (closed || Thread.currentThread() == worker || !worker.isAlive()) {
+      delegate.flush();
+      return;
+    }
+    FlushMarker marker = new FlushMarker();
+    try {
+      queue.put(marker);
+      while (!marker.published.await(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+        if (!worker.isAlive()) {
+          // Closed meanwhile, and close() publishes whatever the worker didn't get to
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Publishes every queued record, then stops the background thread and closes the wrapped handler
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    flush();
+    closed = true;
+    worker.interrupt();
+    try {
+      worker.join(TimeUnit.SECONDS.toMillis(1));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (!worker.isAlive()) {
+      // Anything queued since the flush. The worker has stopped, so publishing it here keeps the order.
+      drainQueue();
+    }
+    delegate.flush();
+    delegate.close();
+  }
+
+  /**
+   * @return The number of records dropped because the buffer was full
+   */
+  public long getDroppedRecords() {
+    return droppedRecords.get();
+  }
+
+  private void drainLoop() {
+    while (!closed) {
+      try {
+        LogRecord record = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (record != null) {
+          publishToDelegate(record);
+          drainQueue();
+        }
+      } catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  private void drainQueue() {
+    List<LogRecord> batch = new ArrayList<>();
+    queue.drainTo(batch);
+    for (LogRecord record : batch) {
+      publishToDelegate(record);
+    }
+  }
+
+  private void publishToDelegate(LogRecord record) {
+    if (record instanceof FlushMarker) {
+      try {
+        delegate.flush();
+      } catch (RuntimeException e) {
+        reportError("Unable to flush log handler", e, ErrorManager.FLUSH_FAILURE);
+      } finally {
+        ((FlushMarker) record).published.countDown();
+      }
+      return;
+    }
+    try {
+      delegate.publish(record);
+    } catch (RuntimeException e) {
+      reportError("Unable to publish log record", e, ErrorManager.WRITE_FAILURE);
+    }
+  }
+
+  /**
+   * Queued by {@link #flush()}. Every record queued before it has been published once the worker reaches it.
+   */
+  private static class FlushMarker extends LogRecord {
+
+    private final CountDownLatch published = new CountDownLatch(1);
+
+    private FlushMarker() {
+      super(Level.OFF, null);
+    }
+  }
+
+}
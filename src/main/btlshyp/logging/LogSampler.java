@@ -0,0 +1,41 @@
+package main.btlshyp.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which of a stream of events gets logged, so that something logged on every message (like the raw payload)
+ * only costs a counter increment most of the time.
+ */
+public class LogSampler {
+
+  private final int sampleEvery;
+  private final AtomicLong events = new AtomicLong();
+
+  /**
+   * @param sampleEvery Log one in every {@code sampleEvery} events. Values less than one log every event.
+   */
+  public LogSampler(int sampleEvery) {
+    this.sampleEvery = Math.max(1, sampleEvery);
+  }
+
+  /**
+   * Creates a LogSampler whose rate is read from a system property, falling back to a default
+   */
+  public static LogSampler fromSystemProperty(String property, int defaultSampleEvery) {
+    return new LogSampler(Integer.getInteger(property, defaultSampleEvery));
+  }
+
+  /**
+   * Records an event.
+   *
+   * @return true if this event should be logged
+   */
+  public boolean sample() {
+    return events.getAndIncrement() % sampleEvery == 0;
+  }
+
+  public int getSampleEvery() {
+    return sampleEvery;
+  }
+
+}
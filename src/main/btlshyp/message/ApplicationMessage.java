@@ -34,6 +34,7 @@ public class ApplicationMessage {
   @Getter
   private String type = APPLICATION.toString();
 
+  @Getter
   @NonNull
   private Message message;
 
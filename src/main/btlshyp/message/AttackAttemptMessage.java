@@ -17,4 +17,12 @@ public class AttackAttemptMessage extends Message  {
   @Setter
 	private Coordinate coordinate;
 
+	/**
+	 * Identifies the turn this attack starts, so the timings of the attack and its response can be matched up. Zero if
+	 * the turn isn't being traced.
+	 */
+	@Getter
+	@Setter
+	private long traceId;
+
 }
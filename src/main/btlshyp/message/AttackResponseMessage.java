@@ -26,6 +26,35 @@ public class AttackResponseMessage extends Message {
   @Setter
   private Coordinate coordinate;
 
+  /**
+   * The trace id of the {@link AttackAttemptMessage} this answers
+   */
+  @Getter
+  @Setter
+  private long traceId;
+
+  /**
+   * The responding client's System.nanoTime() when it received the attempt. Like the other timestamps, only its
+   * difference from them means anything to the attacking client.
+   */
+  @Getter
+  @Setter
+  private long attemptReceivedNanos;
+
+  /**
+   * The responding client's System.nanoTime() when it had worked out the results of the attack
+   */
+  @Getter
+  @Setter
+  private long attackResultsNanos;
+
+  /**
+   * The responding client's System.nanoTime() when it sent this response
+   */
+  @Getter
+  @Setter
+  private long responseSentNanos;
+
   public AttackResponseMessage(String username, HitOrMiss hitOrMiss, ShipSunk shipSunk, Coordinate coordinate) {
     super(MessageType.ATTACK_RESPONSE, username);
     this.hitOrMiss = hitOrMiss;
@@ -1,10 +1,22 @@
 package main.btlshyp.message;
 
+import lombok.Getter;
+import lombok.Setter;
 import lombok.ToString;
 
+import java.util.List;
+
 @ToString
 public class LoginMessage extends Message {
 
+  /**
+   * The wire formats (by name) this client is able to switch to once logged in, in order of preference. Left
+   * {@code null} when the client only speaks JSON.
+   */
+  @Getter
+  @Setter
+  private List<String> wireFormats;
+
   public LoginMessage(String username) {
     super(MessageType.LOGIN, username);
   }
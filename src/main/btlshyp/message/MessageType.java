@@ -1,5 +1,9 @@
 package main.btlshyp.message;
 
+/**
+ * The types of BtlShyp {@link Message}. The ordinal of each type is used as its tag in the binary wire format, so new
+ * types must only ever be added to the end.
+ */
 public enum MessageType {
   CHAT,
   JOIN_ATTEMPT,
@@ -12,4 +16,6 @@ public enum MessageType {
   GAME_WON_ATTEMPT,
   GAME_WON_RESPONSE,
   LOGIN,
+  PING,
+  PONG,
 }
@@ -0,0 +1,28 @@
+package main.btlshyp.message;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Sent periodically to measure the round trip time to the server and to check the connection is still alive. Whoever
+ * receives it answers with a {@link PongMessage} carrying the same sequence and timestamp.
+ */
+@ToString
+public class PingMessage extends Message {
+
+	@Getter
+	private long sequence;
+
+	/**
+	 * The sender's {@link System#nanoTime()} when the ping was sent. Only meaningful to the sender.
+	 */
+	@Getter
+	private long sentNanos;
+
+	public PingMessage(String username, long sequence, long sentNanos) {
+		super(MessageType.PING, username);
+		this.sequence = sequence;
+		this.sentNanos = sentNanos;
+	}
+
+}
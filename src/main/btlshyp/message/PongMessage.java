@@ -0,0 +1,32 @@
+package main.btlshyp.message;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The answer to a {@link PingMessage}. The username, sequence and timestamp are copied from the ping, so the pinger
+ * can tell its own pongs apart and work out the round trip time without keeping track of the pings it sent.
+ */
+@ToString
+public class PongMessage extends Message {
+
+	@Getter
+	private long sequence;
+
+	@Getter
+	private long sentNanos;
+
+	public PongMessage(String username, long sequence, long sentNanos) {
+		super(MessageType.PONG, username);
+		this.sequence = sequence;
+		this.sentNanos = sentNanos;
+	}
+
+	/**
+	 * @return The pong answering the given ping
+	 */
+	public static PongMessage answering(PingMessage ping) {
+		return new PongMessage(ping.getUsername(), ping.getSequence(), ping.getSentNanos());
+	}
+
+}
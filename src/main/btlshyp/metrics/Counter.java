@@ -0,0 +1,28 @@
+package main.btlshyp.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count which only goes up, such as the number of messages sent.
+ *
+ * <p>Backed by a {@link LongAdder}, which stripes the count across cells when threads contend for it, so incrementing
+ * from several threads at once doesn't make them queue on one cache line. Incrementing doesn't allocate once the
+ * stripes exist.
+ */
+public class Counter {
+
+  private final LongAdder count = new LongAdder();
+
+  public void increment() {
+    count.increment();
+  }
+
+  public void add(long amount) {
+    count.add(amount);
+  }
+
+  public long get() {
+    return count.sum();
+  }
+
+}
@@ -0,0 +1,124 @@
+package main.btlshyp.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size histogram of non-negative long values (such as latencies in nanoseconds) in the style of
+ * HdrHistogram.
+ *
+ * <p>Values below {@value #SUB_BUCKETS} are counted exactly. Above that, each power of two range is split into
+ * {@value #SUB_BUCKETS} equal buckets, so any recorded value is reported to within about 1.6% whatever its magnitude.
+ * Recording is one atomic increment plus a few bit operations and never allocates, and any number of threads may
+ * record at once. Percentiles read while values are being recorded are approximate.
+ */
+public class Histogram {
+
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // One set of sub buckets for the exact values, then one for each power of two from 2^6 to 2^62
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a value. Negative values are recorded as zero.
+   */
+  public void record(long value) {
+    long clamped = Math.max(0, value);
+    counts.incrementAndGet(bucketOf(clamped));
+    count.increment();
+    sum.add(clamped);
+    if (clamped > max.get()) {
+      max.accumulateAndGet(clamped, Math::max);
+    }
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getSum() {
+    return sum.sum();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public double getMean() {
+    long total = count.sum();
+    return total == 0 ? 0 : (double) sum.sum() / total;
+  }
+
+  /**
+   * @param percentile Between 0 and 100
+   * @return The smallest value that at least {@code percentile}% of recorded values are less than or equal to, to within
+   * the histogram's precision. Zero if nothing has been recorded.
+   */
+  public long getValueAtPercentile(double percentile) {
+    long total = count.sum();
+    if (total == 0) {
+      return 0;
+    }
+    long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      seen += counts.get(bucket);
+      if (seen >= target) {
+        return Math.min(highestValueIn(bucket), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * Adds every value recorded in another histogram to this one
+   */
+  public void add(Histogram other) {
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      long bucketCount = other.counts.get(bucket);
+      if (bucketCount != 0) {
+        counts.addAndGet(bucket, bucketCount);
+      }
+    }
+    count.add(other.count.sum());
+    sum.add(other.sum.sum());
+    max.accumulateAndGet(other.max.get(), Math::max);
+  }
+
+  /**
+   * Forgets every recorded value. Values recorded at the same moment may or may not be kept.
+   */
+  public void reset() {
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      counts.set(bucket, 0);
+    }
+    count.reset();
+    sum.reset();
+    max.set(0);
+  }
+
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+  }
+
+  static long highestValueIn(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+    long next = (subBucket + 1) << shift;
+    return next < 0 ? Long.MAX_VALUE : next - 1;
+  }
+
+}
@@ -0,0 +1,138 @@
+package main.btlshyp.metrics;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Holds every metric the client records, by name and (optionally) one label, so they can all be exported together by
+ * a {@link PrometheusExporter}.
+ *
+ * <p>Metrics are looked up once, when the class recording them is loaded or created, and kept in fields. Recording then
+ * goes straight to the {@link Counter} or {@link Histogram} without touching the registry, so it never allocates or
+ * locks. Metrics labelled by an enum (such as one counter per {@link main.btlshyp.message.MessageType}) are handed
+ * back as an array indexed by ordinal for the same reason.
+ *
+ * <p>Asking for a metric which already exists returns the existing one, so two clients in one JVM share their counts.
+ */
+public class MetricsRegistry {
+
+  private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+  /**
+   * The kinds of metric, named as in the Prometheus text format
+   */
+  public enum Type {
+    COUNTER,
+    GAUGE,
+    SUMMARY
+  }
+
+  // Sorted by name so exports are stable
+  private final ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+  /**
+   * @return The registry the client's own metrics are recorded in
+   */
+  public static MetricsRegistry getDefault() {
+    return DEFAULT;
+  }
+
+  public Counter counter(String name, String help) {
+    return counter(name, help, null, null);
+  }
+
+  public Counter counter(String name, String help, String labelName, String labelValue) {
+    return (Counter) family(name, help, Type.COUNTER).metric(label(labelName, labelValue), Counter::new);
+  }
+
+  /**
+   * @return One counter for each constant of the enum, labelled with its name and indexed by its ordinal
+   */
+  public <E extends Enum<E>> Counter[] counters(String name, String help, String labelName, E[] labelValues) {
+    Counter[] counters = new Counter[labelValues.length];
+    for (E labelValue : labelValues) {
+      counters[labelValue.ordinal()] = counter(name, help, labelName, labelValue.name());
+    }
+    return counters;
+  }
+
+  /**
+   * A histogram of durations. Durations are recorded in nanoseconds and exported in seconds, so the name should end in
+   * {@code _seconds}.
+   */
+  public Histogram timer(String name, String help) {
+    return timer(name, help, null, null);
+  }
+
+  public Histogram timer(String name, String help, String labelName, String labelValue) {
+    return (Histogram) family(name, help, Type.SUMMARY).metric(label(labelName, labelValue), Histogram::new);
+  }
+
+  /**
+   * @return One timer for each constant of the enum, labelled with its name and indexed by its ordinal
+   */
+  public <E extends Enum<E>> Histogram[] timers(String name, String help, String labelName, E[] labelValues) {
+    Histogram[] timers = new Histogram[labelValues.length];
+    for (E labelValue : labelValues) {
+      timers[labelValue.ordinal()] = timer(name, help, labelName, labelValue.name());
+    }
+    return timers;
+  }
+
+  /**
+   * Registers a value which is read at export time, replacing any gauge already registered under the same name. A gauge
+   * covering many instances should be registered once, by their class, and add them all up.
+   */
+  public void gauge(String name, String help, DoubleSupplier value) {
+    family(name, help, Type.GAUGE).metrics.put("", value);
+  }
+
+  Collection<Family> getFamilies() {
+    return families.values();
+  }
+
+  private Family family(String name, String help, Type type) {
+    Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+    if (family.type != type) {
+      throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+    }
+    return family;
+  }
+
+  /**
+   * Formats a label the way it appears in the Prometheus text format, e.g. {@code {type="CHAT"}}
+   */
+  private static String label(String labelName, String labelValue) {
+    if (labelName == null) {
+      return "";
+    }
+    String escaped = labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    return "{" + labelName + "=\"" + escaped + "\"}";
+  }
+
+  /**
+   * Every metric sharing a name, keyed by their label
+   */
+  static class Family {
+
+    final String name;
+    final String help;
+    final Type type;
+    final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+    private Family(String name, String help, Type type) {
+      this.name = name;
+      this.help = help;
+      this.type = type;
+    }
+
+    private Object metric(String label, Supplier<Object> create) {
+      return metrics.computeIfAbsent(label, key -> create.get());
+    }
+  }
+
+}
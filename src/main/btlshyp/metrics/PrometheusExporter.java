@@ -0,0 +1,201 @@
+package main.btlshyp.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import main.btlshyp.metrics.MetricsRegistry.Family;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Exports a {@link MetricsRegistry} in the Prometheus text format, to a file which is rewritten periodically and/or
+ * from an HTTP endpoint on the loopback interface.
+ *
+ * <p>Timers are exported as summaries, in seconds, with the 50th, 90th, 99th and 99.9th percentiles.
+ */
+@Slf4j
+public class PrometheusExporter implements Closeable {
+
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final MetricsRegistry registry;
+
+  private ScheduledExecutorService fileDumper;
+  private Path dumpFile;
+  private HttpServer httpServer;
+
+  public PrometheusExporter(MetricsRegistry registry) {
+    this.registry = registry;
+  }
+
+  /**
+   * @return Every metric in the registry in the Prometheus text format
+   */
+  public String scrape() {
+    StringWriter out = new StringWriter();
+    try {
+      writeTo(out);
+    } catch (IOException e) {
+      throw new IllegalStateException("StringWriter threw an IOException", e);
+    }
+    return out.toString();
+  }
+
+  public void writeTo(Writer out) throws IOException {
+    for (Family family : registry.getFamilies()) {
+      out.write("# HELP " + family.name + " " + family.help + "\n");
+      out.write("# TYPE " + family.name + " " + family.type.name().toLowerCase() + "\n");
+      for (Map.Entry<String, Object> metric : family.metrics.entrySet()) {
+        writeMetric(out, family, metric.getKey(), metric.getValue());
+      }
+    }
+  }
+
+  /**
+   * Writes the metrics to the file, replacing it in one step so a reader never sees half an export
+   */
+  public void writeToFile(Path file) throws IOException {
+    Path absoluteFile = file.toAbsolutePath();
+    Path temporary = Files.createTempFile(absoluteFile.getParent(), absoluteFile.getFileName().toString(), ".tmp");
+    try {
+      Files.write(temporary, scrape().getBytes(StandardCharsets.UTF_8));
+      Files.move(temporary, absoluteFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * Rewrites the file every period from a background thread, and once more on {@link #close()}
+   */
+  public synchronized void dumpToFileEvery(Path file, long periodMillis) {
+    if (fileDumper != null) {
+      throw new IllegalStateException("Already dumping metrics to a file");
+    }
+    fileDumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "MetricsFileDump");
+      thread.setDaemon(true);
+      return thread;
+    });
+    fileDumper.scheduleAtFixedRate(() -> dumpToFile(file), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    dumpFile = file;
+    log.info("Dumping metrics to {} every {} ms", file, periodMillis);
+  }
+
+  /**
+   * Serves the metrics at {@code /metrics} on the loopback interface
+   *
+   * @param port The port to listen on, or 0 for any free port
+   * @return The address the endpoint is listening on
+   */
+  public synchronized InetSocketAddress serveHttp(int port) throws IOException {
+    if (httpServer != null) {
+      throw new IllegalStateException("Already serving metrics over HTTP");
+    }
+    httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    httpServer.createContext("/metrics", exchange -> {
+      byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream responseBody = exchange.getResponseBody()) {
+        responseBody.write(body);
+      }
+    });
+    httpServer.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "MetricsHttp");
+      thread.setDaemon(true);
+      return thread;
+    }));
+    httpServer.start();
+    log.info("Serving metrics at http://{}:{}/metrics", httpServer.getAddress().getHostString(),
+        httpServer.getAddress().getPort());
+    return httpServer.getAddress();
+  }
+
+  /**
+   * Stops the HTTP endpoint and file dumps, writing the file one last time
+   */
+  @Override
+  public synchronized void close() {
+    if (httpServer != null) {
+      httpServer.stop(0);
+      httpServer = null;
+    }
+    if (fileDumper != null) {
+      // Not shutdownNow(): interrupting a dump in progress would close the file it is writing under it
+      fileDumper.shutdown();
+      fileDumper = null;
+      dumpToFile(dumpFile);
+      dumpFile = null;
+    }
+  }
+
+  private void dumpToFile(Path file) {
+    try {
+      writeToFile(file);
+    } catch (IOException e) {
+      log.warn("Unable to write metrics to {}", file, e);
+    }
+  }
+
+  private static void writeMetric(Writer out, Family family, String label, Object metric) throws IOException {
+    switch (family.type) {
+      case COUNTER:
+        writeSample(out, family.name, label, ((Counter) metric).get());
+        break;
+      case GAUGE:
+        writeSample(out, family.name, label, ((DoubleSupplier) metric).getAsDouble());
+        break;
+      case SUMMARY:
+        Histogram histogram = (Histogram) metric;
+        for (double quantile : QUANTILES) {
+          String quantileLabel = withLabel(label, "quantile=\"" + quantile + "\"");
+          writeSample(out, family.name, quantileLabel,
+              histogram.getValueAtPercentile(quantile * 100) / NANOS_PER_SECOND);
+        }
+        writeSample(out, family.name + "_sum", label, histogram.getSum() / NANOS_PER_SECOND);
+        writeSample(out, family.name + "_count", label, histogram.getCount());
+        break;
+    }
+  }
+
+  private static String withLabel(String label, String extra) {
+    return label.isEmpty() ? "{" + extra + "}" : label.substring(0, label.length() - 1) + "," + extra + "}";
+  }
+
+  private static void writeSample(Writer out, String name, String label, long value) throws IOException {
+    out.write(name + label + " " + value + "\n");
+  }
+
+  private static void writeSample(Writer out, String name, String label, double value) throws IOException {
+    out.write(name + label + " " + formatDouble(value) + "\n");
+  }
+
+  private static String formatDouble(double value) {
+    if (Double.isNaN(value)) {
+      return "NaN";
+    }
+    if (Double.isInfinite(value)) {
+      return value > 0 ? "+Inf" : "-Inf";
+    }
+    return Double.toString(value);
+  }
+
+}
@@ -1,38 +1,87 @@
 package main.btlshyp.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import lombok.Getter;
-import lombok.Setter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * One player's board. All of a Board's state belongs to that instance, so any number of games can run in one JVM.
+ *
+ * The board's size and its collections and bitboards are final and assigned in the constructor, so a Board is safely
+ * published to other threads. What they hold changes as ships are placed and attacked, as do the ships' remaining
+ * health ({@code shipHealth}, which is replaced as it grows) and the fleet's ({@code fleetHealth}). All of that is
+ * guarded by the Board's lock: the public methods synchronize on the Board, since during a game it is used both by the
+ * game loop (placing ships) and by the thread receiving the opponent's attacks. Callers who need several calls to
+ * happen atomically (such as {@link Model#getAttackResults(Coordinate)}) can hold the Board's lock around them.
+ */
 @Slf4j
 @ToString
 public class Board {
-  ArrayList<Ship> ships;
-  static Square[][] squares;
   public final static int WIDTH = 5;
   public final static int HEIGHT = 5;
-  Set<Coordinate>hitCoordinatesOnOpponent = new HashSet<>();
-  Set<Ship>sunkenOpponentShips = new HashSet<>();
+
+  private final ArrayList<Ship> ships;
+  private final Set<Coordinate> hitCoordinatesOnOpponent = new HashSet<>();
+  private final Set<Ship> sunkenOpponentShips = new HashSet<>();
+
+  @Getter
+  private final int width;
+  @Getter
+  private final int height;
+
+  /**
+   * Bitboards of the squares. Square (x, y) is bit (x * height + y), spread across as many longs as the board needs.
+   */
+  private final long[] occupied;
+  private final long[] damaged;
+
+  /**
+   * Index of the ship on each square, plus one (0 means no ship), keyed the same way as the bitboards. Together with
+   * each ship's remaining health this makes finding the ship that was hit, and whether it or the whole fleet is sunk,
+   * constant time.
+   */
+  private final byte[] shipAtSquare;
+  private final Map<Ship, Integer> shipIndexes = new IdentityHashMap<>();
+  private int[] shipHealth = new int[4];
+  private int fleetHealth;
 
   /**
    * A new board gets
    * an empty list of ships
-   *  a 2d array of squares
+   *  a WIDTH x HEIGHT grid of squares
    *      each square is unoccupied and undamaged
    */
   public Board() {
-    ships =  new ArrayList<Ship>();
-    squares = new Square[WIDTH][HEIGHT];
-    for (int i = 0; i < WIDTH; i++) {
-      for (int j = 0; j < HEIGHT; j++) {
-        squares[i][j] = new Square();
-      }
-    }
+    this(WIDTH, HEIGHT);
+  }
+
+  /**
+   * A new board of the given size. Any size works, boards aren't limited to the 64 squares of a single long.
+   *
+   * @param width The number of columns (x)
+   * @param height The number of rows (y)
+   */
+  public Board(int width, int height) {
+    this.width = width;
+    this.height = height;
+    ships = new ArrayList<Ship>();
+    shipAtSquare = new byte[width * height];
+    occupied = newMask();
+    damaged = newMask();
+  }
+
+  /**
+   * @return true if the coordinate is on this board
+   */
+  public boolean isOnBoard(Coordinate coordinate) {
+    return coordinate.x >= 0 && coordinate.x < width && coordinate.y >= 0 && coordinate.y < height;
   }
 
   /**
@@ -41,53 +90,81 @@ public class Board {
    * @param ship
    * @return
    */
-  public boolean isShipPlacementValid(Ship ship) {
-    log.info("Validating ship placement");
+  public synchronized boolean isShipPlacementValid(Ship ship) {
+    log.trace("Validating ship placement");
 
     // bad ships can't be placed
-    if (!ship.isValid()) {
-      log.info("Ship isn't valid. Rejecting.");
+    if (!ship.isValid(width, height)) {
+      log.debug("Ship isn't valid. Rejecting.");
       return false;
     }
     // ships can't be placed on top of each other
-    for (Coordinate coordinate : ship.getShipCoordinates()) {
-      if (squares[coordinate.x][coordinate.y].isOccupied) {
-        log.info("Ship's coordinate {} is already occupied. Rejecting.", coordinate);
-        return false;
-      }
+    if (intersects(maskOf(ship), occupied)) {
+      log.debug("Ship's coordinates {} are already occupied. Rejecting.", ship.getShipCoordinates());
+      return false;
     }
     // must be good
-    log.info("Ship placement is valid.");
+    log.trace("Ship placement is valid.");
     return true;
   }
 
   /**
    * Adds ship to a list of ships 
    * Marks that ships coordinates as occupied
+   * The placement should already have been checked with isShipPlacementValid. If it overlaps another ship anyway, the
+   * shared squares stay with the ship placed first.
    * 
    * @param ship
    */
-  public void placeShip(Ship ship) {
-    log.info("Placing ship {}", ship);
+  public synchronized void placeShip(Ship ship) {
+    log.debug("Placing ship {}", ship);
+    if (ships.size() >= Byte.MAX_VALUE) {
+      throw new IllegalStateException("A board can hold at most " + Byte.MAX_VALUE + " ships");
+    }
+
+    int shipIndex = ships.size();
     ships.add(ship);
+    shipIndexes.put(ship, shipIndex);
+    if (shipIndex == shipHealth.length) {
+      shipHealth = Arrays.copyOf(shipHealth, shipHealth.length * 2);
+    }
+
     for (Coordinate coordinate : ship.getShipCoordinates()) {
-      squares[coordinate.x][coordinate.y].isOccupied = true;
+      if (!isOnBoard(coordinate)) {
+        continue;
+      }
+      int square = squareOf(coordinate);
+      if (shipAtSquare[square] == 0) {
+        shipAtSquare[square] = (byte) (shipIndex + 1);
+        occupied[square >>> 6] |= 1L << square;
+        shipHealth[shipIndex]++;
+        fleetHealth++;
+      }
     }
   }
 
   /**
    * Evaluate if the attack coordinates are a "hit" Put a red peg in that hole if so
    * @param coordinate
-   * @return true if there is a boat in that spot
+   * @return true if there is a boat in that spot. Always false off the board.
    */
-  public boolean isHit(Coordinate coordinate) {
-    log.info("Evaluating hit.");
-    if (squares[coordinate.x][coordinate.y].isOccupied) {
-      log.info("Hit has occurred at {}", coordinate);
-      squares[coordinate.x][coordinate.y].isDamaged = true;
+  public synchronized boolean isHit(Coordinate coordinate) {
+    log.trace("Evaluating hit.");
+    if (!isOnBoard(coordinate)) {
+      log.debug("Miss off the board at {}", coordinate);
+      return false;
+    }
+    int square = squareOf(coordinate);
+    if (isSet(occupied, square)) {
+      log.debug("Hit has occurred at {}", coordinate);
+      if (!isSet(damaged, square)) {
+        damaged[square >>> 6] |= 1L << square;
+        shipHealth[shipAtSquare[square] - 1]--;
+        fleetHealth--;
+      }
       return true;
     } else {
-      log.info("Miss has occurred at {}", coordinate);
+      log.debug("Miss has occurred at {}", coordinate);
       return false;
     }
   }
@@ -98,16 +175,13 @@ public class Board {
    * @param strikeCoordinate
    * @return
    */
-  public Ship getShipAt(Coordinate strikeCoordinate) {
-    for (Ship ship : ships) {
-      for (Coordinate coordinate : ship.getShipCoordinates()) {
-        if (coordinate.equals(strikeCoordinate)) {
-          log.info("Ship at {} is {}", coordinate, ship);
-          return ship;
-        }
-      }
+  public synchronized Ship getShipAt(Coordinate strikeCoordinate) {
+    int shipIndex = isOnBoard(strikeCoordinate) ? shipAtSquare[squareOf(strikeCoordinate)] - 1 : -1;
+    if (shipIndex >= 0) {
+      log.trace("Ship at {} is {}", strikeCoordinate, ships.get(shipIndex));
+      return ships.get(shipIndex);
     }
-    log.info("No ship at {}", strikeCoordinate);
+    log.trace("No ship at {}", strikeCoordinate);
     return null;
   }
 
@@ -117,16 +191,16 @@ public class Board {
    * @param ship
    * @return
    */
-  public boolean isShipSunk(Ship ship) {
-    log.info("Determining if ship {} was sunk", ship);
-    for (Coordinate coordinate : ship.getShipCoordinates()) {
-      if (squares[coordinate.x][coordinate.y].isDamaged() == false) {
-        log.info("Ship was not sunk.");
-        return false;
-      }
+  public synchronized boolean isShipSunk(Ship ship) {
+    log.trace("Determining if ship {} was sunk", ship);
+    Integer shipIndex = shipIndexes.get(ship);
+    boolean sunk = shipIndex != null ? shipHealth[shipIndex] == 0 : isCovered(maskOf(ship), damaged);
+    if (!sunk) {
+      log.trace("Ship was not sunk.");
+      return false;
     }
     // all of this ship's coordinates were damaged
-    log.info("Ship is sunk.");
+    log.debug("Ship is sunk.");
     return true;
   }
 
@@ -134,57 +208,84 @@ public class Board {
    * 
    * @return
    */
-  public boolean isGameLost() {
-    log.info("Determining is game is lost and all ships are sunk");
-    for (Ship ship : ships) {
-      if (isShipSunk(ship) == false) {
-        log.info("A ship still survives. Hope is not lost.");
-        return false;
-      }
+  public synchronized boolean isGameLost() {
+    log.trace("Determining is game is lost and all ships are sunk");
+    if (fleetHealth > 0) {
+      log.trace("A ship still survives. Hope is not lost.");
+      return false;
     }
     // all must be sunk
     log.info("All ships are sunk. Hope is lost...");
     return true;
   }
-  
-  public void storeResultOfAttackOnOpponent(boolean isSuccessfullAttack, Coordinate coordinate) {
+
+  public synchronized void storeResultOfAttackOnOpponent(boolean isSuccessfullAttack, Coordinate coordinate) {
     if(isSuccessfullAttack) {
       hitCoordinatesOnOpponent.add(coordinate);
     }
     
   }
   
-  public void storeSunkenOpponentShip(Ship sunkenShip) {
+  public synchronized void storeSunkenOpponentShip(Ship sunkenShip) {
     sunkenOpponentShips.add(sunkenShip);
   }
   
-  public boolean isGameWon() {
-    log.info("Determining whether game is won...");
+  public synchronized boolean isGameWon() {
+    log.trace("Determining whether game is won...");
     if (hitCoordinatesOnOpponent.size() == (Ship.PATROL_SIZE + Ship.SUB_SIZE + Ship.DESTROYER_SIZE + Ship.BATTLESHIP_SIZE)
       || sunkenOpponentShips.size() == 4) {
       log.info("Game is won! All ships are sunk. Victory is ours!");
       return true;
     } else {
-      log.info("Game is not won... yet...");
+      log.trace("Game is not won... yet...");
       return false;
     }
   }
 
+  private long[] newMask() {
+    return new long[(width * height + 63) >>> 6];
+  }
+
+  private int squareOf(Coordinate coordinate) {
+    return coordinate.x * height + coordinate.y;
+  }
+
   /**
-   * A Square can be occupied or not A Square can be hit or not
+   * @return A mask of the squares of a ship which isn't on this board. Coordinates off the board are left out.
    */
-  public class Square {
-    @Getter
-    @Setter
-    boolean isOccupied;
-    @Getter
-    @Setter
-    boolean isDamaged;
-
-    public Square() {
-      this.isOccupied = false;
-      this.isDamaged = false;
+  private long[] maskOf(Ship ship) {
+    long[] mask = newMask();
+    for (Coordinate coordinate : ship.getShipCoordinates()) {
+      if (isOnBoard(coordinate)) {
+        int square = squareOf(coordinate);
+        mask[square >>> 6] |= 1L << square;
+      }
     }
+    return mask;
+  }
+
+  private static boolean isSet(long[] mask, int square) {
+    return (mask[square >>> 6] & (1L << square)) != 0;
+  }
 
+  private static boolean intersects(long[] a, long[] b) {
+    for (int i = 0; i < a.length; i++) {
+      if ((a[i] & b[i]) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return true if every square set in mask is also set in cover
+   */
+  private static boolean isCovered(long[] mask, long[] cover) {
+    for (int i = 0; i < mask.length; i++) {
+      if ((mask[i] & ~cover[i]) != 0) {
+        return false;
+      }
+    }
+    return true;
   }
 }
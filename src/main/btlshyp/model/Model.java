@@ -6,17 +6,24 @@ import lombok.Setter;
 public class Model {
 
   @Getter @Setter
-  String userName;
+  volatile String userName;
 
   @Getter @Setter
-  String oppUserName;
+  volatile String oppUserName;
 
-  private Board board;
+  private final Board board;
 
   public Model() {
     board = new Board();
   }
 
+  /**
+   * A Model whose board is the given size rather than the standard {@link Board#WIDTH} x {@link Board#HEIGHT}
+   */
+  public Model(int boardWidth, int boardHeight) {
+    board = new Board(boardWidth, boardHeight);
+  }
+
   public boolean isShipPlacementValid(Ship ship) {
     return board.isShipPlacementValid(ship);
   }
@@ -50,16 +57,19 @@ public class Model {
   public AttackResult getAttackResults(Coordinate coordinate) {
     AttackResult attackResult = new AttackResult();
     
-    if(coordinate == null || coordinate.x < 0 || coordinate.x >= Board.WIDTH || coordinate.y < 0 || coordinate.y >= Board.HEIGHT ) {
+    if(coordinate == null || !board.isOnBoard(coordinate)) {
       attackResult.isHit = false;
       return attackResult;
     }
     
-    attackResult.isHit = board.isHit(coordinate);
-    if(attackResult.isHit == true) {
-      attackResult.ship = board.getShipAt(coordinate);
-      attackResult.isSunk = board.isShipSunk(attackResult.ship);
-      attackResult.isGameLost = board.isGameLost();
+    // Hold the board's lock so the results all describe the same moment
+    synchronized (board) {
+      attackResult.isHit = board.isHit(coordinate);
+      if(attackResult.isHit == true) {
+        attackResult.ship = board.getShipAt(coordinate);
+        attackResult.isSunk = board.isShipSunk(attackResult.ship);
+        attackResult.isGameLost = board.isGameLost();
+      }
     }
     return attackResult;
   }
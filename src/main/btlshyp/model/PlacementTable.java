@@ -0,0 +1,268 @@
+package main.btlshyp.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Every legal horizontal and vertical placement of each {@link ShipType} on a board of one size, encoded as bitmasks
+ * of the squares they cover.
+ *
+ * <p>Squares are numbered {@code x * height + y} and masks are split into 64 bit words, the same encoding
+ * {@link Board} uses for its occupancy. A placement can therefore be checked against a fleet placed so far with a
+ * single AND per word, instead of building and validating a {@link Ship}.
+ *
+ * <p>Tables are built the first time a board size is asked for and shared from then on. They are immutable, so one
+ * table can be used by any number of threads. The occupancy masks passed in belong to the caller.
+ */
+public class PlacementTable {
+
+  private static final ConcurrentMap<Long, PlacementTable> TABLES = new ConcurrentHashMap<>();
+
+  /**
+   * How many placements are drawn blindly before falling back to counting the free ones
+   */
+  private static final int RANDOM_DRAWS = 8;
+
+  /**
+   * How many times {@link #randomFleet} starts over when a ship doesn't fit around those already placed
+   */
+  private static final int MAX_FLEET_ATTEMPTS = 100;
+
+  private final int width;
+  private final int height;
+  private final int words;
+
+  // Indexed by ShipType ordinal. Types of the same size share their placements.
+  private final Placements[] placementsByType;
+
+  private PlacementTable(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.words = (width * height + 63) >>> 6;
+
+    Placements[] placementsBySize = new Placements[Ship.BATTLESHIP_SIZE + 1];
+    placementsByType = new Placements[ShipType.values().length];
+    for (ShipType type : ShipType.values()) {
+      int size = Ship.sizeOf(type);
+      if (size >= placementsBySize.length) {
+        placementsBySize = Arrays.copyOf(placementsBySize, size + 1);
+      }
+      if (placementsBySize[size] == null) {
+        placementsBySize[size] = new Placements(this, size);
+      }
+      placementsByType[type.ordinal()] = placementsBySize[size];
+    }
+  }
+
+  /**
+   * @return The table for a board of the given size
+   */
+  public static PlacementTable forBoard(int width, int height) {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Board must be at least 1x1. width=" + width + ", height=" + height);
+    }
+    return TABLES.computeIfAbsent(((long) width << 32) | height, key -> new PlacementTable(width, height));
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * @return An empty occupancy mask for this board
+   */
+  public long[] newOccupancy() {
+    return new long[words];
+  }
+
+  /**
+   * @return How many placements there are of the given type of ship
+   */
+  public int getPlacementCount(ShipType type) {
+    return placementsByType[type.ordinal()].count;
+  }
+
+  /**
+   * @return The square covered by the {@code i}th part of a placement
+   */
+  public int getSquare(ShipType type, int placement, int i) {
+    Placements placements = placementsByType[type.ordinal()];
+    return placements.squares[placement * placements.size + i];
+  }
+
+  /**
+   * @return true if the placement covers any square set in the occupancy mask
+   */
+  public boolean overlaps(ShipType type, int placement, long[] occupancy) {
+    return placementsByType[type.ordinal()].overlaps(placement, occupancy);
+  }
+
+  /**
+   * Sets the squares covered by the placement in the occupancy mask
+   */
+  public void occupy(ShipType type, int placement, long[] occupancy) {
+    Placements placements = placementsByType[type.ordinal()];
+    int base = placement * words;
+    for (int word = 0; word < words; word++) {
+      occupancy[word] |= placements.masks[base + word];
+    }
+  }
+
+  /**
+   * @return A new ship of the given type with the placement's coordinates
+   */
+  public Ship toShip(ShipType type, int placement) {
+    Placements placements = placementsByType[type.ordinal()];
+    ArrayList<Coordinate> coordinates = new ArrayList<>(placements.size);
+    for (int i = 0; i < placements.size; i++) {
+      int square = placements.squares[placement * placements.size + i];
+      coordinates.add(new Coordinate(square / height, square % height));
+    }
+    Ship ship = new Ship(type);
+    ship.setShipCoordinates(coordinates);
+    return ship;
+  }
+
+  /**
+   * Chooses uniformly between the placements which don't overlap the occupancy mask
+   *
+   * @return The chosen placement, or -1 if every placement overlaps
+   */
+  public int randomPlacement(ShipType type, long[] occupancy, SplittableRandom random) {
+    Placements placements = placementsByType[type.ordinal()];
+    if (placements.count == 0) {
+      return -1;
+    }
+
+    // On a sparse board a blind draw almost always fits
+    for (int draw = 0; draw < RANDOM_DRAWS; draw++) {
+      int placement = random.nextInt(placements.count);
+      if (!placements.overlaps(placement, occupancy)) {
+        return placement;
+      }
+    }
+
+    int free = 0;
+    for (int placement = 0; placement < placements.count; placement++) {
+      if (!placements.overlaps(placement, occupancy)) {
+        free++;
+      }
+    }
+    if (free == 0) {
+      return -1;
+    }
+    int chosen = random.nextInt(free);
+    for (int placement = 0; placement < placements.count; placement++) {
+      if (!placements.overlaps(placement, occupancy) && chosen-- == 0) {
+        return placement;
+      }
+    }
+    throw new IllegalStateException("Unreachable: a free placement was counted but not found");
+  }
+
+  /**
+   * Places a whole fleet at random with no ship overlapping another
+   *
+   * @return The fleet's ships, in the order of the given types
+   *
+   * @throws IllegalStateException if the fleet can't be fitted on the board
+   */
+  public List<Ship> randomFleet(ShipType[] fleet, SplittableRandom random) {
+    int[] chosen = new int[fleet.length];
+    long[] occupancy = newOccupancy();
+    for (int attempt = 0; attempt < MAX_FLEET_ATTEMPTS; attempt++) {
+      Arrays.fill(occupancy, 0);
+      int placed = 0;
+      while (placed < fleet.length) {
+        int placement = randomPlacement(fleet[placed], occupancy, random);
+        if (placement < 0) {
+          break;
+        }
+        occupy(fleet[placed], placement, occupancy);
+        chosen[placed++] = placement;
+      }
+      if (placed == fleet.length) {
+        List<Ship> ships = new ArrayList<>(fleet.length);
+        for (int i = 0; i < fleet.length; i++) {
+          ships.add(toShip(fleet[i], chosen[i]));
+        }
+        return ships;
+      }
+    }
+    throw new IllegalStateException("Unable to fit the fleet on a " + width + "x" + height + " board");
+  }
+
+  /**
+   * The placements of ships of one size
+   */
+  private static class Placements {
+
+    private final int size;
+    private final int count;
+    private final int words;
+
+    // squares[p * size + i] is the ith square of placement p; masks[p * words + w] is word w of its mask
+    private final int[] squares;
+    private final long[] masks;
+
+    private Placements(PlacementTable table, int size) {
+      this.size = size;
+      this.words = table.words;
+      int width = table.width;
+      int height = table.height;
+
+      List<int[]> lines = new ArrayList<>();
+      if (size > 0) {
+        for (int x = 0; x < width; x++) {
+          for (int y = 0; y < height; y++) {
+            if (x + size <= width) {
+              lines.add(line(x, y, size, height, true));
+            }
+            if (y + size <= height && size > 1) {
+              lines.add(line(x, y, size, height, false));
+            }
+          }
+        }
+      }
+
+      this.count = lines.size();
+      this.squares = new int[count * size];
+      this.masks = new long[count * words];
+      for (int p = 0; p < count; p++) {
+        int[] line = lines.get(p);
+        System.arraycopy(line, 0, squares, p * size, size);
+        for (int square : line) {
+          masks[p * words + (square >>> 6)] |= 1L << square;
+        }
+      }
+    }
+
+    private boolean overlaps(int placement, long[] occupancy) {
+      int base = placement * words;
+      for (int word = 0; word < words; word++) {
+        if ((masks[base + word] & occupancy[word]) != 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static int[] line(int x, int y, int size, int height, boolean horizontal) {
+      int[] line = new int[size];
+      for (int i = 0; i < size; i++) {
+        line[i] = horizontal ? (x + i) * height + y : x * height + y + i;
+      }
+      return line;
+    }
+
+  }
+
+}
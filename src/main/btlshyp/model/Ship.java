@@ -1,9 +1,6 @@
 package main.btlshyp.model;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
 
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -34,75 +31,97 @@ public class Ship {
 	}
 
 	public void setSize(ShipType type) {
+	  shipSize = sizeOf(type);
+	}
+
+	/**
+	 * @return The number of squares a ship of the given type covers
+	 */
+	public static int sizeOf(ShipType type) {
 	  switch(type) {
 	  case PATROLBOAT:
-	    shipSize = PATROL_SIZE;
-	    break;
+	    return PATROL_SIZE;
 	  case SUBMARINE:
-	    shipSize = SUB_SIZE;
-	    break;
+	    return SUB_SIZE;
 	  case DESTROYER:
-	    shipSize = DESTROYER_SIZE;
-	    break;
+	    return DESTROYER_SIZE;
 	  case BATTLESHIP:
-	    shipSize =  BATTLESHIP_SIZE;
-	    break;
+	    return BATTLESHIP_SIZE;
 	    default:
-	      shipSize = 0;
-	      break;
+	      return 0;
 	  }
 	}
 
+	/**
+	 * Validates the ship against the standard WIDTH x HEIGHT board
+	 */
 	public boolean isValid() {
-		log.info("Validating Ship {}", this);
+		return isValid(Board.WIDTH, Board.HEIGHT);
+	}
+
+	/**
+	 * Validates the ship against a board of the given size
+	 *
+	 * A valid ship has exactly shipSize coordinates, all on the board, in a single row or column with no gaps and no
+	 * repeats. This runs for every placement attempt so it doesn't allocate: it makes one pass for the bounding box and
+	 * a second which marks each coordinate's offset along the ship in a bitmask.
+	 */
+	public boolean isValid(int boardWidth, int boardHeight) {
+		log.trace("Validating Ship {}", this);
 
 		// valid ships have coordinates and a size
 		if(shipCoordinates == null || shipSize == 0 ) {
-			log.info("Ship is null or has no size. Rejecting.");
+			log.debug("Ship is null or has no size. Rejecting.");
 			return false;
 		}
 
 	  // size must match number of coordinates
     if(shipSize !=  shipCoordinates.size() ) {
-			log.info("Number of coordinates and ship size don't match. Rejecting.");
+			log.debug("Number of coordinates and ship size don't match. Rejecting.");
       return false;
     }
 
 		// can not have coordinates out of range
-		for(Coordinate c : shipCoordinates) {
-		  if(c.x < 0 || c.x >= Board.WIDTH || c.y < 0 || c.y >= Board.HEIGHT ) {
-		  	log.info("Coordinate {} is out of range. Rejecting.", c);
+		int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE;
+		int minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+		for (int i = 0; i < shipSize; i++) {
+			Coordinate c = shipCoordinates.get(i);
+		  if(c.x < 0 || c.x >= boardWidth || c.y < 0 || c.y >= boardHeight ) {
+		  	log.debug("Coordinate {} is out of range. Rejecting.", c);
 		    return false;
 		  }
+			minX = Math.min(minX, c.x);
+			maxX = Math.max(maxX, c.x);
+			minY = Math.min(minY, c.y);
+			maxY = Math.max(maxY, c.y);
 		}
 
-    // can not be separated
-		ArrayList<Integer> xs = new ArrayList<>();
-    ArrayList<Integer> ys = new ArrayList<>();
-    for (Coordinate c : shipCoordinates) {
-      xs.add(c.x);
-      ys.add(c.y);
-    }
-		Set<Integer> xTest = new HashSet<>(xs);
-		Set<Integer> yTest = new HashSet<>(ys);
-    if (yTest.size() == 1 && xTest.size() == shipSize) {
-      Collections.sort(xs);
-      for (int i = 0; i < shipSize-1; i++) {
-        if (xs.get(i + 1) != (xs.get(i) + 1)) {
-        	log.info("Coordinates are not contiguous. Rejecting.");
-          return false;
-        }
-      }
-    }
+		// can not be diagonal
+		boolean horizontal = minY == maxY;
+		boolean vertical = minX == maxX;
+		if (!horizontal && !vertical) {
+			log.debug("Coordinates are diagonal. Rejecting.");
+			return false;
+		}
 
-    // can not be diagonal
-		if (!  ((xTest.size() == 1 && yTest.size() == shipSize) || (yTest.size() == 1 && xTest.size() == shipSize)) ){
-    	log.info("Coordinates are diagonal. Rejecting.");
+		// can not be separated, or sit on top of itself
+		int span = horizontal ? maxX - minX : maxY - minY;
+		if (span != shipSize - 1 || span >= Long.SIZE) {
+			log.debug("Coordinates are not contiguous. Rejecting.");
+			return false;
+		}
+		long offsets = 0;
+		for (int i = 0; i < shipSize; i++) {
+			Coordinate c = shipCoordinates.get(i);
+			offsets |= 1L << (horizontal ? c.x - minX : c.y - minY);
+		}
+		if (Long.bitCount(offsets) != shipSize) {
+			log.debug("Coordinates are not contiguous. Rejecting.");
 			return false;
 		}
 
 		// well, we made it, it must be a good ship
-		log.info("Ship is valid.");
+		log.trace("Ship is valid.");
 		return true;
 	}
 }
@@ -0,0 +1,197 @@
+package main.btlshyp.network;
+
+import lombok.extern.slf4j.Slf4j;
+import main.btlshyp.message.Message;
+import main.btlshyp.message.PingMessage;
+import main.btlshyp.message.PongMessage;
+import main.btlshyp.metrics.Histogram;
+
+import java.io.Closeable;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Pings the server at a fixed interval, records the round trip time of each answer, and notices when the connection
+ * has gone quiet.
+ *
+ * <p>Round trip times are recorded in a {@link Histogram} so percentiles can be read at any time, for example by the
+ * Controller deciding how long to wait for the other player.
+ *
+ * <p>A connection counts as idle when nothing at all has been read from it for the idle timeout. Idle detection only
+ * starts once the server has answered a ping: a server which doesn't answer pings can't be told apart from one with
+ * nothing to say, and waiting on the other player can easily take longer than the timeout.
+ */
+@Slf4j
+public class Heartbeat implements Closeable {
+
+  public static final long DEFAULT_INTERVAL_MILLIS = 5_000;
+  public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 20_000;
+
+  private final String username;
+  private final Consumer<Message> sender;
+  private final Runnable idleListener;
+  private final long intervalNanos;
+  private final long idleTimeoutNanos;
+  private final ScheduledExecutorService scheduler;
+
+  private final Histogram rttNanos = new Histogram();
+  private final AtomicLong pingsSent = new AtomicLong();
+  private final AtomicLong pongsReceived = new AtomicLong();
+  private volatile long lastReadNanos = System.nanoTime();
+  private volatile long lastRttNanos = -1;
+  private volatile LongConsumer pongListener;
+
+  /**
+   * @param username Sent with each ping. Only pongs carrying it are counted as answers to this client's pings.
+   * @param sender Sends a ping or pong to the server
+   * @param idleListener Run, on the heartbeat's thread, when the connection has been idle for the timeout
+   * @param threadFactory Creates the thread pings are sent from
+   */
+  public Heartbeat(String username, Consumer<Message> sender, Runnable idleListener, long intervalMillis,
+      long idleTimeoutMillis, ThreadFactory threadFactory) {
+    if (intervalMillis <= 0 || idleTimeoutMillis <= intervalMillis) {
+      throw new IllegalArgumentException("The idle timeout must be longer than the ping interval. intervalMillis="
+          + intervalMillis + ", idleTimeoutMillis=" + idleTimeoutMillis);
+    }
+    this.username = username;
+    this.sender = sender;
+    this.idleListener = idleListener;
+    this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = threadFactory.newThread(runnable);
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Starts pinging. The first ping is sent after one interval.
+   */
+  public void start() {
+    messageRead();
+    scheduler.scheduleAtFixedRate(this::tick, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Stops pinging
+   */
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * @param pongListener Told the sequence number of each answer to one of this client's pings, on the thread which read
+   * it
+   */
+  public void setPongListener(LongConsumer pongListener) {
+    this.pongListener = pongListener;
+  }
+
+  /**
+   * Notes that something was read from the server, so the connection isn't idle. Called for every message read.
+   */
+  public void messageRead() {
+    lastReadNanos = System.nanoTime();
+  }
+
+  /**
+   * Answers a ping from the server (or another client). This client's own pings, echoed back, are ignored.
+   */
+  public void pingReceived(PingMessage ping) {
+    if (Objects.equals(username, ping.getUsername())) {
+      return;
+    }
+    sender.accept(PongMessage.answering(ping));
+  }
+
+  /**
+   * Records the round trip time of an answer to one of this client's pings
+   */
+  public void pongReceived(PongMessage pong) {
+    if (!Objects.equals(username, pong.getUsername())) {
+      return;
+    }
+    long rtt = System.nanoTime() - pong.getSentNanos();
+    if (rtt < 0) {
+      log.debug("Ignoring pong from the future: {}", pong);
+      return;
+    }
+    rttNanos.record(rtt);
+    lastRttNanos = rtt;
+    pongsReceived.incrementAndGet();
+    LongConsumer listener = pongListener;
+    if (listener != null) {
+      listener.accept(pong.getSequence());
+    }
+  }
+
+  /**
+   * @return The histogram of round trip times, in nanoseconds
+   */
+  public Histogram getRttHistogram() {
+    return rttNanos;
+  }
+
+  /**
+   * @param percentile Between 0 and 100
+   * @return The round trip time at the percentile in nanoseconds, or zero if no pings have been answered
+   */
+  public long getRttPercentileNanos(double percentile) {
+    return rttNanos.getValueAtPercentile(percentile);
+  }
+
+  /**
+   * @return The most recent round trip time in nanoseconds, or -1 if no pings have been answered
+   */
+  public long getLastRttNanos() {
+    return lastRttNanos;
+  }
+
+  public long getPingsSent() {
+    return pingsSent.get();
+  }
+
+  public long getPongsReceived() {
+    return pongsReceived.get();
+  }
+
+  /**
+   * @return {@code true} once the server has answered a ping
+   */
+  public boolean isServerAnswering() {
+    return pongsReceived.get() > 0;
+  }
+
+  /**
+   * @return {@code true} if the server has answered pings before but nothing has been read for the idle timeout
+   */
+  public boolean isIdle() {
+    return isServerAnswering() && System.nanoTime() - lastReadNanos > idleTimeoutNanos;
+  }
+
+  private void tick() {
+    try {
+      if (isIdle()) {
+        log.warn("Nothing read from server for {} ms. Connection is idle.",
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastReadNanos));
+        // Start the clock again, so the listener isn't told every tick while it deals with the connection
+        messageRead();
+        idleListener.run();
+        return;
+      }
+      sender.accept(new PingMessage(username, pingsSent.incrementAndGet(), System.nanoTime()));
+    } catch (RuntimeException e) {
+      // An exception would cancel the schedule, so keep it to this tick
+      log.debug("Unable to send ping", e);
+    }
+  }
+
+}
@@ -1,18 +1,28 @@
 package main.btlshyp.network;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import lombok.extern.slf4j.Slf4j;
 import main.btlshyp.controller.Controller;
+import main.btlshyp.journal.MessageJournal;
+import main.btlshyp.logging.LogSampler;
 import main.btlshyp.message.*;
+import main.btlshyp.metrics.Counter;
+import main.btlshyp.metrics.Histogram;
+import main.btlshyp.metrics.MetricsRegistry;
+import main.btlshyp.message.ApplicationMessage.ApplicationMessageType;
+import main.btlshyp.network.codec.BinaryMessageCodec;
+import main.btlshyp.network.codec.MessageCodec;
 import main.btlshyp.network.exception.NetCommunicationException;
 
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.net.Socket;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Consumer;
 
+import static main.btlshyp.message.ApplicationMessage.ApplicationMessageType.APPLICATION;
 import static main.btlshyp.message.MessageType.*;
 
 /**
@@ -21,29 +31,179 @@ import static main.btlshyp.message.MessageType.*;
 @Slf4j
 public class MessageReceiver implements Runnable {
 
-  private final Gson gson = new Gson();
+  /**
+   * Raw payloads are only logged (at debug) for one in every this many messages. Set with
+   * {@code -Dbtlshyp.log.payloadSampleEvery=N}.
+   */
+  public static final String PAYLOAD_SAMPLE_PROPERTY = "btlshyp.log.payloadSampleEvery";
+
+  private static final LogSampler PAYLOAD_SAMPLER = LogSampler.fromSystemProperty(PAYLOAD_SAMPLE_PROPERTY, 100);
+
+  private static final Counter[] MESSAGES_RECEIVED = MetricsRegistry.getDefault().counters(
+      "btlshyp_messages_received_total", "Messages received from the server", "type", MessageType.values());
+  private static final Histogram DECODE_TIME = MetricsRegistry.getDefault().timer(
+      "btlshyp_message_decode_seconds", "Time to decode a JSON message received from the server");
+
+  private final Gson gson = MessageCodec.newGson();
+  private final Map<MessageType, Handoff> handoffs = new EnumMap<>(MessageType.class);
 
   private final Socket socket;
   private final BufferedReader input;
   private final Controller controller;
 
+  private volatile MessageJournal journal;
+  private volatile Runnable disconnectListener;
+  private volatile Runnable messageReadListener;
+  private volatile Heartbeat heartbeat;
+  private volatile boolean stopped;
+
+  // Only set when receiving the binary wire format
+  private final DataInputStream binaryInput;
+  private final BinaryMessageCodec binaryCodec;
+
   public MessageReceiver(Socket socket, BufferedReader input, Controller controller) {
     this.socket = socket;
     this.input = input;
     this.controller = controller;
+    this.binaryInput = null;
+    this.binaryCodec = null;
+    initHandoffs();
+  }
+
+  /**
+   * Creates a MessageReceiver which only decodes and dispatches lines read by something else (such as a
+   * {@link main.btlshyp.network.nio.NioSession}) through {@link #determineTypeThenHandoffToController(String)}. It must
+   * not be {@link #run()}.
+   */
+  public MessageReceiver(Controller controller) {
+    this(null, (BufferedReader) null, controller);
+  }
+
+  /**
+   * Creates a MessageReceiver for a connection which has negotiated {@link main.btlshyp.network.codec.WireFormat#BINARY}
+   */
+  public MessageReceiver(Socket socket, DataInputStream binaryInput, BinaryMessageCodec binaryCodec,
+      Controller controller) {
+    this.socket = socket;
+    this.input = null;
+    this.controller = controller;
+    this.binaryInput = binaryInput;
+    this.binaryCodec = binaryCodec;
+    initHandoffs();
+  }
+
+  /**
+   * Sets the journal every message handed to the Controller is recorded in, or {@code null} to stop journaling
+   */
+  public void setJournal(MessageJournal journal) {
+    this.journal = journal;
+  }
+
+  /**
+   * Sets what to run, on the receiver's thread, when the connection to the server is lost. Not run after
+   * {@link #stop()}.
+   */
+  public void setDisconnectListener(Runnable disconnectListener) {
+    this.disconnectListener = disconnectListener;
   }
 
   /**
-   * Continually listens and attempts to read new messages from the server to forward to the Controller
+   * Sets what to run, on the receiver's thread, each time a message is read from the server by {@link #run()}
+   */
+  public void setMessageReadListener(Runnable messageReadListener) {
+    this.messageReadListener = messageReadListener;
+  }
+
+  /**
+   * Sets the {@link Heartbeat} pings and pongs are handed to instead of the Controller. Without one they are ignored.
+   */
+  public void setHeartbeat(Heartbeat heartbeat) {
+    this.heartbeat = heartbeat;
+  }
+
+  /**
+   * Stops the receiver after the message it is reading. Closing the socket as well unblocks a read in progress.
+   */
+  public void stop() {
+    stopped = true;
+  }
+
+  /**
+   * Continually listens and attempts to read new messages from the server to forward to the Controller, until the
+   * server closes the connection or it can no longer be read from.
    */
   @Override
   public void run() {
-    while (socket.isConnected()) {
-      String newMessageString = readNextMessageString();
-      determineTypeThenHandoffToController(newMessageString);
+    try {
+      while (socket.isConnected() && !stopped) {
+        if (binaryCodec != null) {
+          Message message = readNextBinaryMessage();
+          messageRead();
+          handoffToController(message);
+        } else {
+          String newMessageString = readNextMessageString();
+          if (newMessageString == null) {
+            log.warn("Server closed the connection.");
+            disconnected();
+            return;
+          }
+          messageRead();
+          determineTypeThenHandoffToController(newMessageString);
+        }
+      }
+    } catch (NetCommunicationException e) {
+      disconnected();
+    }
+  }
+
+  private void messageRead() {
+    Runnable listener = messageReadListener;
+    if (listener != null) {
+      listener.run();
+    }
+  }
+
+  private void disconnected() {
+    Runnable listener = disconnectListener;
+    if (listener != null && !stopped) {
+      listener.run();
     }
   }
 
+  /**
+   * Reads the next binary frame from the input. Blocks until a whole frame is read.
+   *
+   * @return The Message which was read, or {@code null} if it was of an unknown type
+   *
+   * @throws NetCommunicationException if unable to read from the input
+   */
+  public Message readNextBinaryMessage() {
+    try {
+      log.trace("Listening for binary message");
+      Message message = binaryCodec.read(binaryInput);
+      logSampledPayload(message);
+      return message;
+    } catch (IOException e) {
+      if (!stopped) {
+        log.error("Unable to read from input.", e);
+      }
+      throw new NetCommunicationException("Unable to read from input.", e);
+    }
+  }
+
+  /**
+   * Hands a message which has already been decoded to the Controller
+   *
+   * @param message The decoded message, or {@code null} if it wasn't a BtlShyp message this client understands
+   */
+  public void handoffToController(Message message) {
+    if (message == null) {
+      log.debug("Non-BtlShyp Message Received. Ignoring and returning null.");
+      return;
+    }
+    handleApplicationMessage(message);
+  }
+
   /**
    * Reads the next message from the input. Blocks until a new message is read.
    *
@@ -53,12 +213,14 @@ public class MessageReceiver implements Runnable {
    */
   public String readNextMessageString() {
     try {
-      log.info("Listening for message");
+      log.trace("Listening for message");
       String messageString = input.readLine();
-      log.info("Read from input: {}", messageString);
+      logSampledPayload(messageString);
       return messageString;
     } catch (IOException e) {
-      log.error("Unable to read from input.", e);
+      if (!stopped) {
+        log.error("Unable to read from input.", e);
+      }
       throw new NetCommunicationException("Unable to read from input.", e);
     }
   }
@@ -71,94 +233,120 @@ public class MessageReceiver implements Runnable {
    * @param newMessageString The string of JSON received from the server
    */
   public void determineTypeThenHandoffToController(String newMessageString) {
-    log.info("Determining Message Type");
-    
-    JsonParser typeParser = new JsonParser();
-    JsonObject messageStringJsonObject = typeParser.parse(newMessageString).getAsJsonObject();
-    JsonElement messageType = messageStringJsonObject.get("type");
-    
+    log.trace("Determining Message Type");
+
+    long decodeStart = System.nanoTime();
+    ApplicationMessage receivedMessage = gson.fromJson(newMessageString, ApplicationMessage.class);
+    DECODE_TIME.record(System.nanoTime() - decodeStart);
+    if (receivedMessage == null) {
+      log.debug("Non-BtlShyp Message Received. Ignoring and returning null.");
+      return;
+    }
+
     // We have received an application type message from the server
-    if (messageType.getAsString().equals("application")){
-      log.info("Application Message Received. {}", newMessageString);
-      handleApplicationMessage(newMessageString);
-      
+    if (receivedMessage.getType().equals(APPLICATION.toString())) {
+      log.trace("Application Message Received.");
+      handleApplicationMessage(receivedMessage.getMessage());
+
     // We have received a chat type message from the server
-    } else if (messageType.getAsString().equals("chat")) {
-      log.info("Global Chat Message Received. {}", newMessageString);
-      handleGlobalChatMessage(newMessageString);
-      
-   // We have received an unknown type message from the server 
+    } else if (receivedMessage.getType().equals(ApplicationMessageType.CHAT.toString())) {
+      log.trace("Global Chat Message Received.");
+      handleGlobalChatMessage(receivedMessage.getMessage());
+
+   // We have received an unknown type message from the server
     } else {
       log.error("Uknown Message Type Received From Server. Ignoring and returning null.");
     }
   }
 
-  private void handleApplicationMessage(String applicationMessage) {
-
-    if (applicationMessage.contains("BtlShyp")) {
-      JsonParser parser = new JsonParser();
-      JsonObject jsonObject = parser.parse(applicationMessage).getAsJsonObject();
-
-      JsonElement messageJsonElement = jsonObject.get("message");
-
-      if (applicationMessage.contains(MessageType.CHAT.name())) {
-        ChatMessage message = gson.fromJson(messageJsonElement, ChatMessage.class);
-        log.info("ChatMessage Received. {}", message);
-        controller.handleMessage(message);
-      } else if (applicationMessage.contains(JOIN_ATTEMPT.name())) {
-        JoinAttemptMessage message = gson.fromJson(messageJsonElement, JoinAttemptMessage.class);
-        log.info("JoinAttempt Received. {}", message);
-        controller.handleMessage(message);
-      } else if (applicationMessage.contains(JOIN_RESPONSE.name())) {
-        JoinResponseMessage message = gson.fromJson(messageJsonElement, JoinResponseMessage.class);
-        log.info("JoinResponseMessage Received. {}", message);
-        controller.handleMessage(message);
-      } else if (applicationMessage.contains(GAME_START.name())) {
-        GameStartMessage message = gson.fromJson(messageJsonElement, GameStartMessage.class);
-        log.info("GameStartMessage Received. {}", message);
-        controller.handleMessage(message);
-      } else if (applicationMessage.contains(SHIPS_PLACED.name())) {
-        ShipsPlacedMessage message = gson.fromJson(messageJsonElement, ShipsPlacedMessage.class);
-        log.info("ShipsPlacedMessage Received. {}", message);
-        controller.handleMessage(message);
-      } else if (applicationMessage.contains(TURN.name())) {
-        TurnStartMessage message = gson.fromJson(messageJsonElement, TurnStartMessage.class);
-        log.info("TurnMessage Received. {}", message);
-        controller.handleMessage(message);
-      } else if (applicationMessage.contains(ATTACK_ATTEMPT.name())) {
-        AttackAttemptMessage message = gson.fromJson(messageJsonElement, AttackAttemptMessage.class);
-        log.info("AttackAttemptMessage Received. {}", message);
-        controller.handleMessage(message);
-      } else if (applicationMessage.contains(ATTACK_RESPONSE.name())) {
-        AttackResponseMessage message = gson.fromJson(messageJsonElement, AttackResponseMessage.class);
-        log.info("AttackResponseMessage Received. {}", message);
-        controller.handleMessage(message);
-      } else if (applicationMessage.contains(GAME_WON_ATTEMPT.name())) {
-        GameWonAttemptMessage message = gson.fromJson(messageJsonElement, GameWonAttemptMessage.class);
-        log.info("GameWonAttemptMessage Received. {}", message);
-        controller.handleMessage(message);
-      } else if (applicationMessage.contains(GAME_WON_RESPONSE.name())) {
-        GameWonResponseMessage message = gson.fromJson(messageJsonElement, GameWonResponseMessage.class);
-        log.info("GameWonResponseMessage Received. {}", message);
-        controller.handleMessage(message);
-      } else {
-        log.error("Unknown BtlShyp Message Type received! Ignoring!");
-      }
-    } else {
-      log.info("Non-BtlShyp Message Received. Ignoring and returning null.");
+  /**
+   * Looks up the {@link Handoff} for the message's {@link MessageType} and hands the message off to it.
+   */
+  private void handleApplicationMessage(Message message) {
+    MESSAGES_RECEIVED[message.getType().ordinal()].increment();
+    journal(message);
+    Handoff handoff = handoffs.get(message.getType());
+    if (handoff == null) {
+      log.error("Unknown BtlShyp Message Type received! Ignoring!");
+      return;
     }
- }
-
+    handoff.handoff(message);
+  }
 
-  private void handleGlobalChatMessage(String globalChatMessage) {
-    JsonParser parser = new JsonParser();
-    JsonObject jsonObject = parser.parse(globalChatMessage).getAsJsonObject();
-    
-    String username = jsonObject.get("fromUser").getAsString();
-    String text = jsonObject.get("message").getAsString();
+  private void handleGlobalChatMessage(Message message) {
+    if (!(message instanceof ChatMessage)) {
+      log.error("Global Chat Message did not contain chat text! Ignoring!");
+      return;
+    }
 
-    ChatMessage broadcastMessage = new ChatMessage(text, username);
-    log.info("Global ChatMessage Received. {}", text);
+    ChatMessage broadcastMessage = (ChatMessage) message;
+    MESSAGES_RECEIVED[MessageType.CHAT.ordinal()].increment();
+    journal(broadcastMessage);
+    log.debug("Global ChatMessage Received. {}", broadcastMessage.getText());
     controller.handleMessage(broadcastMessage);
   }
+
+  private void journal(Message message) {
+    MessageJournal currentJournal = journal;
+    if (currentJournal != null) {
+      currentJournal.recordInbound(message);
+    }
+  }
+
+  /**
+   * Logs a raw payload at debug for a sample of messages. The sampler is only consulted when debug is enabled, so the
+   * payload is never formatted otherwise.
+   */
+  private static void logSampledPayload(Object payload) {
+    if (log.isDebugEnabled() && PAYLOAD_SAMPLER.sample()) {
+      log.debug("Read from input (sampled 1 in {}): {}", PAYLOAD_SAMPLER.getSampleEvery(), payload);
+    }
+  }
+
+  /**
+   * Builds the dispatch table from each {@link MessageType} to the {@link Controller} method which handles it.
+   */
+  private void initHandoffs() {
+    registerHandoff(CHAT, ChatMessage.class, controller::handleMessage);
+    registerHandoff(JOIN_ATTEMPT, JoinAttemptMessage.class, controller::handleMessage);
+    registerHandoff(JOIN_RESPONSE, JoinResponseMessage.class, controller::handleMessage);
+    registerHandoff(GAME_START, GameStartMessage.class, controller::handleMessage);
+    registerHandoff(SHIPS_PLACED, ShipsPlacedMessage.class, controller::handleMessage);
+    registerHandoff(TURN, TurnStartMessage.class, controller::handleMessage);
+    registerHandoff(ATTACK_ATTEMPT, AttackAttemptMessage.class, controller::handleMessage);
+    registerHandoff(ATTACK_RESPONSE, AttackResponseMessage.class, controller::handleMessage);
+    registerHandoff(GAME_WON_ATTEMPT, GameWonAttemptMessage.class, controller::handleMessage);
+    registerHandoff(GAME_WON_RESPONSE, GameWonResponseMessage.class, controller::handleMessage);
+    registerHandoff(LOGIN, LoginMessage.class, controller::handleMessage);
+    registerHandoff(PING, PingMessage.class, ping -> {
+      Heartbeat currentHeartbeat = heartbeat;
+      if (currentHeartbeat != null) {
+        currentHeartbeat.pingReceived(ping);
+      }
+    });
+    registerHandoff(PONG, PongMessage.class, pong -> {
+      Heartbeat currentHeartbeat = heartbeat;
+      if (currentHeartbeat != null) {
+        currentHeartbeat.pongReceived(pong);
+      }
+    });
+  }
+
+  private <T extends Message> void registerHandoff(MessageType type, Class<T> messageClass, Consumer<T> handler) {
+    handoffs.put(type, message -> {
+      T concreteMessage = messageClass.cast(message);
+      if (log.isDebugEnabled()) {
+        log.debug("{} Received. {}", messageClass.getSimpleName(), concreteMessage);
+      }
+      handler.accept(concreteMessage);
+    });
+  }
+
+  /**
+   * Hands a decoded message of a single {@link MessageType} to the matching Controller method
+   */
+  @FunctionalInterface
+  private interface Handoff {
+    void handoff(Message message);
+  }
 }
@@ -0,0 +1,87 @@
+package main.btlshyp.network;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An unbounded lock-free queue for many producer threads and a single consumer thread.
+ *
+ * <p>This is the linked queue described by Dmitry Vyukov. A producer swaps its node in as the new tail with one atomic
+ * exchange and then links the old tail to it, so producers never wait for each other or for the consumer. The consumer
+ * only ever follows {@code next} links from its own head. Between a producer's exchange and its link the queue can
+ * briefly look empty to the consumer; the message is seen on the consumer's next poll.
+ *
+ * <p>{@link #offer(Object)} may be called from any thread. {@link #poll()}, {@link #drainTo(Collection)} and
+ * {@link #isEmpty()} must only be called from the one consumer thread.
+ */
+public class MpscQueue<T> {
+
+  private final AtomicReference<Node<T>> tail;
+
+  // Only touched by the consumer. The head node's value has already been consumed.
+  private Node<T> head;
+
+  public MpscQueue() {
+    Node<T> stub = new Node<>(null);
+    head = stub;
+    tail = new AtomicReference<>(stub);
+  }
+
+  /**
+   * Adds the value to the end of the queue. Never blocks.
+   */
+  public void offer(T value) {
+    if (value == null) {
+      throw new NullPointerException("MpscQueue does not hold nulls");
+    }
+    Node<T> node = new Node<>(value);
+    Node<T> previous = tail.getAndSet(node);
+    previous.next = node;
+  }
+
+  /**
+   * @return The value at the front of the queue, or {@code null} if there isn't one (yet)
+   */
+  public T poll() {
+    Node<T> next = head.next;
+    if (next == null) {
+      return null;
+    }
+    T value = next.value;
+    next.value = null;
+    head = next;
+    return value;
+  }
+
+  /**
+   * Moves every value currently visible into the collection
+   *
+   * @return The number of values moved
+   */
+  public int drainTo(Collection<? super T> values) {
+    int drained = 0;
+    for (T value = poll(); value != null; value = poll()) {
+      values.add(value);
+      drained++;
+    }
+    return drained;
+  }
+
+  /**
+   * @return {@code true} if no value has been fully offered. A value being offered at the same moment may not be seen.
+   */
+  public boolean isEmpty() {
+    return head.next == null;
+  }
+
+  private static class Node<T> {
+
+    private T value;
+    private volatile Node<T> next;
+
+    private Node(T value) {
+      this.value = value;
+    }
+  }
+
+}
@@ -5,15 +5,29 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import lombok.extern.slf4j.Slf4j;
+import main.btlshyp.ThreadMode;
 import main.btlshyp.controller.Controller;
+import main.btlshyp.journal.MessageJournal;
 import main.btlshyp.message.ApplicationMessage;
 import main.btlshyp.message.LoginMessage;
 import main.btlshyp.message.Message;
+import main.btlshyp.message.MessageType;
+import main.btlshyp.metrics.Counter;
+import main.btlshyp.metrics.Histogram;
+import main.btlshyp.metrics.MetricsRegistry;
+import main.btlshyp.network.codec.BinaryMessageCodec;
+import main.btlshyp.network.codec.MessageCodec;
+import main.btlshyp.network.codec.WireFormat;
 import main.btlshyp.network.exception.ClientServerConnectionException;
 
 import java.io.*;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static main.btlshyp.message.ApplicationMessage.ApplicationMessageType.ACKNOWLEDGE;
 import static main.btlshyp.message.ApplicationMessage.ApplicationMessageType.LOGIN;
@@ -21,24 +35,67 @@ import static main.btlshyp.message.ApplicationMessage.ApplicationMessageType.LOG
 /**
  * Handles the setting up of connections and sockets to the game server and sends and receives messages to and from the
  * server.
+ *
+ * <p>If the connection drops after login, the client reconnects in the background following its
+ * {@link ReconnectPolicy} and logs in again with the same username. Messages sent meanwhile are held by the
+ * {@link OutboundWriter} (up to its capacity) and sent once logged in again, after any which were written to the old
+ * connection but not acknowledged. The server doesn't acknowledge messages itself, but it answers pings in order, so
+ * everything written before a ping counts as acknowledged once the heartbeat reads the answer.
+ *
+ * <p>Once logged in, a {@link Heartbeat} pings the server to measure the round trip time. If the server has been
+ * answering pings and then goes quiet for the idle timeout, the connection is treated as lost and reconnected.
  */
 @Slf4j
 public class NetworkClient {
 
   private static final int SERVER_CONNECT_TIMEOUT = 2_000;
 
+  private static final Counter[] MESSAGES_SENT = MetricsRegistry.getDefault().counters(
+      "btlshyp_messages_sent_total", "Messages sent to the server", "type", MessageType.values());
+  private static final Histogram SEND_TIME = MetricsRegistry.getDefault().timer(
+      "btlshyp_message_send_seconds", "Time taken by sendMessageToServer to hand a message over to be written");
+  private static final Counter RECONNECTS = MetricsRegistry.getDefault().counter(
+      "btlshyp_reconnects_total", "Times the connection to the server was lost and got back");
+
   private final String serverIPAddress;
   private final int serverPort;
 
-  private Gson gson = new Gson();
+  private Gson gson = MessageCodec.newGson();
 
-  private Socket socket;
+  // Replaced by the reconnect thread
+  private volatile Socket socket;
+  private InputStream socketInput;
   private BufferedReader input;
   private PrintWriter output;
 
+  // Only used once WireFormat.BINARY has been negotiated
+  private WireFormat preferredWireFormat = WireFormat.JSON;
+  private WireFormat wireFormat = WireFormat.JSON;
+  private BinaryMessageCodec binaryCodec;
+  private DataInputStream binaryInput;
+
+  // Every message after login is written by the OutboundWriter's thread
+  private OutboundWriter outboundWriter;
+
   private Controller controller;
 
-  private MessageReceiver messageReceiver;
+  private volatile MessageReceiver messageReceiver;
+  private MessageJournal journal;
+  private ThreadFactory receiverThreadFactory = ThreadMode.PLATFORM.newThreadFactory("MessageReceiver");
+  private ThreadFactory writerThreadFactory = ThreadMode.PLATFORM.newThreadFactory("MessageWriter");
+  private ThreadFactory reconnectThreadFactory = ThreadMode.PLATFORM.newThreadFactory("Reconnect");
+  private ThreadFactory heartbeatThreadFactory = ThreadMode.PLATFORM.newThreadFactory("Heartbeat");
+
+  private long heartbeatIntervalMillis = Heartbeat.DEFAULT_INTERVAL_MILLIS;
+  private long heartbeatIdleTimeoutMillis = Heartbeat.DEFAULT_IDLE_TIMEOUT_MILLIS;
+  private volatile Heartbeat heartbeat;
+
+  private ReconnectPolicy reconnectPolicy = ReconnectPolicy.DEFAULT;
+  // The name last logged in with, used to log in again after reconnecting
+  private volatile String username;
+  private final AtomicBoolean reconnecting = new AtomicBoolean();
+  private volatile boolean closed;
+  private volatile Runnable connectionFailedListener;
 
   /**
    * Constructs a new NetworkClient.
@@ -53,6 +110,18 @@ public class NetworkClient {
     this.controller = controller;
   }
 
+  /**
+   * Sets the {@link Controller} which receives the messages read from the server. Used when the NetworkClient is created
+   * before its Controller.
+   */
+  public void setController(Controller controller) {
+    this.controller = controller;
+  }
+
+  protected Controller getController() {
+    return controller;
+  }
+
   /**
    * Attempts to connect to the configured server.
    */
@@ -66,10 +135,157 @@ public class NetworkClient {
     log.info("Connection to server established.");
   }
 
+  /**
+   * Sets the wire format to ask the server for when logging in. The server may still choose to stay on
+   * {@link WireFormat#JSON}, see {@link #getWireFormat()}.
+   */
+  public void setPreferredWireFormat(WireFormat preferredWireFormat) {
+    this.preferredWireFormat = preferredWireFormat;
+  }
+
+  /**
+   * @return The wire format negotiated with the server at login
+   */
+  public WireFormat getWireFormat() {
+    return wireFormat;
+  }
+
+  /**
+   * Sets the journal every message sent and received is recorded in. Must be set before
+   * {@link #beginListeningForMessages()} for received messages to be recorded.
+   */
+  public void setJournal(MessageJournal journal) {
+    this.journal = journal;
+  }
+
+  protected MessageJournal getJournal() {
+    return journal;
+  }
+
+  /**
+   * Sets the kind of thread the {@link MessageReceiver} is started on by {@link #beginListeningForMessages()}, and
+   * that the {@link OutboundWriter} is started on at login
+   */
+  public void setThreadMode(ThreadMode threadMode) {
+    this.receiverThreadFactory = threadMode.newThreadFactory("MessageReceiver");
+    this.writerThreadFactory = threadMode.newThreadFactory("MessageWriter");
+    this.reconnectThreadFactory = threadMode.newThreadFactory("Reconnect");
+    this.heartbeatThreadFactory = threadMode.newThreadFactory("Heartbeat");
+  }
+
+  /**
+   * Sets how often the server is pinged once logged in, and how long the connection may go without anything being
+   * read before it is treated as lost. An interval of zero turns the heartbeat off, and with it acknowledgement, so
+   * every message still held is sent again after reconnecting. Must be set before {@link #beginListeningForMessages()}.
+   */
+  public void setHeartbeatInterval(long intervalMillis, long idleTimeoutMillis) {
+    this.heartbeatIntervalMillis = intervalMillis;
+    this.heartbeatIdleTimeoutMillis = idleTimeoutMillis;
+  }
+
+  /**
+   * @return The heartbeat measuring the round trip time to the server, or {@code null} before it starts (or if it is
+   * turned off)
+   */
+  public Heartbeat getHeartbeat() {
+    return heartbeat;
+  }
+
+  /**
+   * Sets how to reconnect when the connection to the server drops. {@link ReconnectPolicy#NEVER} turns reconnecting
+   * off.
+   */
+  public void setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+    this.reconnectPolicy = reconnectPolicy;
+  }
+
+  /**
+   * Sets what to run once the connection is lost and every reconnect attempt has failed
+   */
+  public void setConnectionFailedListener(Runnable connectionFailedListener) {
+    this.connectionFailedListener = connectionFailedListener;
+  }
+
+  /**
+   * @return {@code true} while reconnecting after the connection dropped
+   */
+  public boolean isReconnecting() {
+    return reconnecting.get();
+  }
+
+  /**
+   * Closes the connection to the server for good. Nothing more is sent, and the client doesn't reconnect.
+   */
+  public void close() {
+    closed = true;
+    if (heartbeat != null) {
+      heartbeat.close();
+    }
+    MessageReceiver receiver = messageReceiver;
+    if (receiver != null) {
+      receiver.stop();
+    }
+    if (outboundWriter != null) {
+      outboundWriter.close();
+    }
+    closeSocket();
+  }
+
+  /**
+   * @return The writer sending messages to the server, or {@code null} before login
+   */
+  public OutboundWriter getOutboundWriter() {
+    return outboundWriter;
+  }
+
   public void beginListeningForMessages() {
     log.info("Starting message receiver thread.");
-    this.messageReceiver = new MessageReceiver(socket, input, controller);
-    new Thread(messageReceiver).start();
+    if (wireFormat == WireFormat.BINARY) {
+      this.messageReceiver = new MessageReceiver(socket, binaryInput, binaryCodec, controller);
+    } else {
+      this.messageReceiver = new MessageReceiver(socket, input, controller);
+    }
+    messageReceiver.setJournal(journal);
+    MessageReceiver receiver = messageReceiver;
+    OutboundWriter writer = outboundWriter;
+    boolean startHeartbeat = heartbeat == null && heartbeatIntervalMillis > 0 && username != null;
+    if (startHeartbeat) {
+      heartbeat = new Heartbeat(username, this::sendHeartbeatMessage, this::connectionLost, heartbeatIntervalMillis,
+          heartbeatIdleTimeoutMillis, heartbeatThreadFactory);
+    }
+    Heartbeat currentHeartbeat = heartbeat;
+    receiver.setHeartbeat(currentHeartbeat);
+    if (currentHeartbeat != null) {
+      currentHeartbeat.setPongListener(pingSequence -> {
+        if (writer != null) {
+          writer.acknowledgePing(pingSequence);
+        }
+      });
+      receiver.setMessageReadListener(currentHeartbeat::messageRead);
+    }
+    receiver.setDisconnectListener(() -> {
+      // A receiver replaced by reconnecting may only notice its socket was closed afterwards
+      if (receiver == messageReceiver) {
+        connectionLost();
+      }
+    });
+    receiverThreadFactory.newThread(receiver).start();
+
+    if (startHeartbeat) {
+      currentHeartbeat.start();
+    } else if (currentHeartbeat != null) {
+      // Reconnected, so the connection has only just been heard from
+      currentHeartbeat.messageRead();
+    }
+  }
+
+  /**
+   * Sends a ping or pong, unless there is no connection to send it on
+   */
+  private void sendHeartbeatMessage(Message message) {
+    if (!closed && !reconnecting.get()) {
+      sendMessageToServer(message);
+    }
   }
 
   /**
@@ -88,11 +304,12 @@ public class NetworkClient {
   }
 
   /**
-   * Sets up the Reader and Writer for the Input and Output streams
+   * Sets up the Reader and Writer for the Input and Output streams. The Reader used for incoming messages isn't created
+   * until login, since it depends on the negotiated {@link WireFormat}.
    */
   public void initializeInputAndOutput() {
     try {
-      input = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+      socketInput = new BufferedInputStream(socket.getInputStream());
     } catch (IOException e) {
       log.error("Unable to open Input Stream.", e);
       throw new ClientServerConnectionException("Unable to initialize input reader.", e);
@@ -107,23 +324,38 @@ public class NetworkClient {
   }
 
   /**
-   * Sends a json encoded message to the server
+   * Queues a message to be sent to the server in the negotiated wire format. Messages are written in the order they
+   * are queued, by the {@link OutboundWriter}'s thread.
+   *
+   * @throws ClientServerConnectionException if not logged in, or the connection to the server has failed
    */
   public void sendMessageToServer(Message messageToSend) {
-    try {
-      log.info("Sending message: {}", messageToSend);
-
-      ApplicationMessage wrappedMessage = new ApplicationMessage(messageToSend);
-      String jsonEncodedMessage = gson.toJson(wrappedMessage);
-
-      output.println(jsonEncodedMessage);
-      output.flush();
+    long sendStart = System.nanoTime();
+    log.debug("Sending message: {}", messageToSend);
+    if (outboundWriter == null) {
+      throw new ClientServerConnectionException("Unable to send message to server before logging in.");
+    }
+    if (journal != null) {
+      journal.recordOutbound(messageToSend);
+    }
 
-      log.info("Message sent to Server. Message json: {}", jsonEncodedMessage);
-    } catch (Exception e) {
+    try {
+      outboundWriter.send(messageToSend);
+    } catch (ClientServerConnectionException e) {
       log.error("Error sending message: {} to server", messageToSend, e);
-      throw new ClientServerConnectionException("Unable to send message to server.", e);
+      throw e;
     }
+    recordSent(messageToSend, sendStart);
+  }
+
+  /**
+   * Counts a message as sent and records how long sending it took
+   *
+   * @param sendStartNanos {@link System#nanoTime()} when sending began
+   */
+  protected static void recordSent(Message message, long sendStartNanos) {
+    MESSAGES_SENT[message.getType().ordinal()].increment();
+    SEND_TIME.record(System.nanoTime() - sendStartNanos);
   }
 
   /**
@@ -133,14 +365,22 @@ public class NetworkClient {
    */
   public boolean loginToServer(String username) {
     LoginMessage loginMessage = new LoginMessage(username);
-    return attemptLoginWithServer(loginMessage);
+    boolean loggedIn = attemptLoginWithServer(loginMessage);
+    if (loggedIn) {
+      this.username = username;
+    }
+    return loggedIn;
   }
 
   /**
-   * Sends a json encoded login message to the server
+   * Sends a json encoded login message to the server. If a {@link WireFormat} other than JSON is preferred it is
+   * offered to the server, and used from then on if the server's acknowledgement accepts it.
    */
   public boolean attemptLoginWithServer(LoginMessage loginMessage) {
     try {
+      if (preferredWireFormat != WireFormat.JSON) {
+        loginMessage.setWireFormats(Arrays.asList(preferredWireFormat.name(), WireFormat.JSON.name()));
+      }
       log.info("Sending login message: {}", loginMessage);
 
       ApplicationMessage wrappedMessage = new ApplicationMessage(LOGIN.toString(), loginMessage);
@@ -152,7 +392,7 @@ public class NetworkClient {
       log.info("Login message sent to Server");
 
       log.info("Listening for login responseMessage json: {}", jsonEncodedMessage);
-      String loginResponseString = input.readLine();
+      String loginResponseString = readLoginResponseLine();
       log.info("Read from input: {}", loginResponseString);
 
       JsonParser parser = new JsonParser();
@@ -163,6 +403,7 @@ public class NetworkClient {
 
       if (response.getAsString().equals(ACKNOWLEDGE.toString())) {
         log.info("Login Successful. Response: {}", responseMessage);
+        useWireFormat(negotiatedWireFormat(loginResponseJson.get("wireFormat")));
         return true;
       } else {
         log.error("Login Failed! Response: {}", responseMessage);
@@ -174,5 +415,149 @@ public class NetworkClient {
       throw new ClientServerConnectionException("Unable to send login message to server.", e);
     }
   }
-}
 
+  /**
+   * @return The wire format the server chose in its login acknowledgement, if it is one we offered. JSON otherwise.
+   */
+  private WireFormat negotiatedWireFormat(JsonElement serverWireFormat) {
+    if (serverWireFormat == null || serverWireFormat.isJsonNull() || preferredWireFormat == WireFormat.JSON) {
+      return WireFormat.JSON;
+    }
+    if (preferredWireFormat.name().equalsIgnoreCase(serverWireFormat.getAsString())) {
+      return preferredWireFormat;
+    }
+    log.warn("Server chose a wire format we didn't offer: {}. Using JSON.", serverWireFormat);
+    return WireFormat.JSON;
+  }
+
+  /**
+   * Sets up the streams used for all messages after login
+   */
+  private void useWireFormat(WireFormat newWireFormat) throws IOException {
+    log.info("Using wire format {}", newWireFormat);
+    wireFormat = newWireFormat;
+
+    OutboundWriter.MessageEncoder encoder;
+    if (newWireFormat == WireFormat.BINARY) {
+      binaryCodec = new BinaryMessageCodec();
+      binaryInput = new DataInputStream(socketInput);
+      encoder = (message, batch) -> binaryCodec.write(batch, message);
+    } else {
+      input = new BufferedReader(new InputStreamReader(socketInput, StandardCharsets.UTF_8));
+      encoder = this::encodeJsonLine;
+    }
+    if (outboundWriter == null) {
+      OutboundWriter writer = new OutboundWriter(socket.getOutputStream(), encoder, writerThreadFactory);
+      writer.setConnectionLostListener(cause -> connectionLost());
+      outboundWriter = writer;
+    } else {
+      // Logged in again after reconnecting. Whatever was held while disconnected is written now.
+      outboundWriter.resume(socket.getOutputStream(), encoder);
+    }
+  }
+
+  /**
+   * Starts reconnecting in the background, unless already reconnecting or closed
+   */
+  private void connectionLost() {
+    if (closed || !reconnecting.compareAndSet(false, true)) {
+      return;
+    }
+    log.warn("Lost connection to server. Reconnecting.");
+    reconnectThreadFactory.newThread(this::reconnect).start();
+  }
+
+  /**
+   * Reconnects and logs in again, waiting between attempts as the {@link ReconnectPolicy} says. Gives up, closing the
+   * client, once the policy's attempts run out.
+   */
+  private void reconnect() {
+    MessageReceiver oldReceiver = messageReceiver;
+    if (oldReceiver != null) {
+      oldReceiver.stop();
+    }
+    closeSocket();
+
+    ReconnectPolicy policy = reconnectPolicy;
+    for (int attempt = 0; attempt < policy.getMaxAttempts() && !closed; attempt++) {
+      long delayMillis = policy.nextDelayMillis(attempt);
+      try {
+        TimeUnit.MILLISECONDS.sleep(delayMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+
+      try {
+        attemptConnection();
+        initializeInputAndOutput();
+        if (loginToServer(username)) {
+          beginListeningForMessages();
+          reconnecting.set(false);
+          RECONNECTS.increment();
+          log.info("Reconnected to server after {} attempts", attempt + 1);
+          return;
+        }
+        log.warn("Server refused login while reconnecting. attempt={}", attempt + 1);
+      } catch (ClientServerConnectionException e) {
+        log.warn("Unable to reconnect. attempt={} delayMillis={}", attempt + 1, delayMillis);
+      }
+      closeSocket();
+    }
+
+    boolean gaveUp = !closed;
+    if (gaveUp) {
+      log.error("Unable to reconnect to server. Giving up.");
+      close();
+    }
+    reconnecting.set(false);
+
+    Runnable listener = connectionFailedListener;
+    if (gaveUp && listener != null) {
+      listener.run();
+    }
+  }
+
+  private void closeSocket() {
+    Socket currentSocket = socket;
+    if (currentSocket == null) {
+      return;
+    }
+    try {
+      currentSocket.close();
+    } catch (IOException e) {
+      log.debug("Error closing socket", e);
+    }
+  }
+
+  /**
+   * Encodes a message as a line of JSON wrapped in an {@link ApplicationMessage}, as the server expects
+   */
+  private void encodeJsonLine(Message message, OutputStream batch) throws IOException {
+    String jsonEncodedMessage = gson.toJson(new ApplicationMessage(message));
+    log.trace("Message json: {}", jsonEncodedMessage);
+    batch.write(jsonEncodedMessage.getBytes(StandardCharsets.UTF_8));
+    batch.write('\n');
+  }
+
+  /**
+   * Reads the server's response to a login from the socket's buffered stream without wrapping it in a Reader, so any
+   * bytes after the line stay in that stream for whichever reader the negotiated wire format needs. What follows may
+   * already be binary.
+   */
+  private String readLoginResponseLine() throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b;
+    while ((b = socketInput.read()) != '\n') {
+      if (b == -1) {
+        throw new EOFException("Connection closed while waiting for login response");
+      }
+      line.write(b);
+    }
+
+    String loginResponseString = new String(line.toByteArray(), StandardCharsets.UTF_8);
+    return loginResponseString.endsWith("\r")
+        ? loginResponseString.substring(0, loginResponseString.length() - 1)
+        : loginResponseString;
+  }
+}
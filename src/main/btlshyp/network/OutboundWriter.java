@@ -0,0 +1,443 @@
+package main.btlshyp.network;
+
+import lombok.extern.slf4j.Slf4j;
+import main.btlshyp.message.Message;
+import main.btlshyp.message.PingMessage;
+import main.btlshyp.metrics.MetricsRegistry;
+import main.btlshyp.network.exception.ClientServerConnectionException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes messages to the server from a single dedicated thread.
+ *
+ * <p>Senders only queue the message. The writer thread takes every message waiting in the queue, encodes them one
+ * after another into a single reused buffer and writes that buffer to the socket in one call. A burst of messages (like
+ * an attack response followed by the end of the turn) therefore costs one write and one flush rather than one each.
+ *
+ * <p>Messages may be sent from any thread (the Swing EDT for chat, the game loop, the message receiver for attack
+ * responses). The queue is an {@link MpscQueue}, so senders never take a lock or wait for each other or for the
+ * writer, and since only the writer thread touches the socket, messages can't interleave. The writer parks when the
+ * queue is empty and the sender which finds it parked wakes it.
+ *
+ * <p>The queue is bounded. If the server stops reading and the queue fills up, senders wait for room.
+ *
+ * <p>If a write fails and a {@link ConnectionLostListener} is set, the writer holds on to the batch which failed and
+ * waits for {@link #resume(OutputStream, MessageEncoder)} with a new connection. Senders carry on queueing meanwhile
+ * (up to the capacity), and everything is written to the new connection in the order it was sent. Without a listener a
+ * failed write stops the writer for good.
+ *
+ * <p>A successful write only means the bytes reached the socket's buffer, not the server. The last
+ * {@value #REPLAY_CAPACITY} messages written are kept until they are acknowledged, and whatever hasn't been
+ * acknowledged is written again, first, after {@link #resume}. The server answers a {@link PingMessage} only after
+ * reading everything sent before it, so {@link #acknowledgePing(long)} marks the messages written up to that ping as
+ * arrived. Delivery across a reconnect is therefore at least once: a message which did arrive shortly before the
+ * connection dropped may be sent twice.
+ *
+ * <p>The {@code btlshyp_outbound_queued} and {@code btlshyp_outbound_unacknowledged} gauges add up every writer which
+ * hasn't been closed, so every client in the JVM is counted.
+ */
+@Slf4j
+public class OutboundWriter implements Closeable {
+
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  /**
+   * How many written but unacknowledged messages are kept to be written again after reconnecting
+   */
+  public static final int REPLAY_CAPACITY = 256;
+
+  private static final long FULL_QUEUE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  // Every writer which hasn't been closed, for the gauges
+  private static final Set<OutboundWriter> LIVE_WRITERS = ConcurrentHashMap.newKeySet();
+
+  static {
+    MetricsRegistry.getDefault().gauge("btlshyp_outbound_queued", "Messages waiting to be written to the server",
+        OutboundWriter::getTotalQueued);
+    MetricsRegistry.getDefault().gauge("btlshyp_outbound_unacknowledged",
+        "Messages written to the server but not yet acknowledged", OutboundWriter::getTotalUnacknowledged);
+  }
+
+  /**
+   * Encodes one message onto the end of the batch being written
+   */
+  @FunctionalInterface
+  public interface MessageEncoder {
+    void encode(Message message, OutputStream batch) throws IOException;
+  }
+
+  /**
+   * Told when a write fails, from the writer thread. The writer waits for {@link #resume} or {@link #close()}.
+   */
+  @FunctionalInterface
+  public interface ConnectionLostListener {
+    void connectionLost(IOException cause);
+  }
+
+  private volatile OutputStream output;
+  private volatile MessageEncoder encoder;
+  private volatile ConnectionLostListener connectionLostListener;
+  private final MpscQueue<Message> queue = new MpscQueue<>();
+  private final int capacity;
+  private final AtomicInteger queued = new AtomicInteger();
+  private final Thread writerThread;
+
+  private volatile boolean closed;
+  private volatile boolean writerParked;
+  private volatile boolean suspended;
+  private volatile int connection;
+  private volatile IOException failure;
+
+  // Sequence number of the last message written, and of the last one known to have arrived
+  private volatile long writtenThrough;
+  private final AtomicLong acknowledgedThrough = new AtomicLong();
+  // Sequence number each unanswered ping was written as, by the ping's own sequence number
+  private final Map<Long, Long> pingsWritten = new ConcurrentHashMap<>();
+
+  // Only touched by the writer thread
+  private final ByteArrayOutputStream batch = new ByteArrayOutputStream(4096);
+  private final List<Message> pending = new ArrayList<>();
+  // How many of the messages at the front of pending are being written again rather than taken from the queue
+  private int replaysPending;
+  private int writingToConnection;
+  // The last REPLAY_CAPACITY messages written, indexed by sequence number
+  private final Message[] written = new Message[REPLAY_CAPACITY];
+
+  private final AtomicLong messagesWritten = new AtomicLong();
+  private final AtomicLong flushes = new AtomicLong();
+
+  public OutboundWriter(OutputStream output, MessageEncoder encoder, ThreadFactory threadFactory) {
+    this(output, encoder, DEFAULT_CAPACITY, threadFactory);
+  }
+
+  public OutboundWriter(OutputStream output, MessageEncoder encoder, int capacity, ThreadFactory threadFactory) {
+    this.output = output;
+    this.encoder = encoder;
+    this.capacity = capacity;
+    this.writerThread = threadFactory.newThread(this::writeLoop);
+    this.writerThread.setDaemon(true);
+    this.writerThread.start();
+    LIVE_WRITERS.add(this);
+  }
+
+  /**
+   * @return How many messages are queued or being written by every writer which hasn't been closed
+   */
+  public static long getTotalQueued() {
+    long total = 0;
+    for (OutboundWriter writer : LIVE_WRITERS) {
+      total += writer.getQueued();
+    }
+    return total;
+  }
+
+  /**
+   * @return How many messages have been written but not acknowledged by every writer which hasn't been closed
+   */
+  public static long getTotalUnacknowledged() {
+    long total = 0;
+    for (OutboundWriter writer : LIVE_WRITERS) {
+      total += writer.getUnacknowledged();
+    }
+    return total;
+  }
+
+  /**
+   * Queues the message to be written. Returns as soon as the message is queued, waiting only if the queue is full.
+   *
+   * @throws ClientServerConnectionException if the writer is closed or an earlier write failed
+   */
+  public void send(Message message) {
+    checkOpen();
+    while (queued.get() >= capacity) {
+      if (Thread.interrupted()) {
+        Thread.currentThread().interrupt();
+        throw new ClientServerConnectionException("Interrupted while queueing message to server.");
+      }
+      LockSupport.parkNanos(this, FULL_QUEUE_PARK_NANOS);
+      checkOpen();
+    }
+    queued.incrementAndGet();
+    queue.offer(message);
+    if (writerParked) {
+      LockSupport.unpark(writerThread);
+    }
+  }
+
+  /**
+   * Sets the listener told when a write fails. With a listener set the writer waits to be resumed instead of failing.
+   */
+  public void setConnectionLostListener(ConnectionLostListener connectionLostListener) {
+    this.connectionLostListener = connectionLostListener;
+  }
+
+  /**
+   * Carries on writing to a new connection after a write failed, starting with the batch which failed
+   */
+  public void resume(OutputStream newOutput, MessageEncoder newEncoder) {
+    // The encoder is swapped first, so a writer which sees the new output also sees its encoder
+    encoder = newEncoder;
+    output = newOutput;
+    connection++;
+    suspended = false;
+    LockSupport.unpark(writerThread);
+  }
+
+  /**
+   * Marks every message written so far as having arrived at the server, so none of them are written again after
+   * reconnecting. May be called from any thread.
+   */
+  public void acknowledge() {
+    acknowledge(writtenThrough);
+  }
+
+  /**
+   * Marks the messages written up to and including sequence number {@code through} as having arrived at the server.
+   * Messages are numbered from 1 in the order they are written. May be called from any thread.
+   */
+  public void acknowledge(long through) {
+    acknowledgedThrough.accumulateAndGet(Math.min(through, writtenThrough), Math::max);
+  }
+
+  /**
+   * Marks the messages written up to and including the ping with the given sequence number as having arrived, because
+   * the server has answered it. Does nothing if no such ping was written. May be called from any thread.
+   *
+   * @param pingSequence {@link PingMessage#getSequence()} of the ping answered
+   */
+  public void acknowledgePing(long pingSequence) {
+    Long through = pingsWritten.remove(pingSequence);
+    if (through != null) {
+      acknowledge(through);
+    }
+    // Earlier pings which went unanswered never will be now
+    pingsWritten.keySet().removeIf(sequence -> sequence < pingSequence);
+  }
+
+  /**
+   * @return How many messages have been written but not acknowledged
+   */
+  public long getUnacknowledged() {
+    return writtenThrough - acknowledgedThrough.get();
+  }
+
+  /**
+   * @return {@code true} while the writer is waiting for a new connection after a failed write
+   */
+  public boolean isSuspended() {
+    return suspended;
+  }
+
+  /**
+   * Stops the writer thread once it has written everything already queued. A suspended writer stops straight away and
+   * what it was holding is never sent.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    LIVE_WRITERS.remove(this);
+    LockSupport.unpark(writerThread);
+  }
+
+  /**
+   * @return How many messages have been written to the socket
+   */
+  public long getMessagesWritten() {
+    return messagesWritten.get();
+  }
+
+  /**
+   * @return How many messages are queued or being written
+   */
+  public int getQueued() {
+    return queued.get();
+  }
+
+  /**
+   * @return How many writes (each followed by a flush) have been made to the socket
+   */
+  public long getFlushes() {
+    return flushes.get();
+  }
+
+  /**
+   * @return The mean number of messages coalesced into each write
+   */
+  public double getMessagesPerFlush() {
+    long flushCount = flushes.get();
+    return flushCount == 0 ? 0 : (double) messagesWritten.get() / flushCount;
+  }
+
+  private void checkOpen() {
+    if (failure != null) {
+      throw new ClientServerConnectionException("Unable to send message to server.", failure);
+    }
+    if (closed) {
+      throw new ClientServerConnectionException("Connection to server is closed.");
+    }
+  }
+
+  private void writeLoop() {
+    try {
+      while (!closed || queued.get() > 0) {
+        if (suspended) {
+          if (closed) {
+            break;
+          }
+          awaitResume();
+          continue;
+        }
+        if (writingToConnection != connection) {
+          writingToConnection = connection;
+          replayUnacknowledged();
+        }
+        if (pending.isEmpty() && queue.drainTo(pending) == 0) {
+          awaitMessages();
+          continue;
+        }
+        if (pending.size() == 1) {
+          // Give a sender which is part way through a burst the chance to queue the rest of it
+          Thread.yield();
+          queue.drainTo(pending);
+        }
+        int fromQueue = pending.size() - replaysPending;
+        if (writeBatchOrSuspend()) {
+          queued.addAndGet(-fromQueue);
+          replaysPending = 0;
+        }
+      }
+    } catch (IOException e) {
+      log.error("Unable to write to server. Messages will no longer be sent.", e);
+      failure = e;
+    } finally {
+      if (queued.get() > 0) {
+        log.warn("Writer stopped with {} messages unsent", queued.get());
+      }
+      log.debug("Writer stopped after {} messages in {} writes", messagesWritten.get(), flushes.get());
+    }
+  }
+
+  /**
+   * Puts the messages written to the previous connection but never acknowledged at the front of the pending batch
+   */
+  private void replayUnacknowledged() {
+    // Those already at the front from an earlier failed replay are taken from the ring again below
+    pending.subList(0, replaysPending).clear();
+
+    long last = writtenThrough;
+    long first = Math.max(acknowledgedThrough.get() + 1, last - REPLAY_CAPACITY + 1);
+    if (first > acknowledgedThrough.get() + 1) {
+      log.warn("{} unacknowledged messages no longer held and can't be sent again",
+          first - acknowledgedThrough.get() - 1);
+    }
+    List<Message> replays = new ArrayList<>();
+    for (long sequence = first; sequence <= last; sequence++) {
+      replays.add(written[(int) (sequence % REPLAY_CAPACITY)]);
+    }
+    if (!replays.isEmpty()) {
+      log.info("Sending {} unacknowledged messages again", replays.size());
+    }
+    pending.addAll(0, replays);
+    replaysPending = replays.size();
+  }
+
+  /**
+   * Parks the writer until a sender queues a message. The flag is raised before the queue is checked again, so a sender
+   * which queues in between either is seen here or sees the flag and unparks the writer.
+   */
+  private void awaitMessages() {
+    writerParked = true;
+    if (queue.isEmpty() && !closed) {
+      LockSupport.park(this);
+    }
+    writerParked = false;
+  }
+
+  /**
+   * Writes the pending batch. If the write fails and someone is listening, the batch is kept to be written again once
+   * the writer is resumed.
+   *
+   * @return {@code true} if the batch was written
+   * @throws IOException if the write failed and no one is listening
+   */
+  private boolean writeBatchOrSuspend() throws IOException {
+    OutputStream target = output;
+    try {
+      writeBatch(target, encoder);
+      return true;
+    } catch (IOException e) {
+      ConnectionLostListener listener = connectionLostListener;
+      if (listener == null) {
+        throw e;
+      }
+      if (output != target) {
+        // Already resumed on a new connection while writing to the old one
+        log.debug("Write to a replaced connection failed. Writing the batch again.", e);
+        return false;
+      }
+      suspended = true;
+      if (output != target) {
+        // Resumed between the check above and suspending
+        suspended = false;
+        return false;
+      }
+      log.warn("Unable to write to server. Holding {} messages until reconnected.", pending.size());
+      listener.connectionLost(e);
+      return false;
+    }
+  }
+
+  private void awaitResume() {
+    writerParked = true;
+    if (suspended && !closed) {
+      LockSupport.park(this);
+    }
+    writerParked = false;
+  }
+
+  private void writeBatch(OutputStream target, MessageEncoder batchEncoder) throws IOException {
+    batch.reset();
+    for (Message message : pending) {
+      batchEncoder.encode(message, batch);
+    }
+    batch.writeTo(target);
+    target.flush();
+
+    long sequence = writtenThrough;
+    for (Message message : pending) {
+      written[(int) (++sequence % REPLAY_CAPACITY)] = message;
+      if (message instanceof PingMessage) {
+        rememberPing((PingMessage) message, sequence);
+      }
+    }
+    writtenThrough = sequence;
+    messagesWritten.addAndGet(pending.size());
+    flushes.incrementAndGet();
+    if (log.isTraceEnabled()) {
+      log.trace("Wrote {} messages ({} bytes) in one write", pending.size(), batch.size());
+    }
+    pending.clear();
+  }
+
+  private void rememberPing(PingMessage ping, long sequence) {
+    pingsWritten.put(ping.getSequence(), sequence);
+    // Pings written longer ago than the replay buffer reaches can't acknowledge anything still held
+    long oldest = sequence - REPLAY_CAPACITY;
+    pingsWritten.values().removeIf(writtenAs -> writtenAs <= oldest);
+  }
+
+}
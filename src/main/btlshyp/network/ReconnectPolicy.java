@@ -0,0 +1,56 @@
+package main.btlshyp.network;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How long {@link NetworkClient} waits between attempts to reconnect after losing the server.
+ *
+ * <p>Delays grow exponentially from {@code initialDelayMillis} up to {@code maxDelayMillis}, and each delay is drawn at
+ * random between zero and that bound ("full jitter"). A blip in the network is usually recovered from within the first
+ * few milliseconds, while many clients dropped by the same outage don't all reconnect at the same moment.
+ */
+@Getter
+@ToString
+public class ReconnectPolicy {
+
+  public static final ReconnectPolicy DEFAULT = new ReconnectPolicy(50, 5_000, 12);
+
+  /**
+   * Never reconnects. The connection is lost for good the first time it drops.
+   */
+  public static final ReconnectPolicy NEVER = new ReconnectPolicy(0, 0, 0);
+
+  private final long initialDelayMillis;
+  private final long maxDelayMillis;
+  private final int maxAttempts;
+
+  public ReconnectPolicy(long initialDelayMillis, long maxDelayMillis, int maxAttempts) {
+    if (initialDelayMillis < 0 || maxDelayMillis < initialDelayMillis || maxAttempts < 0) {
+      throw new IllegalArgumentException("Invalid reconnect policy. initialDelayMillis=" + initialDelayMillis
+          + ", maxDelayMillis=" + maxDelayMillis + ", maxAttempts=" + maxAttempts);
+    }
+    this.initialDelayMillis = initialDelayMillis;
+    this.maxDelayMillis = maxDelayMillis;
+    this.maxAttempts = maxAttempts;
+  }
+
+  /**
+   * @return The bound on the delay before the given attempt (counting from zero), before jitter is applied
+   */
+  public long getDelayBoundMillis(int attempt) {
+    // Stop doubling well before the shift could overflow
+    return Math.min(initialDelayMillis << Math.min(attempt, 30), maxDelayMillis);
+  }
+
+  /**
+   * @return How long to wait before the given attempt (counting from zero)
+   */
+  public long nextDelayMillis(int attempt) {
+    long bound = getDelayBoundMillis(attempt);
+    return bound == 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+  }
+
+}
@@ -0,0 +1,99 @@
+package main.btlshyp.network.codec;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import main.btlshyp.message.ApplicationMessage;
+import main.btlshyp.message.ChatMessage;
+import main.btlshyp.message.Message;
+
+import java.io.IOException;
+
+import static main.btlshyp.message.ApplicationMessage.ApplicationMessageType.CHAT;
+import static main.btlshyp.network.codec.MessageTypeAdapter.nextStringOrNull;
+
+/**
+ * Streaming JSON codec for the {@link ApplicationMessage} envelope which wraps every message sent to and received from
+ * the server.
+ *
+ * Besides the envelopes this client sends, the server also sends global chat envelopes in the form
+ * {@code {"type":"chat","fromUser":"...","message":"..."}}. These are decoded into an ApplicationMessage of type
+ * {@code chat} wrapping a {@link ChatMessage}.
+ */
+public class ApplicationMessageTypeAdapter extends TypeAdapter<ApplicationMessage> {
+
+  private final MessageTypeAdapter messageTypeAdapter;
+
+  public ApplicationMessageTypeAdapter(MessageTypeAdapter messageTypeAdapter) {
+    this.messageTypeAdapter = messageTypeAdapter;
+  }
+
+  @Override
+  public void write(JsonWriter out, ApplicationMessage applicationMessage) throws IOException {
+    if (applicationMessage == null) {
+      out.nullValue();
+      return;
+    }
+
+    out.beginObject();
+    out.name("type").value(applicationMessage.getType());
+    out.name("message");
+    messageTypeAdapter.write(out, applicationMessage.getMessage());
+    out.endObject();
+  }
+
+  /**
+   * @return The decoded envelope, or {@code null} if it doesn't wrap a message this client understands (such as a
+   * message for another module)
+   */
+  @Override
+  public ApplicationMessage read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+
+    String type = null;
+    String fromUser = null;
+    String chatText = null;
+    Message message = null;
+
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "type":
+          type = nextStringOrNull(in);
+          break;
+        case "fromUser":
+          fromUser = nextStringOrNull(in);
+          break;
+        case "message":
+          JsonToken token = in.peek();
+          if (token == JsonToken.BEGIN_OBJECT) {
+            message = messageTypeAdapter.read(in);
+          } else if (token == JsonToken.STRING) {
+            chatText = in.nextString();
+          } else {
+            in.skipValue();
+          }
+          break;
+        default:
+          in.skipValue();
+          break;
+      }
+    }
+    in.endObject();
+
+    if (type == null) {
+      return null;
+    }
+    if (CHAT.toString().equals(type) && chatText != null) {
+      return new ApplicationMessage(type, new ChatMessage(chatText, fromUser));
+    }
+    if (message == null) {
+      return null;
+    }
+    return new ApplicationMessage(type, message);
+  }
+}
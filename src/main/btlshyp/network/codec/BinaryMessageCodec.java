@@ -0,0 +1,403 @@
+package main.btlshyp.network.codec;
+
+import main.btlshyp.message.*;
+import main.btlshyp.message.AttackResponseMessage.HitOrMiss;
+import main.btlshyp.message.AttackResponseMessage.ShipSunk;
+import main.btlshyp.message.GameWonResponseMessage.GameResult;
+import main.btlshyp.message.JoinResponseMessage.ConfirmJoin;
+import main.btlshyp.message.TurnStartMessage.Turn;
+import main.btlshyp.model.Coordinate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of the {@link Message} hierarchy, used when {@link WireFormat#BINARY} is negotiated at login.
+ *
+ * Each message is sent as a frame:
+ * <pre>
+ *   varint   length of the rest of the frame
+ *   byte     tag ({@link MessageType} ordinal)
+ *   varint   username id
+ *   [string] username, only the first time an id is used
+ *   ...      fields of the concrete message
+ * </pre>
+ *
+ * Usernames are interned per connection and direction: the first message from a user assigns it the next id and carries
+ * the name, later messages only carry the id. Id {@code 0} means no username. Enums are one byte (ordinal + 1, with
+ * {@code 0} meaning null), coordinates are a presence byte followed by zig-zag varints, longs are zig-zag varints and
+ * strings are a varint (length + 1, with {@code 0} meaning null) followed by UTF-8 bytes. The module is always
+ * "BtlShyp" and isn't sent.
+ *
+ * The turn tracing fields of attack attempts and responses follow a single flag byte, and are only sent when it is
+ * {@code 1}, so an untraced attack costs one byte for them.
+ *
+ * One codec must be used for each connection since it holds that connection's username tables. Writes are
+ * synchronized so the tables stay in the same order as the frames on the wire.
+ */
+public class BinaryMessageCodec {
+
+  /**
+   * Upper bound on a single frame, so a corrupt length can't make us allocate an enormous buffer
+   */
+  public static final int MAX_FRAME_LENGTH = 64 * 1024;
+
+  private static final String BTLSHYP_MODULE = MessageTypeAdapter.BTLSHYP_MODULE;
+  private static final MessageType[] MESSAGE_TYPES = MessageType.values();
+
+  // Outbound state
+  private final Map<String, Integer> sentUsernameIds = new HashMap<>();
+  private final ByteArrayOutputStream frameBuffer = new ByteArrayOutputStream(64);
+
+  // Inbound state. Index 0 is the "no username" id.
+  private final List<String> receivedUsernames = new ArrayList<>();
+
+  public BinaryMessageCodec() {
+    receivedUsernames.add(null);
+  }
+
+  /**
+   * Encodes the message and writes it to the output as a single length prefixed frame. Does not flush.
+   */
+  public synchronized void write(OutputStream out, Message message) throws IOException {
+    frameBuffer.reset();
+    encode(frameBuffer, message);
+
+    writeVarint(out, frameBuffer.size());
+    frameBuffer.writeTo(out);
+  }
+
+  /**
+   * Reads a single frame from the input. Blocks until the whole frame is available.
+   *
+   * @return The decoded message, or {@code null} if the frame is of a type this client doesn't know
+   *
+   * @throws EOFException if the input ends
+   * @throws IOException if the frame is malformed or can't be read
+   */
+  public Message read(DataInputStream in) throws IOException {
+    int length = readVarint(in);
+    if (length <= 0 || length > MAX_FRAME_LENGTH) {
+      throw new IOException("Invalid frame length " + length);
+    }
+
+    byte[] frame = new byte[length];
+    in.readFully(frame);
+    return decode(new FrameReader(frame));
+  }
+
+  private void encode(ByteArrayOutputStream out, Message message) throws IOException {
+    out.write(message.getType().ordinal());
+    writeUsername(out, message.getUsername());
+
+    switch (message.getType()) {
+      case CHAT:
+        writeString(out, ((ChatMessage) message).getText());
+        break;
+      case JOIN_RESPONSE:
+        writeEnum(out, ((JoinResponseMessage) message).getConfirmJoin());
+        break;
+      case GAME_START:
+        writeUsername(out, ((GameStartMessage) message).getOpponentUsername());
+        break;
+      case ATTACK_ATTEMPT:
+        AttackAttemptMessage attackAttempt = (AttackAttemptMessage) message;
+        writeCoordinate(out, attackAttempt.getCoordinate());
+        if (attackAttempt.getTraceId() == 0) {
+          out.write(0);
+        } else {
+          out.write(1);
+          writeVarlong(out, zigZag(attackAttempt.getTraceId()));
+        }
+        break;
+      case ATTACK_RESPONSE:
+        AttackResponseMessage attackResponse = (AttackResponseMessage) message;
+        writeEnum(out, attackResponse.getHitOrMiss());
+        writeEnum(out, attackResponse.getShipSunk());
+        writeCoordinate(out, attackResponse.getCoordinate());
+        if (attackResponse.getTraceId() == 0) {
+          out.write(0);
+        } else {
+          out.write(1);
+          writeVarlong(out, zigZag(attackResponse.getTraceId()));
+          writeVarlong(out, zigZag(attackResponse.getAttemptReceivedNanos()));
+          writeVarlong(out, zigZag(attackResponse.getAttackResultsNanos()));
+          writeVarlong(out, zigZag(attackResponse.getResponseSentNanos()));
+        }
+        break;
+      case TURN:
+        writeEnum(out, ((TurnStartMessage) message).getTurn());
+        break;
+      case GAME_WON_RESPONSE:
+        writeEnum(out, ((GameWonResponseMessage) message).getGameResult());
+        break;
+      case PING:
+        PingMessage ping = (PingMessage) message;
+        writeVarlong(out, zigZag(ping.getSequence()));
+        writeVarlong(out, zigZag(ping.getSentNanos()));
+        break;
+      case PONG:
+        PongMessage pong = (PongMessage) message;
+        writeVarlong(out, zigZag(pong.getSequence()));
+        writeVarlong(out, zigZag(pong.getSentNanos()));
+        break;
+      default:
+        // The remaining message types have no fields beyond those of Message
+        break;
+    }
+  }
+
+  private Message decode(FrameReader in) throws IOException {
+    int tag = in.readByte();
+    if (tag >= MESSAGE_TYPES.length) {
+      return null;
+    }
+    String username = readUsername(in);
+
+    Message message;
+    switch (MESSAGE_TYPES[tag]) {
+      case CHAT:
+        String text = in.readString();
+        if (text == null) {
+          throw new IOException("ChatMessage has no text");
+        }
+        message = new ChatMessage(text, username);
+        break;
+      case JOIN_ATTEMPT:
+        message = new JoinAttemptMessage(username);
+        break;
+      case JOIN_RESPONSE:
+        message = new JoinResponseMessage(in.readEnum(ConfirmJoin.values()));
+        break;
+      case GAME_START:
+        message = new GameStartMessage(readUsername(in));
+        break;
+      case SHIPS_PLACED:
+        message = new ShipsPlacedMessage(username);
+        break;
+      case ATTACK_ATTEMPT:
+        AttackAttemptMessage attackAttempt = new AttackAttemptMessage(username, in.readCoordinate());
+        if (in.readByte() != 0) {
+          attackAttempt.setTraceId(unZigZag(in.readVarlong()));
+        }
+        message = attackAttempt;
+        break;
+      case ATTACK_RESPONSE:
+        AttackResponseMessage attackResponse = new AttackResponseMessage(username, in.readEnum(HitOrMiss.values()),
+            in.readEnum(ShipSunk.values()), in.readCoordinate());
+        if (in.readByte() != 0) {
+          attackResponse.setTraceId(unZigZag(in.readVarlong()));
+          attackResponse.setAttemptReceivedNanos(unZigZag(in.readVarlong()));
+          attackResponse.setAttackResultsNanos(unZigZag(in.readVarlong()));
+          attackResponse.setResponseSentNanos(unZigZag(in.readVarlong()));
+        }
+        message = attackResponse;
+        break;
+      case TURN:
+        message = new TurnStartMessage(username, in.readEnum(Turn.values()));
+        break;
+      case GAME_WON_ATTEMPT:
+        message = new GameWonAttemptMessage(username);
+        break;
+      case GAME_WON_RESPONSE:
+        message = new GameWonResponseMessage(username, in.readEnum(GameResult.values()));
+        break;
+      case LOGIN:
+        message = new LoginMessage(username);
+        break;
+      case PING:
+        message = new PingMessage(username, unZigZag(in.readVarlong()), unZigZag(in.readVarlong()));
+        break;
+      case PONG:
+        message = new PongMessage(username, unZigZag(in.readVarlong()), unZigZag(in.readVarlong()));
+        break;
+      default:
+        return null;
+    }
+
+    message.setUsername(username);
+    message.setModule(BTLSHYP_MODULE);
+    return message;
+  }
+
+  private void writeUsername(ByteArrayOutputStream out, String username) throws IOException {
+    if (username == null) {
+      writeVarint(out, 0);
+      return;
+    }
+
+    Integer id = sentUsernameIds.get(username);
+    if (id != null) {
+      writeVarint(out, id);
+    } else {
+      id = sentUsernameIds.size() + 1;
+      sentUsernameIds.put(username, id);
+      writeVarint(out, id);
+      writeString(out, username);
+    }
+  }
+
+  private String readUsername(FrameReader in) throws IOException {
+    int id = in.readVarint();
+    if (id < receivedUsernames.size()) {
+      return receivedUsernames.get(id);
+    }
+    if (id != receivedUsernames.size()) {
+      throw new IOException("Unknown username id " + id);
+    }
+
+    String username = in.readString();
+    receivedUsernames.add(username);
+    return username;
+  }
+
+  private static void writeString(ByteArrayOutputStream out, String value) throws IOException {
+    if (value == null) {
+      writeVarint(out, 0);
+      return;
+    }
+
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarint(out, bytes.length + 1);
+    out.write(bytes);
+  }
+
+  private static void writeEnum(ByteArrayOutputStream out, Enum<?> value) {
+    out.write(value == null ? 0 : value.ordinal() + 1);
+  }
+
+  private static void writeCoordinate(ByteArrayOutputStream out, Coordinate coordinate) throws IOException {
+    if (coordinate == null) {
+      out.write(0);
+      return;
+    }
+
+    out.write(1);
+    writeVarint(out, zigZag(coordinate.x));
+    writeVarint(out, zigZag(coordinate.y));
+  }
+
+  private static int zigZag(int value) {
+    return (value << 1) ^ (value >> 31);
+  }
+
+  private static int unZigZag(int value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static void writeVarlong(OutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  static void writeVarint(OutputStream out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  static int readVarint(DataInputStream in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+
+  /**
+   * Reads the fields of a single, already fully read, frame
+   */
+  private static class FrameReader {
+
+    private final byte[] frame;
+    private int position;
+
+    FrameReader(byte[] frame) {
+      this.frame = frame;
+    }
+
+    int readByte() throws IOException {
+      if (position >= frame.length) {
+        throw new EOFException("Frame ended unexpectedly");
+      }
+      return frame[position++] & 0xFF;
+    }
+
+    int readVarint() throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        int b = readByte();
+        value |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IOException("Malformed varint");
+    }
+
+    long readVarlong() throws IOException {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b = readByte();
+        value |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IOException("Malformed varint");
+    }
+
+    String readString() throws IOException {
+      int length = readVarint() - 1;
+      if (length < 0) {
+        return null;
+      }
+      if (length > frame.length - position) {
+        throw new EOFException("Frame ended unexpectedly");
+      }
+
+      String value = new String(frame, position, length, StandardCharsets.UTF_8);
+      position += length;
+      return value;
+    }
+
+    <E extends Enum<E>> E readEnum(E[] values) throws IOException {
+      int value = readByte();
+      return value == 0 || value > values.length ? null : values[value - 1];
+    }
+
+    Coordinate readCoordinate() throws IOException {
+      if (readByte() == 0) {
+        return null;
+      }
+      int x = unZigZag(readVarint());
+      int y = unZigZag(readVarint());
+      return new Coordinate(x, y);
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package main.btlshyp.network.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import main.btlshyp.message.ApplicationMessage;
+import main.btlshyp.message.Message;
+
+/**
+ * Creates {@link Gson} instances which encode and decode the {@link Message} hierarchy and {@link ApplicationMessage}
+ * with the hand written streaming adapters in this package instead of Gson's reflection.
+ */
+public final class MessageCodec {
+
+  private MessageCodec() {
+  }
+
+  /**
+   * @return A new Gson with the streaming message adapters registered. Gson instances are thread-safe.
+   */
+  public static Gson newGson() {
+    MessageTypeAdapter messageTypeAdapter = new MessageTypeAdapter();
+    return new GsonBuilder()
+        .registerTypeHierarchyAdapter(Message.class, messageTypeAdapter)
+        .registerTypeAdapter(ApplicationMessage.class, new ApplicationMessageTypeAdapter(messageTypeAdapter))
+        .create();
+  }
+}
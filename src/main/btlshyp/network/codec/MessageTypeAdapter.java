@@ -0,0 +1,367 @@
+package main.btlshyp.network.codec;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import main.btlshyp.message.*;
+import main.btlshyp.message.AttackResponseMessage.HitOrMiss;
+import main.btlshyp.message.AttackResponseMessage.ShipSunk;
+import main.btlshyp.message.GameWonResponseMessage.GameResult;
+import main.btlshyp.message.JoinResponseMessage.ConfirmJoin;
+import main.btlshyp.message.TurnStartMessage.Turn;
+import main.btlshyp.model.Coordinate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming JSON codec for every concrete {@link Message}. Reads straight from a {@link JsonReader} into the concrete
+ * message without building an intermediate {@code JsonObject} tree or going through Gson's reflection.
+ *
+ * The JSON produced and accepted matches what Gson's default reflective serialization of the Message classes produces,
+ * so either side of a connection can use it.
+ */
+public class MessageTypeAdapter extends TypeAdapter<Message> {
+
+  static final String BTLSHYP_MODULE = "BtlShyp";
+
+  @Override
+  public void write(JsonWriter out, Message message) throws IOException {
+    if (message == null) {
+      out.nullValue();
+      return;
+    }
+
+    out.beginObject();
+    writeString(out, "module", message.getModule());
+    writeString(out, "type", message.getType().name());
+    writeString(out, "username", message.getUsername());
+
+    switch (message.getType()) {
+      case CHAT:
+        writeString(out, "text", ((ChatMessage) message).getText());
+        break;
+      case JOIN_RESPONSE:
+        writeEnum(out, "confirmJoin", ((JoinResponseMessage) message).getConfirmJoin());
+        break;
+      case GAME_START:
+        writeString(out, "opponentUsername", ((GameStartMessage) message).getOpponentUsername());
+        break;
+      case ATTACK_ATTEMPT:
+        AttackAttemptMessage attackAttempt = (AttackAttemptMessage) message;
+        writeCoordinate(out, attackAttempt.getCoordinate());
+        writeNonZero(out, "traceId", attackAttempt.getTraceId());
+        break;
+      case ATTACK_RESPONSE:
+        AttackResponseMessage attackResponse = (AttackResponseMessage) message;
+        writeEnum(out, "hitOrMiss", attackResponse.getHitOrMiss());
+        writeEnum(out, "shipSunk", attackResponse.getShipSunk());
+        writeCoordinate(out, attackResponse.getCoordinate());
+        writeNonZero(out, "traceId", attackResponse.getTraceId());
+        writeNonZero(out, "attemptReceivedNanos", attackResponse.getAttemptReceivedNanos());
+        writeNonZero(out, "attackResultsNanos", attackResponse.getAttackResultsNanos());
+        writeNonZero(out, "responseSentNanos", attackResponse.getResponseSentNanos());
+        break;
+      case TURN:
+        writeEnum(out, "turn", ((TurnStartMessage) message).getTurn());
+        break;
+      case GAME_WON_RESPONSE:
+        writeEnum(out, "gameResult", ((GameWonResponseMessage) message).getGameResult());
+        break;
+      case LOGIN:
+        writeStrings(out, "wireFormats", ((LoginMessage) message).getWireFormats());
+        break;
+      case PING:
+        PingMessage ping = (PingMessage) message;
+        out.name("sequence").value(ping.getSequence());
+        out.name("sentNanos").value(ping.getSentNanos());
+        break;
+      case PONG:
+        PongMessage pong = (PongMessage) message;
+        out.name("sequence").value(pong.getSequence());
+        out.name("sentNanos").value(pong.getSentNanos());
+        break;
+      default:
+        // The remaining message types have no fields beyond those of Message
+        break;
+    }
+    out.endObject();
+  }
+
+  /**
+   * Reads a single message object. The fields may appear in any order, so they are collected as they are read and the
+   * concrete message is created once the object is finished.
+   *
+   * @return The concrete message, or {@code null} if the message does not belong to the BtlShyp module or is of an
+   * unknown type
+   */
+  @Override
+  public Message read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+
+    String module = null;
+    String type = null;
+    String username = null;
+    String text = null;
+    String opponentUsername = null;
+    String confirmJoin = null;
+    String hitOrMiss = null;
+    String shipSunk = null;
+    String turn = null;
+    String gameResult = null;
+    Coordinate coordinate = null;
+    List<String> wireFormats = null;
+    long sequence = 0;
+    long sentNanos = 0;
+    long traceId = 0;
+    long attemptReceivedNanos = 0;
+    long attackResultsNanos = 0;
+    long responseSentNanos = 0;
+
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "module":
+          module = nextStringOrNull(in);
+          break;
+        case "type":
+          type = nextStringOrNull(in);
+          break;
+        case "username":
+          username = nextStringOrNull(in);
+          break;
+        case "text":
+          text = nextStringOrNull(in);
+          break;
+        case "opponentUsername":
+          opponentUsername = nextStringOrNull(in);
+          break;
+        case "confirmJoin":
+          confirmJoin = nextStringOrNull(in);
+          break;
+        case "hitOrMiss":
+          hitOrMiss = nextStringOrNull(in);
+          break;
+        case "shipSunk":
+          shipSunk = nextStringOrNull(in);
+          break;
+        case "turn":
+          turn = nextStringOrNull(in);
+          break;
+        case "gameResult":
+          gameResult = nextStringOrNull(in);
+          break;
+        case "coordinate":
+          coordinate = readCoordinate(in);
+          break;
+        case "wireFormats":
+          wireFormats = readStrings(in);
+          break;
+        case "sequence":
+          sequence = in.nextLong();
+          break;
+        case "sentNanos":
+          sentNanos = in.nextLong();
+          break;
+        case "traceId":
+          traceId = in.nextLong();
+          break;
+        case "attemptReceivedNanos":
+          attemptReceivedNanos = in.nextLong();
+          break;
+        case "attackResultsNanos":
+          attackResultsNanos = in.nextLong();
+          break;
+        case "responseSentNanos":
+          responseSentNanos = in.nextLong();
+          break;
+        default:
+          in.skipValue();
+          break;
+      }
+    }
+    in.endObject();
+
+    if (!BTLSHYP_MODULE.equals(module)) {
+      return null;
+    }
+    MessageType messageType = toEnum(MessageType.class, type);
+    if (messageType == null) {
+      return null;
+    }
+
+    Message message;
+    switch (messageType) {
+      case CHAT:
+        if (text == null) {
+          throw new JsonParseException("ChatMessage has no text");
+        }
+        message = new ChatMessage(text, username);
+        break;
+      case JOIN_ATTEMPT:
+        message = new JoinAttemptMessage(username);
+        break;
+      case JOIN_RESPONSE:
+        message = new JoinResponseMessage(toEnum(ConfirmJoin.class, confirmJoin));
+        break;
+      case GAME_START:
+        message = new GameStartMessage(opponentUsername);
+        break;
+      case SHIPS_PLACED:
+        message = new ShipsPlacedMessage(username);
+        break;
+      case ATTACK_ATTEMPT:
+        AttackAttemptMessage attackAttempt = new AttackAttemptMessage(username, coordinate);
+        attackAttempt.setTraceId(traceId);
+        message = attackAttempt;
+        break;
+      case ATTACK_RESPONSE:
+        AttackResponseMessage attackResponse = new AttackResponseMessage(username, toEnum(HitOrMiss.class, hitOrMiss),
+            toEnum(ShipSunk.class, shipSunk), coordinate);
+        attackResponse.setTraceId(traceId);
+        attackResponse.setAttemptReceivedNanos(attemptReceivedNanos);
+        attackResponse.setAttackResultsNanos(attackResultsNanos);
+        attackResponse.setResponseSentNanos(responseSentNanos);
+        message = attackResponse;
+        break;
+      case TURN:
+        message = new TurnStartMessage(username, toEnum(Turn.class, turn));
+        break;
+      case GAME_WON_ATTEMPT:
+        message = new GameWonAttemptMessage(username);
+        break;
+      case GAME_WON_RESPONSE:
+        message = new GameWonResponseMessage(username, toEnum(GameResult.class, gameResult));
+        break;
+      case LOGIN:
+        LoginMessage loginMessage = new LoginMessage(username);
+        loginMessage.setWireFormats(wireFormats);
+        message = loginMessage;
+        break;
+      case PING:
+        message = new PingMessage(username, sequence, sentNanos);
+        break;
+      case PONG:
+        message = new PongMessage(username, sequence, sentNanos);
+        break;
+      default:
+        return null;
+    }
+
+    // Some constructors fill in their own username (e.g. "Server"), so always restore what was actually sent
+    message.setUsername(username);
+    message.setModule(module);
+    return message;
+  }
+
+  private static void writeString(JsonWriter out, String name, String value) throws IOException {
+    if (value != null) {
+      out.name(name).value(value);
+    }
+  }
+
+  /**
+   * Writes an optional number, such as the turn tracing fields, leaving it out when it is zero. Missing numbers are read
+   * back as zero.
+   */
+  private static void writeNonZero(JsonWriter out, String name, long value) throws IOException {
+    if (value != 0) {
+      out.name(name).value(value);
+    }
+  }
+
+  private static void writeEnum(JsonWriter out, String name, Enum<?> value) throws IOException {
+    if (value != null) {
+      out.name(name).value(value.name());
+    }
+  }
+
+  private static void writeStrings(JsonWriter out, String name, List<String> values) throws IOException {
+    if (values != null) {
+      out.name(name).beginArray();
+      for (String value : values) {
+        out.value(value);
+      }
+      out.endArray();
+    }
+  }
+
+  private static List<String> readStrings(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+
+    List<String> values = new ArrayList<>();
+    in.beginArray();
+    while (in.hasNext()) {
+      values.add(nextStringOrNull(in));
+    }
+    in.endArray();
+    return values;
+  }
+
+  private static void writeCoordinate(JsonWriter out, Coordinate coordinate) throws IOException {
+    if (coordinate != null) {
+      out.name("coordinate").beginObject()
+          .name("x").value(coordinate.x)
+          .name("y").value(coordinate.y)
+          .endObject();
+    }
+  }
+
+  private static Coordinate readCoordinate(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+
+    int x = 0;
+    int y = 0;
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "x":
+          x = in.nextInt();
+          break;
+        case "y":
+          y = in.nextInt();
+          break;
+        default:
+          in.skipValue();
+          break;
+      }
+    }
+    in.endObject();
+    return new Coordinate(x, y);
+  }
+
+  static String nextStringOrNull(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    return in.nextString();
+  }
+
+  /**
+   * Converts the name of an enum constant back into the constant. Unknown names become {@code null}, the same as
+   * Gson's default enum handling.
+   */
+  private static <E extends Enum<E>> E toEnum(Class<E> enumClass, String name) {
+    if (name == null) {
+      return null;
+    }
+    try {
+      return Enum.valueOf(enumClass, name);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package main.btlshyp.network.codec;
+
+/**
+ * The encodings which can be used for messages sent over the socket once logged in. The client advertises the formats
+ * it supports in its {@link main.btlshyp.message.LoginMessage} and the server picks one in its acknowledgement. If the
+ * server doesn't pick one, {@link #JSON} is used.
+ */
+public enum WireFormat {
+
+  /**
+   * Newline delimited JSON {@link main.btlshyp.message.ApplicationMessage}s. Always supported.
+   */
+  JSON,
+
+  /**
+   * Length prefixed frames encoded by {@link BinaryMessageCodec}
+   */
+  BINARY
+
+}
@@ -0,0 +1,99 @@
+package main.btlshyp.network.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Splits bytes read from a non-blocking channel into newline terminated lines, carrying any incomplete line over to the
+ * next read. A trailing carriage return is dropped from each line. Not thread-safe; use one per channel.
+ *
+ * <p>Lines are limited to a maximum length, so a peer which never sends a newline can't make the incomplete line grow
+ * until the heap runs out.
+ */
+public class LineFramer {
+
+  /**
+   * The default limit on a line, line ending included. Far longer than any message the game sends.
+   */
+  public static final int MAX_LINE_LENGTH = 64 * 1024;
+
+  private final Consumer<String> lineHandler;
+  private final int maxLineLength;
+  private byte[] partialLine = new byte[256];
+  private int partialLineLength;
+
+  /**
+   * @param lineHandler Given each complete line, without its line ending
+   */
+  public LineFramer(Consumer<String> lineHandler) {
+    this(lineHandler, MAX_LINE_LENGTH);
+  }
+
+  /**
+   * @param lineHandler Given each complete line, without its line ending
+   * @param maxLineLength The longest line accepted, in bytes, line ending included
+   */
+  public LineFramer(Consumer<String> lineHandler, int maxLineLength) {
+    this.lineHandler = lineHandler;
+    this.maxLineLength = maxLineLength;
+  }
+
+  /**
+   * Hands every complete line between the buffer's position and limit to the line handler. The buffer must be backed by
+   * an array. Its position is left unchanged.
+   *
+   * @throws IOException if a line is longer than the limit. Lines before it have already been handled, and the framer
+   * shouldn't be used again.
+   */
+  public void frame(ByteBuffer buffer) throws IOException {
+    byte[] bytes = buffer.array();
+    int offset = buffer.arrayOffset();
+    int lineStart = offset + buffer.position();
+    int end = offset + buffer.limit();
+
+    for (int i = lineStart; i < end; i++) {
+      if (bytes[i] == '\n') {
+        checkLength(i + 1 - lineStart);
+        String line;
+        if (partialLineLength == 0) {
+          line = decodeLine(bytes, lineStart, i - lineStart);
+        } else {
+          appendPartialLine(bytes, lineStart, i - lineStart);
+          line = decodeLine(partialLine, 0, partialLineLength);
+          partialLineLength = 0;
+        }
+        lineHandler.accept(line);
+        lineStart = i + 1;
+      }
+    }
+    checkLength(end - lineStart);
+    appendPartialLine(bytes, lineStart, end - lineStart);
+  }
+
+  /**
+   * Checks the line so far, made up of any incomplete line carried over and the given number of new bytes
+   */
+  private void checkLength(int length) throws IOException {
+    if (partialLineLength + length > maxLineLength) {
+      throw new IOException("Line longer than " + maxLineLength + " bytes");
+    }
+  }
+
+  private void appendPartialLine(byte[] bytes, int offset, int length) {
+    if (partialLineLength + length > partialLine.length) {
+      partialLine = Arrays.copyOf(partialLine, Math.max(partialLine.length * 2, partialLineLength + length));
+    }
+    System.arraycopy(bytes, offset, partialLine, partialLineLength, length);
+    partialLineLength += length;
+  }
+
+  private static String decodeLine(byte[] bytes, int offset, int length) {
+    if (length > 0 && bytes[offset + length - 1] == '\r') {
+      length--;
+    }
+    return new String(bytes, offset, length, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,287 @@
+package main.btlshyp.network.nio;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import lombok.extern.slf4j.Slf4j;
+import main.btlshyp.message.ApplicationMessage;
+import main.btlshyp.message.LoginMessage;
+import main.btlshyp.message.Message;
+import main.btlshyp.network.MessageReceiver;
+import main.btlshyp.network.NetworkClient;
+import main.btlshyp.network.codec.MessageCodec;
+import main.btlshyp.network.exception.ClientServerConnectionException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static main.btlshyp.message.ApplicationMessage.ApplicationMessageType.ACKNOWLEDGE;
+import static main.btlshyp.message.ApplicationMessage.ApplicationMessageType.LOGIN;
+
+/**
+ * A single client session run by a {@link NioSessionEngine}. It is a drop-in {@link NetworkClient} for a
+ * {@link main.btlshyp.controller.Controller}, but instead of owning a socket and a receiver thread it does all of its
+ * I/O on the engine's shared I/O threads.
+ *
+ * <p>The calls the Controller makes ({@link #connectToServer()} and {@link #loginToServer(String)}) still block the
+ * calling thread until the server responds, but no thread is held while the session waits for game messages.
+ * Sessions only speak the JSON wire format.
+ */
+@Slf4j
+public class NioSession extends NetworkClient {
+
+  private static final int SERVER_CONNECT_TIMEOUT = 2_000;
+  private static final int LOGIN_RESPONSE_TIMEOUT = 10_000;
+  private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+  private final InetSocketAddress serverAddress;
+  private final NioSessionEngine.IoLoop ioLoop;
+  private final Gson gson = MessageCodec.newGson();
+
+  private SocketChannel channel;
+  private SelectionKey key;
+  private final CompletableFuture<Void> connected = new CompletableFuture<>();
+  private volatile boolean closed;
+
+  // Inbound. Only touched on the I/O thread, apart from setting up the login response.
+  private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+  private final LineFramer lineFramer = new LineFramer(this::onLine);
+  private volatile CompletableFuture<String> loginResponse;
+  private MessageReceiver dispatcher;
+  private final List<String> undispatchedLines = new ArrayList<>();
+
+  // Outbound. Any thread may queue, only the I/O thread writes.
+  private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+  NioSession(InetSocketAddress serverAddress, NioSessionEngine.IoLoop ioLoop) {
+    super(serverAddress.getHostString(), serverAddress.getPort(), null);
+    this.serverAddress = serverAddress;
+    this.ioLoop = ioLoop;
+  }
+
+  /**
+   * Starts a non-blocking connect on the I/O thread and waits for it to complete.
+   *
+   * @throws ClientServerConnectionException if the connection can't be made
+   */
+  @Override
+  public void connectToServer() {
+    ioLoop.execute(this::startConnect);
+
+    try {
+      connected.get(SERVER_CONNECT_TIMEOUT, TimeUnit.MILLISECONDS);
+      log.info("Session connected to server. serverAddress={}", serverAddress);
+    } catch (Exception e) {
+      close();
+      log.error("Unable to connect to configured server. serverAddress={}", serverAddress, e);
+      throw new ClientServerConnectionException("Unable to connect to configured server.", e);
+    }
+  }
+
+  /**
+   * Sends the login message and waits for the server's response, which is the first line the server sends.
+   */
+  @Override
+  public boolean attemptLoginWithServer(LoginMessage loginMessage) {
+    CompletableFuture<String> response = new CompletableFuture<>();
+    loginResponse = response;
+
+    log.info("Sending login message: {}", loginMessage);
+    queueLine(gson.toJson(new ApplicationMessage(LOGIN.toString(), loginMessage)));
+
+    String loginResponseString;
+    try {
+      loginResponseString = response.get(LOGIN_RESPONSE_TIMEOUT, TimeUnit.MILLISECONDS);
+    } catch (Exception e) {
+      log.error("Error sending login message: {} to server", loginMessage, e);
+      throw new ClientServerConnectionException("Unable to send login message to server.", e);
+    }
+
+    JsonObject loginResponseJson = new JsonParser().parse(loginResponseString).getAsJsonObject();
+    if (loginResponseJson.get("type").getAsString().equals(ACKNOWLEDGE.toString())) {
+      log.info("Login Successful. Response: {}", loginResponseJson.get("message"));
+      return true;
+    } else {
+      log.error("Login Failed! Response: {}", loginResponseJson.get("message"));
+      return false;
+    }
+  }
+
+  /**
+   * Starts handing received messages to the Controller, beginning with any which arrived since login.
+   */
+  @Override
+  public void beginListeningForMessages() {
+    ioLoop.execute(() -> {
+      dispatcher = new MessageReceiver(getController());
+      dispatcher.setJournal(getJournal());
+      for (String line : undispatchedLines) {
+        dispatcher.determineTypeThenHandoffToController(line);
+      }
+      undispatchedLines.clear();
+    });
+  }
+
+  /**
+   * Queues the message to be written by the I/O thread. Never blocks.
+   */
+  @Override
+  public void sendMessageToServer(Message messageToSend) {
+    long sendStart = System.nanoTime();
+    log.debug("Sending message: {}", messageToSend);
+    if (getJournal() != null) {
+      getJournal().recordOutbound(messageToSend);
+    }
+    queueLine(gson.toJson(new ApplicationMessage(messageToSend)));
+    recordSent(messageToSend, sendStart);
+  }
+
+  /**
+   * Closes the session's connection. Safe to call from any thread and more than once. A session never starts the
+   * heartbeat, writer or receiver thread that {@link NetworkClient#close()} stops, so closing the client as well only
+   * marks it closed.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    super.close();
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        log.warn("Unable to close session channel.", e);
+      }
+    }
+    CompletableFuture<String> pendingLogin = loginResponse;
+    if (pendingLogin != null) {
+      pendingLogin.completeExceptionally(new IOException("Session closed"));
+    }
+    connected.completeExceptionally(new IOException("Session closed"));
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  private void queueLine(String json) {
+    if (closed) {
+      throw new ClientServerConnectionException("Unable to send message to server. Session is closed.");
+    }
+
+    outbound.add(ByteBuffer.wrap((json + "\n").getBytes(StandardCharsets.UTF_8)));
+    if (flushScheduled.compareAndSet(false, true)) {
+      ioLoop.execute(this::flush);
+    }
+  }
+
+  private void startConnect() {
+    try {
+      channel = SocketChannel.open();
+      channel.configureBlocking(false);
+      channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+      if (channel.connect(serverAddress)) {
+        key = channel.register(ioLoop.selector(), SelectionKey.OP_READ, this);
+        connected.complete(null);
+      } else {
+        key = channel.register(ioLoop.selector(), SelectionKey.OP_CONNECT, this);
+      }
+    } catch (IOException e) {
+      connected.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Called on the I/O thread when the session's channel is ready
+   */
+  void handle(SelectionKey readyKey) {
+    try {
+      if (!readyKey.isValid()) {
+        return;
+      }
+      if (readyKey.isConnectable()) {
+        channel.finishConnect();
+        readyKey.interestOps(SelectionKey.OP_READ);
+        connected.complete(null);
+        flush();
+      }
+      if (readyKey.isValid() && readyKey.isReadable()) {
+        read();
+      }
+      if (readyKey.isValid() && readyKey.isWritable()) {
+        flush();
+      }
+    } catch (IOException e) {
+      log.error("Session I/O failed. Closing session.", e);
+      connected.completeExceptionally(e);
+      close();
+    }
+  }
+
+  private void read() throws IOException {
+    int bytesRead;
+    while ((bytesRead = channel.read(readBuffer)) > 0) {
+      readBuffer.flip();
+      lineFramer.frame(readBuffer);
+      readBuffer.clear();
+    }
+
+    if (bytesRead == -1) {
+      log.warn("Server closed the session's connection.");
+      close();
+    }
+  }
+
+  private void onLine(String line) {
+    log.trace("Read from input: {}", line);
+
+    CompletableFuture<String> pendingLogin = loginResponse;
+    if (pendingLogin != null) {
+      loginResponse = null;
+      pendingLogin.complete(line);
+    } else if (dispatcher == null) {
+      undispatchedLines.add(line);
+    } else {
+      dispatcher.determineTypeThenHandoffToController(line);
+    }
+  }
+
+  /**
+   * Writes as much queued output as the socket will take, waiting for OP_WRITE if it fills up
+   */
+  private void flush() {
+    flushScheduled.set(false);
+    if (key == null || !key.isValid()) {
+      return;
+    }
+
+    try {
+      ByteBuffer buffer;
+      while ((buffer = outbound.peek()) != null) {
+        channel.write(buffer);
+        if (buffer.hasRemaining()) {
+          key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+          return;
+        }
+        outbound.poll();
+      }
+      key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    } catch (IOException e) {
+      log.error("Unable to write to session. Closing session.", e);
+      close();
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package main.btlshyp.network.nio;
+
+import lombok.extern.slf4j.Slf4j;
+import main.btlshyp.network.exception.ClientServerConnectionException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many client sessions against one server on a small, fixed number of I/O threads. Each I/O thread owns a
+ * {@link Selector} and does non-blocking connects, reads and writes for the sessions assigned to it.
+ *
+ * Sessions are created with {@link #newSession()} and handed to their own {@link main.btlshyp.controller.Controller}:
+ * <pre>
+ *   NioSession session = engine.newSession();
+ *   Controller controller = new Controller(view, session);
+ * </pre>
+ * Messages for a session are dispatched to its Controller on the session's I/O thread, in the order they were
+ * received, so Controller callbacks must not block.
+ */
+@Slf4j
+public class NioSessionEngine implements Closeable {
+
+  private final InetSocketAddress serverAddress;
+  private final IoLoop[] ioLoops;
+  private final AtomicInteger nextIoLoop = new AtomicInteger();
+
+  /**
+   * Creates the engine and starts its I/O threads.
+   *
+   * @param serverIPAddress The IP Address used to connect to the server
+   * @param serverPort The port the server is running on
+   * @param ioThreads The number of I/O threads to spread sessions across
+   */
+  public NioSessionEngine(String serverIPAddress, int serverPort, int ioThreads) {
+    this.serverAddress = new InetSocketAddress(serverIPAddress, serverPort);
+    this.ioLoops = new IoLoop[ioThreads];
+
+    for (int i = 0; i < ioThreads; i++) {
+      ioLoops[i] = new IoLoop("NioSessionEngine-io-" + i);
+      ioLoops[i].start();
+    }
+    log.info("Started NioSessionEngine. serverAddress={} ioThreads={}", serverAddress, ioThreads);
+  }
+
+  /**
+   * Creates a new, unconnected, session. Sessions are spread across the I/O threads round-robin.
+   */
+  public NioSession newSession() {
+    IoLoop ioLoop = ioLoops[Math.floorMod(nextIoLoop.getAndIncrement(), ioLoops.length)];
+    return new NioSession(serverAddress, ioLoop);
+  }
+
+  /**
+   * Stops the I/O threads and closes every session
+   */
+  @Override
+  public void close() {
+    for (IoLoop ioLoop : ioLoops) {
+      ioLoop.shutdown();
+    }
+  }
+
+  /**
+   * A single I/O thread and its Selector. Work for the thread from other threads is queued with
+   * {@link #execute(Runnable)}.
+   */
+  static class IoLoop implements Runnable {
+
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    IoLoop(String name) {
+      try {
+        selector = Selector.open();
+      } catch (IOException e) {
+        throw new ClientServerConnectionException("Unable to open selector.", e);
+      }
+      thread = new Thread(this, name);
+      thread.setDaemon(true);
+    }
+
+    void start() {
+      thread.start();
+    }
+
+    Selector selector() {
+      return selector;
+    }
+
+    /**
+     * Runs the task on this loop's I/O thread
+     */
+    void execute(Runnable task) {
+      tasks.add(task);
+      selector.wakeup();
+    }
+
+    void shutdown() {
+      running = false;
+      selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+      while (running) {
+        try {
+          selector.select();
+        } catch (IOException e) {
+          log.error("Selector failed. Stopping I/O thread.", e);
+          break;
+        }
+
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+          runSafely(task);
+        }
+
+        Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+        while (selectedKeys.hasNext()) {
+          SelectionKey key = selectedKeys.next();
+          selectedKeys.remove();
+          NioSession session = (NioSession) key.attachment();
+          runSafely(() -> session.handle(key));
+        }
+      }
+
+      for (SelectionKey key : selector.keys()) {
+        ((NioSession) key.attachment()).close();
+      }
+      try {
+        selector.close();
+      } catch (IOException e) {
+        log.warn("Unable to close selector.", e);
+      }
+    }
+
+    /**
+     * Runs I/O thread work, making sure a failure in one session can't stop the thread for all the others
+     */
+    private void runSafely(Runnable work) {
+      try {
+        work.run();
+      } catch (RuntimeException e) {
+        log.error("Error on I/O thread.", e);
+      }
+    }
+  }
+}
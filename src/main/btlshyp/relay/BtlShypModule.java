@@ -0,0 +1,212 @@
+package main.btlshyp.relay;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import lombok.extern.slf4j.Slf4j;
+import main.btlshyp.message.ApplicationMessage;
+import main.btlshyp.message.GameStartMessage;
+import main.btlshyp.message.JoinResponseMessage;
+import main.btlshyp.message.Message;
+import main.btlshyp.message.MessageType;
+import main.btlshyp.message.PingMessage;
+import main.btlshyp.message.PongMessage;
+import main.btlshyp.message.TurnStartMessage;
+import main.btlshyp.network.codec.MessageCodec;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static main.btlshyp.message.JoinResponseMessage.ConfirmJoin.ACCEPT;
+import static main.btlshyp.message.TurnStartMessage.Turn.START;
+
+/**
+ * The BtlShyp game module of the {@link LoopbackRelay}: pairs up players who ask to join a game and passes each
+ * player's messages on to their opponent.
+ *
+ * <p>Every {@code JOIN_ATTEMPT} is accepted. The first player to join waits for the next, and both are then sent a
+ * {@code GAME_START} naming the other. Once both have sent {@code SHIPS_PLACED} the player who joined first is sent
+ * the first {@code TURN}. After that the clients take it in turns themselves, and the module only passes attacks,
+ * responses, turns and the end of the game along. The game is over once the loser answers with a
+ * {@code GAME_WON_RESPONSE}.
+ *
+ * <p>Games are kept by username rather than by connection, so a player who reconnects with the same name carries on
+ * the same game. Pings are answered with a pong straight away.
+ */
+@Slf4j
+class BtlShypModule {
+
+  static final String MODULE_NAME = "BtlShyp";
+
+  private static final String SERVER_USERNAME = "Server";
+
+  private final LoopbackRelay relay;
+  private final Gson gson = MessageCodec.newGson();
+  private final Map<String, Game> games = new ConcurrentHashMap<>();
+
+  // Guards waiting. The player waiting for an opponent, if any.
+  private final Object matchmakingLock = new Object();
+  private String waiting;
+
+  BtlShypModule(LoopbackRelay relay) {
+    this.relay = relay;
+  }
+
+  /**
+   * Handles a BtlShyp message from a logged in player. Called on the player's reader thread.
+   *
+   * @param username The player who sent the message
+   * @param message The message object from the application envelope, with its username already set to the sender's
+   */
+  void handle(String username, JsonObject message) {
+    MessageType type = typeOf(message);
+    if (type == null) {
+      log.debug("Ignoring message of unknown type from {}: {}", username, message);
+      return;
+    }
+
+    switch (type) {
+      case JOIN_ATTEMPT:
+        join(username);
+        break;
+      case PING:
+        PingMessage ping = (PingMessage) gson.fromJson(message, Message.class);
+        relay.sendTo(username, encode(PongMessage.answering(ping)));
+        break;
+      case SHIPS_PLACED:
+        shipsPlaced(username);
+        break;
+      case GAME_WON_RESPONSE:
+        forwardToOpponent(username, message);
+        endGame(username);
+        break;
+      case CHAT:
+      case ATTACK_ATTEMPT:
+      case ATTACK_RESPONSE:
+      case TURN:
+      case GAME_WON_ATTEMPT:
+        forwardToOpponent(username, message);
+        break;
+      default:
+        // LOGIN, PONG and the messages only the server sends
+        log.debug("Ignoring {} from {}", type, username);
+        break;
+    }
+  }
+
+  /**
+   * Forgets a player who logged out. A game is only dropped once neither player is connected, so either may still
+   * reconnect and carry on.
+   */
+  void playerLeft(String username) {
+    synchronized (matchmakingLock) {
+      if (username.equals(waiting)) {
+        waiting = null;
+      }
+    }
+
+    Game game = games.get(username);
+    if (game != null && !relay.isLoggedIn(game.opponentOf(username))) {
+      endGame(username);
+    }
+  }
+
+  /**
+   * @return The number of games being played
+   */
+  int getGamesInProgress() {
+    return games.size() / 2;
+  }
+
+  private void join(String username) {
+    // Asking to join again abandons the last game
+    endGame(username);
+    relay.sendTo(username, encode(new JoinResponseMessage(ACCEPT)));
+
+    String opponent;
+    synchronized (matchmakingLock) {
+      if (waiting == null || waiting.equals(username)) {
+        waiting = username;
+        return;
+      }
+      opponent = waiting;
+      waiting = null;
+    }
+
+    Game game = new Game(opponent, username);
+    games.put(opponent, game);
+    games.put(username, game);
+    log.debug("Starting game between {} and {}", opponent, username);
+    relay.sendTo(opponent, encode(new GameStartMessage(username)));
+    relay.sendTo(username, encode(new GameStartMessage(opponent)));
+  }
+
+  private void shipsPlaced(String username) {
+    Game game = games.get(username);
+    if (game != null && game.shipsPlaced(username)) {
+      relay.sendTo(game.firstPlayer, encode(new TurnStartMessage(SERVER_USERNAME, START)));
+    }
+  }
+
+  private void forwardToOpponent(String username, JsonObject message) {
+    Game game = games.get(username);
+    if (game == null) {
+      log.debug("Dropping message from {}, who isn't in a game: {}", username, message);
+      return;
+    }
+    relay.sendTo(game.opponentOf(username), LoopbackRelay.applicationEnvelope(message));
+  }
+
+  private void endGame(String username) {
+    Game game = games.remove(username);
+    if (game != null) {
+      games.remove(game.opponentOf(username), game);
+    }
+  }
+
+  private String encode(Message message) {
+    return gson.toJson(new ApplicationMessage(message));
+  }
+
+  private static MessageType typeOf(JsonObject message) {
+    try {
+      return MessageType.valueOf(message.get("type").getAsString());
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * A game between two players
+   */
+  private static class Game {
+
+    private final String firstPlayer;
+    private final String secondPlayer;
+
+    // Guarded by this
+    private boolean firstPlayerPlaced;
+    private boolean secondPlayerPlaced;
+
+    private Game(String firstPlayer, String secondPlayer) {
+      this.firstPlayer = firstPlayer;
+      this.secondPlayer = secondPlayer;
+    }
+
+    private String opponentOf(String username) {
+      return username.equals(firstPlayer) ? secondPlayer : firstPlayer;
+    }
+
+    /**
+     * @return {@code true} if this was the second player to finish placing their ships
+     */
+    private synchronized boolean shipsPlaced(String username) {
+      boolean bothPlacedBefore = firstPlayerPlaced && secondPlayerPlaced;
+      if (username.equals(firstPlayer)) {
+        firstPlayerPlaced = true;
+      } else {
+        secondPlayerPlaced = true;
+      }
+      return !bothPlacedBefore && firstPlayerPlaced && secondPlayerPlaced;
+    }
+  }
+}
@@ -0,0 +1,302 @@
+package main.btlshyp.relay;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import lombok.extern.slf4j.Slf4j;
+import main.btlshyp.ThreadMode;
+import main.btlshyp.message.ApplicationMessage.ApplicationMessageType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A stand-in for the course's Node.js relay server which runs in the same JVM, so the client can be tested and load
+ * tested without the real server.
+ *
+ * <p>It speaks the same protocol as the relay's message handler: one JSON envelope per line. A {@code login} is
+ * answered with an {@code acknowledge}, or an {@code error} if the username is missing or already logged in. A
+ * {@code chat} is sent to the user it names, or to everyone else if it names no one. Nothing else is accepted before
+ * logging in. An {@code application} message for the BtlShyp module is handed to the {@link BtlShypModule}, which does
+ * what the game module behind the real relay does: pairs players up and passes their messages to their opponent.
+ * Application messages for any other module are dropped.
+ *
+ * <p>Each connection gets a reader and a writer thread of the {@link ThreadMode} set with
+ * {@link #setThreadMode(ThreadMode)}. Virtual threads (on Java 21 or later) make thousands of connections cheap.
+ * <pre>
+ *   try (LoopbackRelay relay = new LoopbackRelay(0).start()) {
+ *     NetworkClient client = new NetworkClient("localhost", relay.getPort(), controller);
+ *     ...
+ *   }
+ * </pre>
+ */
+@Slf4j
+public class LoopbackRelay implements Closeable {
+
+  public static final int DEFAULT_PORT = 8989;
+
+  private static final String APPLICATION = ApplicationMessageType.APPLICATION.toString();
+  private static final String LOGIN = ApplicationMessageType.LOGIN.toString();
+  private static final String ACKNOWLEDGE = ApplicationMessageType.ACKNOWLEDGE.toString();
+  private static final String ERROR = ApplicationMessageType.ERROR.toString();
+  private static final String CHAT = ApplicationMessageType.CHAT.toString();
+
+  private final int requestedPort;
+  private final Map<String, RelayConnection> users = new ConcurrentHashMap<>();
+  private final Set<RelayConnection> connections = ConcurrentHashMap.newKeySet();
+  private final BtlShypModule btlShypModule = new BtlShypModule(this);
+  private final LongAdder messagesReceived = new LongAdder();
+
+  private ThreadMode threadMode = ThreadMode.PLATFORM;
+  private ServerSocket serverSocket;
+  private volatile boolean closed;
+
+  /**
+   * @param port The port to listen on, or 0 for any free port (see {@link #getPort()})
+   */
+  public LoopbackRelay(int port) {
+    this.requestedPort = port;
+  }
+
+  /**
+   * Runs the relay on its own, on the port given as the (optional) first argument, until the process is killed
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+    LoopbackRelay relay = new LoopbackRelay(port);
+    if (args.length > 1) {
+      relay.setThreadMode(ThreadMode.valueOf(args[1].toUpperCase()));
+    }
+    relay.start();
+    Thread.currentThread().join();
+  }
+
+  /**
+   * Sets the kind of thread each connection is read and written on. Must be set before {@link #start()}.
+   */
+  public void setThreadMode(ThreadMode threadMode) {
+    this.threadMode = threadMode;
+  }
+
+  /**
+   * Starts listening and accepting connections on a background thread
+   *
+   * @return This relay
+   */
+  public LoopbackRelay start() throws IOException {
+    serverSocket = new ServerSocket(requestedPort, 1024);
+    ThreadFactory connectionThreads = threadMode.newThreadFactory("RelayConnection");
+    Thread acceptor = new Thread(() -> acceptLoop(connectionThreads), "RelayAcceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    log.info("Loopback relay listening. port={} threadMode={}", getPort(), threadMode);
+    return this;
+  }
+
+  /**
+   * @return The port being listened on
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * @return The number of lines received from clients, logged in or not
+   */
+  public long getMessagesReceived() {
+    return messagesReceived.sum();
+  }
+
+  /**
+   * @return The number of users logged in
+   */
+  public int getUsersLoggedIn() {
+    return users.size();
+  }
+
+  /**
+   * @return The number of BtlShyp games being played
+   */
+  public int getGamesInProgress() {
+    return btlShypModule.getGamesInProgress();
+  }
+
+  /**
+   * Stops accepting connections and closes every connection
+   */
+  @Override
+  public void close() {
+    closed = true;
+    try {
+      if (serverSocket != null) {
+        serverSocket.close();
+      }
+    } catch (IOException e) {
+      log.debug("Error closing server socket", e);
+    }
+    for (RelayConnection connection : connections) {
+      connection.close();
+    }
+  }
+
+  /**
+   * Sends a line to the user logged in with the given name, if there is one
+   */
+  void sendTo(String username, String line) {
+    RelayConnection connection = users.get(username);
+    if (connection != null) {
+      connection.send(line);
+    } else {
+      log.debug("Dropping message for {}, who isn't logged in", username);
+    }
+  }
+
+  boolean isLoggedIn(String username) {
+    return users.containsKey(username);
+  }
+
+  /**
+   * @return The line carrying the message to a client inside an {@code application} envelope
+   */
+  static String applicationEnvelope(JsonElement message) {
+    JsonObject envelope = new JsonObject();
+    envelope.addProperty("type", APPLICATION);
+    envelope.add("message", message);
+    return envelope.toString();
+  }
+
+  private void acceptLoop(ThreadFactory connectionThreads) {
+    while (!closed) {
+      Socket socket;
+      try {
+        socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+      } catch (IOException e) {
+        if (!closed) {
+          log.error("Unable to accept connection", e);
+        }
+        return;
+      }
+
+      RelayConnection connection = new RelayConnection(socket);
+      connections.add(connection);
+      JsonParser parser = new JsonParser();
+      try {
+        connection.start(connectionThreads, line -> handleLine(connection, parser, line),
+            () -> disconnected(connection));
+      } catch (IOException e) {
+        log.warn("Unable to start connection", e);
+        connection.close();
+        connections.remove(connection);
+      }
+    }
+  }
+
+  /**
+   * Handles one line from a client, on its reader thread
+   */
+  private void handleLine(RelayConnection connection, JsonParser parser, String line) {
+    messagesReceived.increment();
+    JsonObject json;
+    try {
+      JsonElement element = parser.parse(line);
+      if (!element.isJsonObject()) {
+        return;
+      }
+      json = element.getAsJsonObject();
+    } catch (JsonParseException e) {
+      log.debug("Invalid JSON from {}", connection);
+      return;
+    }
+
+    String type = stringOrNull(json.get("type"));
+    if (LOGIN.equals(type)) {
+      login(connection, json.get("message"));
+      return;
+    }
+
+    String username = connection.getUsername();
+    if (username == null) {
+      return;
+    }
+    JsonElement message = json.get("message");
+    if (APPLICATION.equals(type) && message != null && message.isJsonObject()) {
+      JsonObject applicationMessage = message.getAsJsonObject();
+      applicationMessage.addProperty("username", username);
+      if (BtlShypModule.MODULE_NAME.equals(stringOrNull(applicationMessage.get("module")))) {
+        btlShypModule.handle(username, applicationMessage);
+      }
+    } else if (CHAT.equals(type)) {
+      chat(connection, json);
+    }
+  }
+
+  private void login(RelayConnection connection, JsonElement message) {
+    String username = message != null && message.isJsonObject()
+        ? stringOrNull(message.getAsJsonObject().get("username"))
+        : null;
+    if (username == null) {
+      connection.send(envelope(ERROR, "Username is required for login messages"));
+      return;
+    }
+    if (connection.getUsername() != null || users.putIfAbsent(username, connection) != null) {
+      connection.send(envelope(ERROR, "Username " + username + " is already logged in"));
+      return;
+    }
+
+    log.debug("Logging in {}", username);
+    connection.setUsername(username);
+    connection.send(envelope(ACKNOWLEDGE, username + " successfully logged in"));
+  }
+
+  private void chat(RelayConnection connection, JsonObject json) {
+    JsonElement text = json.get("message");
+    if (text == null || !text.isJsonPrimitive() || !text.getAsJsonPrimitive().isString()) {
+      connection.send(envelope(ERROR, "Unable to send non-text chat messages, correct your message and send again"));
+      return;
+    }
+
+    String from = connection.getUsername();
+    json.addProperty("fromUser", from);
+    String line = json.toString();
+    String to = stringOrNull(json.get("username"));
+    if (to != null) {
+      sendTo(to, line);
+      return;
+    }
+    for (Map.Entry<String, RelayConnection> user : users.entrySet()) {
+      if (!user.getKey().equals(from)) {
+        user.getValue().send(line);
+      }
+    }
+  }
+
+  private void disconnected(RelayConnection connection) {
+    connections.remove(connection);
+    String username = connection.getUsername();
+    if (username != null && users.remove(username, connection)) {
+      log.debug("{} logged out", username);
+      btlShypModule.playerLeft(username);
+    }
+  }
+
+  private static String envelope(String type, String message) {
+    JsonObject envelope = new JsonObject();
+    envelope.addProperty("type", type);
+    envelope.add("message", new JsonPrimitive(message));
+    return envelope.toString();
+  }
+
+  private static String stringOrNull(JsonElement element) {
+    return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+  }
+}
@@ -0,0 +1,137 @@
+package main.btlshyp.relay;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+
+/**
+ * One client's connection to the {@link LoopbackRelay}. Lines are read on one thread and handed to the relay, and
+ * lines sent to the client are written on another, so a client which is slow to read never holds up the client
+ * sending to it.
+ *
+ * <p>The writer takes every line waiting when it wakes up and flushes once for all of them.
+ */
+@Slf4j
+class RelayConnection implements Closeable {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  // Queued on close to wake the writer. Compared by identity.
+  private static final String CLOSED = new String("closed");
+
+  private final Socket socket;
+  private final BlockingQueue<String> outbox = new LinkedBlockingQueue<>();
+
+  // Set once logged in
+  private volatile String username;
+  private volatile boolean closed;
+
+  RelayConnection(Socket socket) {
+    this.socket = socket;
+  }
+
+  /**
+   * Starts reading and writing. Each line read is handed to the line handler, on the reader thread, and the close
+   * handler is run once the connection closes.
+   */
+  void start(ThreadFactory threadFactory, Consumer<String> lineHandler, Runnable closeHandler) throws IOException {
+    BufferedReader input = new BufferedReader(
+        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), BUFFER_SIZE);
+    Writer output = new BufferedWriter(
+        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), BUFFER_SIZE);
+
+    Thread reader = threadFactory.newThread(() -> {
+      try {
+        String line;
+        while ((line = input.readLine()) != null) {
+          lineHandler.accept(line);
+        }
+      } catch (IOException e) {
+        if (!closed) {
+          log.debug("Error reading from {}", this, e);
+        }
+      } finally {
+        close();
+        closeHandler.run();
+      }
+    });
+    Thread writer = threadFactory.newThread(() -> writeLoop(output));
+    reader.setDaemon(true);
+    writer.setDaemon(true);
+    reader.start();
+    writer.start();
+  }
+
+  /**
+   * Queues a line to be written to the client. The newline is added when writing. Lines sent after closing are
+   * dropped.
+   */
+  void send(String line) {
+    if (!closed) {
+      outbox.offer(line);
+    }
+  }
+
+  String getUsername() {
+    return username;
+  }
+
+  void setUsername(String username) {
+    this.username = username;
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    outbox.offer(CLOSED);
+    try {
+      socket.close();
+    } catch (IOException e) {
+      log.debug("Error closing {}", this, e);
+    }
+  }
+
+  private void writeLoop(Writer output) {
+    try {
+      while (true) {
+        String line = outbox.take();
+        do {
+          if (line == CLOSED) {
+            return;
+          }
+          output.write(line);
+          output.write('\n');
+        } while ((line = outbox.poll()) != null);
+        output.flush();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      if (!closed) {
+        log.debug("Error writing to {}", this, e);
+      }
+    } finally {
+      close();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "RelayConnection(" + (username != null ? username : socket.getRemoteSocketAddress()) + ")";
+  }
+}
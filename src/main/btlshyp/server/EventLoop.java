@@ -0,0 +1,136 @@
+package main.btlshyp.server;
+
+import lombok.extern.slf4j.Slf4j;
+import main.btlshyp.network.MpscQueue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One of the {@link GameServer}'s threads. It owns a {@link Selector} and does all the I/O for the connections
+ * registered with it, and runs the game actors which live on it.
+ *
+ * <p>Work for the loop from other threads is queued with {@link #execute(Runnable)}. The queue is an {@link MpscQueue},
+ * so handing work to a loop never takes a lock, and the selector is only woken once for however many tasks arrive while
+ * the loop is busy.
+ */
+@Slf4j
+class EventLoop implements Runnable {
+
+  /**
+   * Something registered with the loop's selector, as the attachment of its key
+   */
+  interface Handler {
+
+    /**
+     * Called on the loop's thread when the key is ready
+     */
+    void handle(SelectionKey key);
+
+    /**
+     * Called on the loop's thread when the loop shuts down
+     */
+    void close();
+  }
+
+  private final Selector selector;
+  private final Thread thread;
+  private final MpscQueue<Runnable> tasks = new MpscQueue<>();
+  private final AtomicBoolean wakeupPending = new AtomicBoolean();
+  private volatile boolean running = true;
+
+  EventLoop(String name) {
+    try {
+      selector = Selector.open();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to open selector.", e);
+    }
+    thread = new Thread(this, name);
+    thread.setDaemon(true);
+  }
+
+  void start() {
+    thread.start();
+  }
+
+  Selector selector() {
+    return selector;
+  }
+
+  /**
+   * @return {@code true} if called on this loop's thread
+   */
+  boolean inLoop() {
+    return Thread.currentThread() == thread;
+  }
+
+  /**
+   * Runs the task on this loop's thread, after the tasks already queued. Never blocks.
+   */
+  void execute(Runnable task) {
+    tasks.offer(task);
+    if (!inLoop() && wakeupPending.compareAndSet(false, true)) {
+      selector.wakeup();
+    }
+  }
+
+  void shutdown() {
+    running = false;
+    selector.wakeup();
+  }
+
+  @Override
+  public void run() {
+    while (running) {
+      try {
+        // Tasks queued by the loop itself don't wake the selector, so don't wait for I/O while there are some
+        if (tasks.isEmpty()) {
+          selector.select();
+        } else {
+          selector.selectNow();
+        }
+      } catch (IOException e) {
+        log.error("Selector failed. Stopping event loop.", e);
+        break;
+      }
+      wakeupPending.set(false);
+
+      Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+      while (selectedKeys.hasNext()) {
+        SelectionKey key = selectedKeys.next();
+        selectedKeys.remove();
+        Handler handler = (Handler) key.attachment();
+        runSafely(() -> handler.handle(key));
+      }
+
+      Runnable task;
+      while ((task = tasks.poll()) != null) {
+        runSafely(task);
+      }
+    }
+
+    for (SelectionKey key : selector.keys()) {
+      ((Handler) key.attachment()).close();
+    }
+    try {
+      selector.close();
+    } catch (IOException e) {
+      log.warn("Unable to close selector.", e);
+    }
+  }
+
+  /**
+   * Runs loop work, making sure a failure in one connection or game can't stop the loop for all the others
+   */
+  private void runSafely(Runnable work) {
+    try {
+      work.run();
+    } catch (RuntimeException e) {
+      log.error("Error on event loop.", e);
+    }
+  }
+}
@@ -0,0 +1,226 @@
+package main.btlshyp.server;
+
+import com.google.gson.JsonObject;
+import lombok.extern.slf4j.Slf4j;
+import main.btlshyp.message.GameStartMessage;
+import main.btlshyp.message.MessageType;
+import main.btlshyp.message.TurnStartMessage;
+import main.btlshyp.network.MpscQueue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static main.btlshyp.message.TurnStartMessage.Turn.START;
+
+/**
+ * One game between two players, run as an actor: everything that happens to the game is put in its mailbox and handled
+ * one at a time on the {@link EventLoop} the game lives on. The game's state is only ever touched there, so it needs no
+ * locks, and a busy game only holds up its own players.
+ *
+ * <p>The game decides whose turn it is rather than trusting the clients:
+ * <ol>
+ * <li>Once both players have sent {@code SHIPS_PLACED}, the player who joined first is sent a {@code TURN}.</li>
+ * <li>The player whose turn it is may send one {@code ATTACK_ATTEMPT}, which is passed to their opponent.</li>
+ * <li>Only the opponent may answer, with an {@code ATTACK_RESPONSE} passed back to the attacker.</li>
+ * <li>The attacker then either ends their turn with a {@code TURN}, and the opponent is sent a {@code TURN}, or claims
+ * the win with a {@code GAME_WON_ATTEMPT} passed to the opponent.</li>
+ * <li>The opponent's {@code GAME_WON_RESPONSE} is passed to the winner and ends the game.</li>
+ * </ol>
+ * Anything sent out of turn is answered with an {@code error}. Chat is passed to the opponent at any time.
+ */
+@Slf4j
+class GameActor implements Runnable {
+
+  /**
+   * The most messages handled in one go before letting the loop get on with its other work
+   */
+  private static final int BATCH_SIZE = 64;
+
+  private enum Phase {
+    PLACING_SHIPS,
+    PLAYING,
+    WIN_CLAIMED,
+    OVER
+  }
+
+  private final GameServer server;
+  private final EventLoop loop;
+  private final String firstPlayer;
+  private final String secondPlayer;
+
+  private final MpscQueue<Runnable> mailbox = new MpscQueue<>();
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+
+  // Only touched by the actor
+  private Phase phase = Phase.PLACING_SHIPS;
+  private boolean firstPlayerPlaced;
+  private boolean secondPlayerPlaced;
+  private String turn;
+  private boolean attackPending;
+  private boolean attackAnswered;
+
+  GameActor(GameServer server, EventLoop loop, String firstPlayer, String secondPlayer) {
+    this.server = server;
+    this.loop = loop;
+    this.firstPlayer = firstPlayer;
+    this.secondPlayer = secondPlayer;
+  }
+
+  String getFirstPlayer() {
+    return firstPlayer;
+  }
+
+  String getSecondPlayer() {
+    return secondPlayer;
+  }
+
+  /**
+   * Puts work in the game's mailbox, to be run on the game's loop after everything already there. Never blocks.
+   */
+  void tell(Runnable work) {
+    mailbox.offer(work);
+    if (scheduled.compareAndSet(false, true)) {
+      loop.execute(this);
+    }
+  }
+
+  /**
+   * Handles what is in the mailbox, a batch at a time
+   */
+  @Override
+  public void run() {
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      Runnable work = mailbox.poll();
+      if (work == null) {
+        break;
+      }
+      try {
+        work.run();
+      } catch (RuntimeException e) {
+        log.error("Error in game between {} and {}", firstPlayer, secondPlayer, e);
+      }
+    }
+
+    scheduled.set(false);
+    if (!mailbox.isEmpty() && scheduled.compareAndSet(false, true)) {
+      loop.execute(this);
+    }
+  }
+
+  /**
+   * Tells both players the game has started. Run by the actor.
+   */
+  void start() {
+    server.sendTo(firstPlayer, server.encode(new GameStartMessage(secondPlayer)));
+    server.sendTo(secondPlayer, server.encode(new GameStartMessage(firstPlayer)));
+  }
+
+  /**
+   * Ends the game without a winner, because a player left it to join another. Run by the actor.
+   */
+  void abandon(String username) {
+    if (phase != Phase.OVER) {
+      log.debug("{} abandoned their game against {}", username, opponentOf(username));
+      end();
+    }
+  }
+
+  /**
+   * Handles a BtlShyp message from one of the players. Run by the actor.
+   *
+   * @param username The player who sent it
+   * @param type The message's type
+   * @param message The message object from the application envelope, with its username set to the sender's
+   * @param receivedNanos When the message was read from the socket
+   */
+  void handle(String username, MessageType type, JsonObject message, long receivedNanos) {
+    String opponent = opponentOf(username);
+    switch (type) {
+      case CHAT:
+        forward(opponent, message, receivedNanos);
+        break;
+      case SHIPS_PLACED:
+        if (phase != Phase.PLACING_SHIPS) {
+          reject(username, "Ships have already been placed");
+          return;
+        }
+        if (username.equals(firstPlayer)) {
+          firstPlayerPlaced = true;
+        } else {
+          secondPlayerPlaced = true;
+        }
+        if (firstPlayerPlaced && secondPlayerPlaced) {
+          phase = Phase.PLAYING;
+          giveTurnTo(firstPlayer);
+        }
+        break;
+      case ATTACK_ATTEMPT:
+        if (phase != Phase.PLAYING || !username.equals(turn) || attackPending || attackAnswered) {
+          reject(username, "It isn't your turn to attack");
+          return;
+        }
+        attackPending = true;
+        forward(opponent, message, receivedNanos);
+        break;
+      case ATTACK_RESPONSE:
+        if (phase != Phase.PLAYING || !opponent.equals(turn) || !attackPending) {
+          reject(username, "There is no attack to respond to");
+          return;
+        }
+        attackPending = false;
+        attackAnswered = true;
+        forward(opponent, message, receivedNanos);
+        break;
+      case TURN:
+        if (phase != Phase.PLAYING || !username.equals(turn) || !attackAnswered) {
+          reject(username, "It isn't your turn to end");
+          return;
+        }
+        giveTurnTo(opponent);
+        break;
+      case GAME_WON_ATTEMPT:
+        if (phase != Phase.PLAYING || !username.equals(turn) || !attackAnswered) {
+          reject(username, "You can only claim the win at the end of your turn");
+          return;
+        }
+        phase = Phase.WIN_CLAIMED;
+        forward(opponent, message, receivedNanos);
+        break;
+      case GAME_WON_RESPONSE:
+        if (phase != Phase.WIN_CLAIMED || !opponent.equals(turn)) {
+          reject(username, "No win has been claimed");
+          return;
+        }
+        forward(opponent, message, receivedNanos);
+        end();
+        break;
+      default:
+        log.debug("Ignoring {} from {}", type, username);
+        break;
+    }
+  }
+
+  private String opponentOf(String username) {
+    return username.equals(firstPlayer) ? secondPlayer : firstPlayer;
+  }
+
+  private void giveTurnTo(String username) {
+    turn = username;
+    attackPending = false;
+    attackAnswered = false;
+    server.sendTo(username, server.encode(new TurnStartMessage(GameServer.SERVER_USERNAME, START)));
+  }
+
+  private void forward(String username, JsonObject message, long receivedNanos) {
+    server.relay(username, message, receivedNanos);
+  }
+
+  private void reject(String username, String reason) {
+    log.debug("Rejected message from {}: {}", username, reason);
+    server.sendError(username, reason);
+  }
+
+  private void end() {
+    phase = Phase.OVER;
+    server.gameOver(this);
+  }
+}
@@ -0,0 +1,536 @@
+package main.btlshyp.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import lombok.extern.slf4j.Slf4j;
+import main.btlshyp.message.ApplicationMessage;
+import main.btlshyp.message.ApplicationMessage.ApplicationMessageType;
+import main.btlshyp.message.JoinResponseMessage;
+import main.btlshyp.message.Message;
+import main.btlshyp.message.MessageType;
+import main.btlshyp.message.PingMessage;
+import main.btlshyp.message.PongMessage;
+import main.btlshyp.metrics.Counter;
+import main.btlshyp.metrics.Histogram;
+import main.btlshyp.metrics.MetricsRegistry;
+import main.btlshyp.metrics.PrometheusExporter;
+import main.btlshyp.network.codec.MessageCodec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static main.btlshyp.message.JoinResponseMessage.ConfirmJoin.ACCEPT;
+
+/**
+ * A BtlShyp game server which does the work of both the Node.js relay and the BtlShyp module behind it: it logs players
+ * in, relays chat, pairs players into games, decides whose turn it is and passes each player's messages to their
+ * opponent. Clients connect to it exactly as they would to the relay.
+ *
+ * <p>All I/O and game logic runs on a fixed set of {@link EventLoop}s, one per core by default. Each connection is
+ * read and written by one loop. Each game is a {@link GameActor} living on one loop, and is only ever touched there, so
+ * games don't share any state or locks and thousands of them can be played at once. Matchmaking lives on the first
+ * loop. A message for another loop is handed over through that loop's lock-free queue.
+ *
+ * <p>A client which sends faster than its game keeps up with, or doesn't read what it is sent, stops being read from
+ * until things catch up, and is disconnected if it falls too far behind. See {@link ServerConnection}.
+ *
+ * <p>The {@code btlshyp_server_connections} and {@code btlshyp_server_games} gauges add up every server which has been
+ * started and not closed.
+ * <pre>
+ *   try (GameServer server = new GameServer(0).start()) {
+ *     NetworkClient client = new NetworkClient("localhost", server.getPort(), controller);
+ *     ...
+ *   }
+ * </pre>
+ */
+@Slf4j
+public class GameServer implements Closeable {
+
+  public static final int DEFAULT_PORT = 8989;
+  public static final long DEFAULT_PAUSE_READING_BYTES = 64 * 1024;
+  public static final long DEFAULT_DISCONNECT_BYTES = 4 * 1024 * 1024;
+
+  /**
+   * How many of a client's messages may wait for its game before the client stops being read from
+   */
+  static final int MAX_IN_FLIGHT = 256;
+
+  static final String SERVER_USERNAME = "Server";
+
+  private static final String MODULE_NAME = "BtlShyp";
+  private static final String APPLICATION = ApplicationMessageType.APPLICATION.toString();
+  private static final String LOGIN = ApplicationMessageType.LOGIN.toString();
+  private static final String ACKNOWLEDGE = ApplicationMessageType.ACKNOWLEDGE.toString();
+  private static final String ERROR = ApplicationMessageType.ERROR.toString();
+  private static final String CHAT = ApplicationMessageType.CHAT.toString();
+
+  private static final Counter MESSAGES_RECEIVED = MetricsRegistry.getDefault().counter(
+      "btlshyp_server_messages_received_total", "Messages received by the game server");
+  private static final Histogram RELAY_TIME = MetricsRegistry.getDefault().timer(
+      "btlshyp_server_relay_seconds", "Time from reading a player's message to queueing it for their opponent");
+  private static final Counter SLOW_CONSUMERS = MetricsRegistry.getDefault().counter(
+      "btlshyp_server_slow_consumers_total", "Clients disconnected for not reading what they were sent");
+  private static final Counter OVERSIZED_LINES = MetricsRegistry.getDefault().counter(
+      "btlshyp_server_oversized_lines_total", "Clients disconnected for sending a line longer than the limit");
+  private static final Counter PAUSED_FOR_GAME = MetricsRegistry.getDefault().counter(
+      "btlshyp_server_reads_paused_total", "Times a client stopped being read from until things caught up", "reason",
+      "game_behind");
+  private static final Counter PAUSED_FOR_OUTPUT = MetricsRegistry.getDefault().counter(
+      "btlshyp_server_reads_paused_total", "Times a client stopped being read from until things caught up", "reason",
+      "output_backlogged");
+
+  // Every server which has been started and not closed, for the gauges
+  private static final Set<GameServer> LIVE_SERVERS = ConcurrentHashMap.newKeySet();
+
+  static {
+    MetricsRegistry.getDefault().gauge("btlshyp_server_connections", "Clients connected to the game server",
+        GameServer::getTotalConnections);
+    MetricsRegistry.getDefault().gauge("btlshyp_server_games", "Games being played on the game server",
+        GameServer::getTotalGamesInProgress);
+  }
+
+  private final int requestedPort;
+  private final EventLoop[] loops;
+  private final AtomicInteger nextLoop = new AtomicInteger();
+  private final Gson gson = MessageCodec.newGson();
+  private final Map<String, ServerConnection> users = new ConcurrentHashMap<>();
+  private final Map<String, GameActor> games = new ConcurrentHashMap<>();
+  private final AtomicInteger connections = new AtomicInteger();
+  private final AtomicInteger gamesInProgress = new AtomicInteger();
+  private final Matchmaker matchmaker;
+
+  private long pauseReadingBytes = DEFAULT_PAUSE_READING_BYTES;
+  private long disconnectBytes = DEFAULT_DISCONNECT_BYTES;
+  private ServerSocketChannel serverChannel;
+
+  /**
+   * Creates a server with one event loop per core
+   *
+   * @param port The port to listen on, or 0 for any free port (see {@link #getPort()})
+   */
+  public GameServer(int port) {
+    this(port, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param port The port to listen on, or 0 for any free port (see {@link #getPort()})
+   * @param eventLoops The number of threads to spread connections and games across
+   */
+  public GameServer(int port, int eventLoops) {
+    this.requestedPort = port;
+    this.loops = new EventLoop[eventLoops];
+    for (int i = 0; i < eventLoops; i++) {
+      loops[i] = new EventLoop("GameServer-loop-" + i);
+    }
+    this.matchmaker = new Matchmaker(this, loops[0]);
+  }
+
+  /**
+   * Runs the server on its own until the process is killed. Accepts an (optional) port followed by an (optional)
+   * number of event loops. Metrics are served over HTTP if {@code -Dbtlshyp.metrics.port} is set.
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+    GameServer server = args.length > 1 ? new GameServer(port, Integer.parseInt(args[1])) : new GameServer(port);
+    String metricsPort = System.getProperty("btlshyp.metrics.port");
+    if (metricsPort != null) {
+      new PrometheusExporter(MetricsRegistry.getDefault()).serveHttp(Integer.parseInt(metricsPort));
+    }
+    server.start();
+    Thread.currentThread().join();
+  }
+
+  /**
+   * Sets how many bytes may be waiting to be written to a client before it stops being read from, and how many before
+   * it is disconnected. Must be set before {@link #start()}.
+   */
+  public void setOutboundLimits(long pauseReadingBytes, long disconnectBytes) {
+    this.pauseReadingBytes = pauseReadingBytes;
+    this.disconnectBytes = disconnectBytes;
+  }
+
+  /**
+   * Starts the event loops and begins accepting connections
+   *
+   * @return This server
+   */
+  public GameServer start() throws IOException {
+    serverChannel = ServerSocketChannel.open();
+    serverChannel.bind(new InetSocketAddress(requestedPort), 1024);
+    serverChannel.configureBlocking(false);
+
+    for (EventLoop loop : loops) {
+      loop.start();
+    }
+    loops[0].execute(() -> {
+      try {
+        serverChannel.register(loops[0].selector(), SelectionKey.OP_ACCEPT, new Acceptor());
+      } catch (IOException e) {
+        log.error("Unable to accept connections", e);
+      }
+    });
+
+    LIVE_SERVERS.add(this);
+    log.info("Game server listening. port={} eventLoops={}", getPort(), loops.length);
+    return this;
+  }
+
+  /**
+   * @return The port being listened on
+   */
+  public int getPort() {
+    return serverChannel.socket().getLocalPort();
+  }
+
+  /**
+   * @return How many clients are connected to every server which has been started and not closed
+   */
+  public static long getTotalConnections() {
+    long total = 0;
+    for (GameServer server : LIVE_SERVERS) {
+      total += server.connections.get();
+    }
+    return total;
+  }
+
+  /**
+   * @return How many games are being played on every server which has been started and not closed
+   */
+  public static long getTotalGamesInProgress() {
+    long total = 0;
+    for (GameServer server : LIVE_SERVERS) {
+      total += server.gamesInProgress.get();
+    }
+    return total;
+  }
+
+  /**
+   * @return The number of users logged in
+   */
+  public int getUsersLoggedIn() {
+    return users.size();
+  }
+
+  /**
+   * @return The number of games being played
+   */
+  public int getGamesInProgress() {
+    return gamesInProgress.get();
+  }
+
+  /**
+   * Stops accepting connections, closes every connection and stops the event loops
+   */
+  @Override
+  public void close() {
+    LIVE_SERVERS.remove(this);
+    try {
+      if (serverChannel != null) {
+        serverChannel.close();
+      }
+    } catch (IOException e) {
+      log.debug("Error closing server channel", e);
+    }
+    for (EventLoop loop : loops) {
+      loop.shutdown();
+    }
+  }
+
+  long getPauseReadingBytes() {
+    return pauseReadingBytes;
+  }
+
+  long getDisconnectBytes() {
+    return disconnectBytes;
+  }
+
+  boolean isLoggedIn(String username) {
+    return users.containsKey(username);
+  }
+
+  /**
+   * Handles one message from a client, on its connection's loop
+   */
+  void handle(ServerConnection connection, JsonObject json, long receivedNanos) {
+    MESSAGES_RECEIVED.increment();
+    String type = stringOrNull(json.get("type"));
+    if (LOGIN.equals(type)) {
+      login(connection, json.get("message"));
+      return;
+    }
+
+    String username = connection.getUsername();
+    if (username == null) {
+      return;
+    }
+    JsonElement message = json.get("message");
+    if (APPLICATION.equals(type) && message != null && message.isJsonObject()) {
+      JsonObject applicationMessage = message.getAsJsonObject();
+      if (MODULE_NAME.equals(stringOrNull(applicationMessage.get("module")))) {
+        applicationMessage.addProperty("username", username);
+        handleBtlShypMessage(connection, username, applicationMessage, receivedNanos);
+      }
+    } else if (CHAT.equals(type)) {
+      chat(connection, json);
+    }
+  }
+
+  /**
+   * Sends a line to the user logged in with the given name, if there is one
+   */
+  void sendTo(String username, String line) {
+    ServerConnection connection = users.get(username);
+    if (connection != null) {
+      connection.send(line);
+    } else {
+      log.debug("Dropping message for {}, who isn't logged in", username);
+    }
+  }
+
+  /**
+   * Passes a player's message on to another player
+   */
+  void relay(String username, JsonObject message, long receivedNanos) {
+    JsonObject envelope = new JsonObject();
+    envelope.addProperty("type", APPLICATION);
+    envelope.add("message", message);
+    sendTo(username, envelope.toString());
+    RELAY_TIME.record(System.nanoTime() - receivedNanos);
+  }
+
+  void sendError(String username, String reason) {
+    sendTo(username, envelope(ERROR, reason));
+  }
+
+  /**
+   * @return The line carrying the message to a client inside an {@code application} envelope
+   */
+  String encode(Message message) {
+    return gson.toJson(new ApplicationMessage(message));
+  }
+
+  /**
+   * Starts a game between two players. Called by the {@link Matchmaker}.
+   */
+  void startGame(String firstPlayer, String secondPlayer) {
+    EventLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+    GameActor game = new GameActor(this, loop, firstPlayer, secondPlayer);
+    games.put(firstPlayer, game);
+    games.put(secondPlayer, game);
+    gamesInProgress.incrementAndGet();
+    game.tell(game::start);
+  }
+
+  /**
+   * Ends the player's game, if they are in one. Called by the {@link Matchmaker} when they join another.
+   */
+  void abandonGame(String username) {
+    GameActor game = games.get(username);
+    if (game != null) {
+      game.tell(() -> game.abandon(username));
+    }
+  }
+
+  /**
+   * Forgets a game which has ended. Called by the game.
+   */
+  void gameOver(GameActor game) {
+    boolean removedFirst = games.remove(game.getFirstPlayer(), game);
+    boolean removedSecond = games.remove(game.getSecondPlayer(), game);
+    if (removedFirst || removedSecond) {
+      gamesInProgress.decrementAndGet();
+    }
+  }
+
+  void slowConsumer(ServerConnection connection, long queuedBytes) {
+    SLOW_CONSUMERS.increment();
+    log.warn("Disconnecting {}, which has {} bytes waiting to be written", connection, queuedBytes);
+  }
+
+  void oversizedLine(ServerConnection connection, IOException e) {
+    OVERSIZED_LINES.increment();
+    log.warn("Disconnecting {}: {}", connection, e.getMessage());
+  }
+
+  void pausedForGame(ServerConnection connection) {
+    PAUSED_FOR_GAME.increment();
+    log.debug("Not reading from {} until its game catches up", connection);
+  }
+
+  void pausedForOutput(ServerConnection connection) {
+    PAUSED_FOR_OUTPUT.increment();
+    log.debug("Not reading from {} until it reads what it has been sent", connection);
+  }
+
+  /**
+   * Forgets a connection which has closed. A player's game is only ended once neither player is connected, so either
+   * may reconnect and carry on.
+   */
+  void disconnected(ServerConnection connection) {
+    connections.decrementAndGet();
+    String username = connection.getUsername();
+    if (username == null || !users.remove(username, connection)) {
+      return;
+    }
+    log.debug("{} logged out", username);
+    matchmaker.leave(username);
+
+    GameActor game = games.get(username);
+    if (game != null) {
+      String opponent = username.equals(game.getFirstPlayer()) ? game.getSecondPlayer() : game.getFirstPlayer();
+      if (!isLoggedIn(opponent)) {
+        game.tell(() -> game.abandon(username));
+      }
+    }
+  }
+
+  private void handleBtlShypMessage(ServerConnection connection, String username, JsonObject message,
+      long receivedNanos) {
+    MessageType type = typeOf(message);
+    if (type == null) {
+      log.debug("Ignoring message of unknown type from {}: {}", username, message);
+      return;
+    }
+
+    switch (type) {
+      case JOIN_ATTEMPT:
+        connection.send(encode(new JoinResponseMessage(ACCEPT)));
+        matchmaker.join(username);
+        break;
+      case PING:
+        PingMessage ping = (PingMessage) gson.fromJson(message, Message.class);
+        connection.send(encode(PongMessage.answering(ping)));
+        break;
+      case LOGIN:
+      case PONG:
+      case JOIN_RESPONSE:
+      case GAME_START:
+        log.debug("Ignoring {} from {}", type, username);
+        break;
+      default:
+        GameActor game = games.get(username);
+        if (game == null) {
+          connection.send(envelope(ERROR, "Not in a game"));
+          return;
+        }
+        connection.submitted();
+        game.tell(() -> {
+          try {
+            game.handle(username, type, message, receivedNanos);
+          } finally {
+            connection.processed();
+          }
+        });
+        break;
+    }
+  }
+
+  private void login(ServerConnection connection, JsonElement message) {
+    String username = message != null && message.isJsonObject()
+        ? stringOrNull(message.getAsJsonObject().get("username"))
+        : null;
+    if (username == null) {
+      connection.send(envelope(ERROR, "Username is required for login messages"));
+      return;
+    }
+    if (connection.getUsername() != null || users.putIfAbsent(username, connection) != null) {
+      connection.send(envelope(ERROR, "Username " + username + " is already logged in"));
+      return;
+    }
+
+    log.debug("Logging in {}", username);
+    connection.setUsername(username);
+    connection.send(envelope(ACKNOWLEDGE, username + " successfully logged in"));
+  }
+
+  private void chat(ServerConnection connection, JsonObject json) {
+    JsonElement text = json.get("message");
+    if (text == null || !text.isJsonPrimitive() || !text.getAsJsonPrimitive().isString()) {
+      connection.send(envelope(ERROR, "Unable to send non-text chat messages, correct your message and send again"));
+      return;
+    }
+
+    String from = connection.getUsername();
+    json.addProperty("fromUser", from);
+    String line = json.toString();
+    String to = stringOrNull(json.get("username"));
+    if (to != null) {
+      sendTo(to, line);
+      return;
+    }
+    for (Map.Entry<String, ServerConnection> user : users.entrySet()) {
+      if (!user.getKey().equals(from)) {
+        user.getValue().send(line);
+      }
+    }
+  }
+
+  private static MessageType typeOf(JsonObject message) {
+    try {
+      return MessageType.valueOf(message.get("type").getAsString());
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+
+  private static String envelope(String type, String message) {
+    JsonObject envelope = new JsonObject();
+    envelope.addProperty("type", type);
+    envelope.add("message", new JsonPrimitive(message));
+    return envelope.toString();
+  }
+
+  private static String stringOrNull(JsonElement element) {
+    return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+  }
+
+  /**
+   * Accepts new connections on the first loop and spreads them across the loops round-robin
+   */
+  private class Acceptor implements EventLoop.Handler {
+
+    @Override
+    public void handle(SelectionKey key) {
+      try {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+          channel.configureBlocking(false);
+          channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+          EventLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+          ServerConnection connection = new ServerConnection(GameServer.this, loop, channel);
+          connections.incrementAndGet();
+          loop.execute(() -> {
+            try {
+              connection.register();
+            } catch (IOException e) {
+              log.warn("Unable to register connection", e);
+              connection.close();
+            }
+          });
+        }
+      } catch (IOException e) {
+        log.error("Unable to accept connection", e);
+      }
+    }
+
+    @Override
+    public void close() {
+      try {
+        serverChannel.close();
+      } catch (IOException e) {
+        log.debug("Error closing server channel", e);
+      }
+    }
+  }
+}
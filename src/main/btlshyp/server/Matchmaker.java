@@ -0,0 +1,53 @@
+package main.btlshyp.server;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pairs up players who ask to join a game, in the order they ask. Its state lives on one {@link EventLoop} and is only
+ * touched there, so joins from every loop are handed to it with {@link EventLoop#execute(Runnable)}.
+ */
+@Slf4j
+class Matchmaker {
+
+  private final GameServer server;
+  private final EventLoop loop;
+
+  // Only touched on the loop. The player waiting for an opponent, if any.
+  private String waiting;
+
+  Matchmaker(GameServer server, EventLoop loop) {
+    this.server = server;
+    this.loop = loop;
+  }
+
+  /**
+   * Finds the player an opponent, or has them wait for the next player to join. Any game they were in is abandoned.
+   */
+  void join(String username) {
+    loop.execute(() -> pair(username));
+  }
+
+  /**
+   * Stops a player who logged out from waiting for an opponent
+   */
+  void leave(String username) {
+    loop.execute(() -> {
+      if (username.equals(waiting)) {
+        waiting = null;
+      }
+    });
+  }
+
+  private void pair(String username) {
+    server.abandonGame(username);
+    if (waiting == null || waiting.equals(username) || !server.isLoggedIn(waiting)) {
+      waiting = username;
+      return;
+    }
+
+    String opponent = waiting;
+    waiting = null;
+    log.debug("Starting game between {} and {}", opponent, username);
+    server.startGame(opponent, username);
+  }
+}
@@ -0,0 +1,287 @@
+package main.btlshyp.server;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import lombok.extern.slf4j.Slf4j;
+import main.btlshyp.network.MpscQueue;
+import main.btlshyp.network.nio.LineFramer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A client's connection to the {@link GameServer}. It is read and written only on the {@link EventLoop} it was
+ * registered with, and lines may be sent to it from any thread.
+ *
+ * <p>Reading stops for a while, leaving the client's messages in the socket's buffers (and eventually the client's), in
+ * two cases:
+ * <ul>
+ * <li>More than {@link GameServer#MAX_IN_FLIGHT} of its messages are waiting for its game to handle them. Reading
+ * starts again once the game has caught up with half of them.</li>
+ * <li>More than the server's pause threshold of bytes are waiting to be written to it, because it isn't reading what it
+ * is sent. Reading starts again once they are written.</li>
+ * </ul>
+ * A client which lets more than the server's disconnect threshold pile up is disconnected, so one stuck client can't
+ * run the server out of memory. So is one which sends a line longer than {@link LineFramer#MAX_LINE_LENGTH}.
+ */
+@Slf4j
+class ServerConnection implements EventLoop.Handler {
+
+  private static final int READ_BUFFER_SIZE = 8 * 1024;
+  private static final int MAX_BUFFERS_PER_WRITE = 64;
+
+  private final GameServer server;
+  private final EventLoop loop;
+  private final SocketChannel channel;
+  private SelectionKey key;
+
+  // Set once logged in
+  private volatile String username;
+  private final AtomicBoolean closed = new AtomicBoolean();
+
+  // Inbound. Only touched on the loop.
+  private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+  private final LineFramer lineFramer = new LineFramer(this::onLine);
+  private final JsonParser parser = new JsonParser();
+  private long readNanos;
+  private boolean outputBacklogged;
+  private boolean tooManyInFlight;
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  // Outbound. Any thread may queue, only the loop writes.
+  private final MpscQueue<ByteBuffer> outbound = new MpscQueue<>();
+  private final AtomicLong queuedBytes = new AtomicLong();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+  private final ArrayDeque<ByteBuffer> writing = new ArrayDeque<>();
+  private final ByteBuffer[] gather = new ByteBuffer[MAX_BUFFERS_PER_WRITE];
+
+  ServerConnection(GameServer server, EventLoop loop, SocketChannel channel) {
+    this.server = server;
+    this.loop = loop;
+    this.channel = channel;
+  }
+
+  /**
+   * Starts reading. Must be called on the connection's loop.
+   */
+  void register() throws IOException {
+    key = channel.register(loop.selector(), SelectionKey.OP_READ, this);
+  }
+
+  EventLoop getLoop() {
+    return loop;
+  }
+
+  String getUsername() {
+    return username;
+  }
+
+  void setUsername(String username) {
+    this.username = username;
+  }
+
+  /**
+   * Queues a line to be written to the client. The newline is added here. Never blocks.
+   */
+  void send(String line) {
+    if (closed.get()) {
+      return;
+    }
+    byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 1).put(bytes).put((byte) '\n');
+    buffer.flip();
+
+    long queued = queuedBytes.addAndGet(buffer.remaining());
+    if (queued > server.getDisconnectBytes()) {
+      server.slowConsumer(this, queued);
+      loop.execute(this::close);
+      return;
+    }
+    outbound.offer(buffer);
+    if (flushScheduled.compareAndSet(false, true)) {
+      loop.execute(this::flush);
+    }
+  }
+
+  /**
+   * Counts a message as handed to the game. Called on the loop.
+   */
+  void submitted() {
+    if (inFlight.incrementAndGet() > GameServer.MAX_IN_FLIGHT && !tooManyInFlight) {
+      tooManyInFlight = true;
+      server.pausedForGame(this);
+      updateReadInterest();
+    }
+  }
+
+  /**
+   * Counts a message handed to the game as handled. Called on the game's loop.
+   */
+  void processed() {
+    if (inFlight.decrementAndGet() == GameServer.MAX_IN_FLIGHT / 2) {
+      loop.execute(this::resumeIfCaughtUp);
+    }
+  }
+
+  @Override
+  public void handle(SelectionKey readyKey) {
+    if (!readyKey.isValid()) {
+      return;
+    }
+    if (readyKey.isReadable()) {
+      read();
+    }
+    if (readyKey.isValid() && readyKey.isWritable()) {
+      flush();
+    }
+  }
+
+  /**
+   * Closes the connection. Safe to call from any thread and more than once.
+   */
+  @Override
+  public void close() {
+    if (!closed.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      log.debug("Error closing {}", this, e);
+    }
+    server.disconnected(this);
+  }
+
+  private void read() {
+    readNanos = System.nanoTime();
+    try {
+      int bytesRead;
+      while (!isReadPaused() && (bytesRead = channel.read(readBuffer)) != 0) {
+        if (bytesRead == -1) {
+          close();
+          return;
+        }
+        readBuffer.flip();
+        try {
+          lineFramer.frame(readBuffer);
+        } catch (IOException e) {
+          server.oversizedLine(this, e);
+          close();
+          return;
+        }
+        readBuffer.clear();
+      }
+    } catch (IOException e) {
+      log.debug("Error reading from {}", this, e);
+      close();
+    }
+  }
+
+  private void onLine(String line) {
+    JsonObject json;
+    try {
+      JsonElement element = parser.parse(line);
+      if (!element.isJsonObject()) {
+        return;
+      }
+      json = element.getAsJsonObject();
+    } catch (JsonParseException e) {
+      log.debug("Invalid JSON from {}", this);
+      return;
+    }
+    server.handle(this, json, readNanos);
+  }
+
+  /**
+   * Writes as much queued output as the socket will take, waiting for OP_WRITE if it fills up
+   */
+  private void flush() {
+    flushScheduled.set(false);
+    if (closed.get()) {
+      return;
+    }
+
+    for (ByteBuffer buffer = outbound.poll(); buffer != null; buffer = outbound.poll()) {
+      writing.add(buffer);
+    }
+    try {
+      while (!writing.isEmpty()) {
+        int count = 0;
+        for (ByteBuffer buffer : writing) {
+          gather[count++] = buffer;
+          if (count == gather.length) {
+            break;
+          }
+        }
+        long written = channel.write(gather, 0, count);
+        Arrays.fill(gather, 0, count, null);
+        queuedBytes.addAndGet(-written);
+        while (!writing.isEmpty() && !writing.peek().hasRemaining()) {
+          writing.poll();
+        }
+
+        if (!writing.isEmpty() && (written == 0 || writing.peek().position() > 0)) {
+          // The socket's buffer is full
+          key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+          if (!outputBacklogged && queuedBytes.get() > server.getPauseReadingBytes()) {
+            outputBacklogged = true;
+            server.pausedForOutput(this);
+            updateReadInterest();
+          }
+          return;
+        }
+      }
+    } catch (IOException e) {
+      log.debug("Error writing to {}", this, e);
+      close();
+      return;
+    }
+
+    if ((key.interestOps() & SelectionKey.OP_WRITE) != 0) {
+      key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+    if (outputBacklogged) {
+      outputBacklogged = false;
+      updateReadInterest();
+    }
+  }
+
+  private void resumeIfCaughtUp() {
+    if (tooManyInFlight && inFlight.get() <= GameServer.MAX_IN_FLIGHT / 2) {
+      tooManyInFlight = false;
+      updateReadInterest();
+      // Anything which arrived while paused is already waiting in the socket
+      read();
+    }
+  }
+
+  private boolean isReadPaused() {
+    return outputBacklogged || tooManyInFlight;
+  }
+
+  private void updateReadInterest() {
+    if (!key.isValid()) {
+      return;
+    }
+    if (isReadPaused()) {
+      key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+    } else {
+      key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ServerConnection(" + (username != null ? username : channel) + ")";
+  }
+}
@@ -0,0 +1,41 @@
+package main.btlshyp.sim;
+
+import java.util.SplittableRandom;
+
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.model.ShipType;
+
+/**
+ * Decides where a simulated player attacks next.
+ *
+ * <p>An AttackStrategy keeps state for a single game at a time. The {@link GameSimulator} creates a fresh one for each
+ * game from a {@link Player}'s supplier, so implementations need not be thread safe.
+ */
+public interface AttackStrategy {
+
+  /**
+   * Called once before the first attack of a game
+   *
+   * @param boardWidth The width of the opponent's board
+   * @param boardHeight The height of the opponent's board
+   * @param random The game's source of randomness
+   */
+  void newGame(int boardWidth, int boardHeight, SplittableRandom random);
+
+  /**
+   * @return The next coordinate to attack
+   */
+  Coordinate nextAttack();
+
+  /**
+   * Tells the strategy how its last attack went. This is only what a player is told over the network in an
+   * {@link main.btlshyp.message.AttackResponseMessage}, never where the defender's ships are.
+   *
+   * @param coordinate The coordinate returned by the last call to {@link #nextAttack()}
+   * @param hit Whether the attack hit a ship
+   * @param sunk The type of ship the attack sank, or {@code null} if it didn't sink one
+   */
+  default void attackResult(Coordinate coordinate, boolean hit, ShipType sunk) {
+  }
+
+}
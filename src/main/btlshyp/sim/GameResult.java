@@ -0,0 +1,26 @@
+package main.btlshyp.sim;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The outcome of one simulated game. Players are numbered 0 and 1 in the order they were given to the
+ * {@link GameSimulator}.
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+public class GameResult {
+
+  private final long seed;
+  private final int firstPlayer;
+  private final int winner;
+
+  /**
+   * The number of attacks the winner made, including the one which sank the last ship
+   */
+  private final int winnerShots;
+  private final int loserShots;
+
+}
@@ -0,0 +1,124 @@
+package main.btlshyp.sim;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import main.btlshyp.model.Board;
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.model.Model;
+import main.btlshyp.model.Model.AttackResult;
+import main.btlshyp.model.Ship;
+import main.btlshyp.model.ShipType;
+
+/**
+ * Plays a game between two {@link Player}s entirely in memory, with no View or server.
+ *
+ * <p>Each player gets their own {@link Model}, so placement goes through {@link Model#isShipPlacementValid} and
+ * {@link Model#placeShip}, and every attack is resolved by the defender's {@link Model#getAttackResults}, exactly as
+ * in a networked game. A game is fully determined by its seed. A GameSimulator holds no per-game state, so one
+ * instance can play many games on many threads at once.
+ */
+public class GameSimulator {
+
+  /**
+   * The ships each player places, in the order the Controller places them
+   */
+  public static final ShipType[] STANDARD_FLEET = {
+      ShipType.BATTLESHIP, ShipType.DESTROYER, ShipType.PATROLBOAT, ShipType.SUBMARINE };
+
+  /**
+   * How many times a placement strategy may re-propose an invalid ship before the game is abandoned
+   */
+  private static final int MAX_PLACEMENT_ATTEMPTS = 1000;
+
+  private final Player[] players;
+  private final int boardWidth;
+  private final int boardHeight;
+  private final ShipType[] fleet;
+
+  public GameSimulator(Player player0, Player player1) {
+    this(player0, player1, Board.WIDTH, Board.HEIGHT, STANDARD_FLEET);
+  }
+
+  public GameSimulator(Player player0, Player player1, int boardWidth, int boardHeight, ShipType[] fleet) {
+    this.players = new Player[] { player0, player1 };
+    this.boardWidth = boardWidth;
+    this.boardHeight = boardHeight;
+    this.fleet = fleet.clone();
+  }
+
+  public Player getPlayer(int player) {
+    return players[player];
+  }
+
+  /**
+   * Plays one game to completion
+   *
+   * @param seed Determines the placements, attacks and who goes first
+   * @return The result of the game
+   *
+   * @throws IllegalStateException if a strategy can't place a valid ship, or the game doesn't end once every square
+   * has been attacked several times
+   */
+  public GameResult play(long seed) {
+    SplittableRandom random = new SplittableRandom(seed);
+    Model[] models = { newFleet(0, random), newFleet(1, random) };
+    AttackStrategy[] strategies = new AttackStrategy[2];
+    for (int player = 0; player < 2; player++) {
+      strategies[player] = players[player].getAttackStrategySupplier().get();
+      strategies[player].newGame(boardWidth, boardHeight, random);
+    }
+
+    int firstPlayer = random.nextInt(2);
+    int[] shots = new int[2];
+    int maxShots = boardWidth * boardHeight * 4;
+    int attacker = firstPlayer;
+    while (shots[attacker] < maxShots) {
+      int defender = 1 - attacker;
+      Coordinate coordinate = strategies[attacker].nextAttack();
+      AttackResult result = models[defender].getAttackResults(coordinate);
+      shots[attacker]++;
+
+      models[attacker].storeResultOfAttackOnOpponent(result.isHit, coordinate);
+      if (result.isSunk) {
+        models[attacker].storeSunkenOpponentShip(result.ship);
+      }
+      strategies[attacker].attackResult(coordinate, result.isHit, result.isSunk ? result.ship.getShipType() : null);
+
+      if (result.isGameLost) {
+        return new GameResult(seed, firstPlayer, attacker, shots[attacker], shots[defender]);
+      }
+      attacker = defender;
+    }
+    throw new IllegalStateException(players[attacker] + " did not win after " + maxShots + " attacks. seed=" + seed);
+  }
+
+  private Model newFleet(int player, SplittableRandom random) {
+    Model model = new Model(boardWidth, boardHeight);
+    model.setUserName(players[player].getName());
+    PlacementStrategy placementStrategy = players[player].getPlacementStrategy();
+    List<Ship> ships = placementStrategy.placeFleet(fleet, boardWidth, boardHeight, random);
+    for (int i = 0; i < fleet.length; i++) {
+      Ship ship = ships.get(i);
+      if (!model.isShipPlacementValid(ship)) {
+        ship = replaceShip(placementStrategy, fleet[i], model, random);
+      }
+      model.placeShip(ship);
+    }
+    return model;
+  }
+
+  /**
+   * Asks for a ship again until it can be placed, like the Controller does for a player whose placement is rejected
+   */
+  private Ship replaceShip(PlacementStrategy placementStrategy, ShipType type, Model model, SplittableRandom random) {
+    for (int attempt = 0; attempt < MAX_PLACEMENT_ATTEMPTS; attempt++) {
+      Ship ship = placementStrategy.placeShip(type, boardWidth, boardHeight, random);
+      if (model.isShipPlacementValid(ship)) {
+        return ship;
+      }
+    }
+    throw new IllegalStateException(model.getUserName() + " could not place a valid " + type);
+  }
+
+}
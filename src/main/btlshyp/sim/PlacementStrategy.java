@@ -0,0 +1,43 @@
+package main.btlshyp.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import main.btlshyp.model.Ship;
+import main.btlshyp.model.ShipType;
+
+/**
+ * Decides where a simulated player puts each of their ships.
+ *
+ * <p>The {@link GameSimulator} checks every proposed ship with {@link main.btlshyp.model.Model#isShipPlacementValid}
+ * and asks again if it is rejected, so a strategy may propose ships which overlap ones it has already placed.
+ * Implementations are shared between games running on different threads and so must not keep per-game state.
+ */
+@FunctionalInterface
+public interface PlacementStrategy {
+
+  /**
+   * @param type The type of ship to place
+   * @param boardWidth The width of the board the ship is going on
+   * @param boardHeight The height of the board the ship is going on
+   * @param random The game's source of randomness
+   * @return A ship of the given type with its coordinates set
+   */
+  Ship placeShip(ShipType type, int boardWidth, int boardHeight, SplittableRandom random);
+
+  /**
+   * Places a whole fleet at once. Strategies which can see the ships they have already placed (say with a
+   * {@link main.btlshyp.model.PlacementTable}) should override this to avoid proposing overlapping ships.
+   *
+   * @return One ship for each of the given types, in the same order
+   */
+  default List<Ship> placeFleet(ShipType[] fleet, int boardWidth, int boardHeight, SplittableRandom random) {
+    List<Ship> ships = new ArrayList<>(fleet.length);
+    for (ShipType type : fleet) {
+      ships.add(placeShip(type, boardWidth, boardHeight, random));
+    }
+    return ships;
+  }
+
+}
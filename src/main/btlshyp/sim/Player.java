@@ -0,0 +1,33 @@
+package main.btlshyp.sim;
+
+import java.util.function.Supplier;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A simulated player: how they place their ships and how they attack
+ */
+@AllArgsConstructor
+@Getter
+@ToString(of = "name")
+public class Player {
+
+  private final String name;
+
+  private final PlacementStrategy placementStrategy;
+
+  /**
+   * Creates a new AttackStrategy for each game
+   */
+  private final Supplier<? extends AttackStrategy> attackStrategySupplier;
+
+  /**
+   * A player who places ships and attacks at random
+   */
+  public static Player random(String name) {
+    return new Player(name, new RandomPlacementStrategy(), RandomAttackStrategy::new);
+  }
+
+}
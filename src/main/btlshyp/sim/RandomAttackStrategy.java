@@ -0,0 +1,38 @@
+package main.btlshyp.sim;
+
+import java.util.SplittableRandom;
+
+import main.btlshyp.model.Coordinate;
+
+/**
+ * Attacks every square of the board once, in a random order
+ */
+public class RandomAttackStrategy implements AttackStrategy {
+
+  private int[] squares;
+  private int boardHeight;
+  private int attacks;
+
+  @Override
+  public void newGame(int boardWidth, int boardHeight, SplittableRandom random) {
+    this.boardHeight = boardHeight;
+    this.attacks = 0;
+    this.squares = new int[boardWidth * boardHeight];
+    // Fisher-Yates shuffle of every square
+    for (int i = 0; i < squares.length; i++) {
+      int j = random.nextInt(i + 1);
+      squares[i] = squares[j];
+      squares[j] = i;
+    }
+  }
+
+  @Override
+  public Coordinate nextAttack() {
+    if (attacks == squares.length) {
+      throw new IllegalStateException("Every square has already been attacked");
+    }
+    int square = squares[attacks++];
+    return new Coordinate(square / boardHeight, square % boardHeight);
+  }
+
+}
@@ -0,0 +1,31 @@
+package main.btlshyp.sim;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import main.btlshyp.model.PlacementTable;
+import main.btlshyp.model.Ship;
+import main.btlshyp.model.ShipType;
+
+/**
+ * Places each ship uniformly at random among the placements which fit on the board. A whole fleet is placed without
+ * any ships overlapping, so it never needs to be re-placed.
+ */
+public class RandomPlacementStrategy implements PlacementStrategy {
+
+  @Override
+  public Ship placeShip(ShipType type, int boardWidth, int boardHeight, SplittableRandom random) {
+    PlacementTable table = PlacementTable.forBoard(boardWidth, boardHeight);
+    int placement = table.randomPlacement(type, table.newOccupancy(), random);
+    if (placement < 0) {
+      throw new IllegalStateException(type + " doesn't fit on a " + boardWidth + "x" + boardHeight + " board");
+    }
+    return table.toShip(type, placement);
+  }
+
+  @Override
+  public List<Ship> placeFleet(ShipType[] fleet, int boardWidth, int boardHeight, SplittableRandom random) {
+    return PlacementTable.forBoard(boardWidth, boardHeight).randomFleet(fleet, random);
+  }
+
+}
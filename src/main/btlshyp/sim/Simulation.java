@@ -0,0 +1,73 @@
+package main.btlshyp.sim;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.LongStream;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Plays many games between the same two players in parallel.
+ *
+ * <p>Game {@code i} of a run is played with seed {@code seed + i}, so a run (and any single game in it) can be
+ * reproduced regardless of how many threads played it.
+ */
+@Slf4j
+public class Simulation {
+
+  private final GameSimulator simulator;
+  private final int parallelism;
+
+  /**
+   * A Simulation which uses every available core
+   */
+  public Simulation(GameSimulator simulator) {
+    this(simulator, Runtime.getRuntime().availableProcessors());
+  }
+
+  public Simulation(GameSimulator simulator, int parallelism) {
+    this.simulator = simulator;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Plays the given number of games
+   *
+   * @param games How many games to play
+   * @param seed The seed of the first game
+   * @return Totals over every game played
+   */
+  public SimulationSummary run(long games, long seed) {
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    long start = System.nanoTime();
+    try {
+      SimulationSummary summary = pool.submit(() -> LongStream.range(0, games).parallel()
+          .mapToObj(game -> simulator.play(seed + game))
+          .collect(SimulationSummary::new, SimulationSummary::accept, SimulationSummary::combine)).get();
+      summary.setElapsedNanos(System.nanoTime() - start);
+      return summary;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while simulating games", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("A simulated game failed", e.getCause());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Plays random players against each other and logs the results.
+   *
+   * @param args Accepts an (optional) number of games followed by an (optional) number of threads
+   */
+  public static void main(String[] args) {
+    long games = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+    int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+    GameSimulator simulator = new GameSimulator(Player.random("Random 0"), Player.random("Random 1"));
+    SimulationSummary summary = new Simulation(simulator, parallelism).run(games, 0);
+    log.info("{} on {} threads", summary, parallelism);
+  }
+
+}
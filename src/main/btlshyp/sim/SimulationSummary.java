@@ -0,0 +1,98 @@
+package main.btlshyp.sim;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Totals over many {@link GameResult}s. A SimulationSummary is filled by a single thread; summaries from different
+ * threads are merged with {@link #combine(SimulationSummary)}.
+ */
+@Getter
+public class SimulationSummary {
+
+  private long games;
+  private final long[] wins = new long[2];
+  private long firstPlayerWins;
+  private long winnerShots;
+  private long elapsedNanos;
+
+  // Per player totals of the shots they needed in the games they won, and of their squares, for the variance
+  @Getter(AccessLevel.NONE)
+  private final long[] shotsToWin = new long[2];
+  @Getter(AccessLevel.NONE)
+  private final long[] shotsToWinSquared = new long[2];
+
+  public void accept(GameResult result) {
+    games++;
+    wins[result.getWinner()]++;
+    if (result.getWinner() == result.getFirstPlayer()) {
+      firstPlayerWins++;
+    }
+    winnerShots += result.getWinnerShots();
+    shotsToWin[result.getWinner()] += result.getWinnerShots();
+    shotsToWinSquared[result.getWinner()] += (long) result.getWinnerShots() * result.getWinnerShots();
+  }
+
+  public void combine(SimulationSummary other) {
+    games += other.games;
+    wins[0] += other.wins[0];
+    wins[1] += other.wins[1];
+    firstPlayerWins += other.firstPlayerWins;
+    winnerShots += other.winnerShots;
+    for (int player = 0; player < 2; player++) {
+      shotsToWin[player] += other.shotsToWin[player];
+      shotsToWinSquared[player] += other.shotsToWinSquared[player];
+    }
+  }
+
+  void setElapsedNanos(long elapsedNanos) {
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  public long getWins(int player) {
+    return wins[player];
+  }
+
+  public double getWinRate(int player) {
+    return games == 0 ? 0 : (double) wins[player] / games;
+  }
+
+  /**
+   * @return The mean number of attacks the player needed in the games they won
+   */
+  public double getMeanShotsToWin(int player) {
+    return wins[player] == 0 ? 0 : (double) shotsToWin[player] / wins[player];
+  }
+
+  /**
+   * @return The sample variance of the number of attacks the player needed in the games they won
+   */
+  public double getShotsToWinVariance(int player) {
+    long n = wins[player];
+    if (n < 2) {
+      return 0;
+    }
+    double mean = getMeanShotsToWin(player);
+    return Math.max(0, (shotsToWinSquared[player] - n * mean * mean) / (n - 1));
+  }
+
+  /**
+   * @return The mean number of attacks the winner needed
+   */
+  public double getMeanWinnerShots() {
+    return games == 0 ? 0 : (double) winnerShots / games;
+  }
+
+  public double getGamesPerMinute() {
+    return elapsedNanos == 0 ? 0 : games * 60e9 / elapsedNanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%,d games: player 0 won %.2f%%, player 1 won %.2f%%, first player won %.2f%%, "
+        + "winner needed %.2f shots on average, %,.0f games/minute",
+        games, getWinRate(0) * 100, getWinRate(1) * 100, games == 0 ? 0 : firstPlayerWins * 100.0 / games,
+        getMeanWinnerShots(), getGamesPerMinute());
+  }
+
+}
@@ -0,0 +1,26 @@
+package main.btlshyp.tournament;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Prints each report as a block of human readable lines
+ */
+public class ConsoleTournamentReporter implements TournamentReporter {
+
+  private final PrintStream out;
+
+  public ConsoleTournamentReporter(PrintStream out) {
+    this.out = out;
+  }
+
+  @Override
+  public void report(List<MatchupResult> results, long elapsedNanos, boolean done) {
+    out.printf("%s after %.1fs:%n", done ? "Final results" : "Results", elapsedNanos / 1e9);
+    for (MatchupResult result : results) {
+      out.println("  " + result);
+    }
+    out.flush();
+  }
+
+}
@@ -0,0 +1,45 @@
+package main.btlshyp.tournament;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes one CSV row per matchup per report, flushing after each report so the file can be followed while the
+ * tournament runs. The final rows have {@code final} set to true.
+ */
+public class CsvTournamentReporter implements TournamentReporter {
+
+  static final String HEADER = "elapsed_ms,challenger,opponent,games,wins,win_rate,win_rate_low,win_rate_high,"
+      + "mean_shots_to_win,shots_to_win_low,shots_to_win_high,final";
+
+  private final PrintStream out;
+  private boolean headerWritten;
+
+  public CsvTournamentReporter(PrintStream out) {
+    this.out = out;
+  }
+
+  @Override
+  public void report(List<MatchupResult> results, long elapsedNanos, boolean done) {
+    if (!headerWritten) {
+      out.println(HEADER);
+      headerWritten = true;
+    }
+    for (MatchupResult result : results) {
+      out.println(String.format(Locale.ROOT, "%d,%s,%s,%d,%d,%.6f,%.6f,%.6f,%.4f,%.4f,%.4f,%b",
+          elapsedNanos / 1_000_000, quote(result.getChallenger()), quote(result.getOpponent()), result.getGames(),
+          result.getWins(), result.getWinRate(), result.getWinRateLow(), result.getWinRateHigh(),
+          result.getMeanShotsToWin(), result.getShotsToWinLow(), result.getShotsToWinHigh(), done));
+    }
+    out.flush();
+  }
+
+  private static String quote(String field) {
+    if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0) {
+      return field;
+    }
+    return '"' + field.replace("\"", "\"\"") + '"';
+  }
+
+}
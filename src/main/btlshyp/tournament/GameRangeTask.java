@@ -0,0 +1,49 @@
+package main.btlshyp.tournament;
+
+import java.util.concurrent.RecursiveTask;
+
+import main.btlshyp.sim.GameSimulator;
+import main.btlshyp.sim.SimulationSummary;
+
+/**
+ * Plays a range of consecutively seeded games, splitting the range in half until it is small enough to play on one
+ * thread. Each half fills its own {@link SimulationSummary}, so the only shared state is the immutable simulator.
+ */
+class GameRangeTask extends RecursiveTask<SimulationSummary> {
+
+  /**
+   * Ranges this small are played without splitting. A game takes microseconds, so this keeps task overhead small
+   * while still leaving plenty of tasks to steal.
+   */
+  static final int SPLIT_THRESHOLD = 256;
+
+  private final GameSimulator simulator;
+  private final long firstSeed;
+  private final long games;
+
+  GameRangeTask(GameSimulator simulator, long firstSeed, long games) {
+    this.simulator = simulator;
+    this.firstSeed = firstSeed;
+    this.games = games;
+  }
+
+  @Override
+  protected SimulationSummary compute() {
+    if (games <= SPLIT_THRESHOLD) {
+      SimulationSummary summary = new SimulationSummary();
+      for (long game = 0; game < games; game++) {
+        summary.accept(simulator.play(firstSeed + game));
+      }
+      return summary;
+    }
+
+    long half = games / 2;
+    GameRangeTask first = new GameRangeTask(simulator, firstSeed, half);
+    GameRangeTask second = new GameRangeTask(simulator, firstSeed + half, games - half);
+    first.fork();
+    SimulationSummary summary = second.compute();
+    summary.combine(first.join());
+    return summary;
+  }
+
+}
@@ -0,0 +1,67 @@
+package main.btlshyp.tournament;
+
+import lombok.Getter;
+import main.btlshyp.sim.SimulationSummary;
+
+/**
+ * The results so far of one challenger against one opponent. The challenger is player 0 of every game.
+ *
+ * <p>Intervals are 95% confidence intervals: a Wilson score interval for the win rate and a normal approximation for
+ * the mean shots to win.
+ */
+@Getter
+public class MatchupResult {
+
+  static final double Z_95 = 1.959964;
+
+  private final String challenger;
+  private final String opponent;
+  private final long games;
+  private final long wins;
+  private final double winRate;
+  private final double winRateLow;
+  private final double winRateHigh;
+  private final double meanShotsToWin;
+  private final double shotsToWinLow;
+  private final double shotsToWinHigh;
+
+  MatchupResult(String challenger, String opponent, SimulationSummary summary) {
+    this.challenger = challenger;
+    this.opponent = opponent;
+    this.games = summary.getGames();
+    this.wins = summary.getWins(0);
+    this.winRate = summary.getWinRate(0);
+
+    double[] winRateInterval = wilsonInterval(wins, games, Z_95);
+    this.winRateLow = winRateInterval[0];
+    this.winRateHigh = winRateInterval[1];
+
+    this.meanShotsToWin = summary.getMeanShotsToWin(0);
+    double halfWidth = wins == 0 ? 0 : Z_95 * Math.sqrt(summary.getShotsToWinVariance(0) / wins);
+    this.shotsToWinLow = meanShotsToWin - halfWidth;
+    this.shotsToWinHigh = meanShotsToWin + halfWidth;
+  }
+
+  /**
+   * @return The Wilson score interval {low, high} for a proportion of successes
+   */
+  static double[] wilsonInterval(long successes, long trials, double z) {
+    if (trials == 0) {
+      return new double[] { 0, 1 };
+    }
+    double p = (double) successes / trials;
+    double z2 = z * z;
+    double denominator = 1 + z2 / trials;
+    double center = (p + z2 / (2 * trials)) / denominator;
+    double halfWidth = z * Math.sqrt(p * (1 - p) / trials + z2 / (4.0 * trials * trials)) / denominator;
+    return new double[] { Math.max(0, center - halfWidth), Math.min(1, center + halfWidth) };
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s vs %s: %,d games, won %.2f%% [%.2f%%, %.2f%%], %.2f shots to win [%.2f, %.2f]",
+        challenger, opponent, games, winRate * 100, winRateLow * 100, winRateHigh * 100,
+        meanShotsToWin, shotsToWinLow, shotsToWinHigh);
+  }
+
+}
@@ -0,0 +1,135 @@
+package main.btlshyp.tournament;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import main.btlshyp.bot.DensityAttackStrategy;
+import main.btlshyp.sim.GameSimulator;
+import main.btlshyp.sim.Player;
+import main.btlshyp.sim.RandomPlacementStrategy;
+import main.btlshyp.sim.SimulationSummary;
+
+/**
+ * Plays every challenger against every opponent many times and reports win rates, shots to win and confidence
+ * intervals for each matchup.
+ *
+ * <p>Games are played in batches. Each batch splits every matchup's games into {@link GameRangeTask}s on a single
+ * {@link ForkJoinPool}, so idle threads steal work from any matchup. After each batch the running totals are handed
+ * to the {@link TournamentReporter}.
+ *
+ * <p>Every game builds its own SplittableRandom from its seed, so threads share no random number generator or other
+ * mutable state. Game {@code g} of matchup {@code m} is seeded with {@code seed + (m << 32) + g}, so results don't
+ * depend on the number of threads.
+ */
+@Slf4j
+public class Tournament {
+
+  public static final int DEFAULT_BATCH_GAMES = 20_000;
+
+  private final List<Player> challengers;
+  private final List<Player> opponents;
+  private final long gamesPerMatchup;
+  private final long seed;
+
+  @Setter
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * How many games of each matchup are played between reports
+   */
+  @Setter
+  private int batchGames = DEFAULT_BATCH_GAMES;
+
+  @Setter
+  private TournamentReporter reporter = (results, elapsedNanos, done) -> { };
+
+  public Tournament(List<Player> challengers, List<Player> opponents, long gamesPerMatchup, long seed) {
+    this.challengers = new ArrayList<>(challengers);
+    this.opponents = new ArrayList<>(opponents);
+    this.gamesPerMatchup = gamesPerMatchup;
+    this.seed = seed;
+  }
+
+  /**
+   * Plays the whole tournament, reporting after each batch
+   *
+   * @return The final result of every matchup, challengers in order then opponents in order
+   */
+  public List<MatchupResult> run() {
+    List<GameSimulator> simulators = new ArrayList<>();
+    List<SimulationSummary> totals = new ArrayList<>();
+    for (Player challenger : challengers) {
+      for (Player opponent : opponents) {
+        simulators.add(new GameSimulator(challenger, opponent));
+        totals.add(new SimulationSummary());
+      }
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    long start = System.nanoTime();
+    try {
+      List<MatchupResult> results = results(simulators, totals);
+      for (long played = 0; played < gamesPerMatchup; ) {
+        long batch = Math.min(batchGames, gamesPerMatchup - played);
+        List<GameRangeTask> tasks = new ArrayList<>(simulators.size());
+        for (int matchup = 0; matchup < simulators.size(); matchup++) {
+          tasks.add(new GameRangeTask(simulators.get(matchup), seed + ((long) matchup << 32) + played, batch));
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        for (int matchup = 0; matchup < tasks.size(); matchup++) {
+          totals.get(matchup).combine(tasks.get(matchup).join());
+        }
+        played += batch;
+
+        results = results(simulators, totals);
+        reporter.report(results, System.nanoTime() - start, played == gamesPerMatchup);
+      }
+      return results;
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private static List<MatchupResult> results(List<GameSimulator> simulators, List<SimulationSummary> totals) {
+    List<MatchupResult> results = new ArrayList<>(simulators.size());
+    for (int matchup = 0; matchup < simulators.size(); matchup++) {
+      GameSimulator simulator = simulators.get(matchup);
+      results.add(new MatchupResult(simulator.getPlayer(0).getName(), simulator.getPlayer(1).getName(),
+          totals.get(matchup)));
+    }
+    return results;
+  }
+
+  /**
+   * Plays the built in players against each other.
+   *
+   * @param args Accepts an (optional) number of games per matchup followed by an (optional) CSV file to write the
+   * results to. Without a file the results are printed to stdout as they come in.
+   */
+  public static void main(String[] args) throws FileNotFoundException {
+    long games = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+    List<Player> players = Arrays.asList(
+        Player.random("random"),
+        new Player("density", new RandomPlacementStrategy(), DensityAttackStrategy::new));
+
+    Tournament tournament = new Tournament(players, players, games, 0);
+    if (args.length > 1) {
+      try (PrintStream csv = new PrintStream(args[1])) {
+        tournament.setReporter(new CsvTournamentReporter(csv));
+        tournament.run();
+      }
+      log.info("Results written to {}", args[1]);
+    } else {
+      tournament.setReporter(new ConsoleTournamentReporter(System.out));
+      tournament.run();
+    }
+  }
+
+}
@@ -0,0 +1,19 @@
+package main.btlshyp.tournament;
+
+import java.util.List;
+
+/**
+ * Receives a {@link Tournament}'s results as it runs. Every call is made from the thread running the tournament.
+ */
+public interface TournamentReporter {
+
+  /**
+   * Called after each batch of games has been played in every matchup
+   *
+   * @param results The totals so far of every matchup, challengers in order then opponents in order
+   * @param elapsedNanos How long the tournament has been running
+   * @param done Whether this is the final report
+   */
+  void report(List<MatchupResult> results, long elapsedNanos, boolean done);
+
+}
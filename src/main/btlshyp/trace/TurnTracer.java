@@ -0,0 +1,139 @@
+package main.btlshyp.trace;
+
+import lombok.extern.slf4j.Slf4j;
+import main.btlshyp.message.AttackResponseMessage;
+import main.btlshyp.model.Coordinate;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Traces each of this player's turns from the click on the opponent's board to the response being displayed, and writes
+ * where the time went to a CSV file which can be opened in a spreadsheet after the game.
+ *
+ * <p>Each attack is given a trace id which the opponent echoes in its response, along with its own timestamps for
+ * receiving the attack, working out the result and sending the response. The clocks of the two clients aren't
+ * synchronized, so only differences between timestamps taken on the same machine are used. One line per turn is written
+ * with these stages, all in microseconds:
+ * <ul>
+ *   <li>{@code until_sent}: from the click until the attack was handed to the network client, including any wait for
+ *   the game loop to pick it up</li>
+ *   <li>{@code network}: the round trip through the server, i.e. the time waiting for the response less the time the
+ *   opponent spent on it</li>
+ *   <li>{@code opponent_model}: the opponent receiving the attack and checking it against its board</li>
+ *   <li>{@code opponent_respond}: the opponent displaying the attack and sending the response</li>
+ *   <li>{@code display}: displaying the response on this client</li>
+ * </ul>
+ * If the opponent didn't send its timestamps, the opponent stages are left empty and {@code network} covers the whole
+ * wait.
+ *
+ * <p>Only one attack is in flight at a time, so a response which doesn't carry the trace id of the last attack sent is
+ * ignored.
+ */
+@Slf4j
+public class TurnTracer implements Closeable {
+
+  static final String HEADER = "time,trace_id,x,y,result,total_us,until_sent_us,network_us,opponent_model_us,"
+      + "opponent_respond_us,display_us";
+
+  private final Writer out;
+
+  private long traceId;
+  private long clickedNanos;
+  private long sentNanos;
+
+  TurnTracer(Writer out) throws IOException {
+    this.out = out;
+    out.write(HEADER + "\n");
+    out.flush();
+  }
+
+  /**
+   * Creates (or replaces) the trace file
+   */
+  public static TurnTracer open(Path file) throws IOException {
+    BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    log.info("Tracing turns to {}", file);
+    return new TurnTracer(writer);
+  }
+
+  /**
+   * Starts tracing an attack
+   *
+   * @param clickedNanos {@link System#nanoTime()} when the player made the attack
+   * @param sentNanos {@link System#nanoTime()} when the attack was sent
+   * @return The trace id to send with the attack
+   */
+  public synchronized long attackSent(long clickedNanos, long sentNanos) {
+    this.traceId = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    this.clickedNanos = clickedNanos;
+    this.sentNanos = sentNanos;
+    return traceId;
+  }
+
+  /**
+   * Finishes tracing the attack the response answers, and writes its line to the trace file
+   *
+   * @param receivedNanos {@link System#nanoTime()} when the response was received
+   * @param displayedNanos {@link System#nanoTime()} once the response had been displayed
+   */
+  public synchronized void responseDisplayed(AttackResponseMessage response, long receivedNanos, long displayedNanos) {
+    if (response.getTraceId() == 0 || response.getTraceId() != traceId) {
+      log.debug("Not tracing response with trace id {}. Expected {}", response.getTraceId(), traceId);
+      return;
+    }
+    traceId = 0;
+
+    boolean opponentTimed = response.getAttemptReceivedNanos() != 0 && response.getResponseSentNanos() != 0;
+    long opponentNanos = opponentTimed ? response.getResponseSentNanos() - response.getAttemptReceivedNanos() : 0;
+    Coordinate coordinate = response.getCoordinate();
+
+    StringBuilder line = new StringBuilder(128)
+        .append(Instant.now()).append(',')
+        .append(Long.toHexString(response.getTraceId())).append(',')
+        .append(coordinate == null ? "" : coordinate.x).append(',')
+        .append(coordinate == null ? "" : coordinate.y).append(',')
+        .append(response.getHitOrMiss() == null ? "" : response.getHitOrMiss()).append(',')
+        .append(micros(displayedNanos - clickedNanos)).append(',')
+        .append(micros(sentNanos - clickedNanos)).append(',')
+        .append(micros(receivedNanos - sentNanos - opponentNanos)).append(',');
+    if (opponentTimed) {
+      line.append(micros(response.getAttackResultsNanos() - response.getAttemptReceivedNanos())).append(',')
+          .append(micros(response.getResponseSentNanos() - response.getAttackResultsNanos()));
+    } else {
+      line.append(',');
+    }
+    line.append(',').append(micros(displayedNanos - receivedNanos)).append('\n');
+
+    try {
+      out.write(line.toString());
+      out.flush();
+    } catch (IOException e) {
+      log.warn("Unable to write turn trace", e);
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    try {
+      out.close();
+    } catch (IOException e) {
+      log.warn("Unable to close turn trace", e);
+    }
+  }
+
+  private static long micros(long nanos) {
+    return TimeUnit.NANOSECONDS.toMicros(nanos);
+  }
+
+}
@@ -9,6 +9,10 @@ import main.btlshyp.model.Coordinate;
 public class AttackEvent extends EventObject {
   @Getter @Setter
   private Coordinate coordinate;
+
+  // System.nanoTime() when the player made the attack, for tracing how long the turn takes from here
+  @Getter
+  private final long createdNanos = System.nanoTime();
   
   public AttackEvent(Object source, Coordinate coordinate) {
     super(source);
@@ -0,0 +1,133 @@
+package test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.junit.Test;
+
+import main.btlshyp.logging.AsyncLogHandler;
+
+public class AsyncLogHandlerTest {
+
+  @Test
+  public void testFlush_PublishesEverythingQueuedInOrderOnTheWorker() {
+    RecordingHandler delegate = new RecordingHandler();
+    AsyncLogHandler handler = new AsyncLogHandler(delegate);
+
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 1_000; i++) {
+      handler.publish(new LogRecord(Level.INFO, Integer.toString(i)));
+      expected.add(Integer.toString(i));
+    }
+    handler.flush();
+
+    assertThat(delegate.getMessages(), is(expected));
+    assertThat(delegate.getThreads(), contains("AsyncLogHandler"));
+    assertThat(delegate.flushes, is(1));
+    handler.close();
+  }
+
+  @Test
+  public void testPublish_FullBufferDropsBelowWarningOnly() throws Exception {
+    CountDownLatch firstPublished = new CountDownLatch(1);
+    CountDownLatch releaseWorker = new CountDownLatch(1);
+    RecordingHandler delegate = new RecordingHandler() {
+      @Override
+      public void publish(LogRecord record) {
+        super.publish(record);
+        firstPublished.countDown();
+        try {
+          releaseWorker.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    AsyncLogHandler handler = new AsyncLogHandler(delegate, 2);
+
+    // The worker is held up publishing the first record while the buffer fills behind it
+    handler.publish(new LogRecord(Level.INFO, "held"));
+    assertThat(firstPublished.await(5, TimeUnit.SECONDS), is(true));
+    handler.publish(new LogRecord(Level.INFO, "queued 1"));
+    handler.publish(new LogRecord(Level.INFO, "queued 2"));
+    handler.publish(new LogRecord(Level.INFO, "dropped"));
+    assertThat(handler.getDroppedRecords(), is(1L));
+
+    Thread warner = new Thread(() -> handler.publish(new LogRecord(Level.WARNING, "waits for room")));
+    warner.start();
+    releaseWorker.countDown();
+    warner.join(TimeUnit.SECONDS.toMillis(5));
+    handler.flush();
+
+    assertThat(delegate.getMessages(), contains("held", "queued 1", "queued 2", "waits for room"));
+    assertThat(handler.getDroppedRecords(), is(1L));
+    handler.close();
+  }
+
+  @Test
+  public void testClose_PublishesEverythingQueuedThenClosesDelegate() {
+    RecordingHandler delegate = new RecordingHandler();
+    AsyncLogHandler handler = new AsyncLogHandler(delegate);
+
+    for (int i = 0; i < 100; i++) {
+      handler.publish(new LogRecord(Level.FINE, Integer.toString(i)));
+    }
+    handler.close();
+    handler.publish(new LogRecord(Level.SEVERE, "after close"));
+
+    assertThat(delegate.getMessages().size(), is(100));
+    assertThat(delegate.getMessages().get(99), is("99"));
+    assertThat(delegate.closed, is(true));
+  }
+
+  private static class RecordingHandler extends Handler {
+
+    private final List<String> messages = new ArrayList<>();
+    private final List<String> threads = new ArrayList<>();
+    private volatile int flushes;
+    private volatile boolean closed;
+
+    private RecordingHandler() {
+      setLevel(Level.ALL);
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+      synchronized (this) {
+        messages.add(record.getMessage());
+        String thread = Thread.currentThread().getName();
+        if (!threads.contains(thread)) {
+          threads.add(thread);
+        }
+      }
+    }
+
+    @Override
+    public void flush() {
+      flushes++;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+
+    private synchronized List<String> getMessages() {
+      return new ArrayList<>(messages);
+    }
+
+    private synchronized List<String> getThreads() {
+      return new ArrayList<>(threads);
+    }
+  }
+
+}
@@ -0,0 +1,146 @@
+package test;
+
+import static main.btlshyp.message.AttackResponseMessage.HitOrMiss.HIT;
+import static main.btlshyp.message.AttackResponseMessage.ShipSunk.BATTLESHIP;
+import static main.btlshyp.message.GameWonResponseMessage.GameResult.WIN;
+import static main.btlshyp.message.JoinResponseMessage.ConfirmJoin.ACCEPT;
+import static main.btlshyp.message.TurnStartMessage.Turn.START;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.samePropertyValuesAs;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import main.btlshyp.message.AttackAttemptMessage;
+import main.btlshyp.message.AttackResponseMessage;
+import main.btlshyp.message.ChatMessage;
+import main.btlshyp.message.GameStartMessage;
+import main.btlshyp.message.GameWonAttemptMessage;
+import main.btlshyp.message.GameWonResponseMessage;
+import main.btlshyp.message.JoinAttemptMessage;
+import main.btlshyp.message.JoinResponseMessage;
+import main.btlshyp.message.LoginMessage;
+import main.btlshyp.message.Message;
+import main.btlshyp.message.PingMessage;
+import main.btlshyp.message.PongMessage;
+import main.btlshyp.message.ShipsPlacedMessage;
+import main.btlshyp.message.TurnStartMessage;
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.network.codec.BinaryMessageCodec;
+
+public class BinaryMessageCodecTest {
+
+  private static final String USERNAME = "Testy McTester";
+  private static final Coordinate COORDINATE = new Coordinate(2, 3);
+
+  // Each side of a connection has its own codec
+  private final BinaryMessageCodec sender = new BinaryMessageCodec();
+  private final BinaryMessageCodec receiver = new BinaryMessageCodec();
+
+  @Test
+  public void roundTrip_AllMessageTypes() throws Exception {
+    List<Message> messages = Arrays.asList(
+        new ChatMessage("Test chat message \u2693", USERNAME),
+        new JoinAttemptMessage(USERNAME),
+        new JoinResponseMessage(ACCEPT),
+        new GameStartMessage("Opponent"),
+        new ShipsPlacedMessage(USERNAME),
+        new AttackAttemptMessage(USERNAME, COORDINATE),
+        new AttackResponseMessage(USERNAME, HIT, BATTLESHIP, new Coordinate(-1, 300)),
+        new AttackResponseMessage(null, null, null, null),
+        new TurnStartMessage(USERNAME, START),
+        new GameWonAttemptMessage(USERNAME),
+        new GameWonResponseMessage(USERNAME, WIN),
+        new LoginMessage(USERNAME),
+        new PingMessage(USERNAME, 1, -123_456_789_012L),
+        new PongMessage(USERNAME, Long.MAX_VALUE, 42),
+        tracedAttackAttempt(),
+        tracedAttackResponse());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (Message message : messages) {
+      sender.write(out, message);
+    }
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+    for (Message message : messages) {
+      Message result = receiver.read(in);
+
+      assertThat(result, instanceOf(message.getClass()));
+      assertThat(result, samePropertyValuesAs(message));
+    }
+  }
+
+  @Test
+  public void write_InternsUsernames() throws Exception {
+    AttackAttemptMessage message = new AttackAttemptMessage(USERNAME, COORDINATE);
+
+    int firstFrameSize = encode(message).length;
+    int secondFrameSize = encode(message).length;
+
+    assertThat(secondFrameSize, lessThan(firstFrameSize));
+    assertThat(secondFrameSize, lessThan(8));
+  }
+
+  @Test
+  public void write_UntracedAttack_LeavesOutTracingFields() throws Exception {
+    // Intern the username first so only the fields are compared
+    encode(new AttackResponseMessage(USERNAME, HIT, BATTLESHIP, COORDINATE));
+
+    int untracedSize = encode(new AttackResponseMessage(USERNAME, HIT, BATTLESHIP, COORDINATE)).length;
+    int tracedSize = encode(tracedAttackResponse()).length;
+
+    // Length, tag, username id, two enums, coordinate and the tracing flag
+    assertThat(untracedSize, is(9));
+    assertThat(tracedSize, greaterThan(untracedSize + 20));
+  }
+
+  @Test
+  public void read_UnknownTag_ReturnsNull() throws Exception {
+    byte[] frame = { 2, (byte) 0x7F, 0 };
+
+    Message result = receiver.read(new DataInputStream(new ByteArrayInputStream(frame)));
+
+    assertNull(result);
+  }
+
+  @Test(expected = IOException.class)
+  public void read_OversizedFrame_Throws() throws Exception {
+    byte[] frame = { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x7F };
+
+    receiver.read(new DataInputStream(new ByteArrayInputStream(frame)));
+  }
+
+  private byte[] encode(Message message) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    sender.write(out, message);
+    return out.toByteArray();
+  }
+
+  private static AttackAttemptMessage tracedAttackAttempt() {
+    AttackAttemptMessage message = new AttackAttemptMessage(USERNAME, COORDINATE);
+    message.setTraceId(0x7EADBEEFCAFEL);
+    return message;
+  }
+
+  private static AttackResponseMessage tracedAttackResponse() {
+    AttackResponseMessage message = new AttackResponseMessage(USERNAME, HIT, BATTLESHIP, COORDINATE);
+    message.setTraceId(0x7EADBEEFCAFEL);
+    message.setAttemptReceivedNanos(-9_000_000_000L);
+    message.setAttackResultsNanos(-8_999_000_000L);
+    message.setResponseSentNanos(-8_990_000_000L);
+    return message;
+  }
+
+}
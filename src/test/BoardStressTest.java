@@ -0,0 +1,127 @@
+package test;
+
+import static main.btlshyp.model.ShipType.BATTLESHIP;
+import static main.btlshyp.model.ShipType.DESTROYER;
+import static main.btlshyp.model.ShipType.PATROLBOAT;
+import static main.btlshyp.model.ShipType.SUBMARINE;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import main.btlshyp.model.Board;
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.model.Model;
+import main.btlshyp.model.Model.AttackResult;
+import main.btlshyp.model.Ship;
+import main.btlshyp.model.ShipType;
+
+/**
+ * Plays thousands of games at once to make sure games running in the same JVM don't share any state.
+ */
+public class BoardStressTest {
+
+	private static final int GAMES = 5_000;
+	private static final int FLEET_SQUARES = Ship.PATROL_SIZE + Ship.SUB_SIZE + Ship.DESTROYER_SIZE + Ship.BATTLESHIP_SIZE;
+
+	@Test
+	public void testConcurrentGames_NoInterference() throws Exception {
+		playGames(1);
+		playGames(Runtime.getRuntime().availableProcessors());
+	}
+
+	@Test
+	public void testSharedBoard_ConcurrentAttacks() throws Exception {
+		Model model = new Model();
+		placeFleet(model, 0);
+		AtomicInteger hits = new AtomicInteger();
+		AtomicInteger gameLostResults = new AtomicInteger();
+
+		// Every square is attacked from several threads at once
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		pool.submit(() -> IntStream.range(0, Board.WIDTH * Board.HEIGHT * 8).parallel().forEach(i -> {
+			int square = i % (Board.WIDTH * Board.HEIGHT);
+			AttackResult result = model.getAttackResults(new Coordinate(square / Board.HEIGHT, square % Board.HEIGHT));
+			if (result.isHit) {
+				hits.incrementAndGet();
+			}
+			if (result.isGameLost) {
+				gameLostResults.incrementAndGet();
+			}
+		})).get();
+		pool.shutdown();
+
+		assertThat(hits.get(), is(FLEET_SQUARES * 8));
+		assertThat(model.isGameLost(), is(true));
+		assertThat(gameLostResults.get() > 0, is(true));
+	}
+
+	/**
+	 * Plays GAMES games on a ForkJoinPool of the given size, failing if any game doesn't play out exactly as expected.
+	 * How fast games are played, alone and side by side, is measured by ConcurrentGamesBenchmark.
+	 */
+	private void playGames(int parallelism) throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		pool.submit(() -> IntStream.range(0, GAMES).parallel().forEach(BoardStressTest::playGame)).get();
+		pool.shutdown();
+	}
+
+	/**
+	 * Places a fleet that depends on the game number, then attacks every square. If any other game's ships or damage
+	 * leaked into this board the hits, sinkings or loss would come out differently.
+	 */
+	private static void playGame(int game) {
+		Model model = new Model();
+		placeFleet(model, game);
+
+		int hits = 0;
+		int sunk = 0;
+		for (int x = 0; x < Board.WIDTH; x++) {
+			for (int y = 0; y < Board.HEIGHT; y++) {
+				AttackResult result = model.getAttackResults(new Coordinate(x, y));
+				if (result.isHit) {
+					hits++;
+				}
+				if (result.isSunk) {
+					sunk++;
+				}
+				if (result.isHit && result.isGameLost != (hits == FLEET_SQUARES)) {
+					throw new AssertionError("Game " + game + " lost after " + hits + " hits");
+				}
+			}
+		}
+
+		if (hits != FLEET_SQUARES || sunk != 4 || !model.isGameLost()) {
+			throw new AssertionError("Game " + game + " had " + hits + " hits and " + sunk + " sunk ships");
+		}
+	}
+
+	/**
+	 * Places one ship per row (the rows rotated by game number) with each ship pushed right by a game dependent amount
+	 */
+	private static void placeFleet(Model model, int game) {
+		ShipType[] fleet = { BATTLESHIP, DESTROYER, SUBMARINE, PATROLBOAT };
+		for (int i = 0; i < fleet.length; i++) {
+			Ship ship = new Ship(fleet[i]);
+			int row = (i + game) % Board.HEIGHT;
+			int offset = game % (Board.WIDTH - ship.getShipSize() + 1);
+
+			ArrayList<Coordinate> coordinates = new ArrayList<>();
+			for (int x = offset; x < offset + ship.getShipSize(); x++) {
+				coordinates.add(new Coordinate(x, row));
+			}
+			ship.setShipCoordinates(coordinates);
+
+			if (!model.isShipPlacementValid(ship)) {
+				throw new AssertionError("Game " + game + " could not place " + ship);
+			}
+			model.placeShip(ship);
+		}
+	}
+
+}
@@ -0,0 +1,137 @@
+package test;
+
+import static main.btlshyp.model.ShipType.DESTROYER;
+import static main.btlshyp.model.ShipType.PATROLBOAT;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import main.btlshyp.model.Board;
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.model.Ship;
+import main.btlshyp.model.ShipType;
+
+public class BoardTest {
+
+	private Board fixture;
+
+	@Test
+	public void testIsShipPlacementValid_Overlapping() throws Exception {
+		fixture = new Board();
+		fixture.placeShip(ship(DESTROYER, new Coordinate(1, 1), new Coordinate(1, 2), new Coordinate(1, 3)));
+
+		boolean result = fixture.isShipPlacementValid(ship(PATROLBOAT, new Coordinate(0, 2), new Coordinate(1, 2)));
+
+		assertThat(result, is(false));
+	}
+
+	@Test
+	public void testIsShipPlacementValid_NotOverlapping() throws Exception {
+		fixture = new Board();
+		fixture.placeShip(ship(DESTROYER, new Coordinate(1, 1), new Coordinate(1, 2), new Coordinate(1, 3)));
+
+		boolean result = fixture.isShipPlacementValid(ship(PATROLBOAT, new Coordinate(2, 2), new Coordinate(3, 2)));
+
+		assertThat(result, is(true));
+	}
+
+	@Test
+	public void testIsHit_SinksShipAndLosesGame() throws Exception {
+		fixture = new Board();
+		Ship destroyer = ship(DESTROYER, new Coordinate(1, 1), new Coordinate(1, 2), new Coordinate(1, 3));
+		Ship patrolBoat = ship(PATROLBOAT, new Coordinate(3, 4), new Coordinate(4, 4));
+		fixture.placeShip(destroyer);
+		fixture.placeShip(patrolBoat);
+
+		assertThat(fixture.isHit(new Coordinate(0, 0)), is(false));
+		assertThat(fixture.isHit(new Coordinate(3, 4)), is(true));
+		assertThat(fixture.getShipAt(new Coordinate(3, 4)), sameInstance(patrolBoat));
+		assertThat(fixture.isShipSunk(patrolBoat), is(false));
+
+		assertThat(fixture.isHit(new Coordinate(4, 4)), is(true));
+		assertThat(fixture.isShipSunk(patrolBoat), is(true));
+		assertThat(fixture.isGameLost(), is(false));
+
+		fixture.isHit(new Coordinate(1, 1));
+		fixture.isHit(new Coordinate(1, 2));
+		fixture.isHit(new Coordinate(1, 3));
+		assertThat(fixture.isShipSunk(destroyer), is(true));
+		assertThat(fixture.isGameLost(), is(true));
+	}
+
+	@Test
+	public void testIsHit_SameSquareTwice_CountsOnce() throws Exception {
+		fixture = new Board();
+		Ship patrolBoat = ship(PATROLBOAT, new Coordinate(3, 4), new Coordinate(4, 4));
+		fixture.placeShip(patrolBoat);
+
+		assertThat(fixture.isHit(new Coordinate(3, 4)), is(true));
+		assertThat(fixture.isHit(new Coordinate(3, 4)), is(true));
+
+		assertThat(fixture.isShipSunk(patrolBoat), is(false));
+		assertThat(fixture.isGameLost(), is(false));
+	}
+
+	@Test
+	public void testIsHit_OffBoard_MissesWithoutDamagingAnything() throws Exception {
+		fixture = new Board();
+		Ship patrolBoat = ship(PATROLBOAT, new Coordinate(1, 0), new Coordinate(1, 1));
+		fixture.placeShip(patrolBoat);
+
+		// (0, 5) is just past the end of the first column, where (1, 0) would be if it wrapped round
+		assertThat(fixture.isHit(new Coordinate(0, 5)), is(false));
+		assertThat(fixture.isHit(new Coordinate(-1, 1)), is(false));
+
+		fixture.isHit(new Coordinate(1, 1));
+		assertThat(fixture.isShipSunk(patrolBoat), is(false));
+		assertThat(fixture.isGameLost(), is(false));
+	}
+
+	@Test
+	public void testGetShipAt_Empty() throws Exception {
+		fixture = new Board();
+
+		assertThat(fixture.getShipAt(new Coordinate(2, 2)), is(nullValue()));
+	}
+
+	@Test
+	public void testLargeBoard_SpansSeveralWords() throws Exception {
+		// 10 x 10 needs two longs per mask. (9, 9) is square 99.
+		fixture = new Board(10, 10);
+		Ship destroyer = ship(DESTROYER, new Coordinate(7, 9), new Coordinate(8, 9), new Coordinate(9, 9));
+
+		assertThat(fixture.isShipPlacementValid(destroyer), is(true));
+		fixture.placeShip(destroyer);
+		assertThat(fixture.isShipPlacementValid(ship(PATROLBOAT, new Coordinate(9, 8), new Coordinate(9, 9))), is(false));
+
+		fixture.isHit(new Coordinate(7, 9));
+		fixture.isHit(new Coordinate(8, 9));
+		assertThat(fixture.isGameLost(), is(false));
+		fixture.isHit(new Coordinate(9, 9));
+		assertThat(fixture.isShipSunk(destroyer), is(true));
+		assertThat(fixture.isGameLost(), is(true));
+	}
+
+	@Test
+	public void testIsShipPlacementValid_OffBoard() throws Exception {
+		fixture = new Board();
+
+		boolean result = fixture.isShipPlacementValid(ship(PATROLBOAT, new Coordinate(4, 4), new Coordinate(5, 4)));
+
+		assertThat(result, is(false));
+	}
+
+	private static Ship ship(ShipType type, Coordinate... coordinates) {
+		Ship ship = new Ship(type);
+		ship.setShipCoordinates(Stream.of(coordinates).collect(Collectors.toCollection(ArrayList::new)));
+		return ship;
+	}
+
+}
@@ -0,0 +1,183 @@
+package test;
+
+import static main.btlshyp.message.TurnStartMessage.Turn.START;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import main.btlshyp.controller.Controller;
+import main.btlshyp.message.AttackAttemptMessage;
+import main.btlshyp.message.GameStartMessage;
+import main.btlshyp.message.JoinAttemptMessage;
+import main.btlshyp.message.JoinResponseMessage;
+import main.btlshyp.message.JoinResponseMessage.ConfirmJoin;
+import main.btlshyp.message.ShipsPlacedMessage;
+import main.btlshyp.message.TurnStartMessage;
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.model.Ship;
+import main.btlshyp.network.NetworkClient;
+import main.btlshyp.view.View;
+import main.btlshyp.view.event.AttackEvent;
+import main.btlshyp.view.event.AttackListener;
+import main.btlshyp.view.event.SetShipEvent;
+import main.btlshyp.view.event.SetShipListener;
+
+public class ControllerTest {
+
+  private static final String USERNAME = "Testy McTester";
+  private static final int WARMUP_TURNS = 1_000;
+  private static final int MEASURED_TURNS = 200;
+
+  private Controller fixture;
+  private View mockView;
+  private NetworkClient mockNetworkClient;
+  private Thread gameThread;
+
+  // Set by the mocks as the game loop reaches them
+  private final AtomicLong yourTurnNanos = new AtomicLong();
+  private final AtomicReference<CountDownLatch> yourTurnLatch = new AtomicReference<>();
+  private final AtomicReference<CountDownLatch> attackSentLatch = new AtomicReference<>();
+  private final CountDownLatch joinedLatch = new CountDownLatch(1);
+
+  // When set, the server's replies are handed to the controller before sendMessageToServer returns
+  private volatile boolean replyBeforeSendReturns;
+
+  @Before
+  public void setUp() throws Exception {
+    mockView = mock(View.class);
+    mockNetworkClient = mock(NetworkClient.class);
+
+    when(mockView.getUsername()).thenReturn(USERNAME);
+    when(mockNetworkClient.loginToServer(anyString())).thenReturn(true);
+
+    doAnswer(invocation -> {
+      yourTurnNanos.set(System.nanoTime());
+      yourTurnLatch.get().countDown();
+      return null;
+    }).when(mockView).yourTurn();
+
+    doAnswer(invocation -> {
+      Object message = invocation.getArgument(0);
+      if (message instanceof JoinAttemptMessage) {
+        if (replyBeforeSendReturns) {
+          fixture.handleMessage(new JoinResponseMessage(ConfirmJoin.ACCEPT));
+          fixture.handleMessage(new GameStartMessage("opponent"));
+        }
+        joinedLatch.countDown();
+      } else if (message instanceof ShipsPlacedMessage) {
+        if (replyBeforeSendReturns) {
+          fixture.handleMessage(new TurnStartMessage("Server", START));
+        }
+      } else if (message instanceof AttackAttemptMessage) {
+        attackSentLatch.get().countDown();
+      }
+      return null;
+    }).when(mockNetworkClient).sendMessageToServer(any());
+
+    fixture = new Controller(mockView, mockNetworkClient);
+    fixture.init();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (gameThread != null) {
+      gameThread.interrupt();
+      gameThread.join(1_000);
+    }
+  }
+
+  @Test
+  public void handleMessage_TurnStartMessage_ReachesPerformAttackInUnderAMillisecond() throws Exception {
+    ArgumentCaptor<AttackListener> attackListenerCaptor = ArgumentCaptor.forClass(AttackListener.class);
+    verify(mockView).registerAttackListener(attackListenerCaptor.capture());
+    AttackListener attackListener = attackListenerCaptor.getValue();
+
+    // Wait until the game loop has logged in and asked to join, at which point it is WAITING on the server
+    gameThread = new Thread(fixture::playGame);
+    gameThread.start();
+    assertTrue(joinedLatch.await(5, TimeUnit.SECONDS));
+
+    // Warm up first so the measured turns aren't dominated by class loading and JIT compilation
+    for (int i = 0; i < WARMUP_TURNS; i++) {
+      playTurn(attackListener);
+    }
+
+    long[] latencies = new long[MEASURED_TURNS];
+    for (int i = 0; i < MEASURED_TURNS; i++) {
+      latencies[i] = playTurn(attackListener);
+    }
+
+    Arrays.sort(latencies);
+    long medianNanos = latencies[MEASURED_TURNS / 2];
+    assertThat(medianNanos, lessThan(TimeUnit.MILLISECONDS.toNanos(1)));
+  }
+
+  @Test
+  public void playGame_RepliesArriveBeforeSendReturns_GameMovesOn() throws Exception {
+    ArgumentCaptor<SetShipListener> setShipListenerCaptor = ArgumentCaptor.forClass(SetShipListener.class);
+    verify(mockView).registerSetShipListener(setShipListenerCaptor.capture());
+    SetShipListener setShipListener = setShipListenerCaptor.getValue();
+
+    // Place each ship on its own row as the view asks for it
+    doAnswer(invocation -> {
+      Ship ship = invocation.getArgument(0);
+      ArrayList<Coordinate> coordinates = new ArrayList<>();
+      for (int x = 0; x < ship.getShipSize(); x++) {
+        coordinates.add(new Coordinate(x, ship.getShipType().ordinal()));
+      }
+      ship.setShipCoordinates(coordinates);
+      setShipListener.setShipEventOccurred(new SetShipEvent(this, ship));
+      return null;
+    }).when(mockView).setShip(any(Ship.class));
+    yourTurnLatch.set(new CountDownLatch(1));
+    replyBeforeSendReturns = true;
+
+    // The game start arrives straight after the join response, and the first turn before ShipsPlaced has been sent.
+    // Neither may be overwritten by the game loop moving to WAITING.
+    gameThread = new Thread(fixture::playGame);
+    gameThread.start();
+    assertTrue(yourTurnLatch.get().await(5, TimeUnit.SECONDS));
+    verify(mockView, timeout(5_000)).yourTurn();
+  }
+
+  /**
+   * Sends a TurnStartMessage to the controller as the receiver thread would, then attacks once the view is told it is
+   * our turn.
+   *
+   * @return Nanoseconds between handing the message to the controller and the view being asked for an attack
+   */
+  private long playTurn(AttackListener attackListener) throws Exception {
+    yourTurnLatch.set(new CountDownLatch(1));
+    attackSentLatch.set(new CountDownLatch(1));
+
+    long sentNanos = System.nanoTime();
+    fixture.handleMessage(new TurnStartMessage(USERNAME, START));
+    assertTrue(yourTurnLatch.get().await(5, TimeUnit.SECONDS));
+    long latency = yourTurnNanos.get() - sentNanos;
+
+    attackListener.attackEventOccurred(new AttackEvent(this, new Coordinate(2, 2)));
+    assertTrue(attackSentLatch.get().await(5, TimeUnit.SECONDS));
+
+    return latency;
+  }
+
+}
@@ -0,0 +1,327 @@
+package test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.google.gson.Gson;
+
+import main.btlshyp.controller.Controller;
+import main.btlshyp.message.ApplicationMessage;
+import main.btlshyp.message.AttackAttemptMessage;
+import main.btlshyp.message.AttackResponseMessage;
+import main.btlshyp.message.AttackResponseMessage.HitOrMiss;
+import main.btlshyp.message.AttackResponseMessage.ShipSunk;
+import main.btlshyp.message.ChatMessage;
+import main.btlshyp.message.GameStartMessage;
+import main.btlshyp.message.GameWonAttemptMessage;
+import main.btlshyp.message.GameWonResponseMessage;
+import main.btlshyp.message.GameWonResponseMessage.GameResult;
+import main.btlshyp.message.JoinAttemptMessage;
+import main.btlshyp.message.JoinResponseMessage;
+import main.btlshyp.message.ShipsPlacedMessage;
+import main.btlshyp.message.TurnStartMessage;
+import main.btlshyp.message.TurnStartMessage.Turn;
+import main.btlshyp.metrics.Counter;
+import main.btlshyp.metrics.MetricsRegistry;
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.network.NetworkClient;
+import main.btlshyp.network.codec.MessageCodec;
+import main.btlshyp.network.nio.LineFramer;
+import main.btlshyp.server.GameServer;
+
+public class GameServerTest {
+
+  private static final long TIMEOUT_MILLIS = 5_000;
+
+  private GameServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new GameServer(0, 2).start();
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void testLogin_AcknowledgesNewNameAndRefusesNameInUse() {
+    NetworkClient ahab = connect(mock(Controller.class));
+    NetworkClient impostor = connect(mock(Controller.class));
+    try {
+      assertThat(ahab.loginToServer("ahab"), is(true));
+      assertThat(impostor.loginToServer("ahab"), is(false));
+      assertThat(impostor.loginToServer("ishmael"), is(true));
+      assertThat(server.getUsersLoggedIn(), is(2));
+    } finally {
+      ahab.close();
+      impostor.close();
+    }
+  }
+
+  @Test
+  public void testGame_OnlyPassesOnMessagesSentInTurn() throws Exception {
+    Controller ahabController = mock(Controller.class);
+    Controller nemoController = mock(Controller.class);
+    NetworkClient ahab = loggedIn("ahab", ahabController);
+    NetworkClient nemo = loggedIn("nemo", nemoController);
+    try {
+      ahab.sendMessageToServer(new JoinAttemptMessage("ahab"));
+      verify(ahabController, timeout(TIMEOUT_MILLIS)).handleMessage(any(JoinResponseMessage.class));
+      nemo.sendMessageToServer(new JoinAttemptMessage("nemo"));
+      ArgumentCaptor<GameStartMessage> gameStart = ArgumentCaptor.forClass(GameStartMessage.class);
+      verify(nemoController, timeout(TIMEOUT_MILLIS)).handleMessage(gameStart.capture());
+      assertThat(gameStart.getValue().getOpponentUsername(), is("ahab"));
+      assertThat(server.getGamesInProgress(), is(1));
+
+      // Attacking before the ships are placed isn't passed on
+      nemo.sendMessageToServer(new AttackAttemptMessage("nemo", new Coordinate(0, 0)));
+      ahab.sendMessageToServer(new ShipsPlacedMessage("ahab"));
+      nemo.sendMessageToServer(new ShipsPlacedMessage("nemo"));
+      ArgumentCaptor<TurnStartMessage> ahabTurn = ArgumentCaptor.forClass(TurnStartMessage.class);
+      verify(ahabController, timeout(TIMEOUT_MILLIS)).handleMessage(ahabTurn.capture());
+      assertThat(ahabTurn.getValue().getTurn(), is(Turn.START));
+
+      // Neither is attacking out of turn
+      nemo.sendMessageToServer(new AttackAttemptMessage("nemo", new Coordinate(1, 1)));
+      ahab.sendMessageToServer(new AttackAttemptMessage("ahab", new Coordinate(2, 2)));
+      ArgumentCaptor<AttackAttemptMessage> ahabAttack = ArgumentCaptor.forClass(AttackAttemptMessage.class);
+      verify(nemoController, timeout(TIMEOUT_MILLIS)).handleMessage(ahabAttack.capture());
+      assertThat(ahabAttack.getValue().getCoordinate(), is(new Coordinate(2, 2)));
+
+      nemo.sendMessageToServer(new AttackResponseMessage("nemo", HitOrMiss.MISS, ShipSunk.NONE, new Coordinate(2, 2)));
+      verify(ahabController, timeout(TIMEOUT_MILLIS)).handleMessage(any(AttackResponseMessage.class));
+      ahab.sendMessageToServer(new TurnStartMessage("ahab", Turn.END));
+      verify(nemoController, timeout(TIMEOUT_MILLIS)).handleMessage(any(TurnStartMessage.class));
+
+      nemo.sendMessageToServer(new AttackAttemptMessage("nemo", new Coordinate(3, 3)));
+      ArgumentCaptor<AttackAttemptMessage> nemoAttack = ArgumentCaptor.forClass(AttackAttemptMessage.class);
+      verify(ahabController, timeout(TIMEOUT_MILLIS)).handleMessage(nemoAttack.capture());
+      // Only the attack made in turn arrived
+      assertThat(nemoAttack.getAllValues().size(), is(1));
+      assertThat(nemoAttack.getValue().getCoordinate(), is(new Coordinate(3, 3)));
+
+      ahab.sendMessageToServer(new AttackResponseMessage("ahab", HitOrMiss.HIT, ShipSunk.NONE, new Coordinate(3, 3)));
+      // The two players may be read on different loops, so the claim could otherwise overtake the response
+      verify(nemoController, timeout(TIMEOUT_MILLIS)).handleMessage(any(AttackResponseMessage.class));
+      nemo.sendMessageToServer(new GameWonAttemptMessage("nemo"));
+      verify(ahabController, timeout(TIMEOUT_MILLIS)).handleMessage(any(GameWonAttemptMessage.class));
+      ahab.sendMessageToServer(new GameWonResponseMessage("ahab", GameResult.WIN));
+      ArgumentCaptor<GameWonResponseMessage> result = ArgumentCaptor.forClass(GameWonResponseMessage.class);
+      verify(nemoController, timeout(TIMEOUT_MILLIS)).handleMessage(result.capture());
+      assertThat(result.getValue().getGameResult(), is(GameResult.WIN));
+      awaitTrue(() -> server.getGamesInProgress() == 0);
+    } finally {
+      ahab.close();
+      nemo.close();
+    }
+  }
+
+  @Test
+  public void testChat_PassesThousandsOfMessagesToOpponentInOrder() throws Exception {
+    int messages = 20_000;
+    CountingController counter = new CountingController(messages);
+    NetworkClient sender = loggedIn("sender", mock(Controller.class));
+    NetworkClient receiver = loggedIn("receiver", counter);
+    try {
+      sender.sendMessageToServer(new JoinAttemptMessage("sender"));
+      receiver.sendMessageToServer(new JoinAttemptMessage("receiver"));
+      awaitTrue(() -> server.getGamesInProgress() == 1);
+
+      for (int i = 0; i < messages; i++) {
+        sender.sendMessageToServer(new ChatMessage(Integer.toString(i), "sender"));
+      }
+      assertThat(counter.received.await(30, TimeUnit.SECONDS), is(true));
+      assertThat(counter.outOfOrder, is(false));
+    } finally {
+      sender.close();
+      receiver.close();
+    }
+  }
+
+  @Test
+  public void testBackpressure_PausesClientWhichFloodsItsGameThenCarriesOn() throws Exception {
+    // With one loop, the game can't handle anything until the loop has read all it can, so a burst of messages puts
+    // more of them in flight than the limit
+    server.close();
+    server = new GameServer(0, 1).start();
+    Counter pausedForGame = MetricsRegistry.getDefault().counter("btlshyp_server_reads_paused_total",
+        "Times a client stopped being read from until things caught up", "reason", "game_behind");
+    long pausedBefore = pausedForGame.get();
+
+    int messages = 2_000;
+    CountingController counter = new CountingController(messages);
+    NetworkClient receiver = loggedIn("receiver", counter);
+    try (Socket flooder = new Socket("localhost", server.getPort())) {
+      BufferedReader flooderInput = new BufferedReader(
+          new InputStreamReader(flooder.getInputStream(), StandardCharsets.UTF_8));
+      OutputStream flooderOutput = flooder.getOutputStream();
+      writeLine(flooderOutput, "{\"type\":\"login\",\"message\":{\"username\":\"flooder\"}}");
+      assertThat(flooderInput.readLine().contains("acknowledge"), is(true));
+      Gson gson = MessageCodec.newGson();
+      writeLine(flooderOutput, gson.toJson(new ApplicationMessage(new JoinAttemptMessage("flooder"))));
+      receiver.sendMessageToServer(new JoinAttemptMessage("receiver"));
+      awaitTrue(() -> server.getGamesInProgress() == 1);
+
+      StringBuilder burst = new StringBuilder();
+      for (int i = 0; i < messages; i++) {
+        burst.append(gson.toJson(new ApplicationMessage(new ChatMessage(Integer.toString(i), "flooder")))).append('\n');
+      }
+      flooderOutput.write(burst.toString().getBytes(StandardCharsets.UTF_8));
+      flooderOutput.flush();
+
+      // Every message still gets through, in order, once the game has caught up
+      assertThat(counter.received.await(30, TimeUnit.SECONDS), is(true));
+      assertThat(counter.outOfOrder, is(false));
+      assertThat(pausedForGame.get() > pausedBefore, is(true));
+    } finally {
+      receiver.close();
+    }
+  }
+
+  @Test
+  public void testBackpressure_DisconnectsClientWhichStopsReading() throws Exception {
+    server.close();
+    server = new GameServer(0, 2);
+    server.setOutboundLimits(1024, 64 * 1024);
+    server.start();
+    try (Socket chatter = new Socket("localhost", server.getPort()); Socket lurker = new Socket()) {
+      lurker.setReceiveBufferSize(4 * 1024);
+      lurker.connect(new InetSocketAddress("localhost", server.getPort()));
+      BufferedReader lurkerInput = new BufferedReader(
+          new InputStreamReader(lurker.getInputStream(), StandardCharsets.UTF_8));
+      writeLine(lurker.getOutputStream(), "{\"type\":\"login\",\"message\":{\"username\":\"lurker\"}}");
+      assertThat(lurkerInput.readLine().contains("acknowledge"), is(true));
+      BufferedReader chatterInput = new BufferedReader(
+          new InputStreamReader(chatter.getInputStream(), StandardCharsets.UTF_8));
+      writeLine(chatter.getOutputStream(), "{\"type\":\"login\",\"message\":{\"username\":\"chatter\"}}");
+      assertThat(chatterInput.readLine().contains("acknowledge"), is(true));
+
+      // The lurker never reads again, so the chat piles up on the server until it gives up on the lurker
+      char[] text = new char[1000];
+      Arrays.fill(text, 'x');
+      String chat = "{\"type\":\"chat\",\"message\":\"" + new String(text) + "\"}";
+      OutputStream chatterOutput = chatter.getOutputStream();
+      for (int i = 0; i < 20_000 && server.getUsersLoggedIn() == 2; i++) {
+        writeLine(chatterOutput, chat);
+      }
+      awaitTrue(() -> server.getUsersLoggedIn() == 1);
+    }
+  }
+
+  @Test
+  public void testOversizedLine_DisconnectsClient() throws Exception {
+    try (Socket rambler = new Socket("localhost", server.getPort())) {
+      BufferedReader input = new BufferedReader(
+          new InputStreamReader(rambler.getInputStream(), StandardCharsets.UTF_8));
+      writeLine(rambler.getOutputStream(), "{\"type\":\"login\",\"message\":{\"username\":\"rambler\"}}");
+      assertThat(input.readLine().contains("acknowledge"), is(true));
+
+      // Never finishes the line, so without a limit the server would buffer it for ever
+      byte[] text = new byte[LineFramer.MAX_LINE_LENGTH + 1];
+      Arrays.fill(text, (byte) 'x');
+      try {
+        rambler.getOutputStream().write(text);
+      } catch (IOException e) {
+        // The server may hang up before it has all been written
+      }
+      awaitTrue(() -> server.getUsersLoggedIn() == 0);
+    }
+  }
+
+  @Test
+  public void testTotalConnections_AddsUpServersUntilClosed() throws Exception {
+    long before = GameServer.getTotalConnections();
+    GameServer other = new GameServer(0, 1).start();
+    try (Socket first = new Socket("localhost", server.getPort());
+        Socket second = new Socket("localhost", other.getPort());
+        Socket third = new Socket("localhost", other.getPort())) {
+      awaitTrue(() -> GameServer.getTotalConnections() == before + 3);
+
+      other.close();
+      assertThat(GameServer.getTotalConnections(), is(before + 1));
+    } finally {
+      other.close();
+    }
+  }
+
+  private NetworkClient connect(Controller controller) {
+    NetworkClient client = new NetworkClient("localhost", server.getPort(), controller);
+    client.setHeartbeatInterval(0, 0);
+    client.connectToServer();
+    return client;
+  }
+
+  private NetworkClient loggedIn(String username, Controller controller) {
+    NetworkClient client = connect(controller);
+    assertThat(client.loginToServer(username), is(true));
+    client.beginListeningForMessages();
+    return client;
+  }
+
+  private static void writeLine(OutputStream output, String line) throws Exception {
+    output.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+    output.flush();
+  }
+
+  private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+    assertThat(condition.getAsBoolean(), is(true));
+  }
+
+  /**
+   * Counts the chat messages passed to it, checking they arrive in the order they were sent. Ignores joining the game.
+   */
+  private static class CountingController extends Controller {
+
+    private final CountDownLatch received;
+    private int next;
+    private volatile boolean outOfOrder;
+
+    private CountingController(int messages) {
+      super(null);
+      this.received = new CountDownLatch(messages);
+    }
+
+    @Override
+    public void handleMessage(ChatMessage message) {
+      if (Integer.parseInt(message.getText()) != next++) {
+        outOfOrder = true;
+      }
+      received.countDown();
+    }
+
+    @Override
+    public void handleMessage(JoinResponseMessage message) {
+    }
+
+    @Override
+    public void handleMessage(GameStartMessage message) {
+    }
+  }
+}
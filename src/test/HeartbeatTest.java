@@ -0,0 +1,169 @@
+package test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.samePropertyValuesAs;
+import static org.mockito.Mockito.mock;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import main.btlshyp.ThreadMode;
+import main.btlshyp.controller.Controller;
+import main.btlshyp.message.Message;
+import main.btlshyp.message.PingMessage;
+import main.btlshyp.message.PongMessage;
+import main.btlshyp.metrics.Histogram;
+import main.btlshyp.network.Heartbeat;
+import main.btlshyp.network.NetworkClient;
+import main.btlshyp.network.ReconnectPolicy;
+
+public class HeartbeatTest {
+
+  private static final String ACKNOWLEDGE = "{\"type\":\"acknowledge\",\"message\":\"tester successfully logged in\"}";
+
+  @Test
+  public void testHeartbeat_RecordsRoundTripTimesFromLoopbackServer() throws Exception {
+    try (ServerSocket server = new ServerSocket(0)) {
+      Thread serverThread = new Thread(() -> answerPings(server, Integer.MAX_VALUE, new CountDownLatch(1),
+          new CountDownLatch(1)));
+      serverThread.setDaemon(true);
+      serverThread.start();
+
+      NetworkClient client = new NetworkClient("localhost", server.getLocalPort(), mock(Controller.class));
+      client.setHeartbeatInterval(10, 1_000);
+      client.connectToServer();
+      assertThat(client.loginToServer("tester"), is(true));
+      client.beginListeningForMessages();
+
+      Heartbeat heartbeat = client.getHeartbeat();
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (heartbeat.getPongsReceived() < 10 && System.nanoTime() < deadline) {
+        Thread.sleep(5);
+      }
+      client.close();
+
+      assertThat(heartbeat.getPongsReceived() >= 10, is(true));
+      assertThat(heartbeat.isServerAnswering(), is(true));
+      assertThat(heartbeat.getLastRttNanos(), greaterThan(0L));
+      assertThat(heartbeat.getRttPercentileNanos(50), greaterThan(0L));
+      assertThat(heartbeat.getRttPercentileNanos(50), lessThanOrEqualTo(heartbeat.getRttPercentileNanos(99)));
+      assertThat(heartbeat.getRttPercentileNanos(99), lessThanOrEqualTo(heartbeat.getRttHistogram().getMax()));
+    }
+  }
+
+  @Test
+  public void testHeartbeat_IdleConnectionIsReconnected() throws Exception {
+    try (ServerSocket server = new ServerSocket(0)) {
+      CountDownLatch stoppedAnswering = new CountDownLatch(1);
+      CountDownLatch loggedInAgain = new CountDownLatch(1);
+      Thread serverThread = new Thread(() -> {
+        // Answer a few pings then hold the connection open without a word, like a half dead connection
+        answerPings(server, 3, new CountDownLatch(1), stoppedAnswering);
+        answerPings(server, Integer.MAX_VALUE, loggedInAgain, new CountDownLatch(1));
+      });
+      serverThread.setDaemon(true);
+      serverThread.start();
+
+      NetworkClient client = new NetworkClient("localhost", server.getLocalPort(), mock(Controller.class));
+      client.setHeartbeatInterval(10, 100);
+      client.setReconnectPolicy(new ReconnectPolicy(1, 10, 50));
+      client.connectToServer();
+      assertThat(client.loginToServer("tester"), is(true));
+      client.beginListeningForMessages();
+
+      assertThat(stoppedAnswering.await(5, TimeUnit.SECONDS), is(true));
+      assertThat(loggedInAgain.await(5, TimeUnit.SECONDS), is(true));
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (client.isReconnecting() && System.nanoTime() < deadline) {
+        Thread.sleep(5);
+      }
+      assertThat(client.isReconnecting(), is(false));
+      client.close();
+    }
+  }
+
+  @Test
+  public void testPingReceived_AnswersOthersAndIgnoresOwnPings() {
+    List<Message> sent = new ArrayList<>();
+    Heartbeat heartbeat = new Heartbeat("tester", sent::add, () -> { }, 1_000, 2_000,
+        ThreadMode.PLATFORM.newThreadFactory("test-heartbeat"));
+
+    heartbeat.pingReceived(new PingMessage("tester", 1, 100));
+    heartbeat.pingReceived(new PingMessage("opponent", 7, 123));
+
+    assertThat(sent.size(), is(1));
+    assertThat(sent.get(0), instanceOf(PongMessage.class));
+    assertThat((PongMessage) sent.get(0), samePropertyValuesAs(new PongMessage("opponent", 7, 123)));
+    heartbeat.close();
+  }
+
+  @Test
+  public void testHistogram_PercentilesWithinPrecision() {
+    Histogram histogram = new Histogram();
+    for (long value = 1; value <= 100_000; value++) {
+      histogram.record(value);
+    }
+
+    assertThat(histogram.getCount(), is(100_000L));
+    assertThat(histogram.getMax(), is(100_000L));
+    assertThat(histogram.getMean(), is(50_000.5));
+    assertThat((double) histogram.getValueAtPercentile(50), closeTo(50_000, 50_000 * 0.016));
+    assertThat((double) histogram.getValueAtPercentile(99), closeTo(99_000, 99_000 * 0.016));
+    assertThat(histogram.getValueAtPercentile(100), is(100_000L));
+    assertThat(histogram.getValueAtPercentile(0.001), is(1L));
+
+    Histogram exact = new Histogram();
+    exact.record(3);
+    exact.record(-5);
+    assertThat(exact.getValueAtPercentile(50), is(0L));
+    assertThat(exact.getValueAtPercentile(100), is(3L));
+    assertThat(new Histogram().getValueAtPercentile(99), is(0L));
+  }
+
+  /**
+   * Stands in for the server: accepts one connection, acknowledges the login and answers pings until it has answered
+   * {@code answers} of them. Then it keeps the connection open, reading but not answering, until the client closes it.
+   */
+  private static void answerPings(ServerSocket server, int answers, CountDownLatch loggedIn,
+      CountDownLatch stoppedAnswering) {
+    try {
+      Socket socket = server.accept();
+      BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      PrintWriter writer = new PrintWriter(socket.getOutputStream(), true);
+      reader.readLine();
+      writer.println(ACKNOWLEDGE);
+      loggedIn.countDown();
+
+      int answered = 0;
+      String line;
+      while (answered < answers && (line = reader.readLine()) != null) {
+        if (line.contains("\"type\":\"PING\"")) {
+          writer.println(line.replace("\"type\":\"PING\"", "\"type\":\"PONG\""));
+          answered++;
+        }
+      }
+      stoppedAnswering.countDown();
+      while (reader.readLine() != null) {
+        // Drain until the client gives up on this connection
+      }
+    } catch (Exception e) {
+      // The client closed the connection
+    }
+  }
+
+}
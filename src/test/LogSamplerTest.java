@@ -0,0 +1,53 @@
+package test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import main.btlshyp.logging.LogSampler;
+
+public class LogSamplerTest {
+
+  private static final String PROPERTY = "btlshyp.test.logSampleEvery";
+
+  @Test
+  public void testSample_LogsTheFirstEventAndEveryNthAfter() {
+    LogSampler sampler = new LogSampler(3);
+
+    List<Boolean> sampled = new ArrayList<>();
+    for (int i = 0; i < 7; i++) {
+      sampled.add(sampler.sample());
+    }
+
+    assertThat(sampled, contains(true, false, false, true, false, false, true));
+  }
+
+  @Test
+  public void testSample_RateBelowOneLogsEveryEvent() {
+    LogSampler sampler = new LogSampler(0);
+
+    assertThat(sampler.getSampleEvery(), is(1));
+    for (int i = 0; i < 5; i++) {
+      assertThat(sampler.sample(), is(true));
+    }
+  }
+
+  @Test
+  public void testFromSystemProperty_FallsBackToDefault() {
+    System.clearProperty(PROPERTY);
+    assertThat(LogSampler.fromSystemProperty(PROPERTY, 50).getSampleEvery(), is(50));
+
+    System.setProperty(PROPERTY, "10");
+    try {
+      assertThat(LogSampler.fromSystemProperty(PROPERTY, 50).getSampleEvery(), is(10));
+    } finally {
+      System.clearProperty(PROPERTY);
+    }
+  }
+
+}
@@ -0,0 +1,189 @@
+package test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import main.btlshyp.controller.Controller;
+import main.btlshyp.message.AttackAttemptMessage;
+import main.btlshyp.message.ChatMessage;
+import main.btlshyp.message.GameStartMessage;
+import main.btlshyp.message.JoinAttemptMessage;
+import main.btlshyp.message.JoinResponseMessage;
+import main.btlshyp.message.JoinResponseMessage.ConfirmJoin;
+import main.btlshyp.message.ShipsPlacedMessage;
+import main.btlshyp.message.TurnStartMessage;
+import main.btlshyp.message.TurnStartMessage.Turn;
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.network.NetworkClient;
+import main.btlshyp.relay.LoopbackRelay;
+
+public class LoopbackRelayTest {
+
+  private static final long TIMEOUT_MILLIS = 5_000;
+
+  private LoopbackRelay relay;
+
+  @Before
+  public void setUp() throws Exception {
+    relay = new LoopbackRelay(0).start();
+  }
+
+  @After
+  public void tearDown() {
+    relay.close();
+  }
+
+  @Test
+  public void testLogin_AcknowledgesNewNameAndRefusesNameInUse() {
+    NetworkClient ahab = connect(mock(Controller.class));
+    NetworkClient impostor = connect(mock(Controller.class));
+    try {
+      assertThat(ahab.loginToServer("ahab"), is(true));
+      assertThat(impostor.loginToServer("ahab"), is(false));
+      assertThat(impostor.loginToServer("ishmael"), is(true));
+      assertThat(relay.getUsersLoggedIn(), is(2));
+    } finally {
+      ahab.close();
+      impostor.close();
+    }
+  }
+
+  @Test
+  public void testJoin_PairsPlayersAndPassesMessagesToOpponent() {
+    Controller ahabController = mock(Controller.class);
+    Controller nemoController = mock(Controller.class);
+    NetworkClient ahab = loggedIn("ahab", ahabController);
+    NetworkClient nemo = loggedIn("nemo", nemoController);
+    try {
+      ahab.sendMessageToServer(new JoinAttemptMessage("ahab"));
+      ArgumentCaptor<JoinResponseMessage> joinResponse = ArgumentCaptor.forClass(JoinResponseMessage.class);
+      verify(ahabController, timeout(TIMEOUT_MILLIS)).handleMessage(joinResponse.capture());
+      assertThat(joinResponse.getValue().getConfirmJoin(), is(ConfirmJoin.ACCEPT));
+
+      nemo.sendMessageToServer(new JoinAttemptMessage("nemo"));
+      ArgumentCaptor<GameStartMessage> ahabGameStart = ArgumentCaptor.forClass(GameStartMessage.class);
+      ArgumentCaptor<GameStartMessage> nemoGameStart = ArgumentCaptor.forClass(GameStartMessage.class);
+      verify(ahabController, timeout(TIMEOUT_MILLIS)).handleMessage(ahabGameStart.capture());
+      verify(nemoController, timeout(TIMEOUT_MILLIS)).handleMessage(nemoGameStart.capture());
+      assertThat(ahabGameStart.getValue().getOpponentUsername(), is("nemo"));
+      assertThat(nemoGameStart.getValue().getOpponentUsername(), is("ahab"));
+      assertThat(relay.getGamesInProgress(), is(1));
+
+      // The player who joined first goes first once both fleets are placed
+      ahab.sendMessageToServer(new ShipsPlacedMessage("ahab"));
+      nemo.sendMessageToServer(new ShipsPlacedMessage("nemo"));
+      ArgumentCaptor<TurnStartMessage> turn = ArgumentCaptor.forClass(TurnStartMessage.class);
+      verify(ahabController, timeout(TIMEOUT_MILLIS)).handleMessage(turn.capture());
+      assertThat(turn.getValue().getTurn(), is(Turn.START));
+
+      ahab.sendMessageToServer(new AttackAttemptMessage("ahab", new Coordinate(3, 4)));
+      ArgumentCaptor<AttackAttemptMessage> attack = ArgumentCaptor.forClass(AttackAttemptMessage.class);
+      verify(nemoController, timeout(TIMEOUT_MILLIS)).handleMessage(attack.capture());
+      assertThat(attack.getValue().getUsername(), is("ahab"));
+      assertThat(attack.getValue().getCoordinate(), is(new Coordinate(3, 4)));
+    } finally {
+      ahab.close();
+      nemo.close();
+    }
+  }
+
+  @Test
+  public void testPing_IsAnsweredWithPong() throws Exception {
+    NetworkClient client = connect(mock(Controller.class));
+    client.setHeartbeatInterval(20, TIMEOUT_MILLIS);
+    try {
+      assertThat(client.loginToServer("pinger"), is(true));
+      client.beginListeningForMessages();
+
+      long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+      while (client.getHeartbeat().getPongsReceived() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertThat(client.getHeartbeat().getPongsReceived(), greaterThan(0L));
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test
+  public void testChat_RelaysThousandsOfMessagesInOrder() throws Exception {
+    int messages = 20_000;
+    CountingController counter = new CountingController(messages);
+    NetworkClient sender = loggedIn("sender", mock(Controller.class));
+    NetworkClient receiver = loggedIn("receiver", counter);
+    try {
+      sender.sendMessageToServer(new JoinAttemptMessage("sender"));
+      receiver.sendMessageToServer(new JoinAttemptMessage("receiver"));
+      long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+      while (relay.getGamesInProgress() == 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(1);
+      }
+
+      for (int i = 0; i < messages; i++) {
+        sender.sendMessageToServer(new ChatMessage(Integer.toString(i), "sender"));
+      }
+      assertThat(counter.received.await(30, TimeUnit.SECONDS), is(true));
+      assertThat(counter.outOfOrder, is(false));
+    } finally {
+      sender.close();
+      receiver.close();
+    }
+  }
+
+  private NetworkClient connect(Controller controller) {
+    NetworkClient client = new NetworkClient("localhost", relay.getPort(), controller);
+    client.setHeartbeatInterval(0, 0);
+    client.connectToServer();
+    return client;
+  }
+
+  private NetworkClient loggedIn(String username, Controller controller) {
+    NetworkClient client = connect(controller);
+    assertThat(client.loginToServer(username), is(true));
+    client.beginListeningForMessages();
+    return client;
+  }
+
+  /**
+   * Counts the chat messages relayed to it, checking they arrive in the order they were sent. Ignores joining the game.
+   */
+  private static class CountingController extends Controller {
+
+    private final CountDownLatch received;
+    private int next;
+    private volatile boolean outOfOrder;
+
+    private CountingController(int messages) {
+      super(null);
+      this.received = new CountDownLatch(messages);
+    }
+
+    @Override
+    public void handleMessage(ChatMessage message) {
+      if (Integer.parseInt(message.getText()) != next++) {
+        outOfOrder = true;
+      }
+      received.countDown();
+    }
+
+    @Override
+    public void handleMessage(JoinResponseMessage message) {
+    }
+
+    @Override
+    public void handleMessage(GameStartMessage message) {
+    }
+  }
+}
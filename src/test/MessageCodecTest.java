@@ -0,0 +1,162 @@
+package test;
+
+import static main.btlshyp.message.AttackResponseMessage.HitOrMiss.HIT;
+import static main.btlshyp.message.AttackResponseMessage.ShipSunk.BATTLESHIP;
+import static main.btlshyp.message.GameWonResponseMessage.GameResult.WIN;
+import static main.btlshyp.message.JoinResponseMessage.ConfirmJoin.ACCEPT;
+import static main.btlshyp.message.TurnStartMessage.Turn.START;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.samePropertyValuesAs;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import main.btlshyp.message.ApplicationMessage;
+import main.btlshyp.message.AttackAttemptMessage;
+import main.btlshyp.message.AttackResponseMessage;
+import main.btlshyp.message.ChatMessage;
+import main.btlshyp.message.GameStartMessage;
+import main.btlshyp.message.GameWonAttemptMessage;
+import main.btlshyp.message.GameWonResponseMessage;
+import main.btlshyp.message.JoinAttemptMessage;
+import main.btlshyp.message.JoinResponseMessage;
+import main.btlshyp.message.LoginMessage;
+import main.btlshyp.message.Message;
+import main.btlshyp.message.PingMessage;
+import main.btlshyp.message.PongMessage;
+import main.btlshyp.message.ShipsPlacedMessage;
+import main.btlshyp.message.TurnStartMessage;
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.network.codec.MessageCodec;
+
+public class MessageCodecTest {
+
+  private static final String USERNAME = "Testy McTester";
+  private static final Coordinate COORDINATE = new Coordinate(2, 3);
+
+  private final Gson fixture = MessageCodec.newGson();
+
+  // Gson's default reflective serialization, which the codec must stay compatible with
+  private final Gson reflectiveGson = new Gson();
+
+  private static List<Message> allMessages() {
+    return Arrays.asList(
+        new ChatMessage("Test chat message", USERNAME),
+        new JoinAttemptMessage(USERNAME),
+        new JoinResponseMessage(ACCEPT),
+        new GameStartMessage(USERNAME),
+        new ShipsPlacedMessage(USERNAME),
+        new AttackAttemptMessage(USERNAME, COORDINATE),
+        new AttackResponseMessage(USERNAME, HIT, BATTLESHIP, COORDINATE),
+        new TurnStartMessage(USERNAME, START),
+        new GameWonAttemptMessage(USERNAME),
+        new GameWonResponseMessage(USERNAME, WIN),
+        new LoginMessage(USERNAME),
+        new PingMessage(USERNAME, 1, -123_456_789_012L),
+        new PongMessage(USERNAME, Long.MAX_VALUE, 42),
+        tracedAttackAttempt(),
+        tracedAttackResponse());
+  }
+
+  @Test
+  public void roundTrip_AllMessageTypes() throws Exception {
+    for (Message message : allMessages()) {
+      String json = fixture.toJson(new ApplicationMessage(message));
+
+      ApplicationMessage result = fixture.fromJson(json, ApplicationMessage.class);
+
+      assertThat(result.getType(), is("application"));
+      assertThat(result.getMessage(), instanceOf(message.getClass()));
+      assertThat(result.getMessage(), samePropertyValuesAs(message));
+    }
+  }
+
+  @Test
+  public void decode_ReflectiveGsonOutput() throws Exception {
+    for (Message message : allMessages()) {
+      String json = reflectiveGson.toJson(new ApplicationMessage(message));
+
+      ApplicationMessage result = fixture.fromJson(json, ApplicationMessage.class);
+
+      assertThat(result.getMessage(), samePropertyValuesAs(message));
+    }
+  }
+
+  @Test
+  public void encode_MatchesReflectiveGsonOutput() throws Exception {
+    for (Message message : allMessages()) {
+      String json = fixture.toJson(new ApplicationMessage(message));
+
+      JsonObject envelope = new JsonParser().parse(json).getAsJsonObject();
+      Message result = reflectiveGson.fromJson(envelope.get("message"), message.getClass());
+
+      assertThat(envelope.get("type").getAsString(), is("application"));
+      assertThat(result, samePropertyValuesAs(message));
+    }
+  }
+
+  @Test
+  public void encode_UntracedAttack_LeavesOutTracingFields() throws Exception {
+    String json = fixture.toJson(new ApplicationMessage(new AttackResponseMessage(USERNAME, HIT, BATTLESHIP,
+        COORDINATE)));
+
+    assertThat(json.contains("traceId"), is(false));
+    assertThat(json.contains("Nanos"), is(false));
+  }
+
+  @Test
+  public void decode_GlobalChatEnvelope() throws Exception {
+    String json = "{\"message\":\"Hello everyone\",\"type\":\"chat\",\"fromUser\":\"" + USERNAME + "\"}";
+
+    ApplicationMessage result = fixture.fromJson(json, ApplicationMessage.class);
+
+    assertThat(result.getType(), is("chat"));
+    assertThat(result.getMessage(), samePropertyValuesAs((Message) new ChatMessage("Hello everyone", USERNAME)));
+  }
+
+  @Test
+  public void decode_NonBtlShypMessage_ReturnsNull() throws Exception {
+    ChatMessage message = new ChatMessage("Test chat message", USERNAME);
+    message.setModule("Something_Else");
+
+    ApplicationMessage result = fixture.fromJson(reflectiveGson.toJson(new ApplicationMessage(message)),
+        ApplicationMessage.class);
+
+    assertNull(result);
+  }
+
+  @Test
+  public void decode_UnknownFieldsAreSkipped() throws Exception {
+    String json = "{\"type\":\"application\",\"extra\":[1,{\"a\":null}],\"message\":{\"coordinate\":{\"x\":2,\"y\":3,"
+        + "\"z\":9},\"module\":\"BtlShyp\",\"type\":\"ATTACK_ATTEMPT\",\"username\":\"" + USERNAME + "\"}}";
+
+    ApplicationMessage result = fixture.fromJson(json, ApplicationMessage.class);
+
+    assertThat(result.getMessage(), samePropertyValuesAs((Message) new AttackAttemptMessage(USERNAME, COORDINATE)));
+  }
+
+  private static AttackAttemptMessage tracedAttackAttempt() {
+    AttackAttemptMessage message = new AttackAttemptMessage(USERNAME, COORDINATE);
+    message.setTraceId(0x7EADBEEFCAFEL);
+    return message;
+  }
+
+  private static AttackResponseMessage tracedAttackResponse() {
+    AttackResponseMessage message = new AttackResponseMessage(USERNAME, HIT, BATTLESHIP, COORDINATE);
+    message.setTraceId(0x7EADBEEFCAFEL);
+    message.setAttemptReceivedNanos(-9_000_000_000L);
+    message.setAttackResultsNanos(-8_999_000_000L);
+    message.setResponseSentNanos(-8_990_000_000L);
+    return message;
+  }
+
+}
@@ -0,0 +1,159 @@
+package test;
+
+import static main.btlshyp.message.AttackResponseMessage.HitOrMiss.HIT;
+import static main.btlshyp.message.AttackResponseMessage.HitOrMiss.MISS;
+import static main.btlshyp.message.AttackResponseMessage.ShipSunk.NONE;
+import static main.btlshyp.message.TurnStartMessage.Turn.START;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.samePropertyValuesAs;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import main.btlshyp.controller.Controller;
+import main.btlshyp.journal.JournalReader;
+import main.btlshyp.journal.JournalRecord;
+import main.btlshyp.journal.JournalReplayer;
+import main.btlshyp.journal.MessageJournal;
+import main.btlshyp.journal.MessageJournal.Direction;
+import main.btlshyp.message.AttackAttemptMessage;
+import main.btlshyp.message.AttackResponseMessage;
+import main.btlshyp.message.ChatMessage;
+import main.btlshyp.message.Message;
+import main.btlshyp.message.TurnStartMessage;
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.model.Model;
+import main.btlshyp.network.MessageReceiver;
+
+public class MessageJournalTest {
+
+  private static final String USERNAME = "Testy McTester";
+
+  private Path directory;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("journal");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    for (Path file : Files.newDirectoryStream(directory)) {
+      Files.delete(file);
+    }
+    Files.delete(directory);
+  }
+
+  @Test
+  public void testRoundTrip_InOrderWithDirections() throws Exception {
+    Path path = directory.resolve("game.journal");
+    List<Message> messages = Arrays.asList(
+        new ChatMessage("hello", USERNAME),
+        new AttackAttemptMessage(USERNAME, new Coordinate(1, 2)),
+        new AttackResponseMessage("Opponent", HIT, NONE, new Coordinate(1, 2)),
+        new TurnStartMessage(USERNAME, START));
+
+    MessageJournal journal = MessageJournal.open(path);
+    for (int i = 0; i < messages.size(); i++) {
+      if (i % 2 == 0) {
+        journal.recordInbound(messages.get(i));
+      } else {
+        journal.recordOutbound(messages.get(i));
+      }
+    }
+    journal.close();
+
+    List<JournalRecord> records = new ArrayList<>();
+    JournalReplayer.replay(path, records::add);
+    assertThat(records.size(), is(messages.size()));
+    long lastTimestamp = -1;
+    for (int i = 0; i < messages.size(); i++) {
+      JournalRecord record = records.get(i);
+      assertThat(record.getDirection(), is(i % 2 == 0 ? Direction.INBOUND : Direction.OUTBOUND));
+      assertThat(record.getMessage(), samePropertyValuesAs(messages.get(i)));
+      assertThat(record.getTimestampNanos() >= lastTimestamp, is(true));
+      lastTimestamp = record.getTimestampNanos();
+    }
+  }
+
+  @Test
+  public void testFlush_ReadableWithoutClose() throws Exception {
+    Path path = directory.resolve("unclosed.journal");
+    MessageJournal journal = MessageJournal.open(path);
+    // enough to need several mapped regions
+    int messages = 100_000;
+    for (int i = 0; i < messages; i++) {
+      journal.recordOutbound(new ChatMessage("message " + i, USERNAME));
+      if (i % 10_000 == 0) {
+        journal.flush();
+      }
+    }
+    journal.flush();
+
+    int read = 0;
+    try (JournalReader reader = new JournalReader(path)) {
+      for (JournalRecord record = reader.next(); record != null; record = reader.next()) {
+        assertThat(((ChatMessage) record.getMessage()).getText(), is("message " + read));
+        read++;
+      }
+    }
+    assertThat((long) read, is(messages - journal.getDroppedMessages()));
+    journal.close();
+  }
+
+  @Test
+  public void testReplayInto_Controller() throws Exception {
+    Path path = directory.resolve("controller.journal");
+    MessageJournal journal = MessageJournal.open(path);
+    MessageReceiver receiver = new MessageReceiver(mock(Controller.class));
+    receiver.setJournal(journal);
+    TurnStartMessage turn = new TurnStartMessage(USERNAME, START);
+    receiver.handoffToController(turn);
+    journal.recordOutbound(new AttackAttemptMessage(USERNAME, new Coordinate(0, 0)));
+    journal.close();
+
+    Controller controller = mock(Controller.class);
+    assertThat(JournalReplayer.replayInto(path, controller), is(1L));
+    verify(controller).handleMessage(any(TurnStartMessage.class));
+  }
+
+  @Test
+  public void testReplayInto_Model() throws Exception {
+    Path path = directory.resolve("model.journal");
+    MessageJournal journal = MessageJournal.open(path);
+    journal.recordInbound(new AttackResponseMessage("Opponent", HIT, NONE, new Coordinate(0, 0)));
+    journal.recordInbound(new AttackResponseMessage("Opponent", MISS, NONE, new Coordinate(0, 1)));
+    journal.recordInbound(new AttackAttemptMessage("Opponent", new Coordinate(3, 3)));
+    journal.close();
+
+    assertThat(JournalReplayer.replayInto(path, new Model()), is(3L));
+  }
+
+  @Test
+  public void testRecord_DoesNotBlockSender() throws Exception {
+    MessageJournal journal = MessageJournal.open(directory.resolve("latency.journal"));
+    AttackAttemptMessage message = new AttackAttemptMessage(USERNAME, new Coordinate(1, 1));
+    int records = 20_000;
+    long start = System.nanoTime();
+    for (int i = 0; i < records; i++) {
+      journal.recordOutbound(message);
+    }
+    double nanosPerRecord = (System.nanoTime() - start) / (double) records;
+    journal.close();
+
+    assertThat(nanosPerRecord, lessThan(50_000.0));
+  }
+
+}
@@ -10,7 +10,9 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.samePropertyValuesAs;
 import static org.hamcrest.core.Is.isA;
 import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -83,6 +85,19 @@ public class MessageReceiverTest {
     assertThat(captor.getValue(), samePropertyValuesAs(message));
   }
 
+  @Test
+  public void run_EndOfStream_StopsAndReportsDisconnect() throws Exception {
+    when(mockInput.readLine()).thenReturn(null);
+    when(mockSocket.isConnected()).thenReturn(true); // A socket which has been connected stays connected once closed
+    Runnable mockDisconnectListener = mock(Runnable.class);
+    fixture.setDisconnectListener(mockDisconnectListener);
+
+    fixture.run();
+
+    verify(mockDisconnectListener).run();
+    verifyZeroInteractions(mockController);
+  }
+
   @Test
   public void readNextMessageString_ReturnsMessageJson() throws Exception {
     ChatMessage message = new ChatMessage("Test chat message", USERNAME);
@@ -110,6 +125,22 @@ public class MessageReceiverTest {
     assertThat(captor.getValue(), samePropertyValuesAs(message));
   }
 
+  @Test
+  public void determineTypeThenHandoffToController_TurnStartMessageFromUsernameContainingOtherType() throws Exception {
+    // The username contains "CHAT", which previously caused this to be misrouted as a ChatMessage
+    TurnStartMessage message = new TurnStartMessage("CHATTY_CATHY", START);
+    ApplicationMessage wrappedMessage = new ApplicationMessage(message);
+    String messageJson = gson.toJson(wrappedMessage);
+
+    ArgumentCaptor<TurnStartMessage> captor = ArgumentCaptor.forClass(TurnStartMessage.class);
+
+    fixture.determineTypeThenHandoffToController(messageJson);
+
+    verify(mockController).handleMessage(captor.capture());
+    verifyNoMoreInteractions(mockController);
+    assertThat(captor.getValue(), samePropertyValuesAs(message));
+  }
+
   @Test
   public void determineTypeThenHandoffToController_AttackAttemptMessage() throws Exception {
     AttackAttemptMessage message = new AttackAttemptMessage(USERNAME, COORDINATE);
@@ -271,4 +302,13 @@ public class MessageReceiverTest {
     verifyZeroInteractions(mockController);
   }
 
+  @Test
+  public void determineTypeThenHandoffToController_UnknownBtlShypMessageType() throws Exception {
+    String messageJson = "{\"type\":\"application\",\"message\":{\"module\":\"BtlShyp\",\"type\":\"SELF_DESTRUCT\"}}";
+
+    fixture.determineTypeThenHandoffToController(messageJson);
+
+    verifyZeroInteractions(mockController);
+  }
+
 }
\ No newline at end of file
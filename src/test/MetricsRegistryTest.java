@@ -0,0 +1,139 @@
+package test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import main.btlshyp.message.MessageType;
+import main.btlshyp.metrics.Counter;
+import main.btlshyp.metrics.Histogram;
+import main.btlshyp.metrics.MetricsRegistry;
+import main.btlshyp.metrics.PrometheusExporter;
+
+public class MetricsRegistryTest {
+
+  @Test
+  public void testCounters_OnePerEnumConstantIndexedByOrdinal() {
+    MetricsRegistry registry = new MetricsRegistry();
+    Counter[] counters = registry.counters("test_total", "Test counter", "type", MessageType.values());
+
+    counters[MessageType.CHAT.ordinal()].increment();
+    counters[MessageType.CHAT.ordinal()].add(2);
+    counters[MessageType.PING.ordinal()].increment();
+
+    assertThat(counters.length, is(MessageType.values().length));
+    assertThat(registry.counter("test_total", "Test counter", "type", "CHAT"),
+        sameInstance(counters[MessageType.CHAT.ordinal()]));
+    String export = new PrometheusExporter(registry).scrape();
+    assertThat(export, containsString("# HELP test_total Test counter\n"));
+    assertThat(export, containsString("# TYPE test_total counter\n"));
+    assertThat(export, containsString("test_total{type=\"CHAT\"} 3\n"));
+    assertThat(export, containsString("test_total{type=\"PING\"} 1\n"));
+    assertThat(export, containsString("test_total{type=\"LOGIN\"} 0\n"));
+  }
+
+  @Test
+  public void testTimer_ExportedAsSummaryInSeconds() {
+    MetricsRegistry registry = new MetricsRegistry();
+    Histogram timer = registry.timer("test_seconds", "Test timer");
+    timer.record(TimeUnit.MILLISECONDS.toNanos(250));
+    timer.record(TimeUnit.MILLISECONDS.toNanos(750));
+
+    String export = new PrometheusExporter(registry).scrape();
+
+    assertThat(export, containsString("# TYPE test_seconds summary\n"));
+    assertThat(export, containsString("test_seconds{quantile=\"0.99\"} 0.75"));
+    assertThat(export, containsString("test_seconds_sum 1.0\n"));
+    assertThat(export, containsString("test_seconds_count 2\n"));
+  }
+
+  @Test
+  public void testGauge_ReadAtExportTime() {
+    MetricsRegistry registry = new MetricsRegistry();
+    int[] value = { 1 };
+    registry.gauge("test_gauge", "Test gauge", () -> value[0]);
+    value[0] = 7;
+
+    assertThat(new PrometheusExporter(registry).scrape(), containsString("test_gauge 7.0\n"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSameNameDifferentType_Throws() {
+    MetricsRegistry registry = new MetricsRegistry();
+    registry.counter("test_metric", "Test");
+    registry.timer("test_metric", "Test");
+  }
+
+  @Test
+  public void testWriteToFile_ReplacesFile() throws Exception {
+    MetricsRegistry registry = new MetricsRegistry();
+    Counter counter = registry.counter("test_total", "Test counter");
+    PrometheusExporter exporter = new PrometheusExporter(registry);
+    Path file = Files.createTempFile("metrics", ".prom");
+    try {
+      exporter.writeToFile(file);
+      counter.increment();
+      exporter.writeToFile(file);
+
+      String export = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+      assertThat(export, containsString("test_total 1\n"));
+      assertThat(export, not(containsString("test_total 0\n")));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public void testClose_WritesFileOneLastTime() throws Exception {
+    MetricsRegistry registry = new MetricsRegistry();
+    Counter counter = registry.counter("test_total", "Test counter");
+    PrometheusExporter exporter = new PrometheusExporter(registry);
+    Path file = Files.createTempFile("metrics", ".prom");
+    try {
+      // Long enough that the only write is the one on close
+      exporter.dumpToFileEvery(file, TimeUnit.HOURS.toMillis(1));
+      counter.add(3);
+      exporter.close();
+
+      String export = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+      assertThat(export, containsString("test_total 3\n"));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  public void testServeHttp_ScrapedOverLoopback() throws Exception {
+    MetricsRegistry registry = new MetricsRegistry();
+    registry.counter("test_total", "Test counter").add(5);
+
+    try (PrometheusExporter exporter = new PrometheusExporter(registry)) {
+      InetSocketAddress address = exporter.serveHttp(0);
+      URL url = new URL("http://" + address.getHostString() + ":" + address.getPort() + "/metrics");
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      try (InputStream body = connection.getInputStream();
+           Scanner scanner = new Scanner(body, "UTF-8").useDelimiter("\\A")) {
+        assertThat(connection.getResponseCode(), is(200));
+        assertThat(connection.getContentType(), is(PrometheusExporter.CONTENT_TYPE));
+        assertThat(scanner.next(), containsString("test_total 5\n"));
+      } finally {
+        connection.disconnect();
+      }
+    }
+  }
+
+}
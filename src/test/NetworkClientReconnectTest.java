@@ -0,0 +1,188 @@
+package test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.mockito.Mockito.mock;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import main.btlshyp.controller.Controller;
+import main.btlshyp.message.ChatMessage;
+import main.btlshyp.network.NetworkClient;
+import main.btlshyp.network.ReconnectPolicy;
+
+public class NetworkClientReconnectTest {
+
+  private static final String ACKNOWLEDGE = "{\"type\":\"acknowledge\",\"message\":\"tester successfully logged in\"}";
+
+  private final JsonParser parser = new JsonParser();
+
+  @Test
+  public void testReconnect_LogsInAgainAndSendsMessagesHeldWhileDisconnected() throws Exception {
+    ExecutorService serverThread = Executors.newSingleThreadExecutor();
+    try (ServerSocket server = new ServerSocket(0)) {
+      CountDownLatch firstConnectionDropped = new CountDownLatch(1);
+      // Left open until the test is done, so the client isn't sent off reconnecting again
+      AtomicReference<Socket> secondSocket = new AtomicReference<>();
+      Future<String[]> secondConnection = serverThread.submit(() -> {
+        try (Socket first = server.accept()) {
+          BufferedReader reader = readerFor(first);
+          reader.readLine();
+          new PrintWriter(first.getOutputStream(), true).println(ACKNOWLEDGE);
+          assertThat(chatText(reader.readLine()), is("before"));
+        }
+        firstConnectionDropped.countDown();
+
+        Socket second = server.accept();
+        secondSocket.set(second);
+        BufferedReader reader = readerFor(second);
+        String login = reader.readLine();
+        new PrintWriter(second.getOutputStream(), true).println(ACKNOWLEDGE);
+        return new String[] { login, chatText(reader.readLine()), chatText(reader.readLine()),
+            chatText(reader.readLine()) };
+      });
+
+      NetworkClient client = new NetworkClient("localhost", server.getLocalPort(), mock(Controller.class));
+      client.setReconnectPolicy(new ReconnectPolicy(1, 20, 50));
+      client.connectToServer();
+      assertThat(client.loginToServer("tester"), is(true));
+      client.beginListeningForMessages();
+
+      client.sendMessageToServer(new ChatMessage("before", "tester"));
+      assertThat(firstConnectionDropped.await(5, TimeUnit.SECONDS), is(true));
+      client.sendMessageToServer(new ChatMessage("during 1", "tester"));
+      client.sendMessageToServer(new ChatMessage("during 2", "tester"));
+
+      String[] received = secondConnection.get(10, TimeUnit.SECONDS);
+      JsonObject login = parser.parse(received[0]).getAsJsonObject();
+      assertThat(login.getAsJsonObject("message").get("username").getAsString(), is("tester"));
+      // Nothing was read from the server after "before" was written, so it's sent again
+      assertThat(received[1], is("before"));
+      assertThat(received[2], is("during 1"));
+      assertThat(received[3], is("during 2"));
+
+      awaitReconnected(client);
+      client.close();
+      secondSocket.get().close();
+    } finally {
+      serverThread.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testReconnect_MessageReadFromServerDoesNotAcknowledgeWhatWasWritten() throws Exception {
+    ExecutorService serverThread = Executors.newSingleThreadExecutor();
+    try (ServerSocket server = new ServerSocket(0)) {
+      AtomicReference<Socket> secondSocket = new AtomicReference<>();
+      Future<String> secondConnection = serverThread.submit(() -> {
+        try (Socket first = server.accept()) {
+          BufferedReader reader = readerFor(first);
+          reader.readLine();
+          PrintWriter writer = new PrintWriter(first.getOutputStream(), true);
+          writer.println(ACKNOWLEDGE);
+          assertThat(chatText(reader.readLine()), is("before"));
+          // Read by the client just before the connection drops, but it says nothing about "before" arriving
+          writer.println("{\"type\":\"chat\",\"message\":\"unrelated\",\"fromUser\":\"other\"}");
+        }
+
+        Socket second = server.accept();
+        secondSocket.set(second);
+        BufferedReader reader = readerFor(second);
+        reader.readLine();
+        new PrintWriter(second.getOutputStream(), true).println(ACKNOWLEDGE);
+        return chatText(reader.readLine());
+      });
+
+      NetworkClient client = new NetworkClient("localhost", server.getLocalPort(), mock(Controller.class));
+      client.setReconnectPolicy(new ReconnectPolicy(1, 20, 50));
+      client.connectToServer();
+      assertThat(client.loginToServer("tester"), is(true));
+      client.beginListeningForMessages();
+
+      client.sendMessageToServer(new ChatMessage("before", "tester"));
+
+      assertThat(secondConnection.get(10, TimeUnit.SECONDS), is("before"));
+      awaitReconnected(client);
+      client.close();
+      secondSocket.get().close();
+    } finally {
+      serverThread.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testReconnect_GivesUpOnceAttemptsRunOut() throws Exception {
+    ServerSocket server = new ServerSocket(0);
+    CountDownLatch connectionFailed = new CountDownLatch(1);
+    Thread serverThread = new Thread(() -> {
+      try (Socket socket = server.accept()) {
+        readerFor(socket).readLine();
+        new PrintWriter(socket.getOutputStream(), true).println(ACKNOWLEDGE);
+        // Stop listening altogether so every reconnect attempt is refused
+        server.close();
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    serverThread.start();
+
+    NetworkClient client = new NetworkClient("localhost", server.getLocalPort(), mock(Controller.class));
+    client.setReconnectPolicy(new ReconnectPolicy(1, 5, 3));
+    client.setConnectionFailedListener(connectionFailed::countDown);
+    client.connectToServer();
+    assertThat(client.loginToServer("tester"), is(true));
+    client.beginListeningForMessages();
+
+    assertThat(connectionFailed.await(10, TimeUnit.SECONDS), is(true));
+    assertThat(client.isReconnecting(), is(false));
+    serverThread.join();
+  }
+
+  @Test
+  public void testReconnectPolicy_DelaysDoubleUpToTheMaximum() {
+    ReconnectPolicy policy = new ReconnectPolicy(50, 1_000, 10);
+
+    assertThat(policy.getDelayBoundMillis(0), is(50L));
+    assertThat(policy.getDelayBoundMillis(1), is(100L));
+    assertThat(policy.getDelayBoundMillis(4), is(800L));
+    assertThat(policy.getDelayBoundMillis(5), is(1_000L));
+    assertThat(policy.getDelayBoundMillis(Integer.MAX_VALUE), is(1_000L));
+    for (int i = 0; i < 1_000; i++) {
+      assertThat(policy.nextDelayMillis(3), lessThanOrEqualTo(400L));
+    }
+  }
+
+  private static void awaitReconnected(NetworkClient client) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (client.isReconnecting() && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    assertThat(client.isReconnecting(), is(false));
+  }
+
+  private static BufferedReader readerFor(Socket socket) throws Exception {
+    return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+  }
+
+  private String chatText(String line) {
+    return parser.parse(line).getAsJsonObject().getAsJsonObject("message").get("text").getAsString();
+  }
+
+}
@@ -0,0 +1,166 @@
+package test;
+
+import static main.btlshyp.message.TurnStartMessage.Turn.START;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+import main.btlshyp.controller.Controller;
+import main.btlshyp.message.ApplicationMessage;
+import main.btlshyp.message.ChatMessage;
+import main.btlshyp.message.MessageType;
+import main.btlshyp.message.ShipsPlacedMessage;
+import main.btlshyp.message.TurnStartMessage;
+import main.btlshyp.metrics.Counter;
+import main.btlshyp.metrics.MetricsRegistry;
+import main.btlshyp.network.nio.NioSession;
+import main.btlshyp.network.nio.NioSessionEngine;
+
+public class NioSessionEngineTest {
+
+  private static final int SESSIONS = 100;
+  private static final int IO_THREADS = 2;
+
+  private final Gson gson = new Gson();
+
+  private ServerSocket serverSocket;
+  private NioSessionEngine fixture;
+
+  // Every line the stand-in server receives after a login
+  private final BlockingQueue<String> receivedLines = new LinkedBlockingQueue<>();
+
+  @Before
+  public void setUp() throws Exception {
+    serverSocket = new ServerSocket(0);
+    Thread acceptThread = new Thread(this::acceptConnections);
+    acceptThread.setDaemon(true);
+    acceptThread.start();
+
+    fixture = new NioSessionEngine("localhost", serverSocket.getLocalPort(), IO_THREADS);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    fixture.close();
+    serverSocket.close();
+  }
+
+  @Test
+  public void sessions_LogInAndDispatchToTheirOwnController() throws Exception {
+    List<Controller> controllers = new ArrayList<>();
+    List<NioSession> sessions = new ArrayList<>();
+
+    for (int i = 0; i < SESSIONS; i++) {
+      Controller controller = mock(Controller.class);
+      NioSession session = fixture.newSession();
+      session.setController(controller);
+
+      session.connectToServer();
+      assertThat(session.loginToServer("Player " + i), is(true));
+      session.beginListeningForMessages();
+
+      controllers.add(controller);
+      sessions.add(session);
+    }
+
+    // The server sends a split TurnStartMessage then a ChatMessage to each session after login
+    for (Controller controller : controllers) {
+      verify(controller, timeout(5_000)).handleMessage(any(TurnStartMessage.class));
+      verify(controller, timeout(5_000)).handleMessage(any(ChatMessage.class));
+    }
+
+    Counter shipsPlacedSent = MetricsRegistry.getDefault().counter("btlshyp_messages_sent_total",
+        "Messages sent to the server", "type", MessageType.SHIPS_PLACED.name());
+    long sentBefore = shipsPlacedSent.get();
+    for (NioSession session : sessions) {
+      session.sendMessageToServer(new ShipsPlacedMessage("Player"));
+    }
+    for (int i = 0; i < SESSIONS; i++) {
+      String line = receivedLines.poll(5, TimeUnit.SECONDS);
+      assertThat(line, containsString("SHIPS_PLACED"));
+    }
+    assertThat(shipsPlacedSent.get(), is(sentBefore + SESSIONS));
+  }
+
+  @Test
+  public void loginToServer_Rejected_ReturnsFalse() throws Exception {
+    NioSession session = fixture.newSession();
+    session.setController(mock(Controller.class));
+
+    session.connectToServer();
+
+    assertThat(session.loginToServer("reject"), is(false));
+  }
+
+  private void acceptConnections() {
+    try {
+      while (!serverSocket.isClosed()) {
+        Socket socket = serverSocket.accept();
+        Thread connectionThread = new Thread(() -> serveConnection(socket));
+        connectionThread.setDaemon(true);
+        connectionThread.start();
+      }
+    } catch (IOException e) {
+      // Server socket closed at the end of the test
+    }
+  }
+
+  /**
+   * A minimal stand-in for the server: acknowledges the login, sends two messages and records whatever comes back
+   */
+  private void serveConnection(Socket socket) {
+    try {
+      BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      OutputStream output = socket.getOutputStream();
+
+      String login = input.readLine();
+      if (login.contains("reject")) {
+        write(output, "{\"type\":\"error\",\"message\":\"Username already logged in\"}\n");
+        return;
+      }
+      write(output, "{\"type\":\"acknowledge\",\"message\":\"Logged in\"}\n");
+
+      String turn = gson.toJson(new ApplicationMessage(new TurnStartMessage("Server", START)));
+      write(output, turn.substring(0, 20));
+      Thread.sleep(10);
+      write(output, turn.substring(20) + "\r\n");
+      write(output, gson.toJson(new ApplicationMessage(new ChatMessage("Hello", "Server"))) + "\n");
+
+      String line;
+      while ((line = input.readLine()) != null) {
+        receivedLines.add(line);
+      }
+    } catch (Exception e) {
+      // Connection closed at the end of the test
+    }
+  }
+
+  private static void write(OutputStream output, String text) throws IOException {
+    output.write(text.getBytes(StandardCharsets.UTF_8));
+    output.flush();
+  }
+
+}
@@ -0,0 +1,138 @@
+package test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import main.btlshyp.message.ChatMessage;
+import main.btlshyp.network.MpscQueue;
+import main.btlshyp.network.NetworkClient;
+
+/**
+ * Sends from several threads at once through a real socket and checks that every line reaches the server whole and in
+ * each sender's order.
+ */
+public class OutboundWriterStressTest {
+
+  private static final int PRODUCERS = 4;
+  private static final int MESSAGES_PER_PRODUCER = 5000;
+
+  @Test
+  public void testSendMessageToServer_ConcurrentSendersNeverInterleave() throws Exception {
+    try (ServerSocket server = new ServerSocket(0)) {
+      ExecutorService threads = Executors.newCachedThreadPool();
+      Future<int[]> received = threads.submit(() -> readMessages(server));
+
+      NetworkClient client = new NetworkClient("localhost", server.getLocalPort(), null);
+      client.connectToServer();
+      assertThat(client.loginToServer("stress"), is(true));
+
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> producers = new ArrayList<>();
+      for (int p = 0; p < PRODUCERS; p++) {
+        int producer = p;
+        producers.add(threads.submit(() -> {
+          start.await();
+          for (int seq = 0; seq < MESSAGES_PER_PRODUCER; seq++) {
+            client.sendMessageToServer(new ChatMessage(producer + "-" + seq, "stress"));
+          }
+          return null;
+        }));
+      }
+
+      start.countDown();
+      for (Future<?> producer : producers) {
+        producer.get(30, TimeUnit.SECONDS);
+      }
+      int[] lastSeqByProducer = received.get(30, TimeUnit.SECONDS);
+      threads.shutdown();
+
+      for (int p = 0; p < PRODUCERS; p++) {
+        assertThat(lastSeqByProducer[p], is(MESSAGES_PER_PRODUCER - 1));
+      }
+      assertThat(client.getOutboundWriter().getMessagesWritten(), is((long) PRODUCERS * MESSAGES_PER_PRODUCER));
+    }
+  }
+
+  @Test
+  public void testMpscQueue_ConcurrentOffersAllPolledInProducerOrder() throws Exception {
+    MpscQueue<long[]> queue = new MpscQueue<>();
+    Thread[] producers = new Thread[PRODUCERS];
+    for (int p = 0; p < PRODUCERS; p++) {
+      long producer = p;
+      producers[p] = new Thread(() -> {
+        for (long seq = 0; seq < MESSAGES_PER_PRODUCER; seq++) {
+          queue.offer(new long[] { producer, seq });
+        }
+      });
+      producers[p].start();
+    }
+
+    long[] nextSeq = new long[PRODUCERS];
+    int polled = 0;
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (polled < PRODUCERS * MESSAGES_PER_PRODUCER && System.nanoTime() < deadline) {
+      long[] value = queue.poll();
+      if (value == null) {
+        Thread.yield();
+        continue;
+      }
+      assertThat(value[1], is(nextSeq[(int) value[0]]++));
+      polled++;
+    }
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    assertThat(polled, is(PRODUCERS * MESSAGES_PER_PRODUCER));
+    assertThat(queue.isEmpty(), is(true));
+  }
+
+  /**
+   * Stands in for the server: acknowledges the login then reads chat lines until every producer's last one has arrived
+   *
+   * @return The last sequence number read from each producer
+   */
+  private static int[] readMessages(ServerSocket server) throws Exception {
+    try (Socket socket = server.accept()) {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      PrintWriter writer = new PrintWriter(socket.getOutputStream(), true);
+      reader.readLine();
+      writer.println("{\"type\":\"acknowledge\",\"message\":\"stress successfully logged in\"}");
+
+      JsonParser parser = new JsonParser();
+      int[] lastSeqByProducer = new int[PRODUCERS];
+      Arrays.fill(lastSeqByProducer, -1);
+      for (int i = 0; i < PRODUCERS * MESSAGES_PER_PRODUCER; i++) {
+        String line = reader.readLine();
+        // a line mixing two messages won't parse, or won't have the expected text
+        JsonObject message = parser.parse(line).getAsJsonObject().getAsJsonObject("message");
+        String[] text = message.get("text").getAsString().split("-");
+        int producer = Integer.parseInt(text[0]);
+        int seq = Integer.parseInt(text[1]);
+        assertThat(line, seq, is(lastSeqByProducer[producer] + 1));
+        lastSeqByProducer[producer] = seq;
+      }
+      return lastSeqByProducer;
+    }
+  }
+
+}
@@ -0,0 +1,188 @@
+package test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import main.btlshyp.ThreadMode;
+import main.btlshyp.message.ChatMessage;
+import main.btlshyp.message.Message;
+import main.btlshyp.message.PingMessage;
+import main.btlshyp.network.OutboundWriter;
+import main.btlshyp.network.exception.ClientServerConnectionException;
+
+public class OutboundWriterTest {
+
+  private static void encodeText(Message message, OutputStream batch) throws IOException {
+    batch.write((((ChatMessage) message).getText() + "\n").getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void encodeTextOrPing(Message message, OutputStream batch) throws IOException {
+    if (message instanceof PingMessage) {
+      batch.write(("ping " + ((PingMessage) message).getSequence() + "\n").getBytes(StandardCharsets.UTF_8));
+    } else {
+      encodeText(message, batch);
+    }
+  }
+
+  @Test
+  public void testSend_BurstCoalescedIntoOneWrite() throws Exception {
+    CountDownLatch firstWriteStarted = new CountDownLatch(1);
+    CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+    RecordingOutputStream output = new RecordingOutputStream(firstWriteStarted, releaseFirstWrite);
+    OutboundWriter writer = new OutboundWriter(output, OutboundWriterTest::encodeText,
+        ThreadMode.PLATFORM.newThreadFactory("test-writer"));
+
+    // the first message holds the writer up while the rest of the burst is queued behind it
+    writer.send(new ChatMessage("0", "user"));
+    assertThat(firstWriteStarted.await(5, TimeUnit.SECONDS), is(true));
+    for (int i = 1; i < 10; i++) {
+      writer.send(new ChatMessage(Integer.toString(i), "user"));
+    }
+    releaseFirstWrite.countDown();
+
+    awaitMessagesWritten(writer, 10);
+    assertThat(output.writes, is(2));
+    assertThat(writer.getFlushes(), is(2L));
+    assertThat(writer.getMessagesPerFlush(), is(5.0));
+    assertThat(output.toString("UTF-8"), is("0\n1\n2\n3\n4\n5\n6\n7\n8\n9\n"));
+    writer.close();
+  }
+
+  @Test(expected = ClientServerConnectionException.class)
+  public void testSend_AfterWriteFailure() throws Exception {
+    OutputStream broken = new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        throw new IOException("Connection reset");
+      }
+    };
+    OutboundWriter writer = new OutboundWriter(broken, OutboundWriterTest::encodeText,
+        ThreadMode.PLATFORM.newThreadFactory("test-writer"));
+    writer.send(new ChatMessage("lost", "user"));
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (System.nanoTime() < deadline) {
+      writer.send(new ChatMessage("also lost", "user"));
+      Thread.sleep(1);
+    }
+  }
+
+  @Test
+  public void testResume_WritesUnacknowledgedMessagesAgainFirst() throws Exception {
+    ByteArrayOutputStream firstConnection = new ByteArrayOutputStream();
+    OutboundWriter writer = new OutboundWriter(firstConnection, OutboundWriterTest::encodeText,
+        ThreadMode.PLATFORM.newThreadFactory("test-writer"));
+    writer.send(new ChatMessage("a", "user"));
+    writer.send(new ChatMessage("b", "user"));
+    awaitMessagesWritten(writer, 2);
+    writer.acknowledge();
+    writer.send(new ChatMessage("c", "user"));
+    awaitMessagesWritten(writer, 3);
+    assertThat(writer.getUnacknowledged(), is(1L));
+
+    ByteArrayOutputStream secondConnection = new ByteArrayOutputStream();
+    writer.resume(secondConnection, OutboundWriterTest::encodeText);
+    writer.send(new ChatMessage("d", "user"));
+
+    awaitMessagesWritten(writer, 5);
+    assertThat(firstConnection.toString("UTF-8"), is("a\nb\nc\n"));
+    assertThat(secondConnection.toString("UTF-8"), is("c\nd\n"));
+    writer.close();
+  }
+
+  @Test
+  public void testAcknowledgePing_AcknowledgesOnlyWhatWasWrittenBeforeThePing() throws Exception {
+    ByteArrayOutputStream firstConnection = new ByteArrayOutputStream();
+    OutboundWriter writer = new OutboundWriter(firstConnection, OutboundWriterTest::encodeTextOrPing,
+        ThreadMode.PLATFORM.newThreadFactory("test-writer"));
+    writer.send(new ChatMessage("a", "user"));
+    writer.send(new PingMessage("user", 7, System.nanoTime()));
+    writer.send(new ChatMessage("b", "user"));
+    awaitMessagesWritten(writer, 3);
+
+    writer.acknowledgePing(6);
+    assertThat(writer.getUnacknowledged(), is(3L));
+    writer.acknowledgePing(7);
+    assertThat(writer.getUnacknowledged(), is(1L));
+
+    ByteArrayOutputStream secondConnection = new ByteArrayOutputStream();
+    writer.resume(secondConnection, OutboundWriterTest::encodeTextOrPing);
+    writer.send(new ChatMessage("c", "user"));
+
+    awaitMessagesWritten(writer, 5);
+    assertThat(secondConnection.toString("UTF-8"), is("b\nc\n"));
+    writer.close();
+  }
+
+  @Test
+  public void testTotalQueued_AddsUpWritersUntilClosed() throws Exception {
+    long before = OutboundWriter.getTotalQueued();
+    CountDownLatch releaseWrites = new CountDownLatch(1);
+    OutboundWriter first = new OutboundWriter(new RecordingOutputStream(new CountDownLatch(1), releaseWrites),
+        OutboundWriterTest::encodeText, ThreadMode.PLATFORM.newThreadFactory("test-writer"));
+    OutboundWriter second = new OutboundWriter(new RecordingOutputStream(new CountDownLatch(1), releaseWrites),
+        OutboundWriterTest::encodeText, ThreadMode.PLATFORM.newThreadFactory("test-writer"));
+
+    // Both writers are held up in their first write, so everything sent stays queued
+    for (int i = 0; i < 3; i++) {
+      first.send(new ChatMessage(Integer.toString(i), "first"));
+    }
+    for (int i = 0; i < 2; i++) {
+      second.send(new ChatMessage(Integer.toString(i), "second"));
+    }
+    assertThat(OutboundWriter.getTotalQueued(), is(before + 5));
+
+    first.close();
+    assertThat(OutboundWriter.getTotalQueued(), is(before + 2));
+    second.close();
+    assertThat(OutboundWriter.getTotalQueued(), is(before));
+    releaseWrites.countDown();
+  }
+
+  private static void awaitMessagesWritten(OutboundWriter writer, long messages) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (writer.getMessagesWritten() < messages && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    assertThat(writer.getMessagesWritten(), is(messages));
+  }
+
+  /**
+   * Counts write calls, holding the first one until released
+   */
+  private static class RecordingOutputStream extends ByteArrayOutputStream {
+
+    private final CountDownLatch firstWriteStarted;
+    private final CountDownLatch releaseFirstWrite;
+    private volatile int writes;
+
+    RecordingOutputStream(CountDownLatch firstWriteStarted, CountDownLatch releaseFirstWrite) {
+      this.firstWriteStarted = firstWriteStarted;
+      this.releaseFirstWrite = releaseFirstWrite;
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes, int offset, int length) {
+      writes++;
+      if (writes == 1) {
+        firstWriteStarted.countDown();
+        try {
+          releaseFirstWrite.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      super.write(bytes, offset, length);
+    }
+  }
+
+}
@@ -0,0 +1,98 @@
+package test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import main.btlshyp.model.Model;
+import main.btlshyp.model.PlacementTable;
+import main.btlshyp.model.Ship;
+import main.btlshyp.model.ShipType;
+import main.btlshyp.sim.GameSimulator;
+
+public class PlacementTableTest {
+
+  @Test
+  public void testPlacementCount_StandardBoard() {
+    PlacementTable table = PlacementTable.forBoard(5, 5);
+    // a ship of size n fits (6 - n) * 5 ways in each direction
+    assertThat(table.getPlacementCount(ShipType.PATROLBOAT), is(40));
+    assertThat(table.getPlacementCount(ShipType.SUBMARINE), is(30));
+    assertThat(table.getPlacementCount(ShipType.DESTROYER), is(30));
+    assertThat(table.getPlacementCount(ShipType.BATTLESHIP), is(20));
+  }
+
+  @Test
+  public void testForBoard_SharedPerSize() {
+    assertThat(PlacementTable.forBoard(5, 5) == PlacementTable.forBoard(5, 5), is(true));
+    assertThat(PlacementTable.forBoard(5, 5) == PlacementTable.forBoard(6, 5), is(false));
+  }
+
+  @Test
+  public void testEveryPlacement_IsValidShip() {
+    PlacementTable table = PlacementTable.forBoard(7, 4);
+    for (ShipType type : ShipType.values()) {
+      for (int placement = 0; placement < table.getPlacementCount(type); placement++) {
+        assertThat(table.toShip(type, placement).isValid(7, 4), is(true));
+      }
+    }
+  }
+
+  @Test
+  public void testOverlaps_AfterOccupy() {
+    PlacementTable table = PlacementTable.forBoard(5, 5);
+    long[] occupancy = table.newOccupancy();
+    table.occupy(ShipType.BATTLESHIP, 0, occupancy);
+
+    assertThat(table.overlaps(ShipType.BATTLESHIP, 0, occupancy), is(true));
+    int overlapping = 0;
+    for (int placement = 0; placement < table.getPlacementCount(ShipType.PATROLBOAT); placement++) {
+      Ship patrolBoat = table.toShip(ShipType.PATROLBOAT, placement);
+      Model model = new Model();
+      model.placeShip(table.toShip(ShipType.BATTLESHIP, 0));
+      boolean overlaps = table.overlaps(ShipType.PATROLBOAT, placement, occupancy);
+      assertThat(overlaps, is(!model.isShipPlacementValid(patrolBoat)));
+      if (overlaps) {
+        overlapping++;
+      }
+    }
+    assertThat(overlapping > 0, is(true));
+  }
+
+  @Test
+  public void testRandomFleet_AlwaysPlaceable() {
+    assertFleetsPlaceable(5, 5, 10_000);
+    // more than 64 squares, so masks span several words
+    assertFleetsPlaceable(12, 9, 1_000);
+  }
+
+  @Test
+  public void testRandomPlacement_FullBoard() {
+    PlacementTable table = PlacementTable.forBoard(2, 2);
+    long[] occupancy = table.newOccupancy();
+    table.occupy(ShipType.PATROLBOAT, table.randomPlacement(ShipType.PATROLBOAT, occupancy, new SplittableRandom(1)),
+        occupancy);
+    table.occupy(ShipType.PATROLBOAT, table.randomPlacement(ShipType.PATROLBOAT, occupancy, new SplittableRandom(1)),
+        occupancy);
+    assertThat(table.randomPlacement(ShipType.PATROLBOAT, occupancy, new SplittableRandom(1)), is(-1));
+    assertThat(table.getPlacementCount(ShipType.SUBMARINE), is(0));
+  }
+
+  private static void assertFleetsPlaceable(int width, int height, int fleets) {
+    PlacementTable table = PlacementTable.forBoard(width, height);
+    SplittableRandom random = new SplittableRandom(width * 31 + height);
+    for (int i = 0; i < fleets; i++) {
+      List<Ship> ships = table.randomFleet(GameSimulator.STANDARD_FLEET, random);
+      Model model = new Model(width, height);
+      for (Ship ship : ships) {
+        assertThat(model.isShipPlacementValid(ship), is(true));
+        model.placeShip(ship);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,114 @@
+package test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import main.btlshyp.bot.DensityAttackStrategy;
+import main.btlshyp.bot.ProbabilityHeatMap;
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.model.ShipType;
+import main.btlshyp.sim.GameSimulator;
+import main.btlshyp.sim.Player;
+import main.btlshyp.sim.RandomPlacementStrategy;
+import main.btlshyp.sim.Simulation;
+import main.btlshyp.sim.SimulationSummary;
+
+public class ProbabilityHeatMapTest {
+
+  private static final ShipType[] DESTROYER_ONLY = { ShipType.DESTROYER };
+
+  @Test
+  public void testHuntHeat_CenterHotterThanCorner() {
+    ProbabilityHeatMap heatMap = new ProbabilityHeatMap(5, 5, DESTROYER_ONLY);
+    // a destroyer fits over the center 6 ways and over a corner 2 ways
+    assertThat(heatMap.getHuntHeat(new Coordinate(2, 2)), is(6));
+    assertThat(heatMap.getHuntHeat(new Coordinate(0, 0)), is(2));
+    assertThat(heatMap.nextAttack(), is(new Coordinate(2, 2)));
+  }
+
+  @Test
+  public void testRecordMiss_RemovesPlacementsThroughSquare() {
+    ProbabilityHeatMap heatMap = new ProbabilityHeatMap(5, 5, DESTROYER_ONLY);
+    heatMap.recordMiss(new Coordinate(1, 0));
+    // only the vertical placement starting in the corner is left
+    assertThat(heatMap.getHuntHeat(new Coordinate(0, 0)), is(1));
+    assertThat(heatMap.getHuntHeat(new Coordinate(2, 0)), is(2));
+  }
+
+  @Test
+  public void testRecordHit_TargetsNeighbours() {
+    ProbabilityHeatMap heatMap = new ProbabilityHeatMap(5, 5, DESTROYER_ONLY);
+    heatMap.recordHit(new Coordinate(2, 2));
+    Coordinate next = heatMap.nextAttack();
+    assertThat(Math.abs(next.x - 2) + Math.abs(next.y - 2), is(1));
+
+    // two hits in a column: carry on along it
+    heatMap.recordHit(new Coordinate(2, 3));
+    assertThat(heatMap.nextAttack(), is(new Coordinate(2, 1)));
+  }
+
+  @Test
+  public void testRecordSunk_ResolvesHitsAndHuntsAgain() {
+    ShipType[] fleet = { ShipType.PATROLBOAT, ShipType.DESTROYER };
+    ProbabilityHeatMap heatMap = new ProbabilityHeatMap(5, 5, fleet);
+    heatMap.recordHit(new Coordinate(0, 0));
+    heatMap.recordSunk(new Coordinate(0, 1), ShipType.PATROLBOAT);
+
+    assertThat(heatMap.getUnresolvedHits(), is(0));
+    assertThat(heatMap.isFleetSunk(), is(false));
+    // the destroyer can't overlap the sunk patrol boat
+    assertThat(heatMap.getHuntHeat(new Coordinate(0, 0)), is(0));
+    assertThat(heatMap.getHuntHeat(new Coordinate(0, 2)), is(2));
+
+    heatMap.recordSunk(new Coordinate(4, 4), ShipType.DESTROYER);
+    assertThat(heatMap.isFleetSunk(), is(true));
+  }
+
+  @Test
+  public void testNextAttack_NeverRepeatsASquare() {
+    ProbabilityHeatMap heatMap = new ProbabilityHeatMap(5, 5, GameSimulator.STANDARD_FLEET);
+    Set<Coordinate> attacked = new HashSet<>();
+    for (int i = 0; i < 25; i++) {
+      Coordinate coordinate = heatMap.nextAttack();
+      assertThat(attacked.add(coordinate), is(true));
+      heatMap.recordMiss(coordinate);
+    }
+    assertThat(heatMap.nextAttack() == null, is(true));
+  }
+
+  @Test
+  public void testDensityBot_BeatsRandom() {
+    Player bot = new Player("bot", new RandomPlacementStrategy(), DensityAttackStrategy::new);
+    SimulationSummary summary = new Simulation(new GameSimulator(bot, Player.random("random"))).run(5_000, 7);
+
+    assertThat(summary.getWinRate(0) > 0.75, is(true));
+  }
+
+  @Test
+  public void testDensityBot_LargeBoardDecisionsAreFast() {
+    ShipType[] fleet = { ShipType.BATTLESHIP, ShipType.DESTROYER, ShipType.SUBMARINE, ShipType.PATROLBOAT };
+    GameSimulator simulator = new GameSimulator(
+        new Player("a", new RandomPlacementStrategy(), () -> new DensityAttackStrategy(fleet)),
+        new Player("b", new RandomPlacementStrategy(), () -> new DensityAttackStrategy(fleet)),
+        20, 20, fleet);
+
+    // warm up, then time the games
+    for (long seed = 0; seed < 200; seed++) {
+      simulator.play(seed);
+    }
+    long shots = 0;
+    long start = System.nanoTime();
+    for (long seed = 0; seed < 200; seed++) {
+      shots += simulator.play(seed).getWinnerShots() * 2L;
+    }
+    double microsPerShot = (System.nanoTime() - start) / 1e3 / shots;
+
+    assertThat(microsPerShot < 100, is(true));
+  }
+
+}
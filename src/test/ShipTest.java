@@ -124,6 +124,47 @@ public class ShipTest {
 		assertThat(result, is(false));
 	}
 
+	@Test
+	public void testIsValid_Invalid_GapVerticalOnBoard() throws Exception {
+		fixture = new Ship(DESTROYER);
+
+		ArrayList<Coordinate> coordinates = Stream.of(new Coordinate(2, 0), new Coordinate(2, 1), new Coordinate(2, 3))
+				.collect(Collectors.toCollection(ArrayList::new));
+
+		fixture.setShipCoordinates(coordinates);
+
+		boolean result = fixture.isValid();
+
+		assertThat(result, is(false));
+	}
+
+	@Test
+	public void testIsValid_Valid_Unordered() throws Exception {
+		fixture = new Ship(DESTROYER);
+
+		ArrayList<Coordinate> coordinates = Stream.of(new Coordinate(4, 1), new Coordinate(2, 1), new Coordinate(3, 1))
+				.collect(Collectors.toCollection(ArrayList::new));
+
+		fixture.setShipCoordinates(coordinates);
+
+		boolean result = fixture.isValid();
+
+		assertThat(result, is(true));
+	}
+
+	@Test
+	public void testIsValid_LargerBoard() throws Exception {
+		fixture = new Ship(DESTROYER);
+
+		ArrayList<Coordinate> coordinates = Stream.of(new Coordinate(9, 7), new Coordinate(9, 8), new Coordinate(9, 9))
+				.collect(Collectors.toCollection(ArrayList::new));
+
+		fixture.setShipCoordinates(coordinates);
+
+		assertThat(fixture.isValid(), is(false));
+		assertThat(fixture.isValid(10, 10), is(true));
+	}
+
 	@Test
 	public void testIsValid_Invalid_TooManyCoordinates() throws Exception {
 		fixture = new Ship(DESTROYER);
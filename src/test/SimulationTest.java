@@ -0,0 +1,91 @@
+package test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.model.Ship;
+import main.btlshyp.sim.AttackStrategy;
+import main.btlshyp.sim.GameResult;
+import main.btlshyp.sim.GameSimulator;
+import main.btlshyp.sim.PlacementStrategy;
+import main.btlshyp.sim.Player;
+import main.btlshyp.sim.RandomAttackStrategy;
+import main.btlshyp.sim.Simulation;
+import main.btlshyp.sim.SimulationSummary;
+
+public class SimulationTest {
+
+  private static final int FLEET_SQUARES = Ship.PATROL_SIZE + Ship.SUB_SIZE + Ship.DESTROYER_SIZE + Ship.BATTLESHIP_SIZE;
+
+  @Test
+  public void testPlay_SameSeedSameGame() {
+    GameSimulator simulator = new GameSimulator(Player.random("a"), Player.random("b"));
+    for (long seed = 0; seed < 100; seed++) {
+      GameResult first = simulator.play(seed);
+      GameResult second = simulator.play(seed);
+      assertThat(second.getWinner(), is(first.getWinner()));
+      assertThat(second.getWinnerShots(), is(first.getWinnerShots()));
+      assertThat(second.getLoserShots(), is(first.getLoserShots()));
+    }
+  }
+
+  @Test
+  public void testPlay_WinnerSinksWholeFleet() {
+    GameSimulator simulator = new GameSimulator(Player.random("a"), Player.random("b"));
+    for (long seed = 0; seed < 1000; seed++) {
+      GameResult result = simulator.play(seed);
+      assertThat(result.getWinnerShots() >= FLEET_SQUARES, is(true));
+      assertThat(result.getWinnerShots() <= 25, is(true));
+      // players alternate, so the loser has had the same number of turns or one fewer
+      int expectedLoserShots = result.getWinner() == result.getFirstPlayer()
+          ? result.getWinnerShots() - 1 : result.getWinnerShots();
+      assertThat(result.getLoserShots(), is(expectedLoserShots));
+    }
+  }
+
+  @Test
+  public void testRun_PlayerWhoNeverHitsAlwaysLoses() {
+    // both fleets sit in the top rows, leaving the bottom right corner empty
+    PlacementStrategy topRows = (type, width, height, random) -> {
+      Ship ship = new Ship(type);
+      ArrayList<Coordinate> coordinates = new ArrayList<>();
+      for (int x = 0; x < ship.getShipSize(); x++) {
+        coordinates.add(new Coordinate(x, type.ordinal()));
+      }
+      ship.setShipCoordinates(coordinates);
+      return ship;
+    };
+    Player randomAttacker = new Player("random", topRows, RandomAttackStrategy::new);
+    Player cornerAttacker = new Player("corner", topRows, () -> new AttackStrategy() {
+      @Override
+      public void newGame(int boardWidth, int boardHeight, SplittableRandom random) {
+      }
+
+      @Override
+      public Coordinate nextAttack() {
+        return new Coordinate(4, 4);
+      }
+    });
+
+    SimulationSummary summary = new Simulation(new GameSimulator(randomAttacker, cornerAttacker), 2).run(200, 0);
+    assertThat(summary.getGames(), is(200L));
+    assertThat(summary.getWins(0), is(200L));
+  }
+
+  @Test
+  public void testRun_RandomPlayersEvenlyMatched() {
+    SimulationSummary summary = new Simulation(
+        new GameSimulator(Player.random("a"), Player.random("b"))).run(20_000, 42);
+
+    assertThat(summary.getGames(), is(20_000L));
+    assertThat(summary.getWins(0) + summary.getWins(1), is(20_000L));
+    assertThat(Math.abs(summary.getWinRate(0) - 0.5) < 0.05, is(true));
+  }
+
+}
@@ -5,7 +5,31 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ ShipTest.class, MessageReceiverTest.class, })
+@SuiteClasses({
+    ShipTest.class,
+    BoardTest.class,
+    BoardStressTest.class,
+    MessageReceiverTest.class,
+    ControllerTest.class,
+    MessageCodecTest.class,
+    BinaryMessageCodecTest.class,
+    NioSessionEngineTest.class,
+    SimulationTest.class,
+    ProbabilityHeatMapTest.class,
+    PlacementTableTest.class,
+    TournamentTest.class,
+    MessageJournalTest.class,
+    OutboundWriterTest.class,
+    OutboundWriterStressTest.class,
+    NetworkClientReconnectTest.class,
+    HeartbeatTest.class,
+    MetricsRegistryTest.class,
+    AsyncLogHandlerTest.class,
+    LogSamplerTest.class,
+    TurnTracerTest.class,
+    LoopbackRelayTest.class,
+    GameServerTest.class,
+})
 public class TestRunner {
 
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+package test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import main.btlshyp.bot.DensityAttackStrategy;
+import main.btlshyp.sim.Player;
+import main.btlshyp.sim.RandomPlacementStrategy;
+import main.btlshyp.tournament.CsvTournamentReporter;
+import main.btlshyp.tournament.MatchupResult;
+import main.btlshyp.tournament.Tournament;
+
+public class TournamentTest {
+
+  private static final List<Player> PLAYERS = Arrays.asList(
+      Player.random("random"),
+      new Player("density", new RandomPlacementStrategy(), DensityAttackStrategy::new));
+
+  @Test
+  public void testRun_EveryMatchupPlayed() {
+    Tournament tournament = new Tournament(PLAYERS, PLAYERS, 2_000, 0);
+    List<MatchupResult> results = tournament.run();
+
+    assertThat(results.size(), is(4));
+    assertThat(results.get(1).getChallenger(), is("random"));
+    assertThat(results.get(1).getOpponent(), is("density"));
+    for (MatchupResult result : results) {
+      assertThat(result.getGames(), is(2_000L));
+      assertThat(result.getWinRateLow() <= result.getWinRate(), is(true));
+      assertThat(result.getWinRate() <= result.getWinRateHigh(), is(true));
+    }
+
+    // density against random is decisively better, random against itself is a coin toss
+    MatchupResult densityVsRandom = results.get(2);
+    assertThat(densityVsRandom.getWinRateLow() > 0.9, is(true));
+    assertThat(densityVsRandom.getMeanShotsToWin() < results.get(0).getMeanShotsToWin(), is(true));
+    MatchupResult randomVsRandom = results.get(0);
+    assertThat(randomVsRandom.getWinRateLow() < 0.5 && randomVsRandom.getWinRateHigh() > 0.5, is(true));
+  }
+
+  @Test
+  public void testRun_SameResultsWhateverTheThreads() {
+    Tournament single = new Tournament(PLAYERS, PLAYERS.subList(0, 1), 3_000, 9);
+    single.setParallelism(1);
+    single.setBatchGames(1_000);
+    Tournament several = new Tournament(PLAYERS, PLAYERS.subList(0, 1), 3_000, 9);
+    several.setParallelism(4);
+
+    List<MatchupResult> singleResults = single.run();
+    List<MatchupResult> severalResults = several.run();
+    for (int matchup = 0; matchup < singleResults.size(); matchup++) {
+      assertThat(severalResults.get(matchup).getWins(), is(singleResults.get(matchup).getWins()));
+      assertThat(severalResults.get(matchup).getMeanShotsToWin(), is(singleResults.get(matchup).getMeanShotsToWin()));
+    }
+  }
+
+  @Test
+  public void testCsvReporter_StreamsEachBatch() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    Tournament tournament = new Tournament(PLAYERS.subList(0, 1), Arrays.asList(Player.random("random, again")),
+        3_000, 0);
+    tournament.setBatchGames(1_000);
+    tournament.setReporter(new CsvTournamentReporter(new PrintStream(bytes)));
+    tournament.run();
+
+    String[] lines = bytes.toString().split("\n");
+    assertThat(lines.length, is(4));
+    assertThat(lines[0].startsWith("elapsed_ms,challenger,opponent,games"), is(true));
+    assertThat(lines[1].contains(",random,\"random, again\",1000,"), is(true));
+    assertThat(lines[1].endsWith(",false"), is(true));
+    assertThat(lines[3].contains(",3000,"), is(true));
+    assertThat(lines[3].endsWith(",true"), is(true));
+  }
+
+}
@@ -0,0 +1,101 @@
+package test;
+
+import static main.btlshyp.message.AttackResponseMessage.HitOrMiss.HIT;
+import static main.btlshyp.message.AttackResponseMessage.ShipSunk.NONE;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import main.btlshyp.message.AttackResponseMessage;
+import main.btlshyp.model.Coordinate;
+import main.btlshyp.trace.TurnTracer;
+
+public class TurnTracerTest {
+
+  private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private Path traceFile;
+  private TurnTracer tracer;
+
+  @Before
+  public void setUp() throws Exception {
+    traceFile = Files.createTempFile("turns", ".csv");
+    tracer = TurnTracer.open(traceFile);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    tracer.close();
+    Files.deleteIfExists(traceFile);
+  }
+
+  @Test
+  public void responseDisplayed_WritesStagesInMicroseconds() throws Exception {
+    long clicked = 1_000 * MILLIS;
+    long traceId = tracer.attackSent(clicked, clicked + 250 * MILLIS);
+
+    // The opponent's clock is nowhere near ours
+    AttackResponseMessage response = response(traceId);
+    response.setAttemptReceivedNanos(-50_000 * MILLIS);
+    response.setAttackResultsNanos(-50_000 * MILLIS + 2 * MILLIS);
+    response.setResponseSentNanos(-50_000 * MILLIS + 32 * MILLIS);
+    tracer.responseDisplayed(response, clicked + 400 * MILLIS, clicked + 410 * MILLIS);
+
+    List<String> lines = Files.readAllLines(traceFile, StandardCharsets.UTF_8);
+    assertThat(lines.size(), is(2));
+    String[] columns = lines.get(1).split(",", -1);
+    assertThat(columns[1], is(Long.toHexString(traceId)));
+    assertThat(columns[2] + "," + columns[3] + "," + columns[4], is("3,4,HIT"));
+    // total, until sent, network (150 ms waiting less 32 ms at the opponent), opponent model, opponent respond, display
+    assertThat(columns[5], is("410000"));
+    assertThat(columns[6], is("250000"));
+    assertThat(columns[7], is("118000"));
+    assertThat(columns[8], is("2000"));
+    assertThat(columns[9], is("30000"));
+    assertThat(columns[10], is("10000"));
+  }
+
+  @Test
+  public void responseDisplayed_OpponentWithoutTimestamps_NetworkCoversWholeWait() throws Exception {
+    long traceId = tracer.attackSent(0, 5 * MILLIS);
+
+    tracer.responseDisplayed(response(traceId), 105 * MILLIS, 106 * MILLIS);
+
+    String[] columns = Files.readAllLines(traceFile, StandardCharsets.UTF_8).get(1).split(",", -1);
+    assertThat(columns[7], is("100000"));
+    assertThat(columns[8], is(""));
+    assertThat(columns[9], is(""));
+  }
+
+  @Test
+  public void responseDisplayed_UnknownTraceId_Ignored() throws Exception {
+    long traceId = tracer.attackSent(0, MILLIS);
+
+    tracer.responseDisplayed(response(traceId + 1), 2 * MILLIS, 3 * MILLIS);
+    tracer.responseDisplayed(response(0), 2 * MILLIS, 3 * MILLIS);
+    tracer.responseDisplayed(response(traceId), 2 * MILLIS, 3 * MILLIS);
+    // Already traced
+    tracer.responseDisplayed(response(traceId), 2 * MILLIS, 3 * MILLIS);
+
+    List<String> lines = Files.readAllLines(traceFile, StandardCharsets.UTF_8);
+    assertThat(lines.size(), is(2));
+    assertThat(lines.get(1), not(is("")));
+  }
+
+  private static AttackResponseMessage response(long traceId) {
+    AttackResponseMessage response = new AttackResponseMessage("Opponent", HIT, NONE, new Coordinate(3, 4));
+    response.setTraceId(traceId);
+    return response;
+  }
+
+}